@@ -0,0 +1,40 @@
+package org.jboss.example.homeloan.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.example.homeloan.data.Applicant;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Applicant.getAge, evaluated for every match of the Underage rule. Run with
+ * "-prof gc" to see the allocation per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ApplicantBenchmark {
+
+	private Applicant applicant;
+
+	@Setup
+	public void setUp() throws Exception {
+		applicant = Fixtures.application("Bob").getApplicant();
+	}
+
+	@Benchmark
+	public int getAge() {
+		return applicant.getAge();
+	}
+}
@@ -0,0 +1,86 @@
+package org.jboss.example.homeloan.benchmark;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.XMLConstants;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+
+import org.jboss.example.homeloan.data.ApplicationSchema;
+import org.jboss.example.homeloan.data.LoanApplication;
+import org.jboss.example.homeloan.data.StreamingLoanAppTransformer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Element;
+
+/**
+ * Application.xsd validation. The "dom" variants validate a SOAP payload,
+ * with a new Validator per message or with the pooled one of
+ * ApplicationSchema. The "text" variants transform a JMS payload without
+ * validation, with validation as a separate pass and with validation during
+ * the streaming read (the default homeloan.validation mode).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ApplicationValidationBenchmark {
+
+	@Param({"Bob", "Tina", "Sally"})
+	private String fixture;
+
+	private final StreamingLoanAppTransformer streaming = new StreamingLoanAppTransformer();
+	private Schema schema;
+	private String xml;
+	private Element element;
+
+	@Setup
+	public void setUp() throws Exception {
+		schema = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI)
+				.newSchema(getClass().getClassLoader().getResource("Application.xsd"));
+		xml = Fixtures.read(fixture);
+		element = Fixtures.parse(xml);
+	}
+
+	@Benchmark
+	public void domNewValidator() throws Exception {
+		schema.newValidator().validate(new DOMSource(element));
+	}
+
+	@Benchmark
+	public void domPooledValidator() throws Exception {
+		ApplicationSchema.validate(new DOMSource(element));
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = "-Dhomeloan.validation=OFF")
+	public LoanApplication textUnvalidated() throws Exception {
+		return streaming.transformApplicationToLoanApplication(xml);
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = "-Dhomeloan.validation=OFF")
+	public LoanApplication textSeparatePass() throws Exception {
+		ApplicationSchema.validate(new StreamSource(new StringReader(xml)));
+		return streaming.transformApplicationToLoanApplication(xml);
+	}
+
+	@Benchmark
+	public LoanApplication textStreaming() throws Exception {
+		return streaming.transformApplicationToLoanApplication(xml);
+	}
+}
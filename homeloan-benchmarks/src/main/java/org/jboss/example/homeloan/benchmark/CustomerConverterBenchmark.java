@@ -0,0 +1,58 @@
+package org.jboss.example.homeloan.benchmark;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.example.homeloan.data.Customer;
+import org.jboss.example.homeloan.lookup.CustomerConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Conversion of a CustomerDS row, as returned by the SQL binding, into a
+ * Customer. Column names are case-insensitive like the binding's row maps.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CustomerConverterBenchmark {
+
+	private List<Map<String, Object>> rows;
+
+	@Setup
+	public void setUp() {
+		Map<String, Object> row = new TreeMap<String, Object>(String.CASE_INSENSITIVE_ORDER);
+		row.put("SSN", "755-55-5555");
+		row.put("FIRSTNAME", "Joseph");
+		row.put("LASTNAME", "Smith");
+		row.put("STREETADDRESS", "123 Street");
+		row.put("CITY", "Elm");
+		row.put("STATE", "NC");
+		row.put("POSTALCODE", "27808");
+		row.put("DOB", Date.valueOf("1970-01-01"));
+		row.put("CHECKINGBALANCE", new BigDecimal("14000.40"));
+		row.put("SAVINGSBALANCE", new BigDecimal("22000.99"));
+		rows = Collections.singletonList(row);
+	}
+
+	@Benchmark
+	public Customer from() {
+		return CustomerConverter.from(rows);
+	}
+}
@@ -0,0 +1,81 @@
+package org.jboss.example.homeloan.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.drools.core.marshalling.impl.ClassObjectMarshallingStrategyAcceptor;
+import org.drools.core.marshalling.impl.SerializablePlaceholderResolverStrategy;
+import org.jboss.example.homeloan.data.LoanApplication;
+import org.jboss.example.homeloan.data.Qualification;
+import org.jboss.example.homeloan.prequal.DataMarshallingStrategy;
+import org.kie.api.marshalling.ObjectMarshallingStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Marshalling the variables of a HumanEvaluationService process instance
+ * (LoanApplication, Applicant and Qualification), as done on every persisted
+ * transition, with DataMarshallingStrategy and with the Java serialization
+ * strategy jBPM uses by default. The bytes per snapshot of each are printed
+ * when the fixture is set up.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataMarshallingBenchmark {
+
+	@Param({"data", "serializable"})
+	private String strategyName;
+
+	private ObjectMarshallingStrategy strategy;
+	private Object[] variables;
+	private byte[][] marshalled;
+
+	@Setup
+	public void setUp() throws Exception {
+		strategy = "data".equals(strategyName)
+				? new DataMarshallingStrategy()
+				: new SerializablePlaceholderResolverStrategy(ClassObjectMarshallingStrategyAcceptor.DEFAULT);
+		LoanApplication application = Fixtures.application("Tina");
+		Qualification qualification = new Qualification();
+		qualification.setStatus("Pending");
+		qualification.setRate(application.getApprovedRate());
+		qualification.setExplanation("Existing customer");
+		variables = new Object[] {application, application.getApplicant(), qualification};
+		marshalled = marshal();
+		int size = 0;
+		for (byte[] bytes : marshalled) {
+			size += bytes.length;
+		}
+		System.out.printf("%n%s: %d bytes per snapshot%n", strategyName, size);
+	}
+
+	@Benchmark
+	public byte[][] marshal() throws Exception {
+		byte[][] bytes = new byte[variables.length][];
+		for (int i = 0; i < variables.length; i++) {
+			bytes[i] = strategy.marshal(null, null, variables[i]);
+		}
+		return bytes;
+	}
+
+	@Benchmark
+	public Object[] unmarshal() throws Exception {
+		Object[] read = new Object[marshalled.length];
+		for (int i = 0; i < marshalled.length; i++) {
+			read[i] = strategy.unmarshal(null, null, marshalled[i], getClass().getClassLoader());
+		}
+		return read;
+	}
+}
@@ -0,0 +1,56 @@
+package org.jboss.example.homeloan.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.jboss.example.homeloan.data.LoanApplication;
+import org.jboss.example.homeloan.data.StreamingLoanAppTransformer;
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+
+public final class Fixtures {
+
+	private static final DocumentBuilderFactory DOCUMENT_FACTORY = DocumentBuilderFactory.newInstance();
+	static {
+		DOCUMENT_FACTORY.setNamespaceAware(true);
+	}
+
+	private Fixtures() {
+	}
+
+	/**
+	 * Reads one of the homeloan test fixtures, e.g. "Bob" for Bob.xml.
+	 */
+	public static String read(String name) throws Exception {
+		InputStream in = Fixtures.class.getClassLoader().getResourceAsStream(name + ".xml");
+		if (in == null) {
+			throw new IllegalArgumentException("No such fixture: " + name);
+		}
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+				out.write(buffer, 0, n);
+			}
+			return out.toString("UTF-8");
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Transforms a fixture into a LoanApplication, as intake would.
+	 */
+	public static LoanApplication application(String name) throws Exception {
+		return new StreamingLoanAppTransformer().transformApplicationToLoanApplication(read(name));
+	}
+
+	public static Element parse(String xml) throws Exception {
+		return DOCUMENT_FACTORY.newDocumentBuilder()
+				.parse(new InputSource(new StringReader(xml)))
+				.getDocumentElement();
+	}
+}
@@ -0,0 +1,114 @@
+package org.jboss.example.homeloan.benchmark;
+
+import java.sql.Connection;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.namespace.QName;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.switchyard.component.bpm.config.model.BPMComponentImplementationModel;
+import org.switchyard.component.bpm.config.model.v1.V1BPMComponentImplementationModel;
+import org.switchyard.component.test.mixins.cdi.CDIMixIn;
+import org.switchyard.component.test.mixins.naming.NamingMixIn;
+import org.switchyard.config.model.composite.ComponentModel;
+import org.switchyard.test.BeforeDeploy;
+import org.switchyard.test.Invoker;
+import org.switchyard.test.SwitchYardTestCaseConfig;
+import org.switchyard.test.SwitchYardTestKit;
+
+/**
+ * The whole in-VM intake path: an Application document is validated and
+ * transformed, the customer is looked up (in an empty H2 CUSTOMER table) and
+ * the prequalification process evaluates it, all on the calling thread
+ * unless homeloan.intake.async is set.
+ *
+ * The application is deployed the way the extra tests deploy it, with the
+ * jBPM components made non-persistent.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@SwitchYardTestCaseConfig(
+		config = SwitchYardTestCaseConfig.SWITCHYARD_XML,
+		mixins = { CDIMixIn.class, NamingMixIn.class },
+		exclude = "jms")
+public class IntakeBenchmark {
+
+	private static final QName APPLICATION =
+			new QName("http://jboss.com/demo/products/soa-p/5.2/Application.xsd", "Application");
+
+	// Bob is approved automatically, Tina is rejected as underage
+	@Param({"Bob", "Tina"})
+	private String fixture;
+
+	private SwitchYardTestKit testKit;
+	private Connection connection;
+	private Invoker intake;
+	private String xml;
+
+	@Setup
+	public void setUp() throws Exception {
+		System.setProperty("homeloan.audit.level", "OFF");
+		xml = Fixtures.read(fixture);
+
+		testKit = new SwitchYardTestKit(this);
+		testKit.start();
+
+		JdbcDataSource dataSource = new JdbcDataSource();
+		dataSource.setURL("jdbc:h2:mem:homeloan-intake;DB_CLOSE_DELAY=-1");
+		dataSource.setUser("sa");
+		dataSource.setPassword("sa");
+		// held open for the trial, the in-memory database lives as long as a connection does
+		connection = dataSource.getConnection();
+		connection.createStatement().executeUpdate("CREATE TABLE IF NOT EXISTS CUSTOMER("
+				+ "SSN VARCHAR(11) PRIMARY KEY,"
+				+ "FIRSTNAME VARCHAR(50),"
+				+ "LASTNAME VARCHAR(50),"
+				+ "STREETADDRESS VARCHAR(255),"
+				+ "CITY VARCHAR(60),"
+				+ "STATE VARCHAR(2),"
+				+ "POSTALCODE VARCHAR(60),"
+				+ "DOB DATE,"
+				+ "CHECKINGBALANCE DECIMAL(14,2),"
+				+ "SAVINGSBALANCE DECIMAL(14,2))");
+		testKit.getMixIn(NamingMixIn.class).getInitialContext()
+				.rebind("java:jboss/datasources/CustomerDS", dataSource);
+
+		intake = testKit.newInvoker("IntakeService");
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		testKit.stop();
+		connection.close();
+	}
+
+	@BeforeDeploy
+	public void disableBPMPersistence() {
+		for (ComponentModel component : testKit.getConfigModel().getComposite().getComponents()) {
+			if (component.getImplementation() instanceof BPMComponentImplementationModel) {
+				((V1BPMComponentImplementationModel)component.getImplementation()).setPersistent(false);
+			}
+		}
+	}
+
+	@Benchmark
+	public void intake() {
+		intake.operation("intake").inputType(APPLICATION).sendInOnly(xml);
+	}
+}
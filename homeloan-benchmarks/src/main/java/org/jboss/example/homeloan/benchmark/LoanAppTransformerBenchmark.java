@@ -0,0 +1,67 @@
+package org.jboss.example.homeloan.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.example.homeloan.data.LoanAppTransformer;
+import org.jboss.example.homeloan.data.LoanApplication;
+import org.jboss.example.homeloan.data.StreamingLoanAppTransformer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Element;
+
+/**
+ * DOM getElementsByTagNameNS transformer versus the single-pass streaming
+ * transformer. The "FromText" variants include the cost of getting from the
+ * raw payload (as delivered by IntakeJMS) to the transformer's input.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoanAppTransformerBenchmark {
+
+	@Param({"Bob", "Tina", "Sally"})
+	private String fixture;
+
+	private final LoanAppTransformer dom = new LoanAppTransformer();
+	private final StreamingLoanAppTransformer streaming = new StreamingLoanAppTransformer();
+	private String xml;
+	private Element element;
+
+	@Setup
+	public void setUp() throws Exception {
+		xml = Fixtures.read(fixture);
+		element = Fixtures.parse(xml);
+	}
+
+	@Benchmark
+	public LoanApplication domFromElement() throws Exception {
+		return dom.transformApplicationToLoanApplication(element);
+	}
+
+	@Benchmark
+	public LoanApplication streamingFromElement() throws Exception {
+		return streaming.transformApplicationToLoanApplication(element);
+	}
+
+	@Benchmark
+	public LoanApplication domFromText() throws Exception {
+		return dom.transformApplicationToLoanApplication(Fixtures.parse(xml));
+	}
+
+	@Benchmark
+	public LoanApplication streamingFromText() throws Exception {
+		return streaming.transformApplicationToLoanApplication(xml);
+	}
+}
@@ -0,0 +1,93 @@
+package org.jboss.example.homeloan.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.example.homeloan.data.LoanApplication;
+import org.jboss.example.homeloan.data.LoanApplicationCodec;
+import org.jboss.example.homeloan.data.StreamingLoanAppTransformer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The binary application format against the XML documents IntakeJMS receives
+ * and the Java serialization used when the process persists its variables.
+ * The size of each encoding is printed when the fixture is set up.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoanApplicationCodecBenchmark {
+
+	@Param({"Bob", "Tina", "Sally"})
+	private String fixture;
+
+	private final StreamingLoanAppTransformer streaming = new StreamingLoanAppTransformer();
+	private String xml;
+	private LoanApplication application;
+	private byte[] binary;
+	private byte[] serialized;
+
+	@Setup
+	public void setUp() throws Exception {
+		xml = Fixtures.read(fixture);
+		application = Fixtures.application(fixture);
+		binary = LoanApplicationCodec.encode(application);
+		serialized = serialize(application);
+		System.out.printf("%n%s: %d bytes XML, %d bytes binary, %d bytes Java serialized%n",
+				fixture, xml.getBytes("UTF-8").length, binary.length, serialized.length);
+	}
+
+	@Benchmark
+	public LoanApplication decodeBinary() {
+		return LoanApplicationCodec.decode(binary);
+	}
+
+	@Benchmark
+	public LoanApplication decodeXml() throws Exception {
+		return streaming.transformApplicationToLoanApplication(xml);
+	}
+
+	@Benchmark
+	public Object decodeSerialized() throws Exception {
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialized));
+		try {
+			return in.readObject();
+		} finally {
+			in.close();
+		}
+	}
+
+	@Benchmark
+	public byte[] encodeBinary() {
+		return LoanApplicationCodec.encode(application);
+	}
+
+	@Benchmark
+	public byte[] encodeSerialized() throws Exception {
+		return serialize(application);
+	}
+
+	private static byte[] serialize(Object object) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(object);
+		out.close();
+		return bytes.toByteArray();
+	}
+}
@@ -0,0 +1,103 @@
+package org.jboss.example.homeloan.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.example.homeloan.data.LoanApplication;
+import org.jboss.example.homeloan.eval.CreditRating;
+import org.jboss.example.homeloan.eval.DecisionTables;
+import org.jboss.example.homeloan.eval.MortgageRules;
+import org.kie.api.KieBase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * mortgages.drl evaluation per thread (i.e. per core). "perCallSession" is the
+ * baseline and mirrors the rules component's EXECUTE operation, which builds a
+ * stateless session for every message. The "...WithTables" variants evaluate
+ * the pricing and credit score tables from DecisionTables and the other rules
+ * with Drools, on the same applications; "decisionTables" is the table
+ * lookups alone. Run with "-bm sample" for p99 latency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(1)
+@Fork(1)
+public class LoanEvaluationBenchmark {
+
+	// Bob is approved automatically, Sally is rejected for her credit rating
+	@Param({"Bob", "Sally"})
+	private String fixture;
+
+	private KieBase kieBase;
+	private MortgageRules pooled;
+	private MortgageRules stateless;
+	private MortgageRules pooledWithTables;
+	private MortgageRules statelessWithTables;
+	private DecisionTables tables;
+	private LoanApplication application;
+
+	@Setup
+	public void setUp() throws Exception {
+		kieBase = MortgageRules.compileKieBase();
+		pooled = new MortgageRules(kieBase, MortgageRules.Mode.POOLED, 4);
+		stateless = new MortgageRules(kieBase, MortgageRules.Mode.STATELESS, 0);
+		tables = DecisionTables.compile(MortgageRules.readDrl());
+		KieBase residual = MortgageRules.compileKieBase(tables.getResidualDrl());
+		pooledWithTables = new MortgageRules(residual, tables, MortgageRules.Mode.POOLED, 4);
+		statelessWithTables = new MortgageRules(residual, tables, MortgageRules.Mode.STATELESS, 0);
+		application = Fixtures.application(fixture);
+		// what CreditService would assign
+		application.getApplicant().setCreditScore(Integer.parseInt(application.getApplicant().getSsn().substring(0, 3)));
+	}
+
+	@Benchmark
+	public LoanApplication perCallSession() {
+		List<Object> facts = new ArrayList<Object>();
+		facts.add(application);
+		facts.add(application.getApplicant());
+		facts.add(application.getIncome());
+		kieBase.newStatelessKieSession().execute(facts);
+		return application;
+	}
+
+	@Benchmark
+	public LoanApplication sharedStatelessSession() {
+		return stateless.evaluate(application);
+	}
+
+	@Benchmark
+	public LoanApplication pooledSession() {
+		return pooled.evaluate(application);
+	}
+
+	@Benchmark
+	public LoanApplication sharedStatelessSessionWithTables() {
+		return statelessWithTables.evaluate(application);
+	}
+
+	@Benchmark
+	public LoanApplication pooledSessionWithTables() {
+		return pooledWithTables.evaluate(application);
+	}
+
+	@Benchmark
+	public CreditRating decisionTables() {
+		tables.getPricing().price(application);
+		return tables.getCreditBands().rating(application.getApplicant().getCreditScore());
+	}
+}
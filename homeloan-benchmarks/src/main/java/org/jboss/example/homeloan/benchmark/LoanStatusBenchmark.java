@@ -0,0 +1,87 @@
+package org.jboss.example.homeloan.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.example.homeloan.data.Qualification;
+import org.jboss.example.homeloan.prequal.LoanStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * LoanStatus under contention: every prequalification writes a status twice
+ * (Pending, then the outcome) while /loanstatus readers poll it. SSNs are
+ * drawn from a fixed population so updates overwrite existing entries, as
+ * with applicants resubmitting.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoanStatusBenchmark {
+
+	private static final int POPULATION = 1 << 16;
+
+	private String[] ssns;
+	private Qualification pending;
+	private Qualification approved;
+
+	@Setup
+	public void setUp() {
+		ssns = new String[POPULATION];
+		for (int i = 0; i < POPULATION; i++) {
+			ssns[i] = String.format("%03d-%02d-%04d", 100 + i % 900, i % 100, i % 10000);
+		}
+		pending = new Qualification();
+		pending.setStatus("Pending");
+		approved = new Qualification();
+		approved.setStatus("Approved");
+		for (String ssn : ssns) {
+			LoanStatus.updateStatus(ssn, pending);
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Cursor {
+		// distinct per thread so threads do not march over the same keys
+		int next = (int)(Thread.currentThread().getId() * 7919);
+
+		String next(String[] ssns) {
+			return ssns[next++ & (POPULATION - 1)];
+		}
+	}
+
+	@Benchmark
+	@Threads(8)
+	public void update(Cursor cursor) {
+		String ssn = cursor.next(ssns);
+		LoanStatus.updateStatus(ssn, pending);
+		LoanStatus.updateStatus(ssn, approved);
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(2)
+	public void mixedUpdate(Cursor cursor) {
+		LoanStatus.updateStatus(cursor.next(ssns), approved);
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(6)
+	public Qualification mixedRead(Cursor cursor) {
+		return LoanStatus.getStatus(cursor.next(ssns));
+	}
+}
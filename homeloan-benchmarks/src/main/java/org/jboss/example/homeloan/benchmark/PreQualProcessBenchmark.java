@@ -0,0 +1,186 @@
+package org.jboss.example.homeloan.benchmark;
+
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.hibernate.ejb.HibernateEntityManagerFactory;
+import org.hibernate.stat.Statistics;
+import org.jboss.example.homeloan.credit.CreditServiceBean;
+import org.jboss.example.homeloan.data.Applicant;
+import org.jboss.example.homeloan.data.CreditInfo;
+import org.jboss.example.homeloan.data.LoanApplication;
+import org.jboss.example.homeloan.eval.MortgageRules;
+import org.jboss.example.homeloan.prequal.UpdateStatus;
+import org.kie.api.KieBase;
+import org.kie.api.KieServices;
+import org.kie.api.builder.KieBuilder;
+import org.kie.api.builder.KieFileSystem;
+import org.kie.api.builder.Message;
+import org.kie.api.builder.ReleaseId;
+import org.kie.api.io.ResourceType;
+import org.kie.api.runtime.Environment;
+import org.kie.api.runtime.EnvironmentName;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.process.WorkItem;
+import org.kie.api.runtime.process.WorkItemHandler;
+import org.kie.api.runtime.process.WorkItemManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bitronix.tm.TransactionManagerServices;
+import bitronix.tm.resource.jdbc.PoolingDataSource;
+
+/**
+ * A straight-through application (Bob, not an existing customer) running
+ * through the PreQualificationService process, once in memory as the
+ * PreQualificationProcess component now does and once with the JPA
+ * persistence it used to have. The SwitchYard service tasks are answered
+ * in-process by the Credit and LoanEvaluation implementations.
+ *
+ * The number of process state rows written per application is printed at the
+ * end of each trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(1)
+@Fork(1)
+public class PreQualProcessBenchmark {
+
+	private static final String PROCESS = "PreQualProcess.bpmn";
+	private static final String PROCESS_ID = "PreQualificationService";
+	private static final String PERSISTENCE_UNIT = "org.jboss.example.homeloan.benchmark";
+	private static final ReleaseId RELEASE_ID = KieServices.Factory.get().newReleaseId(
+			"org.jboss.example", "homeloan-benchmark-process", "1.0");
+
+	@Param({"false", "true"})
+	private boolean persistent;
+
+	private PoolingDataSource dataSource;
+	private EntityManagerFactory emf;
+	private KieSession session;
+	private LoanApplication application;
+	private CreditInfo credit;
+	private long started;
+
+	@Setup
+	public void setUp() throws Exception {
+		// keep the summaries off the console
+		System.setProperty("homeloan.audit.level", "OFF");
+
+		application = Fixtures.application("Bob");
+		credit = new CreditServiceBean().creditCheck(application.getApplicant());
+
+		KieBase kieBase = compileProcess();
+		if (persistent) {
+			KieServices services = KieServices.Factory.get();
+			TransactionManagerServices.getConfiguration().setJournal("null");
+			dataSource = new PoolingDataSource();
+			dataSource.setUniqueName("jdbc/homeloan-benchmark");
+			dataSource.setClassName("org.h2.jdbcx.JdbcDataSource");
+			dataSource.setMaxPoolSize(4);
+			dataSource.setAllowLocalTransactions(true);
+			dataSource.getDriverProperties().put("user", "sa");
+			dataSource.getDriverProperties().put("password", "");
+			dataSource.getDriverProperties().put("URL", "jdbc:h2:mem:homeloan-benchmark;DB_CLOSE_DELAY=-1");
+			dataSource.init();
+			emf = Persistence.createEntityManagerFactory(PERSISTENCE_UNIT);
+			Environment env = services.newEnvironment();
+			env.set(EnvironmentName.ENTITY_MANAGER_FACTORY, emf);
+			env.set(EnvironmentName.TRANSACTION_MANAGER, TransactionManagerServices.getTransactionManager());
+			session = services.getStoreServices().newKieSession(kieBase, null, env);
+		} else {
+			session = kieBase.newKieSession();
+		}
+		session.getWorkItemManager().registerWorkItemHandler("SwitchYard Service Task", new ServiceTaskHandler());
+		session.getWorkItemManager().registerWorkItemHandler("UpdateStatus", new UpdateStatus());
+	}
+
+	@TearDown
+	public void tearDown() {
+		if (persistent) {
+			Statistics stats = ((HibernateEntityManagerFactory)emf).getSessionFactory().getStatistics();
+			long writes = stats.getEntityInsertCount() + stats.getEntityUpdateCount() + stats.getEntityDeleteCount();
+			System.out.printf("%n%d applications, %d inserts, %d updates, %d deletes: %.2f DB writes per application%n",
+					started, stats.getEntityInsertCount(), stats.getEntityUpdateCount(), stats.getEntityDeleteCount(),
+					(double)writes / started);
+		} else {
+			System.out.printf("%n%d applications, no DB writes%n", started);
+		}
+		session.dispose();
+		if (persistent) {
+			emf.close();
+			dataSource.close();
+			TransactionManagerServices.getTransactionManager().shutdown();
+		}
+	}
+
+	@Benchmark
+	public long straightThrough() {
+		Map<String, Object> variables = new HashMap<String, Object>();
+		variables.put("LoanApplication", application);
+		variables.put("Applicant", application.getApplicant());
+		// checked at intake
+		variables.put("CreditInfo", credit);
+		started++;
+		return session.startProcess(PROCESS_ID, variables).getId();
+	}
+
+	private static KieBase compileProcess() {
+		KieServices services = KieServices.Factory.get();
+		InputStream bpmn = PreQualProcessBenchmark.class.getClassLoader().getResourceAsStream(PROCESS);
+		KieFileSystem files = services.newKieFileSystem();
+		files.generateAndWritePomXML(RELEASE_ID);
+		files.write("src/main/resources/" + PROCESS,
+				services.getResources().newInputStreamResource(bpmn).setResourceType(ResourceType.BPMN2));
+		KieBuilder builder = services.newKieBuilder(files).buildAll();
+		if (builder.getResults().hasMessages(Message.Level.ERROR)) {
+			throw new IllegalStateException("Unable to compile " + PROCESS + ": " + builder.getResults().getMessages());
+		}
+		return services.newKieContainer(RELEASE_ID).getKieBase();
+	}
+
+	/**
+	 * Stands in for SwitchYard's service task handler.
+	 */
+	private static final class ServiceTaskHandler implements WorkItemHandler {
+
+		private final CreditServiceBean creditService = new CreditServiceBean();
+		private final MortgageRules rules = MortgageRules.getInstance();
+
+		public void executeWorkItem(WorkItem workItem, WorkItemManager manager) {
+			String service = (String)workItem.getParameter("ServiceName");
+			Object parameter = workItem.getParameter("Parameter");
+			Map<String, Object> results = new HashMap<String, Object>();
+			if ("CreditService".equals(service)) {
+				results.put("Result", creditService.creditCheck((Applicant)parameter));
+			} else if ("LoanEvaluationService".equals(service)) {
+				results.put("Result", rules.evaluate((LoanApplication)parameter));
+			} else {
+				throw new IllegalStateException("Not a straight-through application: " + service);
+			}
+			manager.completeWorkItem(workItem.getId(), results);
+		}
+
+		public void abortWorkItem(WorkItem workItem, WorkItemManager manager) {
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package org.jboss.example.homeloan;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.inject.Named;
+
+import org.jboss.example.homeloan.metrics.ServiceMetrics;
+import org.switchyard.Exchange;
+import org.switchyard.ExchangeInterceptor;
+import org.switchyard.ExchangeState;
+import org.switchyard.Property;
+import org.switchyard.label.BehaviorLabel;
+
+/**
+ * Times every provider invocation and records it against the provider's
+ * service name, see ServiceMetrics.
+ */
+@Named("Metrics")
+public class MetricsInterceptor implements ExchangeInterceptor {
+
+	private static final String START = "org.jboss.example.homeloan.metrics.start";
+
+	@Override
+	public void before(String target, Exchange exchange) {
+		exchange.getContext().setProperty(START, System.nanoTime()).addLabels(BehaviorLabel.TRANSIENT.label());
+	}
+
+	@Override
+	public void after(String target, Exchange exchange) {
+		Property start = exchange.getContext().getProperty(START);
+		if (start == null || exchange.getProvider() == null) {
+			return;
+		}
+		long elapsed = System.nanoTime() - (Long)start.getValue();
+		ServiceMetrics.forService(exchange.getProvider().getName().getLocalPart())
+				.record(elapsed, exchange.getState() == ExchangeState.FAULT);
+	}
+
+	@Override
+	public List<String> getTargets() {
+		return Arrays.asList(PROVIDER);
+	}
+
+}
@@ -0,0 +1,27 @@
+package org.jboss.example.homeloan;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+import org.jboss.example.homeloan.audit.AuditLog;
+import org.jboss.example.homeloan.prequal.LoanStatus;
+
+/**
+ * Stops the background threads of the application when it is undeployed,
+ * which would otherwise keep running, and keep the old deployment's classes
+ * loaded, until the server stops.
+ */
+@WebListener
+public class UndeployListener implements ServletContextListener {
+
+	@Override
+	public void contextInitialized(ServletContextEvent event) {
+	}
+
+	@Override
+	public void contextDestroyed(ServletContextEvent event) {
+		LoanStatus.shutdown();
+		AuditLog.shutdown();
+	}
+}
@@ -0,0 +1,275 @@
+package org.jboss.example.homeloan.audit;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.jboss.example.homeloan.data.LoanApplication;
+import org.jboss.example.homeloan.data.Qualification;
+import org.jboss.example.homeloan.jmx.MBeans;
+import org.jboss.logging.Logger;
+
+/**
+ * Audit trail of intake and prequalification summaries, written off the
+ * request threads.
+ *
+ * Callers copy the summary fields into a preallocated slot of a ring buffer
+ * and return; a single writer thread formats the records and writes them in
+ * batches, flushing whenever it catches up. Once caught up the writer sleeps
+ * until a caller publishes a record and wakes it. When the ring is full
+ * callers either wait for the writer or, with homeloan.audit.dropWhenFull,
+ * drop the record and count it. {@link #close()} writes what is left and
+ * stops the writer; records arriving after that are dropped.
+ */
+public final class AuditLog implements AuditLogMBean {
+
+	/**
+	 * What gets audited: nothing, only prequalification decisions, or
+	 * intake summaries as well.
+	 */
+	public enum Level {
+		OFF, DECISIONS, ALL
+	}
+
+	public enum Format {
+		TEXT, JSON, BINARY
+	}
+
+	private static final Logger LOG = Logger.getLogger(AuditLog.class);
+
+	private static final int BATCH_SIZE = 256;
+	// only bounds a missed wake-up, the writer is woken by the callers
+	private static final long IDLE_PARK_NANOS = 100000000L;
+	private static final long FULL_PARK_NANOS = 10000L;
+	private static final long CLOSE_WAIT_MILLIS = 5000L;
+
+	private static final AuditLog INSTANCE = create();
+
+	private final Format format;
+	private final OutputStream out;
+	private final Thread thread;
+	private final AuditRecord[] ring;
+	private final int mask;
+	private final boolean dropWhenFull;
+	private volatile Level level;
+	private volatile boolean idle;
+	private volatile boolean closed;
+
+	// next sequence to claim, and number of records written (the next sequence to write)
+	private final AtomicLong claimed = new AtomicLong();
+	private final AtomicLong written = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong errors = new AtomicLong();
+
+	AuditLog(Level level, Format format, OutputStream out, int bufferSize, boolean dropWhenFull) throws IOException {
+		this.level = level;
+		this.format = format;
+		this.out = out;
+		this.dropWhenFull = dropWhenFull;
+		int size = Integer.highestOneBit(Math.max(2, bufferSize - 1)) << 1;
+		ring = new AuditRecord[size];
+		for (int i = 0; i < size; i++) {
+			ring[i] = new AuditRecord();
+		}
+		mask = size - 1;
+
+		final AuditWriter auditWriter = new AuditWriter(format, out);
+		thread = new Thread("homeloan-audit") {
+			public void run() {
+				drain(auditWriter);
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private static AuditLog create() {
+		Level level = Level.valueOf(System.getProperty("homeloan.audit.level", Level.ALL.name()));
+		Format format = Format.valueOf(System.getProperty("homeloan.audit.format", Format.TEXT.name()));
+		String file = System.getProperty("homeloan.audit.file");
+		int bufferSize = Integer.getInteger("homeloan.audit.bufferSize", 8192);
+		boolean dropWhenFull = Boolean.getBoolean("homeloan.audit.dropWhenFull");
+		OutputStream out = System.out;
+		try {
+			if (file != null) {
+				out = new FileOutputStream(file, true);
+			} else if (format == Format.BINARY) {
+				LOG.warn("The BINARY audit format needs homeloan.audit.file, using TEXT on the console");
+				format = Format.TEXT;
+			}
+			AuditLog log = new AuditLog(level, format, out, bufferSize, dropWhenFull);
+			MBeans.register("AuditLog", file != null ? file : "console", log);
+			return log;
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to open audit log " + file, e);
+		}
+	}
+
+	public static AuditLog getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Closes the audit log, on undeploy.
+	 */
+	public static void shutdown() {
+		INSTANCE.close();
+	}
+
+	/**
+	 * Writes the records already published, stops the writer and closes the
+	 * output unless it is the console.
+	 */
+	public void close() {
+		closed = true;
+		LockSupport.unpark(thread);
+		try {
+			thread.join(CLOSE_WAIT_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (thread.isAlive()) {
+			LOG.warnf("Audit writer did not finish within %d ms, %d record(s) pending", CLOSE_WAIT_MILLIS,
+					getPending());
+		}
+	}
+
+	boolean isRunning() {
+		return thread.isAlive();
+	}
+
+	public boolean isEnabled(Level required) {
+		return level != Level.OFF && level.compareTo(required) >= 0;
+	}
+
+	public void intake(LoanApplication application) {
+		if (isEnabled(Level.ALL)) {
+			record(AuditRecord.INTAKE, application, null);
+		}
+	}
+
+	public void prequalification(LoanApplication application, Qualification qualification) {
+		if (isEnabled(Level.DECISIONS)) {
+			record(AuditRecord.PREQUALIFICATION, application, qualification);
+		}
+	}
+
+	private void record(byte type, LoanApplication application, Qualification qualification) {
+		long sequence;
+		while (true) {
+			if (closed) {
+				dropped.incrementAndGet();
+				return;
+			}
+			sequence = claimed.get();
+			if (sequence - written.get() >= ring.length) {
+				if (dropWhenFull) {
+					dropped.incrementAndGet();
+					return;
+				}
+				LockSupport.parkNanos(FULL_PARK_NANOS);
+			} else if (claimed.compareAndSet(sequence, sequence + 1)) {
+				break;
+			}
+		}
+		AuditRecord record = ring[(int)(sequence & mask)];
+		record.fill(type, System.currentTimeMillis(), application, qualification);
+		record.published = sequence;
+		if (idle) {
+			LockSupport.unpark(thread);
+		}
+	}
+
+	private void drain(AuditWriter writer) {
+		long next = 0;
+		int batch = 0;
+		while (true) {
+			AuditRecord record = ring[(int)(next & mask)];
+			if (record.published != next) {
+				if (batch > 0) {
+					flush(writer);
+					batch = 0;
+				}
+				if (closed) {
+					if (claimed.get() == next) {
+						break;
+					}
+					// a record claimed before closing is being filled in
+					Thread.yield();
+					continue;
+				}
+				// set before checking again, so a caller publishing meanwhile sees it and wakes the writer
+				idle = true;
+				if (record.published != next && !closed) {
+					LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+				}
+				idle = false;
+				continue;
+			}
+			try {
+				writer.write(record);
+			} catch (IOException e) {
+				if (errors.getAndIncrement() == 0) {
+					LOG.warn("Unable to write audit record", e);
+				}
+			}
+			record.clear();
+			written.lazySet(++next);
+			if (++batch == BATCH_SIZE) {
+				flush(writer);
+				batch = 0;
+			}
+		}
+		if (out != System.out) {
+			try {
+				out.close();
+			} catch (IOException e) {
+				LOG.debug("Unable to close audit log", e);
+			}
+		}
+	}
+
+	private void flush(AuditWriter writer) {
+		try {
+			writer.flush();
+		} catch (IOException e) {
+			if (errors.getAndIncrement() == 0) {
+				LOG.warn("Unable to flush audit log", e);
+			}
+		}
+	}
+
+	public String getLevel() {
+		return level.name();
+	}
+
+	public void setLevel(String level) {
+		this.level = Level.valueOf(level);
+	}
+
+	public String getFormat() {
+		return format.name();
+	}
+
+	public int getBufferSize() {
+		return ring.length;
+	}
+
+	public long getPending() {
+		return claimed.get() - written.get();
+	}
+
+	public long getWritten() {
+		return written.get();
+	}
+
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	public long getErrors() {
+		return errors.get();
+	}
+}
@@ -0,0 +1,20 @@
+package org.jboss.example.homeloan.audit;
+
+public interface AuditLogMBean {
+
+	String getLevel();
+
+	void setLevel(String level);
+
+	String getFormat();
+
+	int getBufferSize();
+
+	long getPending();
+
+	long getWritten();
+
+	long getDropped();
+
+	long getErrors();
+}
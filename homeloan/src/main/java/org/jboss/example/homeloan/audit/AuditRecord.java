@@ -0,0 +1,76 @@
+package org.jboss.example.homeloan.audit;
+
+import org.jboss.example.homeloan.data.Applicant;
+import org.jboss.example.homeloan.data.LoanApplication;
+import org.jboss.example.homeloan.data.Qualification;
+
+/**
+ * A preallocated ring buffer slot. Producers copy the fields they need out of
+ * the application so the writer never sees an object that is still changing.
+ */
+final class AuditRecord {
+
+	static final byte INTAKE = 1;
+	static final byte PREQUALIFICATION = 2;
+
+	// sequence of the record last published in this slot, -1 when never used
+	volatile long published = -1;
+
+	byte type;
+	long timestamp;
+	String ssn;
+	String firstName;
+	String lastName;
+	int amount;
+	int lengthYears;
+	int income;
+	String streetAddress;
+	String postalCode;
+	double checkingBalance;
+	double savingsBalance;
+	String status;
+	String explanation;
+	int cost;
+	String rate;
+
+	void fill(byte type, long timestamp, LoanApplication application, Qualification qualification) {
+		this.type = type;
+		this.timestamp = timestamp;
+		amount = application.getAmount();
+		lengthYears = application.getLengthYears();
+		income = application.getIncome() != null ? application.getIncome().getMonthlyAmount() : 0;
+		Applicant applicant = application.getApplicant();
+		if (applicant != null) {
+			ssn = applicant.getSsn();
+			firstName = applicant.getFirstName();
+			lastName = applicant.getLastName();
+			streetAddress = applicant.getStreetAddress();
+			postalCode = applicant.getPostalCode();
+			checkingBalance = applicant.getCheckingBalance();
+			savingsBalance = applicant.getSavingsBalance();
+		}
+		if (qualification != null) {
+			status = qualification.getStatus();
+			explanation = qualification.getExplanation();
+			cost = qualification.getCost();
+			rate = qualification.getRate();
+		}
+	}
+
+	/**
+	 * Drops the references held by a written record.
+	 */
+	void clear() {
+		ssn = null;
+		firstName = null;
+		lastName = null;
+		streetAddress = null;
+		postalCode = null;
+		status = null;
+		explanation = null;
+		rate = null;
+		checkingBalance = 0;
+		savingsBalance = 0;
+		cost = 0;
+	}
+}
@@ -0,0 +1,165 @@
+package org.jboss.example.homeloan.audit;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.DecimalFormat;
+
+/**
+ * Encodes audit records, only ever called from the audit writer thread.
+ *
+ * The BINARY format is a sequence of records, each starting with the record
+ * type byte (1 intake, 2 prequalification) and the timestamp as a long,
+ * followed by the fields in AuditRecord order. Strings are written as a
+ * presence flag followed by modified UTF-8 as in DataOutput.writeUTF;
+ * intake records stop after the savings balance.
+ */
+final class AuditWriter {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final AuditLog.Format format;
+	private final Writer text;
+	private final DataOutputStream binary;
+	private final StringBuilder line = new StringBuilder(512);
+	private final DecimalFormat balance = new DecimalFormat("###,###.00");
+
+	AuditWriter(AuditLog.Format format, OutputStream out) throws IOException {
+		this.format = format;
+		OutputStream buffered = new BufferedOutputStream(out, BUFFER_SIZE);
+		if (format == AuditLog.Format.BINARY) {
+			text = null;
+			binary = new DataOutputStream(buffered);
+		} else {
+			text = new OutputStreamWriter(buffered, "UTF-8");
+			binary = null;
+		}
+	}
+
+	void write(AuditRecord record) throws IOException {
+		if (format == AuditLog.Format.BINARY) {
+			writeBinary(record);
+			return;
+		}
+		line.setLength(0);
+		if (format == AuditLog.Format.JSON) {
+			appendJson(record);
+		} else if (record.type == AuditRecord.INTAKE) {
+			appendIntakeSummary(record);
+		} else {
+			appendPrequalificationSummary(record);
+		}
+		text.append(line);
+	}
+
+	void flush() throws IOException {
+		if (binary != null) {
+			binary.flush();
+		} else {
+			text.flush();
+		}
+	}
+
+	// the console summaries LoanBean and UpdateStatus used to print
+
+	private void appendIntakeSummary(AuditRecord r) {
+		line.append("\n======== Loan Intake Summary =========")
+			.append("\nSSN           : ").append(r.ssn)
+			.append("\nLoan Amount   : ").append(r.amount)
+			.append("\nLoan Length   : ").append(r.lengthYears)
+			.append("\nIncome        : ").append(r.income)
+			.append("\nName          : ").append(r.firstName).append(' ').append(r.lastName)
+			.append("\nAddress       : ").append(r.streetAddress)
+			.append("\nPostal Code   : ").append(r.postalCode)
+			.append("\nChecking Bal  : ").append(balance.format(r.checkingBalance))
+			.append("\nSavings Bal   : ").append(balance.format(r.savingsBalance))
+			.append("\n======================================\n\n");
+	}
+
+	private void appendPrequalificationSummary(AuditRecord r) {
+		line.append("\n===== Prequalification Summary =======")
+			.append("\nSSN            : ").append(r.ssn)
+			.append("\nName           : ").append(r.firstName).append(' ').append(r.lastName)
+			.append("\nLoan Amount    : ").append(r.amount)
+			.append("\nLoan Length    : ").append(r.lengthYears)
+			.append("\nStatus         : ").append(r.status)
+			.append("\nExplanation    : ").append(r.explanation)
+			.append("\nInsurance Cost : ").append(r.cost)
+			.append("\nRate           : ").append(r.rate)
+			.append("\n======================================\n\n");
+	}
+
+	private void appendJson(AuditRecord r) {
+		line.append("{\"event\":").append(r.type == AuditRecord.INTAKE ? "\"intake\"" : "\"prequalification\"")
+			.append(",\"timestamp\":").append(r.timestamp);
+		appendJson("ssn", r.ssn);
+		appendJson("firstName", r.firstName);
+		appendJson("lastName", r.lastName);
+		line.append(",\"amount\":").append(r.amount)
+			.append(",\"lengthYears\":").append(r.lengthYears);
+		if (r.type == AuditRecord.INTAKE) {
+			line.append(",\"income\":").append(r.income);
+			appendJson("streetAddress", r.streetAddress);
+			appendJson("postalCode", r.postalCode);
+			line.append(",\"checkingBalance\":").append(r.checkingBalance)
+				.append(",\"savingsBalance\":").append(r.savingsBalance);
+		} else {
+			appendJson("status", r.status);
+			appendJson("explanation", r.explanation);
+			line.append(",\"cost\":").append(r.cost);
+			appendJson("rate", r.rate);
+		}
+		line.append("}\n");
+	}
+
+	private void appendJson(String name, String value) {
+		line.append(",\"").append(name).append("\":");
+		if (value == null) {
+			line.append("null");
+			return;
+		}
+		line.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				line.append('\\').append(c);
+			} else if (c < 0x20) {
+				line.append("\\u00").append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xf, 16));
+			} else {
+				line.append(c);
+			}
+		}
+		line.append('"');
+	}
+
+	private void writeBinary(AuditRecord r) throws IOException {
+		binary.writeByte(r.type);
+		binary.writeLong(r.timestamp);
+		writeString(r.ssn);
+		writeString(r.firstName);
+		writeString(r.lastName);
+		binary.writeInt(r.amount);
+		binary.writeInt(r.lengthYears);
+		binary.writeInt(r.income);
+		writeString(r.streetAddress);
+		writeString(r.postalCode);
+		binary.writeDouble(r.checkingBalance);
+		binary.writeDouble(r.savingsBalance);
+		if (r.type == AuditRecord.PREQUALIFICATION) {
+			writeString(r.status);
+			writeString(r.explanation);
+			binary.writeInt(r.cost);
+			writeString(r.rate);
+		}
+	}
+
+	private void writeString(String value) throws IOException {
+		binary.writeBoolean(value != null);
+		if (value != null) {
+			binary.writeUTF(value);
+		}
+	}
+}
@@ -0,0 +1,372 @@
+package org.jboss.example.homeloan.cache;
+
+import java.lang.ref.SoftReference;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.example.homeloan.jmx.MBeans;
+
+/**
+ * Concurrent cache with a soft size limit and an optional time-to-live.
+ *
+ * LRU eviction uses the CLOCK (second chance) approximation: entries are
+ * queued in insertion order and an entry that has been read since it was last
+ * considered is given another pass instead of being evicted. LFU eviction
+ * samples a few entries from the head of the same queue and evicts the one
+ * read least often, halving the counts of the survivors so that old
+ * popularity decays. The limit is soft in that concurrent writers may briefly
+ * push the cache past it before the next eviction pass trims it back.
+ */
+public class BoundedCache<K, V> {
+
+	public enum Eviction {
+		LRU, LFU
+	}
+
+	private static final int MIN_PURGE_THRESHOLD = 64;
+	private static final int LFU_SAMPLE_SIZE = 8;
+
+	private final String name;
+	private final Eviction eviction;
+	private final int maxEntries;
+	private final long ttlMillis;
+	private final boolean softValues;
+	private final CacheStats stats = new CacheStats(this);
+
+	private final ConcurrentMap<K, Entry<K, V>> entries = new ConcurrentHashMap<K, Entry<K, V>>();
+	private final Queue<Entry<K, V>> clock = new ConcurrentLinkedQueue<Entry<K, V>>();
+	private final AtomicInteger size = new AtomicInteger();
+	// replaced or removed entries still sitting in the clock queue (approximate)
+	private final AtomicInteger dead = new AtomicInteger();
+	private final AtomicBoolean purging = new AtomicBoolean();
+
+	/**
+	 * @param name
+	 *            the name used for the statistics MBean
+	 * @param maxEntries
+	 *            the soft capacity limit
+	 * @param ttlMillis
+	 *            time-to-live of an entry, or 0 for no expiry
+	 * @param softValues
+	 *            whether values may be reclaimed by the GC under memory pressure
+	 */
+	public BoundedCache(String name, int maxEntries, long ttlMillis, boolean softValues) {
+		this(name, maxEntries, ttlMillis, softValues, Eviction.LRU);
+	}
+
+	public BoundedCache(String name, int maxEntries, long ttlMillis, boolean softValues, Eviction eviction) {
+		if (maxEntries < 1) {
+			throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+		}
+		this.name = name;
+		this.maxEntries = maxEntries;
+		this.ttlMillis = ttlMillis;
+		this.softValues = softValues;
+		this.eviction = eviction;
+	}
+
+	public V get(K key) {
+		Entry<K, V> entry = entries.get(key);
+		if (entry == null) {
+			stats.miss();
+			return null;
+		}
+		V value = entry.getValue();
+		if (value == null) {
+			// soft reference cleared by the collector
+			if (unlink(entry, true)) {
+				stats.eviction();
+			}
+			stats.miss();
+			return null;
+		}
+		if (entry.isExpired(System.currentTimeMillis(), ttlMillis)) {
+			if (unlink(entry, true)) {
+				stats.expiration();
+			}
+			stats.miss();
+			return null;
+		}
+		entry.referenced = true;
+		entry.frequency++;
+		stats.hit();
+		return value;
+	}
+
+	public void put(K key, V value) {
+		Entry<K, V> entry = new Entry<K, V>(key, value, System.currentTimeMillis(), softValues);
+		Entry<K, V> previous = entries.put(key, entry);
+		clock.offer(entry);
+		if (previous == null) {
+			size.incrementAndGet();
+		} else {
+			previous.dead = true;
+			dead.incrementAndGet();
+		}
+		evict();
+	}
+
+	/**
+	 * Stores the value unless the key has one that has neither expired nor
+	 * been reclaimed, atomically with respect to other writers of the key.
+	 *
+	 * @return the value the key already had, or null if this one was stored
+	 */
+	public V putIfAbsent(K key, V value) {
+		Entry<K, V> entry = new Entry<K, V>(key, value, System.currentTimeMillis(), softValues);
+		while (true) {
+			Entry<K, V> existing = entries.putIfAbsent(key, entry);
+			if (existing == null) {
+				clock.offer(entry);
+				size.incrementAndGet();
+				stats.miss();
+				evict();
+				return null;
+			}
+			V current = live(existing);
+			if (current != null) {
+				existing.referenced = true;
+				existing.frequency++;
+				stats.hit();
+				return current;
+			}
+			if (swap(existing, entry)) {
+				stats.miss();
+				evict();
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Replaces the value of the key only if it still is the expected one.
+	 *
+	 * @return whether the value was replaced
+	 */
+	public boolean replace(K key, V expected, V value) {
+		Entry<K, V> existing = entries.get(key);
+		if (existing == null || !expected.equals(live(existing))) {
+			return false;
+		}
+		if (!swap(existing, new Entry<K, V>(key, value, System.currentTimeMillis(), softValues))) {
+			return false;
+		}
+		evict();
+		return true;
+	}
+
+	public V remove(K key) {
+		Entry<K, V> entry = entries.get(key);
+		if (entry != null && unlink(entry, true)) {
+			return entry.getValue();
+		}
+		return null;
+	}
+
+	/**
+	 * Removes the key only if its value still is the expected one.
+	 *
+	 * @return whether the key was removed
+	 */
+	public boolean remove(K key, V expected) {
+		Entry<K, V> existing = entries.get(key);
+		return existing != null && expected.equals(existing.getValue()) && unlink(existing, true);
+	}
+
+	public void clear() {
+		for (Entry<K, V> entry : entries.values()) {
+			unlink(entry, true);
+		}
+		purge();
+	}
+
+	public int size() {
+		return size.get();
+	}
+
+	/**
+	 * @return a live view of the keys, which may include entries that have
+	 *         expired or been reclaimed but not yet been dropped
+	 */
+	public Set<K> keys() {
+		return Collections.unmodifiableSet(entries.keySet());
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	public CacheStats getStats() {
+		return stats;
+	}
+
+	/**
+	 * Exposes the statistics of this cache over JMX.
+	 */
+	public BoundedCache<K, V> register() {
+		MBeans.register("Cache", name, stats);
+		return this;
+	}
+
+	private void evict() {
+		long now = System.currentTimeMillis();
+		while (size.get() > maxEntries) {
+			Entry<K, V> entry = clock.poll();
+			if (entry == null) {
+				break;
+			}
+			if (discard(entry, now)) {
+				continue;
+			}
+			if (eviction == Eviction.LFU) {
+				entry = leastFrequent(entry, now);
+			} else if (entry.referenced) {
+				// second chance
+				entry.referenced = false;
+				clock.offer(entry);
+				continue;
+			}
+			if (size.get() <= maxEntries) {
+				// sampling expired enough entries already
+				clock.offer(entry);
+			} else if (unlink(entry, false)) {
+				stats.eviction();
+			}
+		}
+		if (dead.get() > Math.max(MIN_PURGE_THRESHOLD, size.get())) {
+			purge();
+		}
+	}
+
+	/**
+	 * Drops a polled entry that is already dead or has expired.
+	 */
+	private boolean discard(Entry<K, V> entry, long now) {
+		if (entry.dead) {
+			dead.decrementAndGet();
+			return true;
+		}
+		if (entry.isExpired(now, ttlMillis)) {
+			if (unlink(entry, false)) {
+				stats.expiration();
+			}
+			return true;
+		}
+		return false;
+	}
+
+	private Entry<K, V> leastFrequent(Entry<K, V> first, long now) {
+		Entry<K, V> victim = first;
+		for (int i = 1; i < LFU_SAMPLE_SIZE; i++) {
+			Entry<K, V> candidate = clock.poll();
+			if (candidate == null) {
+				break;
+			}
+			if (discard(candidate, now)) {
+				continue;
+			}
+			if (candidate.frequency < victim.frequency) {
+				Entry<K, V> survivor = victim;
+				victim = candidate;
+				candidate = survivor;
+			}
+			candidate.frequency >>>= 1;
+			clock.offer(candidate);
+		}
+		return victim;
+	}
+
+	/**
+	 * @return the value of the entry, or null if it has expired or been
+	 *         reclaimed
+	 */
+	private V live(Entry<K, V> entry) {
+		V value = entry.getValue();
+		return value == null || entry.isExpired(System.currentTimeMillis(), ttlMillis) ? null : value;
+	}
+
+	/**
+	 * Puts the entry in place of an existing one, as long as nothing else has
+	 * replaced or removed that one meanwhile.
+	 */
+	private boolean swap(Entry<K, V> existing, Entry<K, V> entry) {
+		if (!entries.replace(entry.key, existing, entry)) {
+			return false;
+		}
+		existing.dead = true;
+		dead.incrementAndGet();
+		clock.offer(entry);
+		return true;
+	}
+
+	private boolean unlink(Entry<K, V> entry, boolean queued) {
+		if (entries.remove(entry.key, entry)) {
+			entry.dead = true;
+			size.decrementAndGet();
+			if (queued) {
+				dead.incrementAndGet();
+			}
+			return true;
+		}
+		return false;
+	}
+
+	private void purge() {
+		if (!purging.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			for (Iterator<Entry<K, V>> it = clock.iterator(); it.hasNext();) {
+				if (it.next().dead) {
+					it.remove();
+					dead.decrementAndGet();
+				}
+			}
+			if (dead.get() < 0) {
+				dead.set(0);
+			}
+		} finally {
+			purging.set(false);
+		}
+	}
+
+	private static final class Entry<K, V> {
+
+		final K key;
+		final Object value;
+		final long created;
+		volatile boolean referenced;
+		// racy increments are fine, this only steers eviction
+		volatile int frequency;
+		volatile boolean dead;
+
+		Entry(K key, V value, long created, boolean soft) {
+			this.key = key;
+			this.value = soft ? new SoftReference<V>(value) : value;
+			this.created = created;
+		}
+
+		@SuppressWarnings("unchecked")
+		V getValue() {
+			if (value instanceof SoftReference) {
+				return ((SoftReference<V>)value).get();
+			}
+			return (V)value;
+		}
+
+		boolean isExpired(long now, long ttl) {
+			return ttl > 0 && now - created >= ttl;
+		}
+	}
+}
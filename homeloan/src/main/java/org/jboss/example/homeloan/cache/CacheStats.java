@@ -0,0 +1,98 @@
+package org.jboss.example.homeloan.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class CacheStats implements CacheStatsMBean {
+
+	private final BoundedCache<?, ?> cache;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong loads = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong expirations = new AtomicLong();
+
+	CacheStats(BoundedCache<?, ?> cache) {
+		this.cache = cache;
+	}
+
+	void hit() {
+		hits.incrementAndGet();
+	}
+
+	void miss() {
+		misses.incrementAndGet();
+	}
+
+	void eviction() {
+		evictions.incrementAndGet();
+	}
+
+	void expiration() {
+		expirations.incrementAndGet();
+	}
+
+	/**
+	 * Counts a miss that was answered by a backing store rather than the cache.
+	 */
+	public void load() {
+		loads.incrementAndGet();
+	}
+
+	@Override
+	public String getName() {
+		return cache.getName();
+	}
+
+	@Override
+	public int getSize() {
+		return cache.size();
+	}
+
+	@Override
+	public int getMaxSize() {
+		return cache.getMaxEntries();
+	}
+
+	@Override
+	public long getHits() {
+		return hits.get();
+	}
+
+	@Override
+	public long getMisses() {
+		return misses.get();
+	}
+
+	@Override
+	public double getHitRate() {
+		long h = hits.get();
+		long total = h + misses.get();
+		return total == 0 ? 0.0 : (double)h / total;
+	}
+
+	@Override
+	public long getLoads() {
+		return loads.get();
+	}
+
+	@Override
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	@Override
+	public long getExpirations() {
+		return expirations.get();
+	}
+
+	public String toString() {
+		return "CacheStats :: "
+				+ "name=" + getName()
+				+ "|size=" + getSize()
+				+ "|hits=" + getHits()
+				+ "|misses=" + getMisses()
+				+ "|loads=" + getLoads()
+				+ "|evictions=" + getEvictions()
+				+ "|expirations=" + getExpirations();
+	}
+}
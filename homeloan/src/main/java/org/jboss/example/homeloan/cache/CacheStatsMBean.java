@@ -0,0 +1,22 @@
+package org.jboss.example.homeloan.cache;
+
+public interface CacheStatsMBean {
+
+	String getName();
+
+	int getSize();
+
+	int getMaxSize();
+
+	long getHits();
+
+	long getMisses();
+
+	double getHitRate();
+
+	long getLoads();
+
+	long getEvictions();
+
+	long getExpirations();
+}
@@ -0,0 +1,90 @@
+package org.jboss.example.homeloan.cluster;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Consistent hash ring of node names. Each node is placed on the ring at a
+ * number of points (virtual nodes), so keys spread evenly and a node joining
+ * or leaving moves only the keys of its own share of the ring. The owners of
+ * a key are the distinct nodes met walking the ring clockwise from the key's
+ * hash. Immutable; a membership change builds a new ring.
+ */
+public final class HashRing {
+
+	private final List<String> nodes;
+	private final long[] points;
+	// index into nodes of the node at each point
+	private final int[] owners;
+
+	public HashRing(Collection<String> nodes, int virtualNodes) {
+		this.nodes = new ArrayList<String>(new TreeSet<String>(nodes));
+		long[][] placed = new long[this.nodes.size() * virtualNodes][];
+		int p = 0;
+		for (int n = 0; n < this.nodes.size(); n++) {
+			for (int v = 0; v < virtualNodes; v++) {
+				placed[p++] = new long[] {hash(this.nodes.get(n) + "#" + v), n};
+			}
+		}
+		Arrays.sort(placed, new Comparator<long[]>() {
+			public int compare(long[] a, long[] b) {
+				return a[0] < b[0] ? -1 : a[0] == b[0] ? (int)(a[1] - b[1]) : 1;
+			}
+		});
+		points = new long[placed.length];
+		owners = new int[placed.length];
+		for (int i = 0; i < placed.length; i++) {
+			points[i] = placed[i][0];
+			owners[i] = (int)placed[i][1];
+		}
+	}
+
+	public List<String> getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * @return the first count distinct nodes clockwise from the key, fewer if
+	 *         the ring has fewer nodes
+	 */
+	public List<String> owners(String key, int count) {
+		int wanted = Math.min(count, nodes.size());
+		List<String> found = new ArrayList<String>(wanted);
+		if (wanted == 0) {
+			return found;
+		}
+		int i = Arrays.binarySearch(points, hash(key));
+		if (i < 0) {
+			i = -i - 1;
+		}
+		for (int step = 0; step < points.length && found.size() < wanted; step++) {
+			String node = nodes.get(owners[(i + step) % points.length]);
+			if (!found.contains(node)) {
+				found.add(node);
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * 64-bit FNV-1a over the characters, finished with the MurmurHash3 mixer
+	 * so that similar keys such as consecutive SSNs land far apart.
+	 */
+	static long hash(String key) {
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < key.length(); i++) {
+			h ^= key.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
@@ -0,0 +1,164 @@
+package org.jboss.example.homeloan.cluster;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.example.homeloan.data.Qualification;
+import org.jboss.example.homeloan.prequal.DataMarshallingStrategy;
+
+/**
+ * A remote node of the status cluster, reached through its StatusNodeServlet,
+ * e.g. http://node2:8080/loans/statusnode.
+ *
+ * Requests are POSTs of a binary body, op=put, op=offer (put without
+ * overwriting) or op=get:
+ *
+ * <pre>
+ * put, offer request  int count, then per status: UTF ssn, qualification
+ * get request         int count, then per status: UTF ssn
+ * get response        per SSN: qualification
+ * </pre>
+ *
+ * where a qualification is its DataMarshallingStrategy bytes preceded by
+ * their int length, -1 for none. Every request carries the cluster's shared
+ * secret in the X-Status-Cluster-Secret header.
+ */
+public class HttpStatusNode implements StatusNode {
+
+	public static final String SECRET_HEADER = "X-Status-Cluster-Secret";
+
+	private final String name;
+	private final String url;
+	private final int timeoutMillis;
+	private final String secret;
+
+	public HttpStatusNode(String name, String url, int timeoutMillis, String secret) {
+		this.name = name;
+		this.url = url;
+		this.timeoutMillis = timeoutMillis;
+		this.secret = secret;
+	}
+
+	/**
+	 * @param nodes name=url pairs separated by commas
+	 */
+	public static List<HttpStatusNode> parse(String nodes, int timeoutMillis, String secret) {
+		List<HttpStatusNode> parsed = new ArrayList<HttpStatusNode>();
+		for (String node : nodes.split(",")) {
+			node = node.trim();
+			if (node.length() == 0) {
+				continue;
+			}
+			int equals = node.indexOf('=');
+			if (equals <= 0) {
+				throw new IllegalArgumentException("Not a name=url pair: " + node);
+			}
+			parsed.add(new HttpStatusNode(node.substring(0, equals).trim(), node.substring(equals + 1).trim(),
+					timeoutMillis, secret));
+		}
+		return parsed;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public void put(Map<String, Qualification> statuses, boolean overwrite) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(statuses.size() * 64 + 4);
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeInt(statuses.size());
+			for (Map.Entry<String, Qualification> status : statuses.entrySet()) {
+				out.writeUTF(status.getKey());
+				write(out, status.getValue());
+			}
+			call(overwrite ? "put" : "offer", bytes.toByteArray()).close();
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to store " + statuses.size() + " status(es) on " + name, e);
+		}
+	}
+
+	@Override
+	public Qualification[] get(List<String> ssns) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(ssns.size() * 12 + 4);
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeInt(ssns.size());
+			for (String ssn : ssns) {
+				out.writeUTF(ssn);
+			}
+			DataInputStream in = new DataInputStream(call("get", bytes.toByteArray()));
+			try {
+				Qualification[] qualifications = new Qualification[ssns.size()];
+				for (int i = 0; i < qualifications.length; i++) {
+					qualifications[i] = read(in);
+				}
+				return qualifications;
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to look up " + ssns.size() + " status(es) on " + name, e);
+		}
+	}
+
+	private InputStream call(String op, byte[] body) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection)new URL(url + "?op=" + op).openConnection();
+		connection.setConnectTimeout(timeoutMillis);
+		connection.setReadTimeout(timeoutMillis);
+		connection.setDoOutput(true);
+		connection.setRequestMethod("POST");
+		connection.setRequestProperty("Content-Type", "application/octet-stream");
+		connection.setRequestProperty(SECRET_HEADER, secret);
+		connection.setFixedLengthStreamingMode(body.length);
+		OutputStream out = connection.getOutputStream();
+		try {
+			out.write(body);
+		} finally {
+			out.close();
+		}
+		if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+			throw new IOException(url + " answered " + connection.getResponseCode() + " "
+					+ connection.getResponseMessage());
+		}
+		return connection.getInputStream();
+	}
+
+	static void write(DataOutput out, Qualification qualification) throws IOException {
+		if (qualification == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = DataMarshallingStrategy.toBytes(qualification);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	static Qualification read(DataInput in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return (Qualification)DataMarshallingStrategy.fromBytes(bytes);
+	}
+
+	@Override
+	public String toString() {
+		return name + "=" + url;
+	}
+}
@@ -0,0 +1,67 @@
+package org.jboss.example.homeloan.cluster;
+
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.example.homeloan.data.Qualification;
+import org.jboss.example.homeloan.prequal.StatusListener;
+import org.jboss.example.homeloan.prequal.StatusStore;
+
+/**
+ * The node's own shard, kept in a StatusStore.
+ */
+public class LocalStatusNode implements StatusNode {
+
+	private final String name;
+	private final StatusStore store;
+	private final StatusListener listener;
+
+	public LocalStatusNode(String name, StatusStore store) {
+		this(name, store, null);
+	}
+
+	/**
+	 * @param listener told about the statuses other nodes store here, which
+	 *            did not go through this node's LoanStatus.updateStatus
+	 */
+	public LocalStatusNode(String name, StatusStore store, StatusListener listener) {
+		this.name = name;
+		this.store = store;
+		this.listener = listener;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	public StatusStore getStore() {
+		return store;
+	}
+
+	@Override
+	public void put(Map<String, Qualification> statuses, boolean overwrite) {
+		for (Map.Entry<String, Qualification> status : statuses.entrySet()) {
+			if (overwrite || store.get(status.getKey()) == null) {
+				store.put(status.getKey(), status.getValue());
+				if (listener != null) {
+					listener.statusUpdated(status.getKey(), status.getValue());
+				}
+			}
+		}
+	}
+
+	@Override
+	public Qualification[] get(List<String> ssns) {
+		Qualification[] qualifications = new Qualification[ssns.size()];
+		for (int i = 0; i < qualifications.length; i++) {
+			qualifications[i] = store.get(ssns.get(i));
+		}
+		return qualifications;
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
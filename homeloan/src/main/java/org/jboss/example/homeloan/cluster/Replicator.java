@@ -0,0 +1,201 @@
+package org.jboss.example.homeloan.cluster;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.example.homeloan.data.Qualification;
+import org.jboss.logging.Logger;
+
+/**
+ * Sends the status updates for one remote node from a thread of its own, so
+ * that a slow or unreachable node holds up neither the process that made the
+ * update nor the updates for the other nodes. Repeated updates of an SSN that
+ * has not been sent yet coalesce into the latest one. A batch the node did not
+ * take is retried, without overwriting newer updates, until the replicator is
+ * closed. When the queue is full an update is dropped for this node only; the
+ * other replicas still have it.
+ */
+final class Replicator {
+
+	private static final Logger LOG = Logger.getLogger(Replicator.class);
+
+	private final StatusNode node;
+	private final int batchSize;
+	private final long retryMillis;
+	private final BlockingQueue<String> queue;
+	private final ConcurrentMap<String, Qualification> pending = new ConcurrentHashMap<String, Qualification>();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+	private final Thread sender;
+	// queued or being sent
+	private final AtomicInteger backlog = new AtomicInteger();
+	private volatile boolean closing;
+
+	Replicator(StatusNode node, int capacity, int batchSize, long retryMillis) {
+		this.node = node;
+		this.batchSize = batchSize;
+		this.retryMillis = retryMillis;
+		this.queue = new ArrayBlockingQueue<String>(capacity);
+		this.sender = new Thread(new Runnable() {
+			public void run() {
+				send();
+			}
+		}, "StatusReplication-" + node.getName());
+		sender.setDaemon(true);
+		sender.start();
+	}
+
+	/**
+	 * Queues the update.
+	 *
+	 * @return false if the queue was full and the update was dropped
+	 */
+	boolean offer(String ssn, Qualification qualification) {
+		if (closing) {
+			dropped.incrementAndGet();
+			return false;
+		}
+		if (pending.put(ssn, qualification) != null) {
+			// still queued, it goes out with the latest update
+			return true;
+		}
+		return enqueue(ssn, qualification);
+	}
+
+	private boolean enqueue(String ssn, Qualification qualification) {
+		// counted first, so the backlog never misses an update
+		backlog.incrementAndGet();
+		if (!queue.offer(ssn)) {
+			backlog.decrementAndGet();
+			pending.remove(ssn, qualification);
+			dropped.incrementAndGet();
+			return false;
+		}
+		return true;
+	}
+
+	int getBacklog() {
+		return backlog.get();
+	}
+
+	long getDropped() {
+		return dropped.get();
+	}
+
+	long getFailures() {
+		return failures.get();
+	}
+
+	/**
+	 * Waits until every update queued so far has been sent.
+	 *
+	 * @return whether the queue emptied within the timeout
+	 */
+	boolean awaitEmpty(long timeoutMillis) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		while (getBacklog() > 0) {
+			if (System.currentTimeMillis() >= deadline) {
+				return false;
+			}
+			Thread.sleep(5);
+		}
+		return true;
+	}
+
+	/**
+	 * Stops taking updates. What is queued is still sent, unless the node
+	 * fails, after which the sender gives up instead of retrying.
+	 *
+	 * @return false if it was already closed
+	 */
+	boolean close() {
+		if (closing) {
+			return false;
+		}
+		closing = true;
+		sender.interrupt();
+		return true;
+	}
+
+	private void send() {
+		List<String> ssns = new ArrayList<String>(batchSize);
+		while (true) {
+			String first;
+			try {
+				first = queue.poll(retryMillis, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				// closing, send what is left without waiting
+				first = queue.poll();
+			}
+			if (first == null) {
+				if (closing) {
+					return;
+				}
+				continue;
+			}
+			ssns.add(first);
+			queue.drainTo(ssns, batchSize - 1);
+			int taken = ssns.size();
+			Map<String, Qualification> batch = new HashMap<String, Qualification>(ssns.size() * 2);
+			for (String ssn : ssns) {
+				Qualification qualification = pending.remove(ssn);
+				if (qualification != null) {
+					batch.put(ssn, qualification);
+				}
+			}
+			ssns.clear();
+			if (!batch.isEmpty() && !put(batch)) {
+				requeue(batch);
+				backlog.addAndGet(-taken);
+				if (closing) {
+					LOG.warnf("Gave up replicating %d status(es) to %s", queue.size(), node.getName());
+					return;
+				}
+				pause();
+				continue;
+			}
+			backlog.addAndGet(-taken);
+		}
+	}
+
+	private boolean put(Map<String, Qualification> batch) {
+		try {
+			node.put(batch, true);
+			return true;
+		} catch (RuntimeException e) {
+			failures.incrementAndGet();
+			LOG.warnf("Replicating %d status(es) to %s failed: %s", batch.size(), node.getName(), e.getMessage());
+			LOG.debug("Replication failure", e);
+			return false;
+		}
+	}
+
+	/**
+	 * Puts a batch the node did not take back in the queue, unless a newer
+	 * update of an SSN has been queued meanwhile.
+	 */
+	private void requeue(Map<String, Qualification> batch) {
+		for (Map.Entry<String, Qualification> entry : batch.entrySet()) {
+			if (pending.putIfAbsent(entry.getKey(), entry.getValue()) == null) {
+				enqueue(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	private void pause() {
+		try {
+			Thread.sleep(retryMillis);
+		} catch (InterruptedException e) {
+			// closing, the next failure ends the sender
+		}
+	}
+}
@@ -0,0 +1,433 @@
+package org.jboss.example.homeloan.cluster;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.example.homeloan.cache.CacheStats;
+import org.jboss.example.homeloan.data.Qualification;
+import org.jboss.example.homeloan.prequal.StatusStore;
+import org.jboss.logging.Logger;
+
+/**
+ * Status store partitioned across the nodes of a cluster. SSNs are hashed
+ * onto a HashRing of the members; the first replicas nodes clockwise own the
+ * SSN. An update is stored locally if this node is an owner and queued for
+ * the other owners, each of which has a Replicator sending its updates in the
+ * background, so a slow or unreachable node does not hold up the process
+ * that made the update. Replicas are therefore eventually consistent: a
+ * lookup on another owner may briefly still answer the previous status. A
+ * lookup is answered locally if this node is an owner and routed to the
+ * owners otherwise, falling over to the next owner if one fails. Each node
+ * keeps only its own share, so the statuses held grow with the number of
+ * nodes.
+ *
+ * The members are set on every node alike, e.g. through JMX, when a node
+ * joins or leaves. Each node then hands the statuses whose owners changed
+ * over to their new owners, without overwriting a newer update, and drops
+ * those it no longer owns. A status is handed over by the first of its old
+ * owners that is still a member, so with replicas above 1 the statuses of a
+ * node that left are not lost. Rebalancing scans all statuses of the local
+ * store, including those a JdbcStatusStore only has in its table.
+ *
+ * The nodes authenticate each other with a shared secret, see
+ * {@link #isClusterSecret(String)}.
+ */
+public class ShardedStatusStore implements StatusStore, ShardedStatusStoreMBean {
+
+	private static final Logger LOG = Logger.getLogger(ShardedStatusStore.class);
+
+	private static final int VIRTUAL_NODES = 128;
+	private static final int HANDOVER_BATCH = 500;
+	private static final int REPLICATION_QUEUE = 10000;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final LocalStatusNode local;
+	private final int replicas;
+	private final int timeoutMillis;
+	private final String secret;
+	private final int queueSize;
+	private volatile Members members;
+	private final AtomicLong handedOver = new AtomicLong();
+	private final AtomicLong nodeErrors = new AtomicLong();
+	// of the replicators already closed
+	private final AtomicLong replicationsDropped = new AtomicLong();
+
+	/**
+	 * Store whose nodes are all set through {@link #setNodes(Collection)},
+	 * without a cluster secret.
+	 */
+	public ShardedStatusStore(LocalStatusNode local, int replicas, int timeoutMillis) {
+		this(local, replicas, timeoutMillis, null, REPLICATION_QUEUE);
+	}
+
+	/**
+	 * @param timeoutMillis connect and read timeout of the nodes set through
+	 *            {@link #setNodes(String)}, and the pause before a failed
+	 *            replication is retried
+	 * @param secret the cluster secret sent to and required from the other
+	 *            nodes
+	 * @param queueSize number of updates queued per node before further ones
+	 *            are dropped for that node
+	 */
+	public ShardedStatusStore(LocalStatusNode local, int replicas, int timeoutMillis, String secret,
+			int queueSize) {
+		this.local = local;
+		this.replicas = Math.max(1, replicas);
+		this.timeoutMillis = timeoutMillis;
+		this.secret = secret;
+		this.queueSize = queueSize;
+		this.members = new Members(Collections.<StatusNode>singletonList(local), this, null);
+	}
+
+	public LocalStatusNode getLocal() {
+		return local;
+	}
+
+	/**
+	 * Replaces the members and rebalances. A node with the local node's name
+	 * stands for the local node.
+	 */
+	public synchronized void setNodes(Collection<? extends StatusNode> nodes) {
+		List<StatusNode> all = new ArrayList<StatusNode>(nodes.size() + 1);
+		all.add(local);
+		for (StatusNode node : nodes) {
+			if (!node.getName().equals(local.getName())) {
+				all.add(node);
+			}
+		}
+		Members previous = members;
+		members = new Members(all, this, previous);
+		rebalance(previous, members);
+		// what is still queued for nodes that left goes out before their replicators stop
+		previous.close(this, members);
+	}
+
+	/**
+	 * Stores the status locally if this node is an owner, and queues it for
+	 * the other owners.
+	 */
+	@Override
+	public void put(String ssn, Qualification qualification) {
+		Members current = members;
+		for (String owner : current.ring.owners(ssn, replicas)) {
+			if (owner.equals(local.getName())) {
+				local.getStore().put(ssn, qualification);
+			} else if (!current.replicators.get(owner).offer(ssn, qualification)) {
+				LOG.debugf("Replication queue of %s is full, dropped the status of %s there", owner, ssn);
+			}
+		}
+	}
+
+	/**
+	 * Whether the secret presented by another node is the cluster secret.
+	 * Without a cluster secret no node is trusted.
+	 */
+	public boolean isClusterSecret(String candidate) {
+		return secret != null && candidate != null
+				&& MessageDigest.isEqual(secret.getBytes(UTF8), candidate.getBytes(UTF8));
+	}
+
+	/**
+	 * Waits until the updates queued so far have been sent to the other
+	 * nodes, e.g. before a node is shut down.
+	 *
+	 * @return whether they all were within the timeout
+	 */
+	public boolean awaitReplication(long timeoutMillis) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		for (Replicator replicator : members.replicators.values()) {
+			if (!replicator.awaitEmpty(Math.max(0, deadline - System.currentTimeMillis()))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Stops replicating once what is queued has been sent.
+	 */
+	public synchronized void close() {
+		members.close(this, null);
+	}
+
+	@Override
+	public Qualification get(String ssn) {
+		Members current = members;
+		List<String> owners = current.ring.owners(ssn, replicas);
+		if (owners.contains(local.getName())) {
+			// updates are stored locally before they are replicated, so the local copy is as recent as any
+			return local.getStore().get(ssn);
+		}
+		for (String owner : owners) {
+			StatusNode node = current.nodes.get(owner);
+			try {
+				return node.get(Collections.singletonList(ssn))[0];
+			} catch (RuntimeException e) {
+				failed(node, e);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Looks the SSNs up with one request per owner node rather than one per
+	 * SSN.
+	 *
+	 * @return the statuses in the same order, null where unknown
+	 */
+	public Qualification[] get(List<String> ssns) {
+		Members current = members;
+		Qualification[] qualifications = new Qualification[ssns.size()];
+		Map<StatusNode, List<Integer>> byNode = new LinkedHashMap<StatusNode, List<Integer>>();
+		for (int i = 0; i < ssns.size(); i++) {
+			List<String> owners = current.ring.owners(ssns.get(i), replicas);
+			StatusNode node = current.nodes.get(owners.contains(local.getName()) ? local.getName() : owners.get(0));
+			List<Integer> indexes = byNode.get(node);
+			if (indexes == null) {
+				indexes = new ArrayList<Integer>();
+				byNode.put(node, indexes);
+			}
+			indexes.add(i);
+		}
+		for (Map.Entry<StatusNode, List<Integer>> entry : byNode.entrySet()) {
+			List<Integer> indexes = entry.getValue();
+			List<String> nodeSsns = new ArrayList<String>(indexes.size());
+			for (int i : indexes) {
+				nodeSsns.add(ssns.get(i));
+			}
+			try {
+				Qualification[] found = entry.getKey().get(nodeSsns);
+				for (int i = 0; i < found.length; i++) {
+					qualifications[indexes.get(i)] = found[i];
+				}
+			} catch (RuntimeException e) {
+				failed(entry.getKey(), e);
+				// one at a time, from the other owners
+				for (int i : indexes) {
+					qualifications[i] = get(ssns.get(i));
+				}
+			}
+		}
+		return qualifications;
+	}
+
+	@Override
+	public void remove(String ssn) {
+		local.getStore().remove(ssn);
+	}
+
+	@Override
+	public Collection<String> ssns() {
+		return local.getStore().ssns();
+	}
+
+	@Override
+	public CacheStats getStats() {
+		return local.getStore().getStats();
+	}
+
+	private void rebalance(Members previous, Members next) {
+		String self = local.getName();
+		Map<String, Map<String, Qualification>> handover = new HashMap<String, Map<String, Qualification>>();
+		List<String> moved = new ArrayList<String>();
+		boolean complete = true;
+		List<String> ssns;
+		try {
+			ssns = new ArrayList<String>(local.getStore().ssns());
+		} catch (RuntimeException e) {
+			LOG.warn("Unable to list the statuses of this node, they were not rebalanced", e);
+			return;
+		}
+		for (String ssn : ssns) {
+			List<String> before = previous.ring.owners(ssn, replicas);
+			List<String> after = next.ring.owners(ssn, replicas);
+			if (before.equals(after)) {
+				continue;
+			}
+			if (self.equals(firstMember(before, next))) {
+				Qualification qualification = local.getStore().get(ssn);
+				if (qualification == null) {
+					continue;
+				}
+				for (String owner : after) {
+					if (!before.contains(owner)) {
+						Map<String, Qualification> batch = handover.get(owner);
+						if (batch == null) {
+							batch = new HashMap<String, Qualification>();
+							handover.put(owner, batch);
+						}
+						batch.put(ssn, qualification);
+						if (batch.size() >= HANDOVER_BATCH) {
+							complete &= handOver(next.nodes.get(owner), batch);
+							batch.clear();
+						}
+					}
+				}
+			}
+			if (!after.contains(self)) {
+				moved.add(ssn);
+			}
+		}
+		for (Map.Entry<String, Map<String, Qualification>> batch : handover.entrySet()) {
+			complete &= handOver(next.nodes.get(batch.getKey()), batch.getValue());
+		}
+		if (!complete) {
+			LOG.warn("Keeping the statuses this node no longer owns, they could not all be handed over");
+			return;
+		}
+		for (String ssn : moved) {
+			local.getStore().remove(ssn);
+		}
+		LOG.infof("Rebalanced the loan statuses onto %s, %d of them moved off %s", next.ring.getNodes(),
+				moved.size(), self);
+	}
+
+	private boolean handOver(StatusNode node, Map<String, Qualification> statuses) {
+		if (statuses.isEmpty()) {
+			return true;
+		}
+		try {
+			node.put(statuses, false);
+			handedOver.addAndGet(statuses.size());
+			return true;
+		} catch (RuntimeException e) {
+			failed(node, e);
+			return false;
+		}
+	}
+
+	private static String firstMember(List<String> owners, Members members) {
+		for (String owner : owners) {
+			if (members.nodes.containsKey(owner)) {
+				return owner;
+			}
+		}
+		return null;
+	}
+
+	private void failed(StatusNode node, RuntimeException e) {
+		nodeErrors.incrementAndGet();
+		LOG.warnf("Status node %s failed: %s", node.getName(), e.getMessage());
+		LOG.debug("Status node failure", e);
+	}
+
+	@Override
+	public String getNode() {
+		return local.getName();
+	}
+
+	@Override
+	public String getNodes() {
+		StringBuilder nodes = new StringBuilder();
+		for (StatusNode node : members.nodes.values()) {
+			if (nodes.length() > 0) {
+				nodes.append(',');
+			}
+			nodes.append(node);
+		}
+		return nodes.toString();
+	}
+
+	@Override
+	public void setNodes(String nodes) {
+		setNodes(HttpStatusNode.parse(nodes, timeoutMillis, secret));
+	}
+
+	@Override
+	public int getReplicas() {
+		return replicas;
+	}
+
+	@Override
+	public int getLocalStatuses() {
+		return local.getStore().ssns().size();
+	}
+
+	@Override
+	public long getHandedOver() {
+		return handedOver.get();
+	}
+
+	@Override
+	public long getNodeErrors() {
+		long errors = nodeErrors.get();
+		for (Replicator replicator : members.replicators.values()) {
+			errors += replicator.getFailures();
+		}
+		return errors;
+	}
+
+	@Override
+	public int getReplicationBacklog() {
+		int backlog = 0;
+		for (Replicator replicator : members.replicators.values()) {
+			backlog += replicator.getBacklog();
+		}
+		return backlog;
+	}
+
+	@Override
+	public long getReplicationsDropped() {
+		long dropped = replicationsDropped.get();
+		for (Replicator replicator : members.replicators.values()) {
+			dropped += replicator.getDropped();
+		}
+		return dropped;
+	}
+
+	/**
+	 * The members, their ring and the replicators of the remote ones,
+	 * replaced as a whole. A node that stays a member keeps its replicator,
+	 * so its updates are still sent in order.
+	 */
+	private static final class Members {
+
+		final Map<String, StatusNode> nodes = new LinkedHashMap<String, StatusNode>();
+		final Map<String, Replicator> replicators = new HashMap<String, Replicator>();
+		final HashRing ring;
+
+		Members(List<StatusNode> nodes, ShardedStatusStore store, Members previous) {
+			for (StatusNode node : nodes) {
+				this.nodes.put(node.getName(), node);
+				if (node == store.local) {
+					continue;
+				}
+				Replicator replicator = previous != null ? previous.replicator(node) : null;
+				replicators.put(node.getName(), replicator != null ? replicator
+						: new Replicator(node, store.queueSize, HANDOVER_BATCH, store.timeoutMillis));
+			}
+			ring = new HashRing(this.nodes.keySet(), VIRTUAL_NODES);
+		}
+
+		/**
+		 * @return the replicator of the node if it was a member at the same
+		 *         address
+		 */
+		private Replicator replicator(StatusNode node) {
+			StatusNode member = nodes.get(node.getName());
+			return member != null && member.toString().equals(node.toString()) ? replicators.get(node.getName())
+					: null;
+		}
+
+		/**
+		 * Closes the replicators the next members do not keep, all of them
+		 * without next members.
+		 */
+		void close(ShardedStatusStore store, Members next) {
+			for (Map.Entry<String, Replicator> entry : replicators.entrySet()) {
+				Replicator replicator = entry.getValue();
+				if ((next == null || next.replicators.get(entry.getKey()) != replicator) && replicator.close()) {
+					store.replicationsDropped.addAndGet(replicator.getDropped());
+				}
+			}
+		}
+	}
+}
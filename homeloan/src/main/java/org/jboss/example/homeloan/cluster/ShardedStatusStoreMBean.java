@@ -0,0 +1,31 @@
+package org.jboss.example.homeloan.cluster;
+
+public interface ShardedStatusStoreMBean {
+
+	String getNode();
+
+	String getNodes();
+
+	/**
+	 * @param nodes all members as name=url pairs separated by commas
+	 */
+	void setNodes(String nodes);
+
+	int getReplicas();
+
+	int getLocalStatuses();
+
+	long getHandedOver();
+
+	long getNodeErrors();
+
+	/**
+	 * @return updates queued for the other nodes and not sent yet
+	 */
+	int getReplicationBacklog();
+
+	/**
+	 * @return updates not sent to another node because its queue was full
+	 */
+	long getReplicationsDropped();
+}
@@ -0,0 +1,30 @@
+package org.jboss.example.homeloan.cluster;
+
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.example.homeloan.data.Qualification;
+
+/**
+ * One node of the status cluster as seen by the ShardedStatusStore: the
+ * local node, or a remote one reached over HTTP.
+ */
+public interface StatusNode {
+
+	String getName();
+
+	/**
+	 * Stores the statuses on the node.
+	 *
+	 * @param overwrite false to keep a status the node already has, as when
+	 *            statuses are handed over on rebalancing and a newer update
+	 *            may have arrived first
+	 */
+	void put(Map<String, Qualification> statuses, boolean overwrite);
+
+	/**
+	 * @return the statuses the node has for the SSNs, in the same order, null
+	 *         where it has none
+	 */
+	Qualification[] get(List<String> ssns);
+}
@@ -0,0 +1,75 @@
+package org.jboss.example.homeloan.cluster;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.jboss.example.homeloan.data.Qualification;
+import org.jboss.example.homeloan.prequal.LoanStatus;
+import org.jboss.example.homeloan.prequal.StatusStore;
+
+/**
+ * Serves this node's shard of the loan statuses to the other nodes of the
+ * status cluster, see HttpStatusNode for the protocol. Requests are answered
+ * from the local shard only and never routed on. Requests without the
+ * cluster secret are refused, so the servlet may be deployed with the public
+ * application.
+ */
+@WebServlet(urlPatterns = "/statusnode")
+public class StatusNodeServlet extends HttpServlet {
+
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		StatusStore store = LoanStatus.getStore();
+		if (!(store instanceof ShardedStatusStore)) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND, "Loan statuses are not sharded");
+			return;
+		}
+		ShardedStatusStore sharded = (ShardedStatusStore)store;
+		if (!sharded.isClusterSecret(request.getHeader(HttpStatusNode.SECRET_HEADER))) {
+			response.sendError(HttpServletResponse.SC_FORBIDDEN);
+			return;
+		}
+		LocalStatusNode local = sharded.getLocal();
+		String op = request.getParameter("op");
+		DataInputStream in = new DataInputStream(new BufferedInputStream(request.getInputStream()));
+		int count = in.readInt();
+		if ("get".equals(op)) {
+			List<String> ssns = new ArrayList<String>(count);
+			for (int i = 0; i < count; i++) {
+				ssns.add(in.readUTF());
+			}
+			response.setContentType("application/octet-stream");
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(response.getOutputStream()));
+			for (Qualification qualification : local.get(ssns)) {
+				HttpStatusNode.write(out, qualification);
+			}
+			out.flush();
+		} else if ("put".equals(op) || "offer".equals(op)) {
+			Map<String, Qualification> statuses = new HashMap<String, Qualification>(count * 2);
+			for (int i = 0; i < count; i++) {
+				String ssn = in.readUTF();
+				Qualification qualification = HttpStatusNode.read(in);
+				if (qualification != null) {
+					statuses.put(ssn, qualification);
+				}
+			}
+			local.put(statuses, "put".equals(op));
+		} else {
+			response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown op " + op);
+		}
+	}
+}
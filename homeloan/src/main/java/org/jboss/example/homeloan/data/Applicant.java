@@ -1,9 +1,10 @@
 package org.jboss.example.homeloan.data;
 
 import java.io.Serializable;
-import java.util.Calendar;
 import java.util.Date;
 
+import org.jboss.example.homeloan.eval.DecisionTables;
+
 public class Applicant implements Serializable {
     private static final long serialVersionUID = 1L;
 
@@ -19,39 +20,41 @@ public class Applicant implements Serializable {
     private double checkingBalance;
     private double savingsBalance;
 
+    // derived from dob, recomputed after deserialization
+    private transient int dobDate;
+    private transient int age;
+    private transient volatile int ageDate;
+
     /**
-     * @return the calculated age from the DOB
+     * @return the calculated age from the DOB, 0 when there is no DOB
      */
     public int getAge() {
-
-        final Calendar dob = Calendar.getInstance();
-        dob.setTime(getDob());
-        final Calendar now = Calendar.getInstance();
-
-        int age = now.get(Calendar.YEAR) - dob.get(Calendar.YEAR);
-
-        // IF THE CURRENT MONTH IS LESS THAN THE DOB MONTH
-        // THEN REDUCE THE DOB BY 1 AS THEY HAVE NOT HAD THEIR
-        // BIRTHDAY YET THIS YEAR
-        if (now.get(Calendar.MONTH) < dob.get(Calendar.MONTH)) {
-            age = age - 1;
+        if (dob == null) {
+            return 0;
         }
-
-        // IF THE MONTH IN THE DOB IS EQUAL TO THE CURRENT MONTH
-        // THEN CHECK THE DAY TO FIND OUT IF THEY HAVE HAD THEIR
-        // BIRTHDAY YET. IF THE CURRENT DAY IS LESS THAN THE DAY OF THE DOB
-        // THEN REDUCE THE DOB BY 1 AS THEY HAVE NOT HAD THEIR
-        // BIRTHDAY YET THIS YEAR
-        if ((now.get(Calendar.MONTH) == dob.get(Calendar.MONTH)) && (now.get(Calendar.DATE) < dob.get(Calendar.DATE))) {
-            age = age - 1;
+        Clock clock = Clock.get();
+        int today = clock.today();
+        if (ageDate != today) {
+            if (dobDate == 0) {
+                dobDate = clock.toDate(dob);
+            }
+            // with dates as yyyymmdd the difference in years is the age,
+            // less one until the month and day of the birthday come around
+            age = Math.max(0, (today - dobDate) / 10000);
+            ageDate = today;
         }
-
-        // THE AGE VARIBALE WILL NOW CONTAIN THE CORRECT AGE
-        // DERIVED FROMTHE GIVEN DOB
-
         return age;
     }
 
+    /**
+     * @return the credit rating band the credit score falls into (A best,
+     *         F worst), looked up in the CreditScoreRange table of
+     *         mortgages.drl, or null when it is outside of all bands
+     */
+    public String getCreditBand() {
+        return DecisionTables.mortgages().getCreditBands().band(creditScore);
+    }
+
     /**
      * @return the dob
      */
@@ -65,6 +68,8 @@ public class Applicant implements Serializable {
      */
     public void setDob(final Date dob) {
         this.dob = dob;
+        dobDate = 0;
+        ageDate = 0;
     }
 
     /**
@@ -0,0 +1,193 @@
+package org.jboss.example.homeloan.data;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Builds a LoanApplication from an Application.xsd document in a single pass,
+ * either from a StAX stream or by walking a DOM tree once. Fields are taken
+ * from the same elements LoanAppTransformer reads: the loan terms directly
+ * under Application, and the first Cash_Deposit, Employment and Borrower.
+ */
+public final class ApplicationReader {
+
+	static final String APP_NS =
+			"http://jboss.com/demo/products/soa-p/5.2/Application.xsd";
+
+	public LoanApplication read(XMLStreamReader reader) throws XMLStreamException, ParseException {
+		Builder builder = new Builder();
+		int depth = 0;
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+				String name = APP_NS.equals(reader.getNamespaceURI()) ? reader.getLocalName() : null;
+				if (builder.isField(name, depth)) {
+					// consumes the matching end element
+					builder.field(name, reader.getElementText());
+					depth--;
+				} else {
+					builder.start(name, depth);
+				}
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				builder.end(depth);
+				if (--depth == 0) {
+					break;
+				}
+			}
+		}
+		return builder.build();
+	}
+
+	public LoanApplication read(Element application) throws ParseException {
+		Builder builder = new Builder();
+		walk(builder, application, 1);
+		return builder.build();
+	}
+
+	private void walk(Builder builder, Element element, int depth) throws ParseException {
+		String name = APP_NS.equals(element.getNamespaceURI()) ? element.getLocalName() : null;
+		if (builder.isField(name, depth)) {
+			builder.field(name, element.getTextContent());
+			return;
+		}
+		builder.start(name, depth);
+		for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+			if (child.getNodeType() == Node.ELEMENT_NODE) {
+				walk(builder, (Element)child, depth + 1);
+			}
+		}
+		builder.end(depth);
+	}
+
+	private static final class Builder {
+
+		private final LoanApplication application = new LoanApplication();
+		private Applicant applicant;
+		private IncomeSource income;
+		private boolean depositSeen;
+
+		// depth of the element currently being read, 0 when outside of it
+		private int borrower;
+		private int employment;
+		private int cashDeposit;
+
+		void start(String name, int depth) {
+			if ("Borrower".equals(name) && applicant == null) {
+				applicant = new Applicant();
+				borrower = depth;
+			} else if ("Employment".equals(name) && income == null) {
+				income = new IncomeSource();
+				employment = depth;
+			} else if ("Cash_Deposit".equals(name) && !depositSeen) {
+				depositSeen = true;
+				cashDeposit = depth;
+			}
+		}
+
+		void end(int depth) {
+			if (depth == borrower) {
+				borrower = 0;
+			} else if (depth == employment) {
+				employment = 0;
+			} else if (depth == cashDeposit) {
+				cashDeposit = 0;
+			}
+		}
+
+		boolean isField(String name, int depth) {
+			if (name == null) {
+				return false;
+			}
+			if (depth == 2) {
+				return "Amount".equals(name) || "Interest_Rate".equals(name) || "Number_Of_Months".equals(name);
+			}
+			if (cashDeposit > 0) {
+				return depth == cashDeposit + 1 && "Amount".equals(name);
+			}
+			if (employment > 0) {
+				return depth == employment + 1
+						&& ("Monthly_Income".equals(name) || "Is_Self_Employed".equals(name));
+			}
+			if (borrower > 0) {
+				return "DOB".equals(name) || "First_Name".equals(name) || "Last_Name".equals(name)
+						|| "SSN".equals(name) || "Address_1".equals(name) || "Postal_Code".equals(name)
+						|| "City".equals(name) || "State".equals(name);
+			}
+			return false;
+		}
+
+		void field(String name, String value) throws ParseException {
+			value = value.trim();
+			if (cashDeposit > 0) {
+				application.setDeposit(Integer.parseInt(value));
+			} else if (employment > 0) {
+				if ("Monthly_Income".equals(name)) {
+					income.setMonthlyAmount(Integer.parseInt(value));
+				} else {
+					income.setSelfEmployed(Boolean.parseBoolean(value));
+				}
+			} else if (borrower > 0) {
+				borrowerField(name, value);
+			} else if ("Amount".equals(name)) {
+				application.setAmount(Integer.parseInt(value));
+			} else if ("Interest_Rate".equals(name)) {
+				application.setApprovedRate(value);
+			} else {
+				application.setLengthYears(Integer.parseInt(value) / 12);
+			}
+		}
+
+		private void borrowerField(String name, String value) throws ParseException {
+			// the first occurrence inside the borrower wins, as with getElementsByTagNameNS
+			if ("DOB".equals(name)) {
+				if (applicant.getDob() == null) {
+					applicant.setDob(new SimpleDateFormat("MM/dd/yyyy").parse(value));
+				}
+			} else if ("SSN".equals(name)) {
+				if (applicant.getSsn() == null) {
+					applicant.setSsn(value);
+				}
+			} else if ("First_Name".equals(name)) {
+				if (applicant.getFirstName().length() == 0) {
+					applicant.setFirstName(value);
+				}
+			} else if ("Last_Name".equals(name)) {
+				if (applicant.getLastName().length() == 0) {
+					applicant.setLastName(value);
+				}
+			} else if ("Address_1".equals(name)) {
+				if (applicant.getStreetAddress() == null) {
+					applicant.setStreetAddress(value);
+				}
+			} else if ("Postal_Code".equals(name)) {
+				if (applicant.getPostalCode() == null) {
+					applicant.setPostalCode(value);
+				}
+			} else if ("City".equals(name)) {
+				if (applicant.getCity() == null) {
+					applicant.setCity(value);
+				}
+			} else if (applicant.getState() == null) {
+				applicant.setState(value);
+			}
+		}
+
+		LoanApplication build() {
+			if (income != null) {
+				application.setIncome(income);
+			}
+			if (applicant != null) {
+				application.setApplicant(applicant);
+			}
+			return application;
+		}
+	}
+}
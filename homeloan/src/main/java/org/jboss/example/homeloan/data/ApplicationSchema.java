@@ -0,0 +1,146 @@
+package org.jboss.example.homeloan.data;
+
+import java.io.IOException;
+import java.net.URL;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.Source;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
+import javax.xml.validation.ValidatorHandler;
+
+import org.jboss.example.homeloan.metrics.ServiceMetrics;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+/**
+ * Application.xsd, compiled once, with a Validator and a ValidatorHandler per
+ * thread.
+ *
+ * In STREAMING mode, application text is validated while
+ * StreamingLoanAppTransformer reads it, from the same StAX events, and only
+ * DOM content (from IntakeSOAP) is validated in a pass of its own, by
+ * ApplicationValidator. In SCHEMA mode all content is validated by
+ * ApplicationValidator before it is transformed. OFF skips validation.
+ *
+ * Every sampleEvery-th validation on a thread is timed and recorded as the
+ * ApplicationValidation service metrics.
+ */
+public final class ApplicationSchema {
+
+	public enum Mode {
+		STREAMING, SCHEMA, OFF
+	}
+
+	public static final Mode MODE = Mode.valueOf(System.getProperty("homeloan.validation", Mode.STREAMING.name()));
+
+	private static final String XSD = "Application.xsd";
+	private static final int SAMPLE_EVERY = Math.max(1, Integer.getInteger("homeloan.validation.sampleEvery", 8));
+
+	private static final Schema SCHEMA = compile();
+	private static final SAXParserFactory PARSER_FACTORY = parserFactory();
+
+	private static final ThreadLocal<PerThread> PER_THREAD = new ThreadLocal<PerThread>() {
+		@Override
+		protected PerThread initialValue() {
+			return new PerThread();
+		}
+	};
+
+	private ApplicationSchema() {
+	}
+
+	/**
+	 * Validates a whole document, e.g. a DOMSource. Text is parsed without
+	 * DTDs, a document that declares one is rejected.
+	 *
+	 * @throws SAXException
+	 *             if the document is not a valid Application
+	 */
+	public static void validate(Source source) throws SAXException, IOException {
+		PerThread perThread = PER_THREAD.get();
+		if (source instanceof StreamSource) {
+			source = new SAXSource(perThread.parser(), SAXSource.sourceToInputSource(source));
+		}
+		boolean timed = perThread.sample();
+		long start = timed ? System.nanoTime() : 0;
+		boolean failed = true;
+		try {
+			perThread.validator.validate(source);
+			failed = false;
+		} finally {
+			perThread.validator.reset();
+			if (timed) {
+				record(System.nanoTime() - start, failed);
+			}
+		}
+	}
+
+	/**
+	 * Wraps a reader positioned at the start of an Application document so
+	 * that the document is validated as it is read. Call
+	 * {@link ValidatingStreamReader#finish()} once done reading.
+	 */
+	public static ValidatingStreamReader validating(XMLStreamReader reader) throws SAXException {
+		PerThread perThread = PER_THREAD.get();
+		return new ValidatingStreamReader(reader, perThread.handler, perThread.sample());
+	}
+
+	static void record(long nanos, boolean failed) {
+		ServiceMetrics.forService("ApplicationValidation").record(nanos, failed);
+	}
+
+	private static Schema compile() {
+		URL xsd = ApplicationSchema.class.getClassLoader().getResource(XSD);
+		if (xsd == null) {
+			throw new IllegalStateException(XSD + " not found on the classpath");
+		}
+		try {
+			return SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(xsd);
+		} catch (SAXException e) {
+			throw new IllegalStateException("Unable to compile " + XSD, e);
+		}
+	}
+
+	private static SAXParserFactory parserFactory() {
+		SAXParserFactory factory = SAXParserFactory.newInstance();
+		factory.setNamespaceAware(true);
+		try {
+			factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+			factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+			factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+		} catch (Exception e) {
+			throw new IllegalStateException("Unable to disable DTDs for the Application parser", e);
+		}
+		return factory;
+	}
+
+	private static final class PerThread {
+
+		final Validator validator = SCHEMA.newValidator();
+		final ValidatorHandler handler = SCHEMA.newValidatorHandler();
+		XMLReader parser;
+		int validations;
+
+		XMLReader parser() throws SAXException {
+			if (parser == null) {
+				try {
+					parser = PARSER_FACTORY.newSAXParser().getXMLReader();
+				} catch (ParserConfigurationException e) {
+					throw new SAXException(e);
+				}
+			}
+			return parser;
+		}
+
+		boolean sample() {
+			return validations++ % SAMPLE_EVERY == 0;
+		}
+	}
+}
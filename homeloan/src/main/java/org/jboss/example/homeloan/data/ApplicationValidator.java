@@ -0,0 +1,98 @@
+package org.jboss.example.homeloan.data;
+
+import java.io.FilterInputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+
+import javax.xml.namespace.QName;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamSource;
+
+import org.switchyard.validate.BaseValidator;
+import org.switchyard.validate.ValidationResult;
+import org.w3c.dom.Node;
+
+/**
+ * Validates Application messages against the compiled Application.xsd held by
+ * ApplicationSchema.
+ *
+ * In the STREAMING mode text content passes here unchecked and is validated
+ * as StreamingLoanAppTransformer reads it, so it is parsed only once. In the
+ * SCHEMA mode readers and streams are validated too, and then reset for the
+ * transformer, so they have to support mark and reset as the stream caches
+ * Camel hands over do. One that does not is rejected rather than consumed.
+ */
+public class ApplicationValidator extends BaseValidator<Object> {
+
+	public static final QName APPLICATION = new QName("http://jboss.com/demo/products/soa-p/5.2/Application.xsd", "Application");
+
+	// far beyond any application, but bounds what a buffered reader keeps
+	private static final int MARK_LIMIT = 1024 * 1024;
+
+	public ApplicationValidator() {
+		super(APPLICATION);
+	}
+
+	@Override
+	public ValidationResult validate(Object content) {
+		return validate(content, ApplicationSchema.MODE);
+	}
+
+	ValidationResult validate(Object content, ApplicationSchema.Mode mode) {
+		try {
+			if (mode == ApplicationSchema.Mode.OFF) {
+				return validResult();
+			}
+			if (content instanceof Node) {
+				ApplicationSchema.validate(new DOMSource((Node)content));
+			} else if (mode == ApplicationSchema.Mode.SCHEMA) {
+				if (content instanceof String) {
+					ApplicationSchema.validate(new StreamSource(new StringReader((String)content)));
+				} else if (content instanceof Reader) {
+					validate((Reader)content);
+				} else if (content instanceof InputStream) {
+					validate((InputStream)content);
+				}
+			}
+			return validResult();
+		} catch (Exception e) {
+			return invalidResult("Invalid Application: " + e.getMessage());
+		}
+	}
+
+	private static void validate(Reader content) throws Exception {
+		if (!content.markSupported()) {
+			throw new IOException("a " + content.getClass().getName() + " cannot be read again after validation");
+		}
+		content.mark(MARK_LIMIT);
+		try {
+			// the parser closes its input once done
+			ApplicationSchema.validate(new StreamSource(new FilterReader(content) {
+				@Override
+				public void close() {
+				}
+			}));
+		} finally {
+			content.reset();
+		}
+	}
+
+	private static void validate(InputStream content) throws Exception {
+		if (!content.markSupported()) {
+			throw new IOException("a " + content.getClass().getName() + " cannot be read again after validation");
+		}
+		content.mark(MARK_LIMIT);
+		try {
+			ApplicationSchema.validate(new StreamSource(new FilterInputStream(content) {
+				@Override
+				public void close() {
+				}
+			}));
+		} finally {
+			content.reset();
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package org.jboss.example.homeloan.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.switchyard.annotations.Transformer;
+
+public final class BinaryLoanAppTransformer {
+
+	/**
+	 * Decodes an application in the LoanApplicationCodec format, e.g. from a
+	 * JMS BytesMessage on the IntakeBinaryJMS binding. Byte arrays and buffers
+	 * are decoded in place.
+	 */
+	@Transformer(from = "{urn:homeloan:1.0}BinaryApplication")
+	public LoanApplication transformBinaryApplicationToLoanApplication(Object from) throws Exception {
+		if (from instanceof byte[]) {
+			return LoanApplicationCodec.decode((byte[])from);
+		}
+		if (from instanceof ByteBuffer) {
+			return LoanApplicationCodec.decode(((ByteBuffer)from).slice());
+		}
+		if (from instanceof InputStream) {
+			InputStream in = (InputStream)from;
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+			byte[] buffer = new byte[4096];
+			for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+				bytes.write(buffer, 0, n);
+			}
+			return LoanApplicationCodec.decode(bytes.toByteArray());
+		}
+		throw new IllegalArgumentException("Unsupported BinaryApplication content: "
+				+ (from == null ? null : from.getClass().getName()));
+	}
+}
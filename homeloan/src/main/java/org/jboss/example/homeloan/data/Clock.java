@@ -0,0 +1,97 @@
+package org.jboss.example.homeloan.data;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Source of the current date for the derived fields of the data beans, e.g.
+ * Applicant.getAge. Dates are handled as yyyymmdd ints so that comparing and
+ * subtracting them needs no Calendar; the Calendar work for today's date is
+ * done once per day.
+ */
+public abstract class Clock {
+
+	public static final Clock SYSTEM = new Clock() {
+		@Override
+		public long currentTimeMillis() {
+			return System.currentTimeMillis();
+		}
+
+		@Override
+		public TimeZone getTimeZone() {
+			return TimeZone.getDefault();
+		}
+	};
+
+	private static volatile Clock current = SYSTEM;
+
+	private volatile Day today;
+
+	/**
+	 * @return the clock used by the data beans
+	 */
+	public static Clock get() {
+		return current;
+	}
+
+	/**
+	 * Replaces the clock used by the data beans, e.g. with a fixed clock in
+	 * tests. Cached ages are recomputed once the clock reports a different day.
+	 */
+	public static void set(Clock clock) {
+		current = clock != null ? clock : SYSTEM;
+	}
+
+	public abstract long currentTimeMillis();
+
+	public abstract TimeZone getTimeZone();
+
+	/**
+	 * @return the current date as yyyymmdd
+	 */
+	public int today() {
+		long now = currentTimeMillis();
+		Day day = today;
+		if (day == null || now < day.start || now >= day.end) {
+			day = new Day(now, getTimeZone());
+			today = day;
+		}
+		return day.date;
+	}
+
+	/**
+	 * @return the given date as yyyymmdd in this clock's time zone
+	 */
+	public int toDate(Date date) {
+		Calendar calendar = Calendar.getInstance(getTimeZone());
+		calendar.setTime(date);
+		return toDate(calendar);
+	}
+
+	private static int toDate(Calendar calendar) {
+		return calendar.get(Calendar.YEAR) * 10000
+				+ (calendar.get(Calendar.MONTH) + 1) * 100
+				+ calendar.get(Calendar.DAY_OF_MONTH);
+	}
+
+	private static final class Day {
+
+		final int date;
+		final long start;
+		final long end;
+
+		Day(long now, TimeZone zone) {
+			Calendar calendar = Calendar.getInstance(zone);
+			calendar.setTimeInMillis(now);
+			date = toDate(calendar);
+			calendar.set(Calendar.HOUR_OF_DAY, 0);
+			calendar.set(Calendar.MINUTE, 0);
+			calendar.set(Calendar.SECOND, 0);
+			calendar.set(Calendar.MILLISECOND, 0);
+			start = calendar.getTimeInMillis();
+			calendar.add(Calendar.DAY_OF_MONTH, 1);
+			end = calendar.getTimeInMillis();
+		}
+	}
+}
@@ -1,7 +1,10 @@
 package org.jboss.example.homeloan.data;
 
+import java.io.Serializable;
 
-public class CreditInfo {
+public class CreditInfo implements Serializable {
+
+	private static final long serialVersionUID = 1L;
 	
 	private Applicant applicant;
 	private int score;
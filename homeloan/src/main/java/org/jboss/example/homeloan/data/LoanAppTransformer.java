@@ -2,16 +2,17 @@ package org.jboss.example.homeloan.data;
 
 import java.text.SimpleDateFormat;
 
-import org.switchyard.annotations.Transformer;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 
+/**
+ * DOM based Application transformer, superseded by StreamingLoanAppTransformer
+ * and kept as the baseline for the transformer benchmarks.
+ */
 public final class LoanAppTransformer {
 	
-	private static final String APP_NS = 
-			"http://jboss.com/demo/products/soa-p/5.2/Application.xsd";
+	private static final String APP_NS = ApplicationReader.APP_NS;
 
-	@Transformer(from = "{http://jboss.com/demo/products/soa-p/5.2/Application.xsd}Application")
 	public LoanApplication transformApplicationToLoanApplication(Element from) throws Exception {
 		LoanApplication loanApp = parseApplication(from);
 		IncomeSource income = parseIncome(getElement(from, "Employment"));
@@ -163,4 +163,21 @@ public class LoanApplication implements Serializable {
 	public void setIncome(IncomeSource income) {
 		this.income = income;
 	}
+
+	/**
+	 * @return the loan amount as a multiple of the yearly income, 0 when
+	 *         there is no income
+	 */
+	public double getLoanToIncomeRatio() {
+		int monthly = income != null ? income.getMonthlyAmount() : 0;
+		return monthly > 0 ? amount / (monthly * 12.0) : 0;
+	}
+
+	/**
+	 * @return the deposit as a fraction of the loan amount, 0 when there is
+	 *         no amount
+	 */
+	public double getDepositRatio() {
+		return amount > 0 ? deposit / (double)amount : 0;
+	}
 }
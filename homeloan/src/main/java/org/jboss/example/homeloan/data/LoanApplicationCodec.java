@@ -0,0 +1,227 @@
+package org.jboss.example.homeloan.data;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Date;
+
+import javax.xml.namespace.QName;
+
+/**
+ * Compact binary encoding of a LoanApplication with its Applicant,
+ * IncomeSource and Bankruptcy.
+ *
+ * Version 1 layout (big-endian):
+ *
+ * <pre>
+ *  0  short  magic 'HL'
+ *  2  byte   version
+ *  3  byte   flags: 1 applicant, 2 bankruptcy, 4 income, 8 approved, 16 self employed
+ *  4  int    amount
+ *  8  int    deposit
+ * 12  int    lengthYears
+ * 16  int    insuranceCost
+ * 20  int    applicant creditScore
+ * 24  long   applicant dob in millis, Long.MIN_VALUE for none
+ * 32  double applicant checkingBalance
+ * 40  double applicant savingsBalance
+ * 48  int    income monthlyAmount
+ * 52  int    bankruptcy amountOwed
+ * 56  int    bankruptcy yearOfOccurrence
+ * 60  approvedRate, explanation, then the applicant's firstName, lastName,
+ *     ssn, streetAddress, postalCode, city and state, each as a short byte
+ *     length (-1 for null) followed by UTF-8
+ * </pre>
+ *
+ * The primitives sit at fixed offsets whether or not the object they belong
+ * to is present, so they are read straight from the buffer without a parse.
+ * A decoder rejects versions newer than its own.
+ */
+public final class LoanApplicationCodec {
+
+	/** Message type of binary applications, see BinaryLoanAppTransformer. */
+	public static final QName TYPE = new QName("urn:homeloan:1.0", "BinaryApplication");
+
+	public static final int VERSION = 1;
+
+	private static final short MAGIC = ('H' << 8) | 'L';
+	private static final int HEADER_SIZE = 60;
+	private static final int STRINGS = 9;
+	private static final long NO_DATE = Long.MIN_VALUE;
+
+	private static final int APPLICANT = 1;
+	private static final int BANKRUPTCY = 2;
+	private static final int INCOME = 4;
+	private static final int APPROVED = 8;
+	private static final int SELF_EMPLOYED = 16;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private LoanApplicationCodec() {
+	}
+
+	public static byte[] encode(LoanApplication application) {
+		Applicant applicant = application.getApplicant();
+		Bankruptcy bankruptcy = application.getBankruptcy();
+		IncomeSource income = application.getIncome();
+
+		byte[][] strings = new byte[STRINGS][];
+		strings[0] = bytes(application.getApprovedRate());
+		strings[1] = bytes(application.getExplanation());
+		if (applicant != null) {
+			strings[2] = bytes(applicant.getFirstName());
+			strings[3] = bytes(applicant.getLastName());
+			strings[4] = bytes(applicant.getSsn());
+			strings[5] = bytes(applicant.getStreetAddress());
+			strings[6] = bytes(applicant.getPostalCode());
+			strings[7] = bytes(applicant.getCity());
+			strings[8] = bytes(applicant.getState());
+		}
+		int size = HEADER_SIZE;
+		for (byte[] string : strings) {
+			size += 2 + (string != null ? string.length : 0);
+		}
+
+		int flags = 0;
+		if (applicant != null) {
+			flags |= APPLICANT;
+		}
+		if (bankruptcy != null) {
+			flags |= BANKRUPTCY;
+		}
+		if (income != null) {
+			flags |= INCOME;
+			if (income.isSelfEmployed()) {
+				flags |= SELF_EMPLOYED;
+			}
+		}
+		if (application.isApproved()) {
+			flags |= APPROVED;
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		buffer.putShort(MAGIC)
+			.put((byte)VERSION)
+			.put((byte)flags)
+			.putInt(application.getAmount())
+			.putInt(application.getDeposit())
+			.putInt(application.getLengthYears())
+			.putInt(application.getInsuranceCost());
+		if (applicant != null) {
+			buffer.putInt(applicant.getCreditScore())
+				.putLong(applicant.getDob() != null ? applicant.getDob().getTime() : NO_DATE)
+				.putDouble(applicant.getCheckingBalance())
+				.putDouble(applicant.getSavingsBalance());
+		} else {
+			buffer.putInt(0).putLong(NO_DATE).putDouble(0).putDouble(0);
+		}
+		buffer.putInt(income != null ? income.getMonthlyAmount() : 0)
+			.putInt(bankruptcy != null ? bankruptcy.getAmountOwed() : 0)
+			.putInt(bankruptcy != null ? bankruptcy.getYearOfOccurrence() : 0);
+		for (byte[] string : strings) {
+			if (string == null) {
+				buffer.putShort((short)-1);
+			} else {
+				buffer.putShort((short)string.length).put(string);
+			}
+		}
+		return buffer.array();
+	}
+
+	public static LoanApplication decode(byte[] bytes) {
+		return decode(ByteBuffer.wrap(bytes));
+	}
+
+	/**
+	 * Decodes an application from the buffer's position, leaving the position
+	 * after it.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the buffer does not hold an application this codec can
+	 *             decode
+	 */
+	public static LoanApplication decode(ByteBuffer buffer) {
+		int start = buffer.position();
+		if (buffer.remaining() < HEADER_SIZE || buffer.getShort(start) != MAGIC) {
+			throw new IllegalArgumentException("Not a binary loan application");
+		}
+		int version = buffer.get(start + 2);
+		if (version < 1 || version > VERSION) {
+			throw new IllegalArgumentException("Unsupported binary loan application version " + version);
+		}
+		int flags = buffer.get(start + 3);
+
+		LoanApplication application = new LoanApplication();
+		application.setAmount(buffer.getInt(start + 4));
+		application.setDeposit(buffer.getInt(start + 8));
+		application.setLengthYears(buffer.getInt(start + 12));
+		application.setInsuranceCost(buffer.getInt(start + 16));
+		application.setApproved((flags & APPROVED) != 0);
+		if ((flags & INCOME) != 0) {
+			IncomeSource income = new IncomeSource();
+			income.setMonthlyAmount(buffer.getInt(start + 48));
+			income.setSelfEmployed((flags & SELF_EMPLOYED) != 0);
+			application.setIncome(income);
+		}
+		if ((flags & BANKRUPTCY) != 0) {
+			Bankruptcy bankruptcy = new Bankruptcy();
+			bankruptcy.setAmountOwed(buffer.getInt(start + 52));
+			bankruptcy.setYearOfOccurrence(buffer.getInt(start + 56));
+			application.setBankruptcy(bankruptcy);
+		}
+
+		buffer.position(start + HEADER_SIZE);
+		application.setApprovedRate(string(buffer));
+		application.setExplanation(string(buffer));
+		if ((flags & APPLICANT) != 0) {
+			Applicant applicant = new Applicant();
+			applicant.setCreditScore(buffer.getInt(start + 20));
+			long dob = buffer.getLong(start + 24);
+			if (dob != NO_DATE) {
+				applicant.setDob(new Date(dob));
+			}
+			applicant.setCheckingBalance(buffer.getDouble(start + 32));
+			applicant.setSavingsBalance(buffer.getDouble(start + 40));
+			applicant.setFirstName(string(buffer));
+			applicant.setLastName(string(buffer));
+			applicant.setSsn(string(buffer));
+			applicant.setStreetAddress(string(buffer));
+			applicant.setPostalCode(string(buffer));
+			applicant.setCity(string(buffer));
+			applicant.setState(string(buffer));
+			application.setApplicant(applicant);
+		} else {
+			for (int i = 2; i < STRINGS; i++) {
+				string(buffer);
+			}
+		}
+		return application;
+	}
+
+	private static byte[] bytes(String value) {
+		if (value == null) {
+			return null;
+		}
+		byte[] bytes = value.getBytes(UTF8);
+		if (bytes.length > Short.MAX_VALUE) {
+			throw new IllegalArgumentException("String too long for a binary loan application: " + value);
+		}
+		return bytes;
+	}
+
+	private static String string(ByteBuffer buffer) {
+		int length = buffer.getShort();
+		if (length < 0) {
+			return null;
+		}
+		String value;
+		if (buffer.hasArray()) {
+			value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, UTF8);
+			buffer.position(buffer.position() + length);
+		} else {
+			byte[] bytes = new byte[length];
+			buffer.get(bytes);
+			value = new String(bytes, UTF8);
+		}
+		return value;
+	}
+}
@@ -0,0 +1,64 @@
+package org.jboss.example.homeloan.data;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamReader;
+
+import org.switchyard.annotations.Transformer;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+public final class StreamingLoanAppTransformer {
+
+	private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+
+	static {
+		// applications arrive from outside, so no DTDs and no external entities
+		INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+	}
+
+	private final ApplicationReader reader = new ApplicationReader();
+
+	/**
+	 * Accepts the message content as the binding delivered it: text payloads
+	 * (e.g. from IntakeJMS) are read with StAX without building a DOM, while
+	 * content that already is a DOM (e.g. from IntakeSOAP) is walked once.
+	 * In the STREAMING validation mode text payloads are validated against
+	 * Application.xsd by the same read, see ApplicationSchema.
+	 */
+	@Transformer(from = "{http://jboss.com/demo/products/soa-p/5.2/Application.xsd}Application")
+	public LoanApplication transformApplicationToLoanApplication(Object from) throws Exception {
+		if (from instanceof Element) {
+			return reader.read((Element)from);
+		}
+		if (from instanceof Document) {
+			return reader.read(((Document)from).getDocumentElement());
+		}
+		XMLStreamReader stream;
+		if (from instanceof String) {
+			stream = INPUT_FACTORY.createXMLStreamReader(new StringReader((String)from));
+		} else if (from instanceof Reader) {
+			stream = INPUT_FACTORY.createXMLStreamReader((Reader)from);
+		} else if (from instanceof InputStream) {
+			stream = INPUT_FACTORY.createXMLStreamReader((InputStream)from);
+		} else {
+			throw new IllegalArgumentException("Unsupported Application content: "
+					+ (from == null ? null : from.getClass().getName()));
+		}
+		try {
+			if (ApplicationSchema.MODE != ApplicationSchema.Mode.STREAMING) {
+				return reader.read(stream);
+			}
+			ValidatingStreamReader validating = ApplicationSchema.validating(stream);
+			LoanApplication application = reader.read(validating);
+			validating.finish();
+			return application;
+		} finally {
+			stream.close();
+		}
+	}
+}
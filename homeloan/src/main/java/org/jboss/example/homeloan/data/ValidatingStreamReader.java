@@ -0,0 +1,174 @@
+package org.jboss.example.homeloan.data;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+import javax.xml.validation.ValidatorHandler;
+
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Feeds every event read from a StAX reader to a schema ValidatorHandler, so
+ * the document is validated in the same pass that reads it. Invalid content
+ * fails the read with an XMLStreamException.
+ *
+ * getElementText and nextTag are implemented with next, so that the events
+ * they skip over are validated too.
+ */
+public final class ValidatingStreamReader extends StreamReaderDelegate {
+
+	private final ValidatorHandler handler;
+	private final boolean timed;
+	private final AttributesImpl attributes = new AttributesImpl();
+	private long nanos;
+	private boolean failed;
+	private boolean finished;
+
+	ValidatingStreamReader(XMLStreamReader reader, ValidatorHandler handler, boolean timed) throws SAXException {
+		super(reader);
+		this.handler = handler;
+		this.timed = timed;
+		handler.setContentHandler(null);
+		// without an ErrorHandler validation errors are thrown
+		handler.setErrorHandler(null);
+		long start = timed ? System.nanoTime() : 0;
+		handler.startDocument();
+		if (timed) {
+			nanos += System.nanoTime() - start;
+		}
+	}
+
+	@Override
+	public int next() throws XMLStreamException {
+		int event = super.next();
+		long start = timed ? System.nanoTime() : 0;
+		try {
+			forward(event);
+		} catch (SAXException e) {
+			failed = true;
+			record();
+			throw new XMLStreamException("Invalid Application: " + e.getMessage(), getLocation(), e);
+		} finally {
+			if (timed) {
+				nanos += System.nanoTime() - start;
+			}
+		}
+		return event;
+	}
+
+	@Override
+	public String getElementText() throws XMLStreamException {
+		if (getEventType() != XMLStreamConstants.START_ELEMENT) {
+			throw new XMLStreamException("Not at a start element", getLocation());
+		}
+		StringBuilder text = new StringBuilder();
+		for (int event = next(); event != XMLStreamConstants.END_ELEMENT; event = next()) {
+			if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+					|| event == XMLStreamConstants.SPACE || event == XMLStreamConstants.ENTITY_REFERENCE) {
+				text.append(getText());
+			} else if (event == XMLStreamConstants.START_ELEMENT || event == XMLStreamConstants.END_DOCUMENT) {
+				throw new XMLStreamException("Element has more than text content", getLocation());
+			}
+		}
+		return text.toString();
+	}
+
+	@Override
+	public int nextTag() throws XMLStreamException {
+		int event = next();
+		while (event == XMLStreamConstants.SPACE || event == XMLStreamConstants.COMMENT
+				|| event == XMLStreamConstants.PROCESSING_INSTRUCTION
+				|| (event == XMLStreamConstants.CHARACTERS && isWhiteSpace())) {
+			event = next();
+		}
+		if (event != XMLStreamConstants.START_ELEMENT && event != XMLStreamConstants.END_ELEMENT) {
+			throw new XMLStreamException("Expected a start or end element", getLocation());
+		}
+		return event;
+	}
+
+	/**
+	 * Reads and validates the rest of the document.
+	 */
+	public void finish() throws XMLStreamException {
+		while (!finished && hasNext()) {
+			next();
+		}
+		if (!finished) {
+			// the underlying reader did not report END_DOCUMENT
+			next(XMLStreamConstants.END_DOCUMENT);
+		}
+	}
+
+	private void next(int event) throws XMLStreamException {
+		try {
+			forward(event);
+		} catch (SAXException e) {
+			failed = true;
+			record();
+			throw new XMLStreamException("Invalid Application: " + e.getMessage(), getLocation(), e);
+		}
+	}
+
+	private void forward(int event) throws SAXException {
+		switch (event) {
+		case XMLStreamConstants.START_ELEMENT:
+			for (int i = 0; i < getNamespaceCount(); i++) {
+				handler.startPrefixMapping(prefix(getNamespacePrefix(i)), getNamespaceURI(i));
+			}
+			attributes.clear();
+			for (int i = 0; i < getAttributeCount(); i++) {
+				String prefix = getAttributePrefix(i);
+				String localName = getAttributeLocalName(i);
+				attributes.addAttribute(uri(getAttributeNamespace(i)), localName,
+						prefix == null || prefix.length() == 0 ? localName : prefix + ':' + localName,
+						getAttributeType(i), getAttributeValue(i));
+			}
+			handler.startElement(uri(getNamespaceURI()), getLocalName(), qName(), attributes);
+			break;
+		case XMLStreamConstants.END_ELEMENT:
+			handler.endElement(uri(getNamespaceURI()), getLocalName(), qName());
+			for (int i = 0; i < getNamespaceCount(); i++) {
+				handler.endPrefixMapping(prefix(getNamespacePrefix(i)));
+			}
+			break;
+		case XMLStreamConstants.CHARACTERS:
+		case XMLStreamConstants.CDATA:
+			handler.characters(getTextCharacters(), getTextStart(), getTextLength());
+			break;
+		case XMLStreamConstants.SPACE:
+			handler.ignorableWhitespace(getTextCharacters(), getTextStart(), getTextLength());
+			break;
+		case XMLStreamConstants.END_DOCUMENT:
+			if (!finished) {
+				finished = true;
+				handler.endDocument();
+				record();
+			}
+			break;
+		default:
+			break;
+		}
+	}
+
+	private void record() {
+		if (timed) {
+			ApplicationSchema.record(nanos, failed);
+		}
+	}
+
+	private String qName() {
+		String prefix = getPrefix();
+		return prefix == null || prefix.length() == 0 ? getLocalName() : prefix + ':' + getLocalName();
+	}
+
+	private static String prefix(String prefix) {
+		return prefix == null ? "" : prefix;
+	}
+
+	private static String uri(String uri) {
+		return uri == null ? "" : uri;
+	}
+}
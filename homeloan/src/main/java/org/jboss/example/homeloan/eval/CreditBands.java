@@ -0,0 +1,54 @@
+package org.jboss.example.homeloan.eval;
+
+import java.util.Arrays;
+
+/**
+ * The CreditScoreRange decision table as sorted, non-overlapping score
+ * ranges. A lookup is a binary search over the lower bounds. Each lookup
+ * gets its own CreditRating, since the fact is mutable and inserted into
+ * sessions evaluating concurrently.
+ */
+public final class CreditBands {
+
+	private final int[] from;
+	private final int[] to;
+	private final String[] values;
+
+	/**
+	 * @param from inclusive lower bounds, ascending
+	 * @param to inclusive upper bounds
+	 * @param values the rating of each range
+	 */
+	CreditBands(int[] from, int[] to, String[] values) {
+		this.from = from;
+		this.to = to;
+		this.values = values;
+	}
+
+	/**
+	 * @return a new rating of the score, null if it is in no band
+	 */
+	public CreditRating rating(int creditScore) {
+		String value = band(creditScore);
+		return value != null ? new CreditRating(value) : null;
+	}
+
+	/**
+	 * @return the rating value of the score, null if it is in no band
+	 */
+	public String band(int creditScore) {
+		int i = Arrays.binarySearch(from, creditScore);
+		if (i < 0) {
+			// the range starting below the score, if any
+			i = -i - 2;
+			if (i < 0) {
+				return null;
+			}
+		}
+		return creditScore <= to[i] ? values[i] : null;
+	}
+
+	public int size() {
+		return values.length;
+	}
+}
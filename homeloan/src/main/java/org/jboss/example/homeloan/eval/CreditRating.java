@@ -4,6 +4,13 @@ public class CreditRating {
 
 	private String value;
 
+	public CreditRating() {
+	}
+
+	public CreditRating(String value) {
+		this.value = value;
+	}
+
 	public String getValue() {
 		return value;
 	}
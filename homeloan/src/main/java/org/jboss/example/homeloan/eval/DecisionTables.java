@@ -0,0 +1,396 @@
+package org.jboss.example.homeloan.eval;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles the decision tables of mortgages.drl, the "Row N Pricing loans"
+ * and "Row N CreditScoreRange" rules generated from the spreadsheet, into
+ * interval indexes, and leaves the other rules as DRL for Drools.
+ *
+ * The rows are only taken out of the knowledge base if evaluating them
+ * outside of it cannot change the outcome: every row must have the shape the
+ * spreadsheet generates, the ranges of a table must not overlap, and the
+ * credit rating must fire before and the pricing after all remaining rules.
+ * Otherwise compiling fails and the rules are left to Drools.
+ */
+public final class DecisionTables {
+
+	static final String MORTGAGES = "mortgages.drl";
+	static final String PRICING = "Pricing loans";
+	static final String CREDIT = "CreditScoreRange";
+
+	// a rule with the comments right above it, e.g. "//from row number: 1"
+	private static final Pattern RULE = Pattern.compile(
+			"(?:^//[^\\n]*\\n)*^rule\\s+\"([^\"]+)\"(.*?)^end\\b[^\\n]*\\n?", Pattern.MULTILINE | Pattern.DOTALL);
+	private static final Pattern ROW = Pattern.compile("Row \\d+ (.+)");
+	private static final Pattern SALIENCE = Pattern.compile("\\bsalience\\s+(-?\\d+)");
+	private static final Pattern WHEN_THEN = Pattern.compile("\\bwhen\\b(.*)\\bthen\\b(.*)", Pattern.DOTALL);
+	private static final Pattern FACT = Pattern.compile("(?:\\w+\\s*:\\s*)?(\\w+)\\s*\\(([^)]*)\\)");
+	private static final Pattern CONSTRAINT = Pattern.compile("(\\w+)\\s*(>=|<=|==|>|<)\\s*(\\S+)");
+	private static final Pattern APPROVED = Pattern.compile("\\.setApproved\\(\\s*(true|false)\\s*\\)");
+	private static final Pattern INSURANCE_COST = Pattern.compile("\\.setInsuranceCost\\(\\s*(-?\\d+)\\s*\\)");
+	private static final Pattern APPROVED_RATE = Pattern.compile("\\.setApprovedRate\\(\\s*\"([^\"]*)\"\\s*\\)");
+	private static final Pattern RATING = Pattern.compile("\\.setValue\\(\\s*\"([^\"]*)\"\\s*\\)");
+
+	private final CreditBands creditBands;
+	private final PricingTable pricing;
+	private final String residualDrl;
+	private final List<String> ruleNames;
+
+	private DecisionTables(CreditBands creditBands, PricingTable pricing, String residualDrl, List<String> ruleNames) {
+		this.creditBands = creditBands;
+		this.pricing = pricing;
+		this.residualDrl = residualDrl;
+		this.ruleNames = Collections.unmodifiableList(ruleNames);
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the tables cannot be taken out of
+	 *             the rules
+	 */
+	public static DecisionTables compile(String drl) {
+		List<CreditRow> creditRows = new ArrayList<CreditRow>();
+		List<PricingRow> pricingRows = new ArrayList<PricingRow>();
+		List<String> ruleNames = new ArrayList<String>();
+		StringBuilder residual = new StringBuilder(drl.length());
+		int minSalience = Integer.MAX_VALUE;
+		int maxSalience = Integer.MIN_VALUE;
+		int last = 0;
+		Matcher rule = RULE.matcher(drl);
+		while (rule.find()) {
+			String name = rule.group(1);
+			String body = rule.group(2);
+			int salience = salience(body);
+			Matcher row = ROW.matcher(name);
+			String table = row.matches() ? row.group(1) : null;
+			if (CREDIT.equals(table)) {
+				creditRows.add(new CreditRow(name, salience, body));
+			} else if (PRICING.equals(table)) {
+				pricingRows.add(new PricingRow(name, salience, body));
+			} else {
+				minSalience = Math.min(minSalience, salience);
+				maxSalience = Math.max(maxSalience, salience);
+				continue;
+			}
+			ruleNames.add(name);
+			residual.append(drl, last, rule.start());
+			last = rule.end();
+		}
+		residual.append(drl, last, drl.length());
+		if (creditRows.isEmpty() || pricingRows.isEmpty()) {
+			throw new IllegalArgumentException("No " + CREDIT + " or " + PRICING + " rows");
+		}
+		for (CreditRow row : creditRows) {
+			if (row.salience <= maxSalience) {
+				throw new IllegalArgumentException(row.name + " does not fire before the other rules");
+			}
+			minSalience = Math.min(minSalience, row.salience);
+		}
+		for (PricingRow row : pricingRows) {
+			if (row.salience >= minSalience) {
+				throw new IllegalArgumentException(row.name + " does not fire after the other rules");
+			}
+		}
+		return new DecisionTables(creditBands(creditRows), pricingTable(pricingRows), residual.toString(), ruleNames);
+	}
+
+	/**
+	 * @return the tables of mortgages.drl, compiled on first use
+	 */
+	public static DecisionTables mortgages() {
+		return Mortgages.TABLES;
+	}
+
+	// holds the tables apart so that compiling them waits for the first use
+	private static final class Mortgages {
+		static final DecisionTables TABLES = compile(readDrl(MORTGAGES));
+	}
+
+	static String readDrl(String resource) {
+		InputStream in = DecisionTables.class.getClassLoader().getResourceAsStream(resource);
+		if (in == null) {
+			throw new IllegalStateException(resource + " not found on the classpath");
+		}
+		try {
+			Reader reader = new InputStreamReader(in, "UTF-8");
+			try {
+				StringBuilder drl = new StringBuilder();
+				char[] buffer = new char[4096];
+				for (int n = reader.read(buffer); n != -1; n = reader.read(buffer)) {
+					drl.append(buffer, 0, n);
+				}
+				return drl.toString();
+			} finally {
+				reader.close();
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to read " + resource, e);
+		}
+	}
+
+	public CreditBands getCreditBands() {
+		return creditBands;
+	}
+
+	public PricingTable getPricing() {
+		return pricing;
+	}
+
+	/**
+	 * @return the DRL without the table rows
+	 */
+	public String getResidualDrl() {
+		return residualDrl;
+	}
+
+	/**
+	 * @return the names of the rules compiled into the tables
+	 */
+	public List<String> getRuleNames() {
+		return ruleNames;
+	}
+
+	private static CreditBands creditBands(List<CreditRow> rows) {
+		Collections.sort(rows, new Comparator<CreditRow>() {
+			public int compare(CreditRow a, CreditRow b) {
+				return a.score.from < b.score.from ? -1 : a.score.from == b.score.from ? 0 : 1;
+			}
+		});
+		int[] from = new int[rows.size()];
+		int[] to = new int[rows.size()];
+		String[] values = new String[rows.size()];
+		for (int i = 0; i < rows.size(); i++) {
+			CreditRow row = rows.get(i);
+			if (i > 0 && row.score.from <= to[i - 1]) {
+				throw new IllegalArgumentException(row.name + " overlaps " + rows.get(i - 1).name);
+			}
+			from[i] = row.score.from;
+			to[i] = row.score.to;
+			values[i] = row.value;
+		}
+		return new CreditBands(from, to, values);
+	}
+
+	private static PricingTable pricingTable(List<PricingRow> all) {
+		Map<Integer, List<PricingRow>> byLength = new TreeMap<Integer, List<PricingRow>>();
+		for (PricingRow row : all) {
+			List<PricingRow> rows = byLength.get(row.lengthYears);
+			if (rows == null) {
+				rows = new ArrayList<PricingRow>();
+				byLength.put(row.lengthYears, rows);
+			}
+			rows.add(row);
+		}
+		int[] lengths = new int[byLength.size()];
+		PricingTable.Rows[] tables = new PricingTable.Rows[byLength.size()];
+		int l = 0;
+		for (Map.Entry<Integer, List<PricingRow>> entry : byLength.entrySet()) {
+			List<PricingRow> rows = entry.getValue();
+			Collections.sort(rows, new Comparator<PricingRow>() {
+				public int compare(PricingRow a, PricingRow b) {
+					return a.amount.from < b.amount.from ? -1 : a.amount.from == b.amount.from ? 0 : 1;
+				}
+			});
+			PricingTable.Rows table = new PricingTable.Rows(rows.size());
+			for (int i = 0; i < rows.size(); i++) {
+				PricingRow row = rows.get(i);
+				if (i > 0 && row.amount.from <= table.amountTo[i - 1]) {
+					throw new IllegalArgumentException(row.name + " overlaps " + rows.get(i - 1).name);
+				}
+				table.amountFrom[i] = row.amount.from;
+				table.amountTo[i] = row.amount.to;
+				table.depositFrom[i] = row.deposit.from;
+				table.depositTo[i] = row.deposit.to;
+				table.selfEmployed[i] = row.selfEmployed;
+				table.approved[i] = row.approved;
+				table.insuranceCost[i] = row.insuranceCost;
+				table.rate[i] = row.rate;
+			}
+			lengths[l] = entry.getKey();
+			tables[l++] = table;
+		}
+		return new PricingTable(lengths, tables);
+	}
+
+	private static int salience(String body) {
+		Matcher salience = SALIENCE.matcher(body);
+		return salience.find() ? Integer.parseInt(salience.group(1)) : 0;
+	}
+
+	/**
+	 * The facts of a row's conditions and their constraints, and the
+	 * statements of its consequence.
+	 */
+	private abstract static class Row {
+
+		final String name;
+		final int salience;
+		final Map<String, String> facts = new TreeMap<String, String>();
+		final String then;
+
+		Row(String name, int salience, String body) {
+			this.name = name;
+			this.salience = salience;
+			Matcher whenThen = WHEN_THEN.matcher(body);
+			if (!whenThen.find()) {
+				throw invalid("no when or then");
+			}
+			Matcher fact = FACT.matcher(whenThen.group(1));
+			int end = 0;
+			while (fact.find()) {
+				if (whenThen.group(1).substring(end, fact.start()).trim().length() > 0) {
+					throw invalid(whenThen.group(1).trim());
+				}
+				if (facts.put(fact.group(1), fact.group(2)) != null) {
+					throw invalid("more than one " + fact.group(1));
+				}
+				end = fact.end();
+			}
+			if (whenThen.group(1).substring(end).trim().length() > 0) {
+				throw invalid(whenThen.group(1).trim());
+			}
+			then = whenThen.group(2);
+		}
+
+		/**
+		 * Folds the constraints on the fact into one range per field, and
+		 * fails on any other field.
+		 */
+		Map<String, Range> ranges(String type, String... fields) {
+			String constraints = facts.get(type);
+			if (constraints == null) {
+				throw invalid("no " + type);
+			}
+			Map<String, Range> ranges = new TreeMap<String, Range>();
+			for (String field : fields) {
+				ranges.put(field, new Range());
+			}
+			for (String constraint : constraints.split(",")) {
+				if (constraint.trim().length() == 0) {
+					continue;
+				}
+				Matcher matcher = CONSTRAINT.matcher(constraint.trim());
+				if (!matcher.matches() || !ranges.containsKey(matcher.group(1))) {
+					throw invalid(constraint.trim());
+				}
+				try {
+					ranges.get(matcher.group(1)).add(matcher.group(2), Integer.parseInt(matcher.group(3)));
+				} catch (NumberFormatException e) {
+					throw invalid(constraint.trim());
+				}
+			}
+			return ranges;
+		}
+
+		String set(Pattern setter) {
+			Matcher matcher = setter.matcher(then);
+			if (!matcher.find()) {
+				throw invalid("no " + setter.pattern());
+			}
+			return matcher.group(1);
+		}
+
+		void statements(int count) {
+			int statements = 0;
+			for (String statement : then.split(";")) {
+				if (statement.trim().length() > 0) {
+					statements++;
+				}
+			}
+			if (statements != count) {
+				throw invalid("unexpected consequence " + then.trim());
+			}
+		}
+
+		IllegalArgumentException invalid(String reason) {
+			return new IllegalArgumentException("Rule \"" + name + "\" is not a table row: " + reason);
+		}
+	}
+
+	private static final class CreditRow extends Row {
+
+		final Range score;
+		final String value;
+
+		CreditRow(String name, int salience, String body) {
+			super(name, salience, body);
+			if (facts.size() != 1 || !then.contains("insertLogical")) {
+				throw invalid("not an Applicant rating");
+			}
+			score = ranges("Applicant", "creditScore").get("creditScore");
+			value = set(RATING);
+			// new, setValue, insertLogical
+			statements(3);
+		}
+	}
+
+	private static final class PricingRow extends Row {
+
+		final Range amount;
+		final Range deposit;
+		final int lengthYears;
+		final boolean selfEmployed;
+		final boolean approved;
+		final int insuranceCost;
+		final String rate;
+
+		PricingRow(String name, int salience, String body) {
+			super(name, salience, body);
+			if (facts.size() != 2) {
+				throw invalid("not a LoanApplication and IncomeSource");
+			}
+			Map<String, Range> application = ranges("LoanApplication", "amount", "deposit", "lengthYears");
+			amount = application.get("amount");
+			deposit = application.get("deposit");
+			Range length = application.get("lengthYears");
+			if (length.from != length.to) {
+				throw invalid("lengthYears is not a single value");
+			}
+			lengthYears = length.from;
+			String income = facts.get("IncomeSource");
+			if (income == null || !income.trim().matches("selfEmployed\\s*==\\s*(true|false)")) {
+				throw invalid("IncomeSource(" + income + ")");
+			}
+			selfEmployed = income.trim().endsWith("true");
+			approved = Boolean.parseBoolean(set(APPROVED));
+			insuranceCost = Integer.parseInt(set(INSURANCE_COST));
+			rate = set(APPROVED_RATE);
+			statements(3);
+		}
+	}
+
+	/**
+	 * An inclusive int range, unbounded until constrained.
+	 */
+	private static final class Range {
+
+		int from = Integer.MIN_VALUE;
+		int to = Integer.MAX_VALUE;
+
+		void add(String operator, int value) {
+			if (operator.equals(">")) {
+				from = Math.max(from, value + 1);
+			} else if (operator.equals(">=")) {
+				from = Math.max(from, value);
+			} else if (operator.equals("<")) {
+				to = Math.min(to, value - 1);
+			} else if (operator.equals("<=")) {
+				to = Math.min(to, value);
+			} else {
+				from = Math.max(from, value);
+				to = Math.min(to, value);
+			}
+		}
+	}
+}
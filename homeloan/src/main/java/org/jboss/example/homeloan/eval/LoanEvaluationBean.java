@@ -0,0 +1,17 @@
+package org.jboss.example.homeloan.eval;
+
+import org.jboss.example.homeloan.data.LoanApplication;
+import org.switchyard.component.bean.Service;
+
+@Service(LoanEvaluationService.class)
+public class LoanEvaluationBean implements LoanEvaluationService {
+
+	// compiles the knowledge base when the component is deployed rather than on the first application
+	private final MortgageRules rules = MortgageRules.getInstance();
+
+	@Override
+	public LoanApplication qualify(LoanApplication application) {
+		return rules.evaluate(application);
+	}
+
+}
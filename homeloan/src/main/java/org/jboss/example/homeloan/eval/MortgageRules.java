@@ -0,0 +1,328 @@
+package org.jboss.example.homeloan.eval;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.drools.core.common.DroolsObjectInputStream;
+import org.jboss.example.homeloan.data.Applicant;
+import org.jboss.example.homeloan.data.LoanApplication;
+import org.jboss.logging.Logger;
+import org.kie.api.KieBase;
+import org.kie.api.KieServices;
+import org.kie.api.builder.KieBuilder;
+import org.kie.api.builder.KieFileSystem;
+import org.kie.api.builder.Message;
+import org.kie.api.builder.ReleaseId;
+import org.kie.api.command.Command;
+import org.kie.api.command.KieCommands;
+import org.kie.api.runtime.ExecutionResults;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.StatelessKieSession;
+import org.kie.api.runtime.rule.FactHandle;
+
+/**
+ * The mortgages.drl knowledge base, compiled (or deserialized) once and shared
+ * by all evaluations.
+ *
+ * In POOLED mode evaluations borrow a stateful session from a pool, insert the
+ * facts, fire, and delete the facts again so the session can be handed to the
+ * next evaluation. In STATELESS mode a single shared StatelessKieSession is
+ * used, which still builds a session internally per call.
+ *
+ * Unless homeloan.eval.decisionTables is false, the pricing and credit score
+ * decision tables are evaluated from DecisionTables rather than by Drools:
+ * the knowledge base holds the remaining rules only, the application's
+ * CreditRating is looked up and inserted with the facts, and the application
+ * is priced after firing unless a rule retracted it.
+ *
+ * Evaluations sampled by RuleProfiling run in a pooled session with a
+ * RuleProfiler attached, in STATELESS mode too.
+ */
+public final class MortgageRules {
+
+	public enum Mode {
+		POOLED, STATELESS
+	}
+
+	private static final Logger LOG = Logger.getLogger(MortgageRules.class);
+
+	private static final String DRL = DecisionTables.MORTGAGES;
+	private static final ReleaseId RELEASE_ID = KieServices.Factory.get().newReleaseId(
+			"org.jboss.example", "homeloan-mortgages", "1.0");
+
+	private static final KieCommands COMMANDS = KieServices.Factory.get().getCommands();
+	private static final String FACTS = "facts";
+
+	private static final MortgageRules INSTANCE = create(
+			Boolean.parseBoolean(System.getProperty("homeloan.eval.decisionTables", "true")),
+			System.getProperty("homeloan.eval.kbase"),
+			Mode.valueOf(System.getProperty("homeloan.eval.mode", Mode.POOLED.name())),
+			Integer.getInteger("homeloan.eval.poolSize", Runtime.getRuntime().availableProcessors() * 2));
+
+	private final KieBase kieBase;
+	private final DecisionTables tables;
+	private final Mode mode;
+	private final StatelessKieSession statelessSession;
+	private final BlockingQueue<KieSession> pool;
+
+	public MortgageRules(KieBase kieBase, Mode mode, int poolSize) {
+		this(kieBase, null, mode, poolSize);
+	}
+
+	/**
+	 * @param kieBase compiled from the tables' residual DRL if tables is not
+	 *            null, otherwise from all of mortgages.drl
+	 */
+	public MortgageRules(KieBase kieBase, DecisionTables tables, Mode mode, int poolSize) {
+		this.kieBase = kieBase;
+		this.tables = tables;
+		this.mode = mode;
+		this.statelessSession = kieBase.newStatelessKieSession();
+		this.pool = new ArrayBlockingQueue<KieSession>(Math.max(1, poolSize));
+	}
+
+	public static MortgageRules getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * @param decisionTables whether to evaluate the decision tables outside of
+	 *            Drools; falls back to Drools if they cannot be
+	 * @param serializedKieBase see {@link #loadKieBase(String, String)}
+	 */
+	public static MortgageRules create(boolean decisionTables, String serializedKieBase, Mode mode, int poolSize) {
+		String drl = readDrl();
+		DecisionTables tables = decisionTables ? compileTables(drl) : null;
+		KieBase kieBase = loadKieBase(serializedKieBase, tables != null ? tables.getResidualDrl() : drl);
+		if (serializedKieBase != null && !containsTables(kieBase, tables)) {
+			LOG.warn(serializedKieBase + " was built with homeloan.eval.decisionTables=" + (tables == null)
+					+ ", compiling " + DRL);
+			kieBase = compileKieBase(tables != null ? tables.getResidualDrl() : drl);
+		}
+		return new MortgageRules(kieBase, tables, mode, poolSize);
+	}
+
+	private static DecisionTables compileTables(String drl) {
+		try {
+			DecisionTables tables = DecisionTables.compile(drl);
+			LOG.infof("Evaluating %d credit bands and %d pricing rows of %s as decision tables",
+					tables.getCreditBands().size(), tables.getPricing().size(), DRL);
+			return tables;
+		} catch (IllegalArgumentException e) {
+			LOG.warn("Leaving the decision tables of " + DRL + " to Drools: " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * @return whether the knowledge base holds exactly the rules the tables do
+	 *         not, i.e. none of the table rows if tables is not null and all of
+	 *         them otherwise
+	 */
+	private static boolean containsTables(KieBase kieBase, DecisionTables tables) {
+		DecisionTables all = tables;
+		if (all == null) {
+			try {
+				all = DecisionTables.compile(readDrl());
+			} catch (IllegalArgumentException e) {
+				return true;
+			}
+		}
+		for (String rule : all.getRuleNames()) {
+			if ((kieBase.getRule(MortgageRules.class.getPackage().getName(), rule) != null) == (tables != null)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public KieBase getKieBase() {
+		return kieBase;
+	}
+
+	public DecisionTables getDecisionTables() {
+		return tables;
+	}
+
+	/**
+	 * @return the sessions waiting in the pool for the next evaluation
+	 */
+	Collection<KieSession> getIdleSessions() {
+		return new ArrayList<KieSession>(pool);
+	}
+
+	public LoanApplication evaluate(LoanApplication application) {
+		CreditRating rating = null;
+		if (tables != null && application.getApplicant() != null) {
+			rating = tables.getCreditBands().rating(application.getApplicant().getCreditScore());
+		}
+		RuleProfiler profiler = RuleProfiling.getInstance().sample();
+		if (mode == Mode.STATELESS && profiler == null) {
+			List<Object> facts = new ArrayList<Object>(5);
+			facts.add(application);
+			addIfPresent(facts, application.getApplicant());
+			addIfPresent(facts, application.getBankruptcy());
+			addIfPresent(facts, application.getIncome());
+			if (tables == null) {
+				statelessSession.execute(facts);
+				return application;
+			}
+			addIfPresent(facts, rating);
+			if (!retracted(application, facts)) {
+				tables.getPricing().price(application);
+			}
+			return application;
+		}
+
+		KieSession session = pool.poll();
+		if (session == null) {
+			session = kieBase.newKieSession();
+		}
+		if (profiler != null) {
+			profiler.attach(session);
+		}
+		boolean reusable = false;
+		boolean retracted;
+		try {
+			FactHandle[] handles = new FactHandle[5];
+			handles[0] = session.insert(application);
+			handles[1] = insertIfPresent(session, application.getApplicant());
+			handles[2] = insertIfPresent(session, application.getBankruptcy());
+			handles[3] = insertIfPresent(session, application.getIncome());
+			handles[4] = insertIfPresent(session, rating);
+			session.fireAllRules();
+			retracted = session.getObject(handles[0]) == null;
+			reusable = reset(session, handles);
+		} finally {
+			if (profiler != null) {
+				profiler.detach(session);
+			}
+			if (!reusable || !pool.offer(session)) {
+				session.dispose();
+			}
+		}
+		if (tables != null && !retracted) {
+			tables.getPricing().price(application);
+		}
+		return application;
+	}
+
+	/**
+	 * Fires the stateless session and tells whether the rules retracted the
+	 * application, which takes asking for the facts left before the session is
+	 * disposed.
+	 */
+	private boolean retracted(LoanApplication application, List<Object> facts) {
+		List<Command<?>> commands = new ArrayList<Command<?>>(3);
+		commands.add(COMMANDS.newInsertElements(facts));
+		commands.add(COMMANDS.newFireAllRules());
+		commands.add(COMMANDS.newGetObjects(FACTS));
+		Command<?> batch = COMMANDS.newBatchExecution(commands);
+		ExecutionResults results = (ExecutionResults)statelessSession.execute(batch);
+		for (Object fact : (Collection<?>)results.getValue(FACTS)) {
+			if (fact == application) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Deletes the facts of an evaluation; logically inserted facts such as
+	 * CreditRating go with the facts that justified them.
+	 *
+	 * @return whether the session is empty again and can be reused
+	 */
+	private static boolean reset(KieSession session, FactHandle[] handles) {
+		for (FactHandle handle : handles) {
+			// the rules may have retracted the fact already
+			if (handle != null && session.getObject(handle) != null) {
+				session.delete(handle);
+			}
+		}
+		return session.getFactCount() == 0;
+	}
+
+	private static void addIfPresent(List<Object> facts, Object fact) {
+		if (fact != null) {
+			facts.add(fact);
+		}
+	}
+
+	private static FactHandle insertIfPresent(KieSession session, Object fact) {
+		return fact != null ? session.insert(fact) : null;
+	}
+
+	/**
+	 * Loads the knowledge base serialized by {@link #main(String[])} if a file
+	 * is given, otherwise compiles the DRL.
+	 */
+	public static KieBase loadKieBase(String serializedKieBase, String drl) {
+		if (serializedKieBase != null) {
+			try {
+				ObjectInputStream in = new DroolsObjectInputStream(
+						new FileInputStream(serializedKieBase), MortgageRules.class.getClassLoader());
+				try {
+					return (KieBase)in.readObject();
+				} finally {
+					in.close();
+				}
+			} catch (Exception e) {
+				LOG.warn("Unable to load knowledge base from " + serializedKieBase + ", compiling " + DRL, e);
+			}
+		}
+		return compileKieBase(drl);
+	}
+
+	/**
+	 * Compiles all of mortgages.drl from the classpath.
+	 */
+	public static KieBase compileKieBase() {
+		return compileKieBase(readDrl());
+	}
+
+	public static KieBase compileKieBase(String drl) {
+		KieServices services = KieServices.Factory.get();
+		KieFileSystem files = services.newKieFileSystem();
+		files.generateAndWritePomXML(RELEASE_ID);
+		files.write("src/main/resources/" + DRL, drl);
+		KieBuilder builder = services.newKieBuilder(files).buildAll();
+		if (builder.getResults().hasMessages(Message.Level.ERROR)) {
+			throw new IllegalStateException("Unable to compile " + DRL + ": " + builder.getResults().getMessages());
+		}
+		return services.newKieContainer(RELEASE_ID).getKieBase();
+	}
+
+	public static String readDrl() {
+		return DecisionTables.readDrl(DRL);
+	}
+
+	/**
+	 * Compiles mortgages.drl and serializes the knowledge base to the given
+	 * file, for use with the homeloan.eval.kbase property. The knowledge base
+	 * leaves out the decision tables unless homeloan.eval.decisionTables is
+	 * false, and must be used with the same setting.
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length != 1) {
+			System.err.println("Usage: MortgageRules <kbase file>");
+			System.exit(1);
+		}
+		ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(args[0]));
+		try {
+			String drl = readDrl();
+			DecisionTables tables = Boolean.parseBoolean(System.getProperty("homeloan.eval.decisionTables", "true"))
+					? compileTables(drl) : null;
+			out.writeObject(compileKieBase(tables != null ? tables.getResidualDrl() : drl));
+		} finally {
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package org.jboss.example.homeloan.eval;
+
+import java.util.Arrays;
+
+import org.jboss.example.homeloan.data.IncomeSource;
+import org.jboss.example.homeloan.data.LoanApplication;
+
+/**
+ * The "Pricing loans" decision table as an interval index: the rows are
+ * grouped by lengthYears, and the rows of one length by their amount range,
+ * sorted and non-overlapping. A lookup is two binary searches followed by the
+ * row's deposit and income checks.
+ */
+public final class PricingTable {
+
+	private final int[] lengths;
+	private final Rows[] rows;
+
+	PricingTable(int[] lengths, Rows[] rows) {
+		this.lengths = lengths;
+		this.rows = rows;
+	}
+
+	/**
+	 * Applies the row the application matches, as the rule of that row would.
+	 *
+	 * @return whether a row matched
+	 */
+	public boolean price(LoanApplication application) {
+		int l = Arrays.binarySearch(lengths, application.getLengthYears());
+		if (l < 0) {
+			return false;
+		}
+		Rows length = rows[l];
+		int row = length.find(application);
+		if (row < 0) {
+			return false;
+		}
+		application.setApproved(length.approved[row]);
+		application.setInsuranceCost(length.insuranceCost[row]);
+		application.setApprovedRate(length.rate[row]);
+		return true;
+	}
+
+	public int size() {
+		int size = 0;
+		for (Rows length : rows) {
+			size += length.rate.length;
+		}
+		return size;
+	}
+
+	/**
+	 * The rows of one lengthYears, by ascending amount. Ranges are inclusive.
+	 */
+	static final class Rows {
+
+		final int[] amountFrom;
+		final int[] amountTo;
+		final int[] depositFrom;
+		final int[] depositTo;
+		final boolean[] selfEmployed;
+		final boolean[] approved;
+		final int[] insuranceCost;
+		final String[] rate;
+
+		Rows(int size) {
+			amountFrom = new int[size];
+			amountTo = new int[size];
+			depositFrom = new int[size];
+			depositTo = new int[size];
+			selfEmployed = new boolean[size];
+			approved = new boolean[size];
+			insuranceCost = new int[size];
+			rate = new String[size];
+		}
+
+		/**
+		 * @return the index of the row the application matches, -1 if none
+		 */
+		int find(LoanApplication application) {
+			int amount = application.getAmount();
+			int i = Arrays.binarySearch(amountFrom, amount);
+			if (i < 0) {
+				// the range starting below the amount, if any
+				i = -i - 2;
+				if (i < 0) {
+					return -1;
+				}
+			}
+			if (amount > amountTo[i]) {
+				return -1;
+			}
+			int deposit = application.getDeposit();
+			if (deposit < depositFrom[i] || deposit > depositTo[i]) {
+				return -1;
+			}
+			IncomeSource income = application.getIncome();
+			if (income == null || income.isSelfEmployed() != selfEmployed[i]) {
+				return -1;
+			}
+			return i;
+		}
+	}
+}
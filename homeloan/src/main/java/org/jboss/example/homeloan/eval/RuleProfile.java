@@ -0,0 +1,166 @@
+package org.jboss.example.homeloan.eval;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.example.homeloan.jmx.MBeans;
+
+/**
+ * What one rule of mortgages.drl did in the sampled evaluations, as recorded
+ * by the RuleProfiler: matches created and cancelled, firings and the time
+ * spent in its consequence, and the facts its consequence inserted, updated
+ * and retracted. Facts the rule inserted that were retracted outside of a
+ * consequence lost their logical justification, and are counted as truth
+ * maintenance retracts.
+ *
+ * In mortgages.drl only the CreditScoreRange rows insert logically. With the
+ * decision tables evaluated outside of Drools (homeloan.eval.decisionTables)
+ * the CreditRating is inserted by MortgageRules as a plain fact and deleted
+ * with the other facts, so no rule has truth maintenance retracts; they are
+ * counted with the tables off only.
+ */
+public class RuleProfile implements RuleProfileMBean {
+
+	private static final ConcurrentMap<String, RuleProfile> RULES = new ConcurrentHashMap<String, RuleProfile>();
+
+	private final String rule;
+	private final AtomicLong matches = new AtomicLong();
+	private final AtomicLong cancellations = new AtomicLong();
+	private final AtomicLong firings = new AtomicLong();
+	private final AtomicLong consequenceNanos = new AtomicLong();
+	private final AtomicLong inserts = new AtomicLong();
+	private final AtomicLong updates = new AtomicLong();
+	private final AtomicLong retracts = new AtomicLong();
+	private final AtomicLong truthMaintenanceRetracts = new AtomicLong();
+
+	RuleProfile(String rule) {
+		this.rule = rule;
+	}
+
+	/**
+	 * Returns the profile of the named rule, creating and registering it with
+	 * JMX on first use.
+	 */
+	public static RuleProfile forRule(String rule) {
+		RuleProfile profile = RULES.get(rule);
+		if (profile == null) {
+			RuleProfile created = new RuleProfile(rule);
+			profile = RULES.putIfAbsent(rule, created);
+			if (profile == null) {
+				profile = created;
+				MBeans.register("RuleProfile", rule, profile);
+			}
+		}
+		return profile;
+	}
+
+	/**
+	 * @return the profiles of all rules seen so far, by name
+	 */
+	public static List<RuleProfile> all() {
+		List<RuleProfile> all = new ArrayList<RuleProfile>(RULES.values());
+		Collections.sort(all, new Comparator<RuleProfile>() {
+			public int compare(RuleProfile a, RuleProfile b) {
+				return a.rule.compareTo(b.rule);
+			}
+		});
+		return all;
+	}
+
+	void matched() {
+		matches.incrementAndGet();
+	}
+
+	void cancelled() {
+		cancellations.incrementAndGet();
+	}
+
+	void fired(long nanos) {
+		firings.incrementAndGet();
+		consequenceNanos.addAndGet(nanos);
+	}
+
+	void inserted() {
+		inserts.incrementAndGet();
+	}
+
+	void updated() {
+		updates.incrementAndGet();
+	}
+
+	void retracted() {
+		retracts.incrementAndGet();
+	}
+
+	void lostJustification() {
+		truthMaintenanceRetracts.incrementAndGet();
+	}
+
+	@Override
+	public String getRule() {
+		return rule;
+	}
+
+	@Override
+	public long getMatches() {
+		return matches.get();
+	}
+
+	@Override
+	public long getCancellations() {
+		return cancellations.get();
+	}
+
+	@Override
+	public long getFirings() {
+		return firings.get();
+	}
+
+	@Override
+	public double getConsequenceMillis() {
+		return consequenceNanos.get() / 1000000.0;
+	}
+
+	@Override
+	public double getMeanConsequenceMicros() {
+		long fired = firings.get();
+		return fired == 0 ? 0.0 : consequenceNanos.get() / 1000.0 / fired;
+	}
+
+	@Override
+	public long getInserts() {
+		return inserts.get();
+	}
+
+	@Override
+	public long getUpdates() {
+		return updates.get();
+	}
+
+	@Override
+	public long getRetracts() {
+		return retracts.get();
+	}
+
+	@Override
+	public long getTruthMaintenanceRetracts() {
+		return truthMaintenanceRetracts.get();
+	}
+
+	@Override
+	public void reset() {
+		matches.set(0);
+		cancellations.set(0);
+		firings.set(0);
+		consequenceNanos.set(0);
+		inserts.set(0);
+		updates.set(0);
+		retracts.set(0);
+		truthMaintenanceRetracts.set(0);
+	}
+}
@@ -0,0 +1,26 @@
+package org.jboss.example.homeloan.eval;
+
+public interface RuleProfileMBean {
+
+	String getRule();
+
+	long getMatches();
+
+	long getCancellations();
+
+	long getFirings();
+
+	double getConsequenceMillis();
+
+	double getMeanConsequenceMicros();
+
+	long getInserts();
+
+	long getUpdates();
+
+	long getRetracts();
+
+	long getTruthMaintenanceRetracts();
+
+	void reset();
+}
@@ -0,0 +1,110 @@
+package org.jboss.example.homeloan.eval;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.kie.api.event.rule.AfterMatchFiredEvent;
+import org.kie.api.event.rule.AgendaEventListener;
+import org.kie.api.event.rule.BeforeMatchFiredEvent;
+import org.kie.api.event.rule.DefaultAgendaEventListener;
+import org.kie.api.event.rule.MatchCancelledEvent;
+import org.kie.api.event.rule.MatchCreatedEvent;
+import org.kie.api.event.rule.ObjectDeletedEvent;
+import org.kie.api.event.rule.ObjectInsertedEvent;
+import org.kie.api.event.rule.ObjectUpdatedEvent;
+import org.kie.api.event.rule.WorkingMemoryEventListener;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.rule.FactHandle;
+import org.kie.api.runtime.rule.Match;
+
+/**
+ * Records one evaluation into the RuleProfiles: listens to the session's
+ * agenda for matches and firings, and to its working memory for the facts
+ * the consequences insert, update and retract. Attached to the session for a
+ * sampled evaluation only, and used by one thread at a time.
+ *
+ * Drools evaluates conditions in the network shared by all rules, so their
+ * cost is not attributed to single rules; it is the evaluation's time outside
+ * of the consequences, see RuleProfiling.
+ */
+public final class RuleProfiler extends DefaultAgendaEventListener implements WorkingMemoryEventListener {
+
+	private final RuleProfiling profiling;
+	// facts inserted by a consequence and still in the session, by rule
+	private final Map<FactHandle, RuleProfile> insertedByRules = new IdentityHashMap<FactHandle, RuleProfile>();
+	private RuleProfile firing;
+	private long firingSince;
+	private long consequenceNanos;
+	private long start;
+
+	RuleProfiler(RuleProfiling profiling) {
+		this.profiling = profiling;
+	}
+
+	public void attach(KieSession session) {
+		session.addEventListener((AgendaEventListener)this);
+		session.addEventListener((WorkingMemoryEventListener)this);
+		start = System.nanoTime();
+	}
+
+	public void detach(KieSession session) {
+		long nanos = System.nanoTime() - start;
+		session.removeEventListener((AgendaEventListener)this);
+		session.removeEventListener((WorkingMemoryEventListener)this);
+		profiling.evaluated(nanos, consequenceNanos);
+	}
+
+	@Override
+	public void matchCreated(MatchCreatedEvent event) {
+		profile(event.getMatch()).matched();
+	}
+
+	@Override
+	public void matchCancelled(MatchCancelledEvent event) {
+		profile(event.getMatch()).cancelled();
+	}
+
+	@Override
+	public void beforeMatchFired(BeforeMatchFiredEvent event) {
+		firing = profile(event.getMatch());
+		firingSince = System.nanoTime();
+	}
+
+	@Override
+	public void afterMatchFired(AfterMatchFiredEvent event) {
+		long nanos = System.nanoTime() - firingSince;
+		consequenceNanos += nanos;
+		firing.fired(nanos);
+		firing = null;
+	}
+
+	@Override
+	public void objectInserted(ObjectInsertedEvent event) {
+		if (firing != null) {
+			firing.inserted();
+			insertedByRules.put(event.getFactHandle(), firing);
+		}
+	}
+
+	@Override
+	public void objectUpdated(ObjectUpdatedEvent event) {
+		if (firing != null) {
+			firing.updated();
+		}
+	}
+
+	@Override
+	public void objectDeleted(ObjectDeletedEvent event) {
+		RuleProfile insertedBy = insertedByRules.remove(event.getFactHandle());
+		if (firing != null) {
+			firing.retracted();
+		} else if (insertedBy != null) {
+			// not retracted by a rule or by MortgageRules, which only deletes its own facts
+			insertedBy.lostJustification();
+		}
+	}
+
+	private static RuleProfile profile(Match match) {
+		return RuleProfile.forRule(match.getRule().getName());
+	}
+}
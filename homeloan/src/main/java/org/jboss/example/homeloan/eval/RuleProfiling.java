@@ -0,0 +1,108 @@
+package org.jboss.example.homeloan.eval;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.example.homeloan.jmx.MBeans;
+
+/**
+ * Turns the RuleProfiler on for every n-th evaluation, and sums up the time
+ * of the sampled evaluations: in the consequences of the rules, and outside
+ * of them, i.e. inserting and deleting facts, evaluating the conditions,
+ * truth maintenance and the agenda.
+ *
+ * Sampling is off unless homeloan.eval.profile.sampleEvery is set or the
+ * SampleEvery attribute is changed through JMX; an evaluation that is not
+ * sampled runs without listeners, so Drools does not even create the events.
+ */
+public final class RuleProfiling implements RuleProfilingMBean {
+
+	private static final RuleProfiling INSTANCE = new RuleProfiling(
+			Integer.getInteger("homeloan.eval.profile.sampleEvery", 0));
+
+	static {
+		MBeans.register("RuleProfiling", "LoanEvaluation", INSTANCE);
+	}
+
+	private volatile int sampleEvery;
+	private final AtomicLong calls = new AtomicLong();
+	private final AtomicLong evaluations = new AtomicLong();
+	private final AtomicLong evaluationNanos = new AtomicLong();
+	private final AtomicLong consequenceNanos = new AtomicLong();
+
+	RuleProfiling(int sampleEvery) {
+		this.sampleEvery = sampleEvery;
+	}
+
+	public static RuleProfiling getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * @return a profiler for the evaluation about to start, null unless it is
+	 *         sampled
+	 */
+	public RuleProfiler sample() {
+		int every = sampleEvery;
+		if (every <= 0 || every > 1 && calls.incrementAndGet() % every != 0) {
+			return null;
+		}
+		return new RuleProfiler(this);
+	}
+
+	void evaluated(long nanos, long consequenceNanos) {
+		evaluations.incrementAndGet();
+		evaluationNanos.addAndGet(nanos);
+		this.consequenceNanos.addAndGet(consequenceNanos);
+	}
+
+	@Override
+	public int getSampleEvery() {
+		return sampleEvery;
+	}
+
+	/**
+	 * @param sampleEvery profile every n-th evaluation, 0 to stop profiling
+	 */
+	@Override
+	public void setSampleEvery(int sampleEvery) {
+		this.sampleEvery = Math.max(0, sampleEvery);
+	}
+
+	@Override
+	public long getSampledEvaluations() {
+		return evaluations.get();
+	}
+
+	@Override
+	public double getMeanEvaluationMicros() {
+		return mean(evaluationNanos.get());
+	}
+
+	@Override
+	public double getMeanMatchMicros() {
+		return mean(evaluationNanos.get() - consequenceNanos.get());
+	}
+
+	@Override
+	public double getMeanConsequenceMicros() {
+		return mean(consequenceNanos.get());
+	}
+
+	private double mean(long nanos) {
+		long sampled = evaluations.get();
+		return sampled == 0 ? 0.0 : nanos / 1000.0 / sampled;
+	}
+
+	/**
+	 * Resets the totals and the profiles of all rules.
+	 */
+	@Override
+	public void reset() {
+		evaluations.set(0);
+		evaluationNanos.set(0);
+		consequenceNanos.set(0);
+		for (RuleProfile profile : RuleProfile.all()) {
+			profile.reset();
+		}
+	}
+}
@@ -0,0 +1,18 @@
+package org.jboss.example.homeloan.eval;
+
+public interface RuleProfilingMBean {
+
+	int getSampleEvery();
+
+	void setSampleEvery(int sampleEvery);
+
+	long getSampledEvaluations();
+
+	double getMeanEvaluationMicros();
+
+	double getMeanMatchMicros();
+
+	double getMeanConsequenceMicros();
+
+	void reset();
+}
@@ -1,15 +1,107 @@
 package org.jboss.example.homeloan.intake;
 
+import java.util.List;
+import java.util.Map;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.ProducerTemplate;
 import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.seda.SedaEndpoint;
+import org.apache.camel.model.RouteDefinition;
+import org.jboss.example.homeloan.data.Customer;
+import org.jboss.example.homeloan.lookup.CustomerBatchService;
+import org.jboss.logging.Logger;
 
 public class CamelServiceRoute extends RouteBuilder {
 
+	private static final Logger LOG = Logger.getLogger(CamelServiceRoute.class);
+
+	// batching is off unless more than one application may share a lookup
+	private static final int BATCH_SIZE = Integer.getInteger("homeloan.intake.batchSize", 0);
+	private static final long BATCH_WINDOW = Long.getLong("homeloan.intake.batchWindowMillis", 20);
+	// the concurrent consumers of the intake queues, see switchyard.xml
+	private static final int CONSUMERS = Integer.getInteger("homeloan.intake.consumers", 1);
+
+	// check credit alongside the customer lookup instead of in the prequalification process
+	private static final boolean CREDIT_CHECK =
+			Boolean.parseBoolean(System.getProperty("homeloan.intake.creditCheck", "true"));
+
+	// with async intake the lookup and prequalification stages get their own queues and workers
+	private static final boolean ASYNC = Boolean.getBoolean("homeloan.intake.async");
+	private static final int QUEUE_SIZE = Integer.getInteger("homeloan.intake.queueSize", 1000);
+	private static final int LOOKUP_WORKERS = Integer.getInteger("homeloan.intake.lookupWorkers", 4);
+	private static final int PREQUAL_WORKERS = Integer.getInteger("homeloan.intake.prequalWorkers", 8);
+
+	// copies of an application submitted within the window are dropped before the lookup
+	private static final long DEDUPE_WINDOW = Long.getLong("homeloan.intake.dedupeWindowMillis", 0);
+	private static final int DEDUPE_CAPACITY = Integer.getInteger("homeloan.intake.dedupeCapacity", 100000);
+
 	public void configure() {
-		from("switchyard://IntakeService")
-			.setProperty("LoanApplication").simple("${body}")
-			.setBody().simple("${body.applicant.ssn}")
-			.to("switchyard://CustomerLookup")
-			.filter(simple("${body} != null && ${body.size} > 0"))
+		String lookup = "direct:intake-lookup";
+		String prequalify = "direct:intake-prequalify";
+		IntakeStage lookupStage = null;
+		IntakeStage prequalStage = null;
+		if (ASYNC) {
+			// a batch can only fill up with as many applications as there are workers to wait for it
+			lookupStage = stage("intake-lookup", Math.max(LOOKUP_WORKERS, BATCH_SIZE));
+			prequalStage = stage("intake-prequalify", PREQUAL_WORKERS);
+			lookup = lookupStage.getUri();
+			prequalify = prequalStage.getUri();
+		}
+
+		if (DEDUPE_WINDOW > 0) {
+			DuplicateFilter duplicates = new DuplicateFilter(DEDUPE_WINDOW, DEDUPE_CAPACITY).register();
+			from("switchyard://IntakeService")
+				.filter(duplicates.firstSubmission())
+					.to(lookup)
+					.process(queued(lookupStage))
+				.end();
+		} else {
+			from("switchyard://IntakeService")
+				.to(lookup)
+				.process(queued(lookupStage));
+		}
+
+		String customer = "direct:intake-customer";
+		if (BATCH_SIZE > 1) {
+			customer = "direct:intake-batch";
+			if (!ASYNC && CONSUMERS < BATCH_SIZE) {
+				LOG.warn("Customer lookup batches of " + BATCH_SIZE + " cannot fill up with " + CONSUMERS
+						+ " intake consumer(s), set homeloan.intake.consumers to at least the batch size");
+			}
+			// each exchange waits for its batch, so it is acknowledged only once processed
+			from(customer)
+				.process(new CustomerBatcher(BATCH_SIZE, BATCH_WINDOW, batchLookup()));
+		} else {
+			from(customer)
+				.setBody().simple("${body.applicant.ssn}")
+				.to("switchyard://CustomerLookup");
+		}
+
+		if (CREDIT_CHECK) {
+			fromStage(lookup, lookupStage)
+				.setProperty("LoanApplication").simple("${body}")
+				.multicast(new CreditCheckStrategy()).parallelProcessing()
+					.to(customer, "direct:intake-credit")
+				.end()
+				.setHeader("CreditInfo").property("CreditInfo")
+				.to(prequalify)
+				.process(queued(prequalStage));
+
+			from("direct:intake-credit")
+				.setBody().simple("${property.LoanApplication.applicant}")
+				.to("switchyard://CreditService");
+		} else {
+			fromStage(lookup, lookupStage)
+				.setProperty("LoanApplication").simple("${body}")
+				.to(customer)
+				.to(prequalify)
+				.process(queued(prequalStage));
+		}
+
+		fromStage(prequalify, prequalStage)
+			.filter(simple("${body} != null"))
 					.beanRef("Loan", "customerUpdate(${property.LoanApplication}, ${body})")
 					.setHeader("ExistingCustomer").constant(true)
 			.end()
@@ -18,4 +110,42 @@ public class CamelServiceRoute extends RouteBuilder {
 			.to("switchyard://PreQualificationService");
 	}
 
+	private CustomerBatchService batchLookup() {
+		final ProducerTemplate template = getContext().createProducerTemplate();
+		return new CustomerBatchService() {
+			@SuppressWarnings("unchecked")
+			@Override
+			public Map<String, Customer> lookupAll(List<String> ssns) {
+				return template.requestBody("switchyard://CustomerBatchService", ssns, Map.class);
+			}
+		};
+	}
+
+	private IntakeStage stage(String name, int workers) {
+		IntakeStage stage = new IntakeStage(name, QUEUE_SIZE, workers);
+		return stage.register(getContext().getEndpoint(stage.getUri(), SedaEndpoint.class));
+	}
+
+	/**
+	 * Samples the queue depth of a stage with the exchange just queued, so
+	 * that a queue filling up while all its workers are busy shows in the
+	 * peak; does nothing without stages.
+	 */
+	private static Processor queued(IntakeStage stage) {
+		if (stage != null) {
+			return stage.sampler();
+		}
+		return new Processor() {
+			public void process(Exchange exchange) {
+			}
+		};
+	}
+
+	private RouteDefinition fromStage(String uri, IntakeStage stage) {
+		RouteDefinition route = from(uri);
+		if (stage != null) {
+			route.process(stage.sampler());
+		}
+		return route;
+	}
 }
@@ -0,0 +1,47 @@
+package org.jboss.example.homeloan.intake;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.processor.aggregate.AggregationStrategy;
+import org.jboss.logging.Logger;
+
+/**
+ * Gathers the replies of the parallel customer lookup and credit check: the
+ * customer (or null) becomes the body and the CreditInfo is kept in the
+ * "CreditInfo" property. A failed credit check is logged and dropped, which
+ * leaves the credit check to the prequalification process.
+ */
+public class CreditCheckStrategy implements AggregationStrategy {
+
+	private static final Logger LOG = Logger.getLogger(CreditCheckStrategy.class);
+
+	// multicast branch order in CamelServiceRoute
+	static final int CUSTOMER_LOOKUP = 0;
+	static final int CREDIT_CHECK = 1;
+
+	@Override
+	public Exchange aggregate(Exchange oldExchange, Exchange newExchange) {
+		Exchange result = oldExchange != null ? oldExchange : newExchange;
+		boolean credit = newExchange.getProperty(Exchange.MULTICAST_INDEX, Integer.class) == CREDIT_CHECK;
+		Object body = newExchange.hasOut() ? newExchange.getOut().getBody() : newExchange.getIn().getBody();
+		Exception failure = newExchange.getException();
+		if (result == newExchange) {
+			// the first reply seeds the result, starting from no customer
+			result.setOut(null);
+			result.setException(null);
+			result.getIn().setBody(null);
+		}
+		if (credit) {
+			if (failure == null) {
+				result.setProperty("CreditInfo", body);
+			} else {
+				LOG.warn("Credit check failed during intake, leaving it to the prequalification process", failure);
+			}
+		} else if (failure != null) {
+			result.setException(failure);
+		} else {
+			result.getIn().setBody(body);
+		}
+		return result;
+	}
+
+}
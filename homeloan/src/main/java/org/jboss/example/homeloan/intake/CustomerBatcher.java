@@ -0,0 +1,127 @@
+package org.jboss.example.homeloan.intake;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.jboss.example.homeloan.data.Customer;
+import org.jboss.example.homeloan.data.LoanApplication;
+import org.jboss.example.homeloan.lookup.CustomerBatchService;
+
+/**
+ * Looks up the customers of concurrent intake exchanges together, with one
+ * CustomerBatchService call per batch, and replaces each exchange's
+ * application with its customer, or null.
+ *
+ * A batch is looked up once batchSize applications have joined it, or once
+ * windowMillis have passed since the first one did, whichever comes first;
+ * lookups of different batches may run at the same time. Every exchange waits
+ * on its own thread for the lookup of its batch and then carries on with its
+ * own application, so an exchange, and with it the JMS delivery, only
+ * completes once its application has been processed. A batch can therefore
+ * hold no more applications than there are threads running intake, and the
+ * threads feeding this processor must number at least batchSize for batches
+ * to fill up.
+ */
+public class CustomerBatcher implements Processor {
+
+	private final int batchSize;
+	private final long windowMillis;
+	private final CustomerBatchService lookup;
+	private final Object lock = new Object();
+	// guarded by lock
+	private Batch open;
+
+	public CustomerBatcher(int batchSize, long windowMillis, CustomerBatchService lookup) {
+		if (batchSize < 1 || windowMillis < 0) {
+			throw new IllegalArgumentException("The customer batch size must be positive and the window not negative: "
+					+ batchSize + ", " + windowMillis);
+		}
+		this.batchSize = batchSize;
+		this.windowMillis = windowMillis;
+		this.lookup = lookup;
+	}
+
+	@Override
+	public void process(Exchange exchange) throws Exception {
+		exchange.getIn().setBody(customerFor(exchange.getIn().getBody(LoanApplication.class)));
+	}
+
+	/**
+	 * Waits for the lookup of the batch the application joins.
+	 *
+	 * @return the customer of the applicant, or null if there is none
+	 */
+	public Customer customerFor(LoanApplication application) throws InterruptedException {
+		String ssn = application.getApplicant().getSsn();
+		Batch batch;
+		boolean run = false;
+		synchronized (lock) {
+			if (open == null) {
+				open = new Batch(System.currentTimeMillis() + windowMillis);
+			}
+			batch = open;
+			batch.ssns.add(ssn);
+			while (!batch.done) {
+				long remaining = batch.deadline - System.currentTimeMillis();
+				if (!batch.started && (batch.ssns.size() >= batchSize || remaining <= 0)) {
+					batch.started = true;
+					open = null;
+					run = true;
+					break;
+				}
+				// once started, the batch is waited for until its lookup is done
+				lock.wait(batch.started ? 0 : remaining);
+			}
+		}
+		if (run) {
+			run(batch);
+		}
+		if (batch.failure != null) {
+			throw batch.failure;
+		}
+		return batch.customers.get(ssn);
+	}
+
+	/**
+	 * @return the number of applications waiting for the next lookup to start
+	 */
+	int waiting() {
+		synchronized (lock) {
+			return open != null ? open.ssns.size() : 0;
+		}
+	}
+
+	private void run(Batch batch) {
+		Map<String, Customer> customers = null;
+		RuntimeException failure = null;
+		try {
+			customers = lookup.lookupAll(batch.ssns);
+		} catch (RuntimeException e) {
+			failure = e;
+		}
+		synchronized (lock) {
+			batch.customers = customers;
+			batch.failure = failure;
+			batch.done = true;
+			lock.notifyAll();
+		}
+	}
+
+	private final class Batch {
+
+		final long deadline;
+		final List<String> ssns = new ArrayList<String>(batchSize);
+		// guarded by lock, and read after done is
+		Map<String, Customer> customers;
+		RuntimeException failure;
+		boolean started;
+		boolean done;
+
+		Batch(long deadline) {
+			this.deadline = deadline;
+		}
+	}
+}
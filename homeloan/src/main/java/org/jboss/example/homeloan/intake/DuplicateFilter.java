@@ -0,0 +1,185 @@
+package org.jboss.example.homeloan.intake;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Predicate;
+import org.apache.camel.spi.Synchronization;
+import org.jboss.example.homeloan.cache.BoundedCache;
+import org.jboss.example.homeloan.data.Applicant;
+import org.jboss.example.homeloan.data.Clock;
+import org.jboss.example.homeloan.data.IncomeSource;
+import org.jboss.example.homeloan.data.LoanApplication;
+import org.jboss.example.homeloan.jmx.MBeans;
+import org.jboss.logging.Logger;
+
+/**
+ * Recognises applications submitted again within a time window, e.g. the same
+ * application sent by the applicant over SOAP and by a broker over JMS, so
+ * that intake can drop the copies before they reach the customer lookup.
+ *
+ * An application is identified by its normalized content: the digits of the
+ * SSN, the amount, term, deposit and income. Every submission claims its key
+ * in the table of recent submissions with a single putIfAbsent, so of two
+ * copies arriving at the same time exactly one gets through. The table is a
+ * BoundedCache whose entries live for one window. When the table is full,
+ * older submissions are evicted and a repeat of them is let through. A
+ * submission whose processing fails gives its key up again, so that the
+ * redelivery of it is not dropped as a copy.
+ */
+public class DuplicateFilter implements DuplicateFilterMBean {
+
+	private static final Logger LOG = Logger.getLogger(DuplicateFilter.class);
+
+	private final long windowMillis;
+	private final int capacity;
+	private final BoundedCache<String, Long> submissions;
+	private final AtomicLong checked = new AtomicLong();
+	private final AtomicLong duplicates = new AtomicLong();
+	private final AtomicLong released = new AtomicLong();
+
+	/**
+	 * @param windowMillis
+	 *            how long after a submission a copy of it is dropped
+	 * @param capacity
+	 *            the number of distinct submissions expected within a window,
+	 *            which sizes the table
+	 */
+	public DuplicateFilter(long windowMillis, int capacity) {
+		if (windowMillis < 1 || capacity < 1) {
+			throw new IllegalArgumentException("The duplicate filter needs a positive window and capacity");
+		}
+		this.windowMillis = windowMillis;
+		this.capacity = capacity;
+		this.submissions = new BoundedCache<String, Long>("IntakeSubmissions", capacity, windowMillis, false);
+	}
+
+	/**
+	 * @return a predicate that lets the first submission of an application
+	 *         through and stops its copies, and that releases the submission if
+	 *         its exchange fails
+	 */
+	public Predicate firstSubmission() {
+		return new Predicate() {
+			public boolean matches(Exchange exchange) {
+				final LoanApplication application = exchange.getIn().getBody(LoanApplication.class);
+				if (isFirstSubmission(application)) {
+					exchange.addOnCompletion(new Synchronization() {
+						public void onComplete(Exchange completed) {
+						}
+
+						public void onFailure(Exchange failed) {
+							release(application);
+						}
+					});
+					return true;
+				}
+				LOG.debugf("Dropped duplicate submission of the application for SSN %s",
+						application.getApplicant().getSsn());
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Records the application and checks it against the submissions of the
+	 * last window; of concurrent copies only one is the first. Applications
+	 * without an SSN are never considered copies.
+	 */
+	public boolean isFirstSubmission(LoanApplication application) {
+		String key = key(application);
+		if (key == null) {
+			return true;
+		}
+		checked.incrementAndGet();
+		long now = Clock.get().currentTimeMillis();
+		while (true) {
+			Long submitted = submissions.putIfAbsent(key, now);
+			if (submitted == null) {
+				return true;
+			}
+			if (now - submitted < windowMillis) {
+				duplicates.incrementAndGet();
+				return false;
+			}
+			// recorded before the window, this submission starts a new one
+			if (submissions.replace(key, submitted, now)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Forgets the submission of an application whose processing failed, so
+	 * that the next submission of it is let through.
+	 */
+	public void release(LoanApplication application) {
+		String key = key(application);
+		if (key != null && submissions.remove(key) != null) {
+			released.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Exposes the counters of this filter, and of its table, over JMX.
+	 */
+	public DuplicateFilter register() {
+		submissions.register();
+		MBeans.register("DuplicateFilter", "intake", this);
+		return this;
+	}
+
+	public long getWindowMillis() {
+		return windowMillis;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public long getCheckedSubmissions() {
+		return checked.get();
+	}
+
+	public long getDuplicates() {
+		return duplicates.get();
+	}
+
+	public long getReleasedSubmissions() {
+		return released.get();
+	}
+
+	public int getTrackedSubmissions() {
+		return submissions.size();
+	}
+
+	/**
+	 * @return the normalized content of the application, or null if it has no
+	 *         SSN to identify it by
+	 */
+	static String key(LoanApplication application) {
+		Applicant applicant = application != null ? application.getApplicant() : null;
+		String ssn = applicant != null ? applicant.getSsn() : null;
+		if (ssn == null) {
+			return null;
+		}
+		StringBuilder key = new StringBuilder(48);
+		for (int i = 0; i < ssn.length(); i++) {
+			char c = ssn.charAt(i);
+			if (c >= '0' && c <= '9') {
+				key.append(c);
+			}
+		}
+		if (key.length() == 0) {
+			return null;
+		}
+		key.append('|').append(application.getAmount())
+			.append('|').append(application.getLengthYears())
+			.append('|').append(application.getDeposit());
+		IncomeSource income = application.getIncome();
+		if (income != null) {
+			key.append('|').append(income.getMonthlyAmount()).append(income.isSelfEmployed() ? "|S" : "|E");
+		}
+		return key.toString();
+	}
+}
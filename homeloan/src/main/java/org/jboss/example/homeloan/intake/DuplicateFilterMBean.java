@@ -0,0 +1,16 @@
+package org.jboss.example.homeloan.intake;
+
+public interface DuplicateFilterMBean {
+
+	long getWindowMillis();
+
+	int getCapacity();
+
+	long getCheckedSubmissions();
+
+	long getDuplicates();
+
+	long getReleasedSubmissions();
+
+	int getTrackedSubmissions();
+}
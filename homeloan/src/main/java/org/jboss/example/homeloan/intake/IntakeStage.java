@@ -0,0 +1,94 @@
+package org.jboss.example.homeloan.intake;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.component.seda.SedaEndpoint;
+import org.jboss.example.homeloan.jmx.MBeans;
+
+/**
+ * A bounded SEDA queue between two intake stages, served by its own pool of
+ * consumer threads. Producers block while the queue is full, which holds the
+ * upstream stage (and ultimately the JMS consumers) back when a downstream
+ * stage saturates.
+ */
+public class IntakeStage implements IntakeStageMBean {
+
+	private final String name;
+	private final String uri;
+	private final int capacity;
+	private final int workers;
+	private final AtomicInteger peak = new AtomicInteger();
+	private volatile SedaEndpoint endpoint;
+
+	public IntakeStage(String name, int capacity, int workers) {
+		if (capacity < 1 || workers < 1) {
+			throw new IllegalArgumentException("Stage " + name + " needs a positive capacity and worker count");
+		}
+		this.name = name;
+		this.capacity = capacity;
+		this.workers = workers;
+		// producers and consumers must use the same options, so both use this uri
+		this.uri = "seda:" + name + "?size=" + capacity + "&concurrentConsumers=" + workers
+				+ "&blockWhenFull=true";
+	}
+
+	public String getUri() {
+		return uri;
+	}
+
+	/**
+	 * Samples the queue depth for the peak statistic; the route runs it both
+	 * after queueing work and as work is picked up.
+	 */
+	public Processor sampler() {
+		return new Processor() {
+			public void process(Exchange exchange) {
+				sample();
+			}
+		};
+	}
+
+	void sample() {
+		int depth = getQueueDepth();
+		int current = peak.get();
+		while (depth > current && !peak.compareAndSet(current, depth)) {
+			current = peak.get();
+		}
+	}
+
+	/**
+	 * Exposes the queue depth of this stage over JMX.
+	 */
+	public IntakeStage register(SedaEndpoint endpoint) {
+		this.endpoint = endpoint;
+		MBeans.register("IntakeStage", name, this);
+		return this;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getQueueDepth() {
+		SedaEndpoint seda = endpoint;
+		return seda != null ? seda.getCurrentQueueSize() : 0;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public int getRemainingCapacity() {
+		return capacity - getQueueDepth();
+	}
+
+	public int getWorkers() {
+		return workers;
+	}
+
+	public int getPeakQueueDepth() {
+		return peak.get();
+	}
+}
@@ -0,0 +1,16 @@
+package org.jboss.example.homeloan.intake;
+
+public interface IntakeStageMBean {
+
+	String getName();
+
+	int getQueueDepth();
+
+	int getCapacity();
+
+	int getRemainingCapacity();
+
+	int getWorkers();
+
+	int getPeakQueueDepth();
+}
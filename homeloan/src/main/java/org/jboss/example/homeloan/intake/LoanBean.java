@@ -1,10 +1,10 @@
 package org.jboss.example.homeloan.intake;
 
-import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
 
 import javax.inject.Named;
 
+import org.jboss.example.homeloan.audit.AuditLog;
 import org.jboss.example.homeloan.data.Customer;
 import org.jboss.example.homeloan.data.LoanApplication;
 
@@ -22,18 +22,6 @@ public class LoanBean {
 	}
 	
 	public void summary(LoanApplication app) {
-		DecimalFormat df = new DecimalFormat("###,###.00");
-		System.out.println(
-				  "\n======== Loan Intake Summary ========="
-				+ "\nSSN           : " + app.getApplicant().getSsn()
-				+ "\nLoan Amount   : " + app.getAmount()
-				+ "\nLoan Length   : " + app.getLengthYears()
-				+ "\nIncome        : " + app.getIncome().getMonthlyAmount()
-				+ "\nName          : " + app.getApplicant().getFirstName() + " " + app.getApplicant().getLastName()
-				+ "\nAddress       : " + app.getApplicant().getStreetAddress()
-				+ "\nPostal Code   : " + app.getApplicant().getPostalCode()
-				+ "\nChecking Bal  : " + df.format(app.getApplicant().getCheckingBalance())
-				+ "\nSavings Bal   : " + df.format(app.getApplicant().getSavingsBalance())
-				+ "\n======================================\n");
+		AuditLog.getInstance().intake(app);
 	}
 }
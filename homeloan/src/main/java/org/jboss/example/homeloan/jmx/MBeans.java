@@ -0,0 +1,35 @@
+package org.jboss.example.homeloan.jmx;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.jboss.logging.Logger;
+
+public final class MBeans {
+
+	private static final Logger LOG = Logger.getLogger(MBeans.class);
+
+	private static final String DOMAIN = "org.jboss.example.homeloan";
+
+	private MBeans() {
+	}
+
+	/**
+	 * Registers the given MBean with the platform MBean server, replacing any
+	 * bean left behind by a previous deployment under the same name.
+	 */
+	public static void register(String type, String name, Object mbean) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+			if (server.isRegistered(objectName)) {
+				server.unregisterMBean(objectName);
+			}
+			server.registerMBean(mbean, objectName);
+		} catch (Exception e) {
+			LOG.warn("Unable to register MBean " + type + "/" + name, e);
+		}
+	}
+}
@@ -0,0 +1,21 @@
+package org.jboss.example.homeloan.lookup;
+
+import javax.inject.Inject;
+
+import org.jboss.example.homeloan.data.Customer;
+import org.switchyard.component.bean.Reference;
+import org.switchyard.component.bean.Service;
+
+@Service(CustomerLookup.class)
+public class CachingCustomerLookupBean implements CustomerLookup {
+
+	@Inject
+	@Reference
+	private CustomerDatabase database;
+
+	@Override
+	public Customer lookup(String ssn) {
+		return CustomerCache.getInstance().lookup(ssn, database);
+	}
+
+}
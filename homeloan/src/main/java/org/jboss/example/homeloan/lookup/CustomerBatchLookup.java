@@ -0,0 +1,139 @@
+package org.jboss.example.homeloan.lookup;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.inject.Inject;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+
+import org.jboss.example.homeloan.data.Customer;
+import org.jboss.logging.Logger;
+import org.switchyard.component.bean.Reference;
+import org.switchyard.component.bean.Service;
+
+/**
+ * Resolves the customers for a batch of applications with one
+ * SELECT ... WHERE SSN IN (...) instead of one query per application. The SQL
+ * binding only takes a single parameter, so the batch query goes to the
+ * datasource directly; SSNs a failed batch query leaves open are looked up one
+ * by one through the CustomerLookup service. Results are shared with the
+ * CustomerLookup cache.
+ */
+@Service(CustomerBatchService.class)
+public class CustomerBatchLookup implements CustomerBatchService {
+
+	private static final Logger LOG = Logger.getLogger(CustomerBatchLookup.class);
+
+	private static final String DATA_SOURCE = System.getProperty(
+			"homeloan.intake.batchDataSource", "java:jboss/datasources/CustomerDS");
+	// keeps the IN list well below the parameter limits of the federated sources
+	private static final int MAX_IN_LIST = 100;
+
+	private final CustomerCache cache = CustomerCache.getInstance();
+
+	@Inject
+	@Reference
+	private CustomerLookup lookup;
+
+	private volatile DataSource dataSource;
+
+	@Override
+	public Map<String, Customer> lookupAll(List<String> ssns) {
+		Map<String, Customer> customers = new HashMap<String, Customer>();
+		Set<String> misses = new LinkedHashSet<String>();
+		for (String ssn : ssns) {
+			Customer customer = cache.get(ssn);
+			if (customer != null) {
+				customers.put(ssn, customer);
+			} else if (!cache.isKnownNonCustomer(ssn)) {
+				misses.add(ssn);
+			}
+		}
+		List<String> queried = new ArrayList<String>(misses);
+		for (int from = 0; from < queried.size(); from += MAX_IN_LIST) {
+			List<String> chunk = queried.subList(from, Math.min(from + MAX_IN_LIST, queried.size()));
+			try {
+				query(chunk, customers);
+			} catch (Exception e) {
+				LOG.warn("Batch customer lookup of " + chunk.size() + " SSN(s) failed, looking them up one by one", e);
+				for (String ssn : chunk) {
+					try {
+						Customer customer = lookup.lookup(ssn);
+						if (customer != null) {
+							customers.put(ssn, customer);
+						}
+					} catch (RuntimeException single) {
+						// not cached, the applicant is treated as a new customer this time
+						LOG.warn("Customer lookup failed for one application", single);
+					}
+				}
+			}
+		}
+		return customers;
+	}
+
+	private void query(List<String> ssns, Map<String, Customer> customers) throws SQLException, NamingException {
+		StringBuilder sql = new StringBuilder("SELECT * FROM CUSTOMER WHERE SSN IN (");
+		for (int i = 0; i < ssns.size(); i++) {
+			sql.append(i == 0 ? "?" : ", ?");
+		}
+		sql.append(')');
+
+		Map<String, Customer> found = new HashMap<String, Customer>();
+		Connection connection = getDataSource().getConnection();
+		try {
+			PreparedStatement statement = connection.prepareStatement(sql.toString());
+			try {
+				for (int i = 0; i < ssns.size(); i++) {
+					statement.setString(i + 1, ssns.get(i));
+				}
+				ResultSet result = statement.executeQuery();
+				ResultSetMetaData metaData = result.getMetaData();
+				while (result.next()) {
+					// same case-insensitive row shape the SQL binding produces
+					Map<String, Object> row = new TreeMap<String, Object>(String.CASE_INSENSITIVE_ORDER);
+					for (int column = 1; column <= metaData.getColumnCount(); column++) {
+						row.put(metaData.getColumnLabel(column), result.getObject(column));
+					}
+					Customer customer = CustomerConverter.from(Collections.singletonList(row));
+					found.put(customer.getSsn(), customer);
+				}
+			} finally {
+				statement.close();
+			}
+		} finally {
+			connection.close();
+		}
+
+		cache.getStats().load();
+		for (String ssn : ssns) {
+			Customer customer = found.get(ssn);
+			cache.put(ssn, customer);
+			if (customer != null) {
+				customers.put(ssn, customer);
+			}
+		}
+	}
+
+	private DataSource getDataSource() throws NamingException {
+		DataSource result = dataSource;
+		if (result == null) {
+			result = (DataSource)new InitialContext().lookup(DATA_SOURCE);
+			dataSource = result;
+		}
+		return result;
+	}
+}
@@ -0,0 +1,15 @@
+package org.jboss.example.homeloan.lookup;
+
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.example.homeloan.data.Customer;
+
+public interface CustomerBatchService {
+
+	/**
+	 * @return the customers found by SSN; SSNs that are not customers have no
+	 *         entry
+	 */
+	Map<String, Customer> lookupAll(List<String> ssns);
+}
@@ -0,0 +1,120 @@
+package org.jboss.example.homeloan.lookup;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.jboss.example.homeloan.cache.BoundedCache;
+import org.jboss.example.homeloan.cache.BoundedCache.Eviction;
+import org.jboss.example.homeloan.cache.CacheStats;
+import org.jboss.example.homeloan.data.Customer;
+
+/**
+ * Read-through cache of customer records keyed by SSN. SSNs that are not
+ * customers are remembered as well (with their own, usually shorter TTL), and
+ * concurrent misses for the same SSN share a single database query.
+ */
+public final class CustomerCache {
+
+	private static final CustomerCache INSTANCE = new CustomerCache(
+			Integer.getInteger("homeloan.customer.maxEntries", 10000),
+			Long.getLong("homeloan.customer.ttlSeconds", 300) * 1000L,
+			Long.getLong("homeloan.customer.negativeTtlSeconds", 60) * 1000L,
+			Eviction.valueOf(System.getProperty("homeloan.customer.eviction", Eviction.LRU.name())));
+
+	private final BoundedCache<String, Customer> customers;
+	private final BoundedCache<String, Boolean> nonCustomers;
+	private final ConcurrentMap<String, FutureTask<Customer>> inflight =
+			new ConcurrentHashMap<String, FutureTask<Customer>>();
+
+	CustomerCache(int maxEntries, long ttlMillis, long negativeTtlMillis, Eviction eviction) {
+		customers = new BoundedCache<String, Customer>(
+				"CustomerLookup", maxEntries, ttlMillis, false, eviction).register();
+		nonCustomers = new BoundedCache<String, Boolean>(
+				"CustomerLookup-negative", maxEntries, negativeTtlMillis, false, eviction).register();
+	}
+
+	public static CustomerCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * @return the cached customer, null if the SSN is known not to be a customer
+	 *         or has not been looked up yet
+	 */
+	public Customer get(String ssn) {
+		return customers.get(ssn);
+	}
+
+	public boolean isKnownNonCustomer(String ssn) {
+		return nonCustomers.get(ssn) != null;
+	}
+
+	/**
+	 * Records the result of a database lookup made outside of this cache.
+	 */
+	public void put(String ssn, Customer customer) {
+		if (isCustomer(customer)) {
+			nonCustomers.remove(ssn);
+			customers.put(ssn, customer);
+		} else {
+			nonCustomers.put(ssn, Boolean.TRUE);
+		}
+	}
+
+	/**
+	 * @return the customer with the given SSN, or null if there is none
+	 */
+	public Customer lookup(final String ssn, final CustomerDatabase database) {
+		Customer customer = customers.get(ssn);
+		if (customer != null) {
+			return customer;
+		}
+		if (isKnownNonCustomer(ssn)) {
+			return null;
+		}
+		FutureTask<Customer> query = new FutureTask<Customer>(new Callable<Customer>() {
+			@Override
+			public Customer call() throws Exception {
+				Customer result = CustomerConverter.from(database.lookup(ssn));
+				customers.getStats().load();
+				put(ssn, result);
+				return isCustomer(result) ? result : null;
+			}
+		});
+		FutureTask<Customer> running = inflight.putIfAbsent(ssn, query);
+		if (running == null) {
+			try {
+				query.run();
+			} finally {
+				inflight.remove(ssn, query);
+			}
+			running = query;
+		}
+		try {
+			return running.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while looking up customer", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException)e.getCause();
+			}
+			throw new IllegalStateException("Customer lookup failed", e.getCause());
+		}
+	}
+
+	public CacheStats getStats() {
+		return customers.getStats();
+	}
+
+	public CacheStats getNegativeStats() {
+		return nonCustomers.getStats();
+	}
+
+	static boolean isCustomer(Customer customer) {
+		return customer != null && customer.getSsn() != null;
+	}
+}
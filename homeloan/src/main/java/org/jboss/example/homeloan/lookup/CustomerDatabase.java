@@ -0,0 +1,12 @@
+package org.jboss.example.homeloan.lookup;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The CUSTOMER table as seen through the SQL binding: one map per matching row.
+ */
+public interface CustomerDatabase {
+
+	List<Map<String, Object>> lookup(String ssn);
+}
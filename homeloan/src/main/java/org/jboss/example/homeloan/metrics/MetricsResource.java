@@ -0,0 +1,25 @@
+package org.jboss.example.homeloan.metrics;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+
+@Path("/")
+public interface MetricsResource {
+
+	@GET
+	@Produces("application/json")
+	public String services();
+
+	@GET
+	@Path("rules")
+	@Produces("application/json")
+	public String rules();
+
+	@GET
+	@Path("{service}")
+	@Produces("application/json")
+	public String service(@PathParam("service") String service);
+
+}
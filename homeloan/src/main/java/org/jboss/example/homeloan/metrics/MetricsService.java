@@ -0,0 +1,10 @@
+package org.jboss.example.homeloan.metrics;
+
+public interface MetricsService {
+
+	String services();
+
+	String service(String service);
+
+	String rules();
+}
@@ -0,0 +1,96 @@
+package org.jboss.example.homeloan.metrics;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Locale;
+
+import org.jboss.example.homeloan.eval.RuleProfile;
+import org.jboss.example.homeloan.eval.RuleProfiling;
+import org.jboss.example.homeloan.status.StatusStream;
+import org.switchyard.component.bean.Service;
+
+/**
+ * Serves the ServiceMetrics as JSON, all services keyed by name or a single
+ * service, and the rule profiles of the LoanEvaluation component.
+ */
+@Service(MetricsService.class)
+public class MetricsServiceBean implements MetricsService {
+
+	@Override
+	public String services() {
+		StringWriter json = new StringWriter();
+		json.write('{');
+		boolean first = true;
+		for (ServiceMetrics metrics : ServiceMetrics.all()) {
+			if (!first) {
+				json.write(',');
+			}
+			first = false;
+			name(json, metrics.getName());
+			json.write(append(new StringBuilder(), metrics).toString());
+		}
+		json.write('}');
+		return json.toString();
+	}
+
+	@Override
+	public String service(String service) {
+		ServiceMetrics metrics = ServiceMetrics.get(service);
+		return metrics == null ? null : append(new StringBuilder(), metrics).toString();
+	}
+
+	/**
+	 * The sampled evaluations and the profiles of the rules, keyed by rule
+	 * name. Counts are of the sampled evaluations only; see RuleProfile for
+	 * when truth maintenance retracts are counted.
+	 */
+	@Override
+	public String rules() {
+		RuleProfiling profiling = RuleProfiling.getInstance();
+		StringWriter json = new StringWriter();
+		json.write(String.format(Locale.ROOT,
+				"{\"sampleEvery\":%d,\"sampledEvaluations\":%d,\"meanEvaluationMicros\":%.3f,"
+						+ "\"meanMatchMicros\":%.3f,\"meanConsequenceMicros\":%.3f,\"rules\":{",
+				profiling.getSampleEvery(), profiling.getSampledEvaluations(), profiling.getMeanEvaluationMicros(),
+				profiling.getMeanMatchMicros(), profiling.getMeanConsequenceMicros()));
+		boolean first = true;
+		for (RuleProfile profile : RuleProfile.all()) {
+			if (!first) {
+				json.write(',');
+			}
+			first = false;
+			name(json, profile.getRule());
+			json.write(String.format(Locale.ROOT,
+					"{\"matches\":%d,\"cancellations\":%d,\"firings\":%d,\"consequenceMillis\":%.3f,"
+							+ "\"meanConsequenceMicros\":%.3f,\"inserts\":%d,\"updates\":%d,\"retracts\":%d,"
+							+ "\"truthMaintenanceRetracts\":%d}",
+					profile.getMatches(), profile.getCancellations(), profile.getFirings(),
+					profile.getConsequenceMillis(), profile.getMeanConsequenceMicros(), profile.getInserts(),
+					profile.getUpdates(), profile.getRetracts(), profile.getTruthMaintenanceRetracts()));
+		}
+		json.write("}}");
+		return json.toString();
+	}
+
+	/**
+	 * Writes a name, e.g. of a rule, escaped as a JSON object key.
+	 */
+	private static void name(StringWriter json, String name) {
+		try {
+			StatusStream.string(json, name);
+		} catch (IOException e) {
+			// not thrown by a StringWriter
+			throw new IllegalStateException(e);
+		}
+		json.write(':');
+	}
+
+	private static StringBuilder append(StringBuilder json, ServiceMetrics metrics) {
+		return json.append(String.format(Locale.ROOT,
+				"{\"invocations\":%d,\"errors\":%d,\"throughput\":%.2f,\"meanMillis\":%.3f,"
+						+ "\"medianMillis\":%.3f,\"p90Millis\":%.3f,\"p99Millis\":%.3f,\"maxMillis\":%.3f}",
+				metrics.getInvocations(), metrics.getErrors(), metrics.getThroughput(), metrics.getMeanMillis(),
+				metrics.getMedianMillis(), metrics.get90thPercentileMillis(), metrics.get99thPercentileMillis(),
+				metrics.getMaxMillis()));
+	}
+}
@@ -0,0 +1,145 @@
+package org.jboss.example.homeloan.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.example.homeloan.jmx.MBeans;
+
+/**
+ * Invocation count, error count and latency of one SwitchYard service, as
+ * recorded by the MetricsInterceptor. The latency of a service includes the
+ * services it calls, so e.g. IntakeService covers the whole intake.
+ */
+public class ServiceMetrics implements ServiceMetricsMBean {
+
+	private static final ConcurrentMap<String, ServiceMetrics> SERVICES = new ConcurrentHashMap<String, ServiceMetrics>();
+
+	private final String name;
+	private final AtomicLong invocations = new AtomicLong();
+	private final AtomicLong errors = new AtomicLong();
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private volatile long since = System.currentTimeMillis();
+
+	ServiceMetrics(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Returns the metrics of the named service, creating and registering them
+	 * with JMX on first use.
+	 */
+	public static ServiceMetrics forService(String name) {
+		ServiceMetrics metrics = SERVICES.get(name);
+		if (metrics == null) {
+			ServiceMetrics created = new ServiceMetrics(name);
+			metrics = SERVICES.putIfAbsent(name, created);
+			if (metrics == null) {
+				metrics = created;
+				MBeans.register("ServiceMetrics", name, metrics);
+			}
+		}
+		return metrics;
+	}
+
+	/**
+	 * @return the metrics of the service with the given name, or null if it
+	 *         has not been invoked
+	 */
+	public static ServiceMetrics get(String name) {
+		return SERVICES.get(name);
+	}
+
+	/**
+	 * @return the metrics of all services invoked so far, by name
+	 */
+	public static List<ServiceMetrics> all() {
+		List<ServiceMetrics> all = new ArrayList<ServiceMetrics>(SERVICES.values());
+		Collections.sort(all, new Comparator<ServiceMetrics>() {
+			public int compare(ServiceMetrics a, ServiceMetrics b) {
+				return a.name.compareTo(b.name);
+			}
+		});
+		return all;
+	}
+
+	public void record(long nanos, boolean failed) {
+		invocations.incrementAndGet();
+		if (failed) {
+			errors.incrementAndGet();
+		}
+		latency.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public long getInvocations() {
+		return invocations.get();
+	}
+
+	@Override
+	public long getErrors() {
+		return errors.get();
+	}
+
+	/**
+	 * @return invocations per second since the metrics were created or reset
+	 */
+	@Override
+	public double getThroughput() {
+		long elapsed = System.currentTimeMillis() - since;
+		return elapsed <= 0 ? 0.0 : invocations.get() * 1000.0 / elapsed;
+	}
+
+	@Override
+	public double getMeanMillis() {
+		return latency.getMean() / 1000.0;
+	}
+
+	@Override
+	public double getMedianMillis() {
+		return latency.getPercentile(50) / 1000.0;
+	}
+
+	@Override
+	public double get90thPercentileMillis() {
+		return latency.getPercentile(90) / 1000.0;
+	}
+
+	@Override
+	public double get99thPercentileMillis() {
+		return latency.getPercentile(99) / 1000.0;
+	}
+
+	@Override
+	public double getMaxMillis() {
+		return latency.getMax() / 1000.0;
+	}
+
+	@Override
+	public void reset() {
+		invocations.set(0);
+		errors.set(0);
+		latency.reset();
+		since = System.currentTimeMillis();
+	}
+
+	public String toString() {
+		return "ServiceMetrics :: "
+				+ "name=" + getName()
+				+ "|invocations=" + getInvocations()
+				+ "|errors=" + getErrors()
+				+ "|meanMillis=" + getMeanMillis()
+				+ "|p99Millis=" + get99thPercentileMillis()
+				+ "|maxMillis=" + getMaxMillis();
+	}
+}
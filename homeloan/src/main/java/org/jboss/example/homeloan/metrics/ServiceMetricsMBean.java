@@ -0,0 +1,24 @@
+package org.jboss.example.homeloan.metrics;
+
+public interface ServiceMetricsMBean {
+
+	String getName();
+
+	long getInvocations();
+
+	long getErrors();
+
+	double getThroughput();
+
+	double getMeanMillis();
+
+	double getMedianMillis();
+
+	double get90thPercentileMillis();
+
+	double get99thPercentileMillis();
+
+	double getMaxMillis();
+
+	void reset();
+}
@@ -0,0 +1,77 @@
+package org.jboss.example.homeloan.prequal;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import org.jboss.logging.Logger;
+
+/**
+ * Defers work that cannot be undone, such as status updates, status events
+ * and audit records, until the JTA transaction of the calling thread commits.
+ * It is dropped if the transaction rolls back. Without a transaction, as in
+ * the non-persistent prequalification process, the work runs straight away.
+ */
+public final class AfterCommit {
+
+	private static final Logger LOG = Logger.getLogger(AfterCommit.class);
+
+	private static final String REGISTRY = "java:comp/TransactionSynchronizationRegistry";
+
+	private static volatile TransactionSynchronizationRegistry registry;
+	private static volatile boolean looked;
+
+	private AfterCommit() {
+	}
+
+	public static void run(final Runnable work) {
+		TransactionSynchronizationRegistry transactions = registry();
+		int status = transactions != null ? transactions.getTransactionStatus() : Status.STATUS_NO_TRANSACTION;
+		if (status == Status.STATUS_NO_TRANSACTION) {
+			work.run();
+			return;
+		}
+		if (status == Status.STATUS_MARKED_ROLLBACK) {
+			// registering would fail, and the work would be dropped anyway
+			return;
+		}
+		transactions.registerInterposedSynchronization(new Synchronization() {
+			public void beforeCompletion() {
+			}
+
+			public void afterCompletion(int status) {
+				if (status == Status.STATUS_COMMITTED) {
+					try {
+						work.run();
+					} catch (RuntimeException e) {
+						// the transaction manager would only log it without saying what ran
+						LOG.warn("Work after the commit failed", e);
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Replaces the registry looked up in JNDI, e.g. in tests; null looks it
+	 * up again.
+	 */
+	static void setRegistry(TransactionSynchronizationRegistry transactions) {
+		registry = transactions;
+		looked = transactions != null;
+	}
+
+	private static TransactionSynchronizationRegistry registry() {
+		if (!looked) {
+			try {
+				registry = (TransactionSynchronizationRegistry)new InitialContext().lookup(REGISTRY);
+			} catch (NamingException e) {
+				LOG.debug("No transaction synchronization registry, running work straight away", e);
+			}
+			looked = true;
+		}
+		return registry;
+	}
+}
@@ -0,0 +1,62 @@
+package org.jboss.example.homeloan.prequal;
+
+import org.drools.core.marshalling.impl.ClassObjectMarshallingStrategyAcceptor;
+import org.drools.core.marshalling.impl.SerializablePlaceholderResolverStrategy;
+import org.kie.api.event.KieRuntimeEventManager;
+import org.kie.api.event.process.DefaultProcessEventListener;
+import org.kie.api.event.process.ProcessStartedEvent;
+import org.kie.api.marshalling.ObjectMarshallingStrategy;
+import org.kie.api.runtime.Environment;
+import org.kie.api.runtime.EnvironmentName;
+import org.kie.api.runtime.KieRuntime;
+
+/**
+ * Installs the DataMarshallingStrategy in front of the marshalling strategies
+ * of the session it listens to. The strategies are looked up in the session
+ * environment whenever a process instance or work item is written or read.
+ * Task content is marshalled by ContentMarshallerHelper with the environment
+ * of the task service, which the runtime manager builds on the same
+ * RuntimeEnvironment as the session, so installing the strategies as the
+ * session is set up covers task content as well; DataMarshallingListenerTest
+ * round-trips task content through ContentMarshallerHelper.
+ *
+ * The strategies already configured stay behind it for every other variable,
+ * and to read the snapshots they wrote before.
+ */
+public class DataMarshallingListener extends DefaultProcessEventListener {
+
+	public DataMarshallingListener() {
+	}
+
+	public DataMarshallingListener(KieRuntimeEventManager runtime) {
+		if (runtime instanceof KieRuntime) {
+			install(((KieRuntime)runtime).getEnvironment());
+		}
+	}
+
+	@Override
+	public void beforeProcessStarted(ProcessStartedEvent event) {
+		install(event.getKieRuntime().getEnvironment());
+	}
+
+	public static void install(Environment env) {
+		synchronized (env) {
+			ObjectMarshallingStrategy[] strategies =
+					(ObjectMarshallingStrategy[])env.get(EnvironmentName.OBJECT_MARSHALLING_STRATEGIES);
+			if (strategies == null) {
+				// the jBPM default
+				strategies = new ObjectMarshallingStrategy[] {
+						new SerializablePlaceholderResolverStrategy(ClassObjectMarshallingStrategyAcceptor.DEFAULT) };
+			}
+			for (ObjectMarshallingStrategy strategy : strategies) {
+				if (strategy instanceof DataMarshallingStrategy) {
+					return;
+				}
+			}
+			ObjectMarshallingStrategy[] installed = new ObjectMarshallingStrategy[strategies.length + 1];
+			installed[0] = new DataMarshallingStrategy();
+			System.arraycopy(strategies, 0, installed, 1, strategies.length);
+			env.set(EnvironmentName.OBJECT_MARSHALLING_STRATEGIES, installed);
+		}
+	}
+}
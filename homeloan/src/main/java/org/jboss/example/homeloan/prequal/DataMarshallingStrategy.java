@@ -0,0 +1,219 @@
+package org.jboss.example.homeloan.prequal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.util.Date;
+
+import org.jboss.example.homeloan.data.Applicant;
+import org.jboss.example.homeloan.data.Bankruptcy;
+import org.jboss.example.homeloan.data.CreditInfo;
+import org.jboss.example.homeloan.data.IncomeSource;
+import org.jboss.example.homeloan.data.LoanApplication;
+import org.jboss.example.homeloan.data.LoanApplicationCodec;
+import org.jboss.example.homeloan.data.Qualification;
+import org.kie.api.marshalling.ObjectMarshallingStrategy;
+
+/**
+ * Marshals the homeloan data classes held in process variables and task
+ * content with an explicit format, instead of Java serialization.
+ *
+ * Every value starts with a version byte and a type byte. A LoanApplication
+ * is written in the LoanApplicationCodec format; the other classes are written
+ * field by field with DataOutput, strings as a presence flag and modified
+ * UTF-8, dates as millis with Long.MIN_VALUE for none. Subclasses of the data
+ * classes are left to the other strategies.
+ *
+ * See DataMarshallingListener for how the strategy is installed.
+ */
+public class DataMarshallingStrategy implements ObjectMarshallingStrategy {
+
+	public static final int VERSION = 1;
+
+	private static final int LOAN_APPLICATION = 1;
+	private static final int APPLICANT = 2;
+	private static final int QUALIFICATION = 3;
+	private static final int INCOME = 4;
+	private static final int BANKRUPTCY = 5;
+	private static final int CREDIT_INFO = 6;
+
+	private static final long NO_DATE = Long.MIN_VALUE;
+
+	public boolean accept(Object object) {
+		if (object == null) {
+			return false;
+		}
+		Class<?> type = object.getClass();
+		return type == LoanApplication.class || type == Applicant.class || type == Qualification.class
+				|| type == IncomeSource.class || type == Bankruptcy.class || type == CreditInfo.class;
+	}
+
+	public byte[] marshal(Context context, ObjectOutputStream os, Object object) throws IOException {
+		return toBytes(object);
+	}
+
+	public Object unmarshal(Context context, ObjectInputStream is, byte[] object, ClassLoader classloader)
+			throws IOException {
+		return fromBytes(object);
+	}
+
+	public void write(ObjectOutputStream os, Object object) throws IOException {
+		byte[] bytes = toBytes(object);
+		os.writeInt(bytes.length);
+		os.write(bytes);
+	}
+
+	public Object read(ObjectInputStream os) throws IOException {
+		byte[] bytes = new byte[os.readInt()];
+		os.readFully(bytes);
+		return fromBytes(bytes);
+	}
+
+	public Context createContext() {
+		// no state shared between the values of a snapshot
+		return null;
+	}
+
+	public static byte[] toBytes(Object object) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeByte(VERSION);
+		if (object instanceof LoanApplication) {
+			byte[] application = LoanApplicationCodec.encode((LoanApplication)object);
+			out.writeByte(LOAN_APPLICATION);
+			out.writeInt(application.length);
+			out.write(application);
+		} else if (object instanceof Applicant) {
+			out.writeByte(APPLICANT);
+			writeApplicant(out, (Applicant)object);
+		} else if (object instanceof Qualification) {
+			Qualification qualification = (Qualification)object;
+			out.writeByte(QUALIFICATION);
+			writeString(out, qualification.getStatus());
+			writeString(out, qualification.getRate());
+			writeString(out, qualification.getExplanation());
+			out.writeInt(qualification.getCost());
+		} else if (object instanceof IncomeSource) {
+			IncomeSource income = (IncomeSource)object;
+			out.writeByte(INCOME);
+			out.writeInt(income.getMonthlyAmount());
+			out.writeBoolean(income.isSelfEmployed());
+		} else if (object instanceof Bankruptcy) {
+			Bankruptcy bankruptcy = (Bankruptcy)object;
+			out.writeByte(BANKRUPTCY);
+			out.writeInt(bankruptcy.getAmountOwed());
+			out.writeInt(bankruptcy.getYearOfOccurrence());
+		} else if (object instanceof CreditInfo) {
+			CreditInfo credit = (CreditInfo)object;
+			out.writeByte(CREDIT_INFO);
+			out.writeInt(credit.getScore());
+			out.writeBoolean(credit.getApplicant() != null);
+			if (credit.getApplicant() != null) {
+				writeApplicant(out, credit.getApplicant());
+			}
+		} else {
+			throw new IllegalArgumentException("Not a homeloan data object: "
+					+ (object == null ? null : object.getClass().getName()));
+		}
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	public static Object fromBytes(byte[] bytes) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+		int version = in.readByte();
+		if (version < 1 || version > VERSION) {
+			throw new StreamCorruptedException("Unsupported homeloan data version " + version);
+		}
+		int type = in.readByte();
+		switch (type) {
+		case LOAN_APPLICATION:
+			byte[] application = new byte[in.readInt()];
+			in.readFully(application);
+			try {
+				return LoanApplicationCodec.decode(application);
+			} catch (IllegalArgumentException e) {
+				throw new StreamCorruptedException(e.getMessage());
+			}
+		case APPLICANT:
+			return readApplicant(in);
+		case QUALIFICATION:
+			Qualification qualification = new Qualification();
+			qualification.setStatus(readString(in));
+			qualification.setRate(readString(in));
+			qualification.setExplanation(readString(in));
+			qualification.setCost(in.readInt());
+			return qualification;
+		case INCOME:
+			IncomeSource income = new IncomeSource();
+			income.setMonthlyAmount(in.readInt());
+			income.setSelfEmployed(in.readBoolean());
+			return income;
+		case BANKRUPTCY:
+			Bankruptcy bankruptcy = new Bankruptcy();
+			bankruptcy.setAmountOwed(in.readInt());
+			bankruptcy.setYearOfOccurrence(in.readInt());
+			return bankruptcy;
+		case CREDIT_INFO:
+			CreditInfo credit = new CreditInfo();
+			credit.setScore(in.readInt());
+			if (in.readBoolean()) {
+				credit.setApplicant(readApplicant(in));
+			}
+			return credit;
+		default:
+			throw new StreamCorruptedException("Unknown homeloan data type " + type);
+		}
+	}
+
+	private static void writeApplicant(DataOutput out, Applicant applicant) throws IOException {
+		out.writeLong(applicant.getDob() != null ? applicant.getDob().getTime() : NO_DATE);
+		out.writeInt(applicant.getCreditScore());
+		out.writeDouble(applicant.getCheckingBalance());
+		out.writeDouble(applicant.getSavingsBalance());
+		writeString(out, applicant.getFirstName());
+		writeString(out, applicant.getLastName());
+		writeString(out, applicant.getSsn());
+		writeString(out, applicant.getStreetAddress());
+		writeString(out, applicant.getPostalCode());
+		writeString(out, applicant.getCity());
+		writeString(out, applicant.getState());
+	}
+
+	private static Applicant readApplicant(DataInput in) throws IOException {
+		Applicant applicant = new Applicant();
+		long dob = in.readLong();
+		if (dob != NO_DATE) {
+			applicant.setDob(new Date(dob));
+		}
+		applicant.setCreditScore(in.readInt());
+		applicant.setCheckingBalance(in.readDouble());
+		applicant.setSavingsBalance(in.readDouble());
+		applicant.setFirstName(readString(in));
+		applicant.setLastName(readString(in));
+		applicant.setSsn(readString(in));
+		applicant.setStreetAddress(readString(in));
+		applicant.setPostalCode(readString(in));
+		applicant.setCity(readString(in));
+		applicant.setState(readString(in));
+		return applicant;
+	}
+
+	private static void writeString(DataOutput out, String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeUTF(value);
+		}
+	}
+
+	private static String readString(DataInput in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+}
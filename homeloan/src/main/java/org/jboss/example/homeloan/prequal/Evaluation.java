@@ -1,103 +1,138 @@
 
 package org.jboss.example.homeloan.prequal;
 
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
 import javax.enterprise.context.RequestScoped;
+import javax.faces.application.FacesMessage;
+import javax.faces.context.FacesContext;
 import javax.inject.Named;
-import javax.xml.namespace.QName;
 
 import org.jboss.example.homeloan.data.Applicant;
 import org.jboss.example.homeloan.data.Qualification;
-import org.kie.api.task.model.TaskSummary;
-import org.switchyard.component.bpm.runtime.BPMTaskService;
-import org.switchyard.component.bpm.runtime.BPMTaskServiceRegistry;
 
 @Named("evaluation")
 @RequestScoped
 public class Evaluation {
 
-    private static final String EN_UK = "en-UK";
+    // request parameter with the id of the task to evaluate, see evaluation.xhtml
+    private static final String TASK_PARAMETER = "task";
 
-    private final BPMTaskService taskService;
-    private String _userId = "mrbill";
-    private TaskSummary task;
+    private final TaskInbox inbox;
+    private String _userId = Inbox.USER_ID;
+    private long taskId = -1;
+    private boolean fetched;
     private Applicant applicant;
     private Qualification qualification;
 
     public Evaluation() {
-        taskService = BPMTaskServiceRegistry.getTaskService(
-        		null, new QName("urn:homeloan:1.0", "PreQualificationService"));
-        fetchTasks();
+        inbox = TaskInbox.forUser(_userId, Inbox.LANGUAGE);
     }
     
-    public void complete() {
-    	HashMap<String, Object> results = new HashMap<String, Object>();
-    	results.put("qualification", qualification);
-    	taskService.claim(task.getId(), _userId);
-        taskService.start(task.getId(), _userId);
-        taskService.complete(task.getId(), _userId, results);
+    public String complete() {
+    	fetchTask();
+    	// claim, start and complete in one transaction
+    	TaskDecisions.Result result = TaskDecisions.forUser(_userId)
+    			.complete(Collections.singletonMap(taskId, qualification)).get(0);
+        inbox.remove(taskId);
+        if (result.getOutcome() != TaskDecisions.Outcome.COMPLETED) {
+        	FacesContext.getCurrentInstance().addMessage(null,
+        			new FacesMessage(FacesMessage.SEVERITY_ERROR, result.toString(), null));
+        	return null;
+        }
         
         applicant = null;
         qualification = null;
+        // on to the next task
+        return "evaluation?faces-redirect=true";
     }
     
 
-    private void fetchTasks() {
-    	List<TaskSummary> tasks = taskService.getTasksAssignedAsPotentialOwner(_userId, EN_UK);
-        for (TaskSummary task : tasks) {
-            this.task = task;
-            Map<String, Object> params = taskService.getTaskContent(task.getId());
-            applicant = (Applicant)params.get("applicant");
-            qualification = (Qualification)params.get("qualification");
-            // only one task at a time at this point
-            break;
-        }
+    /**
+     * Loads the content of the requested task, or else of the oldest task in
+     * the inbox, on first use rather than for every request.
+     */
+    private void fetchTask() {
+    	if (fetched) {
+    		return;
+    	}
+    	fetched = true;
+    	String requested = FacesContext.getCurrentInstance().getExternalContext()
+    			.getRequestParameterMap().get(TASK_PARAMETER);
+    	if (requested != null && requested.length() > 0) {
+    		taskId = Long.parseLong(requested);
+    	} else {
+    		List<TaskView> oldest = inbox.page(null, 0, 1).getTasks();
+    		if (!oldest.isEmpty()) {
+    			taskId = oldest.get(0).getTaskId();
+    		}
+    	}
+    	if (taskId >= 0) {
+    		Map<String, Object> params = inbox.content(taskId);
+    		applicant = (Applicant)params.get("applicant");
+    		qualification = (Qualification)params.get("qualification");
+    	}
     }
 
+	public long getTaskId() {
+		fetchTask();
+		return taskId;
+	}
+
 	public String getName() {
+		fetchTask();
 		return applicant != null ? applicant.getFirstName() + " " + applicant.getLastName() : "";
 	}
 	
 	public String getSsn() {
+		fetchTask();
 		return applicant != null ? applicant.getSsn() : "";
 	}
 	
 	public int getCreditScore() {
+		fetchTask();
 		return applicant != null ? applicant.getCreditScore() : 0;
 	}
 	
 	public String getRate() {
+		fetchTask();
 		return qualification != null ? qualification.getRate() : "";
 	}
 	
 	public void setRate(String rate) {
+		fetchTask();
 		qualification.setRate(rate);
 	}
 	
 	public String getExplanation() {
+		fetchTask();
 		return qualification != null ? qualification.getExplanation() : "";
 	}
 	
 	public void setExplanation(String explanation) {
+		fetchTask();
 		qualification.setExplanation(explanation);
 	}
 	
 	public void setInsuranceCost(int cost) {
+		fetchTask();
 		qualification.setCost(cost);
 	}
 	
 	public int getInsuranceCost() {
+		fetchTask();
 		return qualification != null ? qualification.getCost() : 0;
 	}
 	
 	public void setStatus(String status) {
+		fetchTask();
 		qualification.setStatus(status);
 	}
 	
 	public String getStatus() {
+		fetchTask();
 		return qualification != null ? qualification.getStatus() : "";
 	}
 
@@ -0,0 +1,32 @@
+package org.jboss.example.homeloan.prequal;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.builder.RouteBuilder;
+import org.jboss.example.homeloan.data.LoanApplication;
+import org.switchyard.component.bpm.BPMConstants;
+
+/**
+ * Hands the applications the prequalification leaves to a person over to
+ * HumanEvaluationService, starting each instance with the digits of the SSN
+ * as its jBPM correlation key. The instances are persistent, so ProcessIndex
+ * finds them by that key after a restart or from another node.
+ */
+public class HumanEvaluationRoute extends RouteBuilder {
+
+	public void configure() {
+		from("switchyard://HumanEvaluation")
+			.process(new Processor() {
+				public void process(Exchange exchange) {
+					LoanApplication application = exchange.getIn().getBody(LoanApplication.class);
+					String key = application != null && application.getApplicant() != null
+							? ProcessIndex.getInstance().humanEvaluationKey(application.getApplicant().getSsn())
+							: null;
+					if (key != null) {
+						exchange.getIn().setHeader(BPMConstants.CORRELATION_KEY_PROPERTY, key);
+					}
+				}
+			})
+			.to("switchyard://HumanEvaluationService");
+	}
+}
@@ -0,0 +1,8 @@
+package org.jboss.example.homeloan.prequal;
+
+import org.jboss.example.homeloan.data.LoanApplication;
+
+public interface HumanEvaluationService {
+
+	void evaluate(LoanApplication application);
+}
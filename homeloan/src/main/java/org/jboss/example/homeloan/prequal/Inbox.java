@@ -0,0 +1,166 @@
+package org.jboss.example.homeloan.prequal;
+
+import java.io.Serializable;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.enterprise.context.SessionScoped;
+import javax.faces.application.FacesMessage;
+import javax.faces.context.FacesContext;
+import javax.inject.Named;
+
+/**
+ * The underwriter's view of the task inbox: the filter and the page being
+ * looked at, kept for the session. Pages are read from the cached TaskInbox.
+ */
+@Named("inbox")
+@SessionScoped
+public class Inbox implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	static final String USER_ID = "mrbill";
+	static final String LANGUAGE = "en-UK";
+
+	private static final int PAGE_SIZE = Integer.getInteger("homeloan.inbox.pageSize", 20);
+
+	private TaskFilter filter = new TaskFilter();
+	private int first;
+	private Map<Long, Boolean> selected = new HashMap<Long, Boolean>();
+	private String decisionRate;
+	private String decisionExplanation;
+	private transient TaskInbox.Page page;
+	// the request the page was read for
+	private transient Reference<FacesContext> pageRequest;
+
+	public TaskFilter getFilter() {
+		return filter;
+	}
+
+	public List<TaskView> getTasks() {
+		return page().getTasks();
+	}
+
+	public int getTotal() {
+		return page().getTotal();
+	}
+
+	public int getPageNumber() {
+		return page().getFirst() / PAGE_SIZE + 1;
+	}
+
+	public int getPageCount() {
+		return Math.max(1, (page().getTotal() + PAGE_SIZE - 1) / PAGE_SIZE);
+	}
+
+	public boolean isFirstPage() {
+		return page().getFirst() == 0;
+	}
+
+	public boolean isLastPage() {
+		return page().getFirst() + PAGE_SIZE >= page().getTotal();
+	}
+
+	public void next() {
+		first = page().getFirst() + PAGE_SIZE;
+		page = null;
+	}
+
+	public void previous() {
+		first = Math.max(0, page().getFirst() - PAGE_SIZE);
+		page = null;
+	}
+
+	public void applyFilter() {
+		first = 0;
+		page = null;
+	}
+
+	public void clearFilter() {
+		filter = new TaskFilter();
+		applyFilter();
+	}
+
+	public Map<Long, Boolean> getSelected() {
+		return selected;
+	}
+
+	public String getDecisionRate() {
+		return decisionRate;
+	}
+
+	public void setDecisionRate(String decisionRate) {
+		this.decisionRate = decisionRate;
+	}
+
+	public String getDecisionExplanation() {
+		return decisionExplanation;
+	}
+
+	public void setDecisionExplanation(String decisionExplanation) {
+		this.decisionExplanation = decisionExplanation;
+	}
+
+	public void approveSelected() {
+		decideSelected("Approved");
+	}
+
+	public void rejectSelected() {
+		decideSelected("Rejected");
+	}
+
+	/**
+	 * Completes the selected tasks in one transaction and reports the outcome
+	 * of each as a message.
+	 */
+	private void decideSelected(String status) {
+		List<Long> taskIds = new ArrayList<Long>();
+		for (Map.Entry<Long, Boolean> entry : selected.entrySet()) {
+			if (Boolean.TRUE.equals(entry.getValue())) {
+				taskIds.add(entry.getKey());
+			}
+		}
+		FacesContext faces = FacesContext.getCurrentInstance();
+		if (taskIds.isEmpty()) {
+			faces.addMessage(null, new FacesMessage(FacesMessage.SEVERITY_WARN, "No tasks selected", null));
+			return;
+		}
+		TaskInbox inbox = TaskInbox.forUser(USER_ID, LANGUAGE);
+		int completed = 0;
+		for (TaskDecisions.Result result : TaskDecisions.forUser(USER_ID)
+				.decide(taskIds, status, decisionRate, decisionExplanation)) {
+			TaskView task = inbox.get(result.getTaskId());
+			String label = task != null ? "Task " + result.getTaskId() + " (" + task.getSsn() + ")" : "Task " + result.getTaskId();
+			if (result.getOutcome() == TaskDecisions.Outcome.COMPLETED) {
+				completed++;
+				faces.addMessage(null, new FacesMessage(FacesMessage.SEVERITY_INFO, label + ": " + status, null));
+			} else {
+				faces.addMessage(null, new FacesMessage(FacesMessage.SEVERITY_ERROR,
+						label + ": " + result.getOutcome() + " - " + result.getMessage(), null));
+			}
+			inbox.remove(result.getTaskId());
+		}
+		faces.addMessage(null, new FacesMessage(FacesMessage.SEVERITY_INFO,
+				completed + " of " + taskIds.size() + " tasks " + status.toLowerCase(), null));
+		selected.clear();
+		page = null;
+	}
+
+	/**
+	 * Reads the page once per request; actions and the first read of a request
+	 * start over.
+	 */
+	private TaskInbox.Page page() {
+		FacesContext request = FacesContext.getCurrentInstance();
+		if (page == null || pageRequest == null || pageRequest.get() != request) {
+			page = TaskInbox.forUser(USER_ID, LANGUAGE).page(filter, first, PAGE_SIZE);
+			first = page.getFirst();
+			pageRequest = new WeakReference<FacesContext>(request);
+		}
+		return page;
+	}
+}
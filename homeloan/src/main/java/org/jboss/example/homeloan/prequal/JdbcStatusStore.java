@@ -0,0 +1,486 @@
+package org.jboss.example.homeloan.prequal;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+
+import org.jboss.example.homeloan.cache.CacheStats;
+import org.jboss.example.homeloan.data.Qualification;
+import org.jboss.logging.Logger;
+
+/**
+ * Write-behind status store. Every update lands in the in-memory store right
+ * away and is flushed to the LOAN_STATUS table by a background writer, so a
+ * status that has been evicted from memory can still be answered from the
+ * database. Removals are written behind the same way, so a removal and a
+ * later update of an SSN reach the table in order.
+ *
+ * Only the latest write of an SSN is ever written, and flushes run one at a
+ * time, so an older snapshot never overwrites a newer one, even when a
+ * caller flushes a write itself because the queue is full. While the
+ * database is unavailable the writes are kept and retried with a growing
+ * pause, and statuses are answered from memory only; once the pending writes
+ * no longer fit the queue, further updates are kept in memory only.
+ * {@link #close()} writes what is queued and stops the writer.
+ */
+public class JdbcStatusStore implements StatusStore {
+
+	private static final Logger LOG = Logger.getLogger(JdbcStatusStore.class);
+
+	private static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS LOAN_STATUS("
+			+ "SSN VARCHAR(20) PRIMARY KEY,"
+			+ "STATUS VARCHAR(20),"
+			+ "RATE VARCHAR(10),"
+			+ "EXPLANATION VARCHAR(255),"
+			+ "COST INT,"
+			+ "UPDATED TIMESTAMP)";
+	private static final String MERGE = "MERGE INTO LOAN_STATUS"
+			+ "(SSN, STATUS, RATE, EXPLANATION, COST, UPDATED) KEY(SSN) VALUES(?, ?, ?, ?, ?, ?)";
+	private static final String SELECT = "SELECT STATUS, RATE, EXPLANATION, COST FROM LOAN_STATUS WHERE SSN=?";
+	private static final String SELECT_SSNS = "SELECT SSN FROM LOAN_STATUS";
+	private static final String DELETE = "DELETE FROM LOAN_STATUS WHERE SSN=?";
+
+	private static final long RETRY_MILLIS = 1000L;
+	private static final long MAX_RETRY_MILLIS = 60000L;
+	private static final long CLOSE_WAIT_MILLIS = 5000L;
+
+	private final StatusStore memory;
+	private final String dataSourceName;
+	private final int batchSize;
+	private final long retryMillis;
+	private final BlockingQueue<String> queue;
+	// latest unflushed snapshot per SSN, null for a removal; repeated updates coalesce into one write
+	private final ConcurrentMap<String, PendingWrite> pending = new ConcurrentHashMap<String, PendingWrite>();
+	// held while writing, so that flushes of the writer and of callers do not overtake each other
+	private final Object flushLock = new Object();
+	private volatile DataSource dataSource;
+	private volatile boolean tableCreated;
+	// the pause before the next attempt, 0 while the database is available
+	private volatile long retryPause;
+	private volatile long retryAt;
+	private volatile boolean closing;
+	private Thread writer;
+
+	public JdbcStatusStore(StatusStore memory, String dataSourceName, int queueSize, int batchSize) {
+		this(memory, null, dataSourceName, queueSize, batchSize, RETRY_MILLIS);
+	}
+
+	/**
+	 * @param dataSource the datasource, or null to look dataSourceName up in
+	 *            JNDI
+	 * @param retryMillis the first pause before an unavailable database is
+	 *            tried again; the pause doubles with every failed attempt
+	 */
+	JdbcStatusStore(StatusStore memory, DataSource dataSource, String dataSourceName, int queueSize, int batchSize,
+			long retryMillis) {
+		this.memory = memory;
+		this.dataSource = dataSource;
+		this.dataSourceName = dataSourceName;
+		this.batchSize = batchSize;
+		this.retryMillis = retryMillis;
+		this.queue = new ArrayBlockingQueue<String>(queueSize);
+	}
+
+	@Override
+	public void put(String ssn, Qualification qualification) {
+		memory.put(ssn, qualification);
+		writeBehind(new PendingWrite(ssn, copy(qualification), System.currentTimeMillis()));
+	}
+
+	private void writeBehind(PendingWrite write) {
+		if (closing) {
+			return;
+		}
+		startWriter();
+		pending.put(write.ssn, write);
+		if (!queue.offer(write.ssn) && !flush(Collections.singletonList(write))) {
+			// writer can't keep up and the database is unavailable, the update stays in memory only
+			pending.remove(write.ssn, write);
+			LOG.debugf("Loan status of %s not written behind, %s is unavailable", write.ssn, dataSourceName);
+		}
+	}
+
+	@Override
+	public Qualification get(String ssn) {
+		Qualification qualification = memory.get(ssn);
+		if (qualification != null) {
+			return qualification;
+		}
+		PendingWrite write = pending.get(ssn);
+		if (write != null) {
+			// null once removed
+			return write.qualification;
+		}
+		if (!isAvailable()) {
+			return null;
+		}
+		qualification = load(ssn);
+		if (qualification != null) {
+			memory.getStats().load();
+			memory.put(ssn, qualification);
+		}
+		return qualification;
+	}
+
+	/**
+	 * Drops the status from memory and deletes its LOAN_STATUS row behind.
+	 */
+	@Override
+	public void remove(String ssn) {
+		memory.remove(ssn);
+		writeBehind(new PendingWrite(ssn, null, System.currentTimeMillis()));
+	}
+
+	/**
+	 * Lists the statuses in memory, those not written yet and the rows of
+	 * LOAN_STATUS, unless the database is unavailable.
+	 *
+	 * @throws IllegalStateException if the table cannot be read
+	 */
+	@Override
+	public Collection<String> ssns() {
+		Set<String> ssns = new HashSet<String>(memory.ssns());
+		if (isAvailable()) {
+			Connection connection = null;
+			try {
+				connection = getConnection();
+				PreparedStatement statement = connection.prepareStatement(SELECT_SSNS);
+				try {
+					ResultSet result = statement.executeQuery();
+					while (result.next()) {
+						ssns.add(result.getString(1));
+					}
+				} finally {
+					statement.close();
+				}
+			} catch (Exception e) {
+				throw new IllegalStateException("Unable to list the loan statuses in " + dataSourceName, e);
+			} finally {
+				close(connection);
+			}
+		}
+		// after the table, so a write flushed meanwhile is not missed
+		for (Map.Entry<String, PendingWrite> write : pending.entrySet()) {
+			if (write.getValue().qualification != null) {
+				ssns.add(write.getKey());
+			} else {
+				ssns.remove(write.getKey());
+			}
+		}
+		return ssns;
+	}
+
+	@Override
+	public CacheStats getStats() {
+		return memory.getStats();
+	}
+
+	/**
+	 * Writes what is queued, unless the database is unavailable, and stops
+	 * the writer. Later updates are kept in memory only.
+	 */
+	public void close() {
+		Thread thread;
+		synchronized (this) {
+			closing = true;
+			thread = writer;
+		}
+		if (thread == null) {
+			return;
+		}
+		thread.interrupt();
+		try {
+			thread.join(CLOSE_WAIT_MILLIS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (thread.isAlive()) {
+			LOG.warnf("Loan status writer did not finish within %d ms, %d write(s) pending", CLOSE_WAIT_MILLIS,
+					pending.size());
+		}
+	}
+
+	/**
+	 * @return the number of writes not written yet
+	 */
+	int getPendingWrites() {
+		return pending.size();
+	}
+
+	synchronized boolean isWriterRunning() {
+		return writer != null && writer.isAlive();
+	}
+
+	private synchronized void startWriter() {
+		if (writer != null || closing) {
+			return;
+		}
+		writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				drain();
+			}
+		}, "LoanStatus-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	private void drain() {
+		List<String> ssns = new ArrayList<String>(batchSize);
+		// the latest write of each SSN only, so its MERGE and DELETE never both run, in the wrong order
+		Map<String, PendingWrite> batch = new LinkedHashMap<String, PendingWrite>(batchSize * 2);
+		while (true) {
+			String first;
+			try {
+				first = closing ? queue.poll() : queue.take();
+			} catch (InterruptedException e) {
+				// closing, write what is left without waiting
+				first = queue.poll();
+			}
+			if (first == null) {
+				return;
+			}
+			ssns.add(first);
+			queue.drainTo(ssns, batchSize - 1);
+			for (String ssn : ssns) {
+				PendingWrite write = pending.get(ssn);
+				if (write != null) {
+					batch.put(ssn, write);
+				}
+			}
+			while (!flush(batch.values())) {
+				if (closing) {
+					LOG.warnf("Gave up writing %d loan status update(s) to %s", pending.size(), dataSourceName);
+					return;
+				}
+				pause();
+			}
+			ssns.clear();
+			batch.clear();
+		}
+	}
+
+	/**
+	 * Writes a batch holding at most one write per SSN; the merges go before
+	 * the deletes. Writes that a newer one has replaced meanwhile are skipped,
+	 * the newer one is written instead.
+	 *
+	 * @return false if the database was unavailable, the writes are then
+	 *         still pending
+	 */
+	private boolean flush(Collection<PendingWrite> writes) {
+		synchronized (flushLock) {
+			List<PendingWrite> batch = new ArrayList<PendingWrite>(writes.size());
+			for (PendingWrite write : writes) {
+				if (pending.get(write.ssn) == write) {
+					batch.add(write);
+				}
+			}
+			if (batch.isEmpty()) {
+				return true;
+			}
+			Connection connection;
+			try {
+				connection = getConnection();
+			} catch (Exception e) {
+				return false;
+			}
+			write(connection, batch);
+			return true;
+		}
+	}
+
+	private void write(Connection connection, List<PendingWrite> batch) {
+		try {
+			PreparedStatement statement = connection.prepareStatement(MERGE);
+			PreparedStatement delete = connection.prepareStatement(DELETE);
+			try {
+				boolean deletes = false;
+				for (PendingWrite write : batch) {
+					if (write.qualification == null) {
+						delete.setString(1, write.ssn);
+						delete.addBatch();
+						deletes = true;
+						continue;
+					}
+					statement.setString(1, write.ssn);
+					statement.setString(2, write.qualification.getStatus());
+					statement.setString(3, write.qualification.getRate());
+					statement.setString(4, write.qualification.getExplanation());
+					statement.setInt(5, write.qualification.getCost());
+					statement.setTimestamp(6, new Timestamp(write.updated));
+					statement.addBatch();
+				}
+				statement.executeBatch();
+				if (deletes) {
+					delete.executeBatch();
+				}
+			} finally {
+				delete.close();
+				statement.close();
+			}
+		} catch (Exception e) {
+			// the database answered, so retrying would not help
+			LOG.warn("Unable to write " + batch.size() + " loan status update(s) to " + dataSourceName, e);
+		} finally {
+			close(connection);
+			for (PendingWrite write : batch) {
+				pending.remove(write.ssn, write);
+			}
+		}
+	}
+
+	/**
+	 * Sleeps until the database may be tried again, or until closed.
+	 */
+	private void pause() {
+		long millis = retryAt - System.currentTimeMillis();
+		if (millis > 0) {
+			try {
+				Thread.sleep(millis);
+			} catch (InterruptedException e) {
+				// closing, the next failure ends the writer
+			}
+		}
+	}
+
+	private Qualification load(String ssn) {
+		Connection connection = null;
+		try {
+			connection = getConnection();
+			PreparedStatement statement = connection.prepareStatement(SELECT);
+			try {
+				statement.setString(1, ssn);
+				ResultSet result = statement.executeQuery();
+				if (!result.next()) {
+					return null;
+				}
+				Qualification qualification = new Qualification();
+				qualification.setStatus(result.getString(1));
+				qualification.setRate(result.getString(2));
+				qualification.setExplanation(result.getString(3));
+				qualification.setCost(result.getInt(4));
+				return qualification;
+			} finally {
+				statement.close();
+			}
+		} catch (Exception e) {
+			LOG.warn("Unable to read loan status from " + dataSourceName, e);
+			return null;
+		} finally {
+			close(connection);
+		}
+	}
+
+	private boolean isAvailable() {
+		return retryPause == 0 || System.currentTimeMillis() >= retryAt;
+	}
+
+	/**
+	 * Looks the datasource up and creates the table on first use. While the
+	 * database is unavailable this fails at once, until the next attempt is
+	 * due.
+	 */
+	private Connection getConnection() throws SQLException, NamingException {
+		if (!isAvailable()) {
+			throw new SQLException(dataSourceName + " is unavailable");
+		}
+		Connection connection = null;
+		try {
+			DataSource ds = dataSource;
+			if (ds == null) {
+				ds = (DataSource)new InitialContext().lookup(dataSourceName);
+				dataSource = ds;
+			}
+			connection = ds.getConnection();
+			if (!tableCreated) {
+				Statement create = connection.createStatement();
+				try {
+					create.executeUpdate(CREATE_TABLE);
+				} finally {
+					create.close();
+				}
+				tableCreated = true;
+			}
+		} catch (SQLException e) {
+			close(connection);
+			unavailable(e);
+			throw e;
+		} catch (NamingException e) {
+			// e.g. not bound yet while the server starts
+			unavailable(e);
+			throw e;
+		}
+		available();
+		return connection;
+	}
+
+	/**
+	 * Keeps serving from memory rather than failing every update, and tries
+	 * the database again after a pause that doubles with every failure.
+	 */
+	private synchronized void unavailable(Exception e) {
+		long pause = retryPause == 0 ? retryMillis : Math.min(retryPause * 2, Math.max(retryMillis, MAX_RETRY_MILLIS));
+		retryPause = pause;
+		retryAt = System.currentTimeMillis() + pause;
+		LOG.warn("Loan status write-behind to " + dataSourceName + " is unavailable, retrying in " + pause + " ms", e);
+	}
+
+	private synchronized void available() {
+		if (retryPause != 0) {
+			retryPause = 0;
+			LOG.info("Loan status write-behind to " + dataSourceName + " is available again");
+		}
+	}
+
+	private static void close(Connection connection) {
+		if (connection != null) {
+			try {
+				connection.close();
+			} catch (SQLException e) {
+				LOG.debug("Unable to close a loan status connection", e);
+			}
+		}
+	}
+
+	private static Qualification copy(Qualification qualification) {
+		Qualification copy = new Qualification();
+		copy.setStatus(qualification.getStatus());
+		copy.setRate(qualification.getRate());
+		copy.setExplanation(qualification.getExplanation());
+		copy.setCost(qualification.getCost());
+		return copy;
+	}
+
+	private static final class PendingWrite {
+
+		final String ssn;
+		final Qualification qualification;
+		final long updated;
+
+		PendingWrite(String ssn, Qualification qualification, long updated) {
+			this.ssn = ssn;
+			this.qualification = qualification;
+			this.updated = updated;
+		}
+	}
+}
@@ -1,31 +1,173 @@
 package org.jboss.example.homeloan.prequal;
 
-import java.util.Map;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+import org.jboss.example.homeloan.cache.BoundedCache;
+import org.jboss.example.homeloan.cache.CacheStats;
+import org.jboss.example.homeloan.cluster.HttpStatusNode;
+import org.jboss.example.homeloan.cluster.LocalStatusNode;
+import org.jboss.example.homeloan.cluster.ShardedStatusStore;
 import org.jboss.example.homeloan.data.LoanApplication;
 import org.jboss.example.homeloan.data.Qualification;
+import org.jboss.example.homeloan.jmx.MBeans;
+import org.jboss.logging.Logger;
 
 public class LoanStatus {
 
-	// Recipe for memory leak:
-	// 1 - create static map with strong references
-	// 2 - never clean up
-	private static Map<String, LoanApplication> applications = 
-			new ConcurrentHashMap<String, LoanApplication>();
-	
-	private static Map<String, Qualification> qualifications = 
-			new ConcurrentHashMap<String, Qualification>();
-	
+	private static final Logger LOG = Logger.getLogger(LoanStatus.class);
+
+	private static final int MAX_ENTRIES = Integer.getInteger("homeloan.status.maxEntries", 100000);
+	private static final long TTL_MILLIS = Long.getLong("homeloan.status.ttlSeconds", 24 * 60 * 60) * 1000L;
+	private static final boolean SOFT_VALUES = Boolean.getBoolean("homeloan.status.softValues");
+	// JNDI name of the datasource backing the write-behind store, unset keeps statuses in memory only
+	private static final String WRITE_BEHIND = System.getProperty("homeloan.status.writeBehind");
+	// this node's name and all members as name=url pairs, unset keeps all statuses on every node
+	private static final String NODE = System.getProperty("homeloan.status.node");
+	private static final String NODES = System.getProperty("homeloan.status.nodes");
+
+	private static final BoundedCache<String, LoanApplication> applications =
+			new BoundedCache<String, LoanApplication>("LoanApplications", MAX_ENTRIES, TTL_MILLIS, SOFT_VALUES);
+
+	private static final ConcurrentMap<String, List<StatusListener>> listeners =
+			new ConcurrentHashMap<String, List<StatusListener>>();
+
+	// statuses replicated here by the node that ran the update
+	private static final StatusListener REPLICATED = new StatusListener() {
+		@Override
+		public void statusUpdated(String ssn, Qualification qualification) {
+			if (!listeners.isEmpty()) {
+				notifyListeners(ssn, qualification);
+			}
+		}
+	};
+
+	// created after REPLICATED, which it hands to the local status node
+	private static volatile StatusStore store = createStore();
+
 	public static void addApplication(String ssn, LoanApplication application) {
 		applications.put(ssn, application);
 	}
-	
+
 	public static void updateStatus(String ssn, Qualification qualification) {
-		qualifications.put(ssn, qualification);
+		store.put(ssn, qualification);
+		if (!listeners.isEmpty()) {
+			notifyListeners(ssn, qualification);
+		}
 	}
-	
+
 	public static Qualification getStatus(String ssn) {
-		return qualifications.get(ssn);
+		return store.get(ssn);
+	}
+
+	/**
+	 * @return the statuses of the SSNs in the same order, null where unknown;
+	 *         a sharded store looks them up with one request per node
+	 */
+	public static Qualification[] getStatuses(List<String> ssns) {
+		StatusStore current = store;
+		if (current instanceof ShardedStatusStore) {
+			return ((ShardedStatusStore)current).get(ssns);
+		}
+		Qualification[] qualifications = new Qualification[ssns.size()];
+		for (int i = 0; i < qualifications.length; i++) {
+			qualifications[i] = current.get(ssns.get(i));
+		}
+		return qualifications;
+	}
+
+	public static CacheStats getStats() {
+		return store.getStats();
+	}
+
+	/**
+	 * Adds a listener for the status updates of the given SSN. Adding and
+	 * removing listeners is synchronized, notifying them is not.
+	 */
+	public static synchronized void addListener(String ssn, StatusListener listener) {
+		List<StatusListener> ssnListeners = listeners.get(ssn);
+		if (ssnListeners == null) {
+			ssnListeners = new CopyOnWriteArrayList<StatusListener>();
+			listeners.put(ssn, ssnListeners);
+		}
+		ssnListeners.add(listener);
+	}
+
+	public static synchronized void removeListener(String ssn, StatusListener listener) {
+		List<StatusListener> ssnListeners = listeners.get(ssn);
+		if (ssnListeners != null && ssnListeners.remove(listener) && ssnListeners.isEmpty()) {
+			listeners.remove(ssn);
+		}
+	}
+
+	private static void notifyListeners(String ssn, Qualification qualification) {
+		List<StatusListener> ssnListeners = listeners.get(ssn);
+		if (ssnListeners == null) {
+			return;
+		}
+		for (StatusListener listener : ssnListeners) {
+			try {
+				listener.statusUpdated(ssn, qualification);
+			} catch (RuntimeException e) {
+				// a listener must not fail the status update
+				LOG.warn("Status listener for " + ssn + " failed", e);
+			}
+		}
+	}
+
+	/**
+	 * Replaces the status store, e.g. with a custom or pre-populated one.
+	 */
+	public static void setStore(StatusStore statusStore) {
+		store = statusStore;
+	}
+
+	public static StatusStore getStore() {
+		return store;
+	}
+
+	/**
+	 * Stops replicating to the other status nodes once what is queued for
+	 * them has been sent, and then stops writing behind once what is queued
+	 * has been written, on undeploy.
+	 */
+	public static void shutdown() {
+		StatusStore current = store;
+		if (current instanceof ShardedStatusStore) {
+			ShardedStatusStore sharded = (ShardedStatusStore)current;
+			sharded.close();
+			current = sharded.getLocal().getStore();
+		}
+		if (current instanceof JdbcStatusStore) {
+			((JdbcStatusStore)current).close();
+		}
+	}
+
+	private static StatusStore createStore() {
+		StatusStore memory = new MemoryStatusStore(new BoundedCache<String, Qualification>(
+				"LoanStatus", MAX_ENTRIES, TTL_MILLIS, SOFT_VALUES).register());
+		StatusStore local = memory;
+		if (WRITE_BEHIND != null) {
+			local = new JdbcStatusStore(memory, WRITE_BEHIND,
+					Integer.getInteger("homeloan.status.writeBehind.queueSize", 10000),
+					Integer.getInteger("homeloan.status.writeBehind.batchSize", 100));
+		}
+		if (NODE == null || NODES == null) {
+			return local;
+		}
+		String secret = System.getProperty("homeloan.status.secret");
+		if (secret == null || secret.length() == 0) {
+			LOG.errorf("homeloan.status.secret is not set, node %s keeps its statuses to itself", NODE);
+			return local;
+		}
+		int timeoutMillis = Integer.getInteger("homeloan.status.nodeTimeoutMillis", 1000);
+		ShardedStatusStore sharded = new ShardedStatusStore(new LocalStatusNode(NODE, local, REPLICATED),
+				Integer.getInteger("homeloan.status.replicas", 2), timeoutMillis, secret,
+				Integer.getInteger("homeloan.status.replicationQueueSize", 10000));
+		sharded.setNodes(HttpStatusNode.parse(NODES, timeoutMillis, secret));
+		MBeans.register("StatusCluster", NODE, sharded);
+		return sharded;
 	}
 }
@@ -0,0 +1,41 @@
+package org.jboss.example.homeloan.prequal;
+
+import java.util.Collection;
+
+import org.jboss.example.homeloan.cache.BoundedCache;
+import org.jboss.example.homeloan.cache.CacheStats;
+import org.jboss.example.homeloan.data.Qualification;
+
+public class MemoryStatusStore implements StatusStore {
+
+	private final BoundedCache<String, Qualification> qualifications;
+
+	public MemoryStatusStore(BoundedCache<String, Qualification> qualifications) {
+		this.qualifications = qualifications;
+	}
+
+	@Override
+	public void put(String ssn, Qualification qualification) {
+		qualifications.put(ssn, qualification);
+	}
+
+	@Override
+	public Qualification get(String ssn) {
+		return qualifications.get(ssn);
+	}
+
+	@Override
+	public void remove(String ssn) {
+		qualifications.remove(ssn);
+	}
+
+	@Override
+	public Collection<String> ssns() {
+		return qualifications.keys();
+	}
+
+	@Override
+	public CacheStats getStats() {
+		return qualifications.getStats();
+	}
+}
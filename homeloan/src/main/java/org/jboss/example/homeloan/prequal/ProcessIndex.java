@@ -0,0 +1,286 @@
+package org.jboss.example.homeloan.prequal;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.jboss.example.homeloan.cache.BoundedCache;
+import org.jboss.example.homeloan.data.Clock;
+import org.jboss.logging.Logger;
+import org.kie.api.task.model.Status;
+import org.kie.api.task.model.TaskSummary;
+import org.switchyard.component.bpm.runtime.BPMTaskServiceRegistry;
+
+/**
+ * The running prequalification process instances by the SSN they work on,
+ * kept up to date by ProcessIndexListener as instances start, move from node
+ * to node and complete. Finding where an application is takes a map lookup,
+ * plus a task query by process instance id while it waits for a human
+ * evaluation, instead of a search through the process instance tables.
+ *
+ * An SSN maps to the instance started for it last: when PreQualificationService
+ * hands an application to HumanEvaluationService, the lookup follows it.
+ * Finished applications are not kept, their outcome is in LoanStatus. SSNs
+ * are compared by their digits, so 715-55-5555 and 715555555 are the same.
+ *
+ * The map only covers the instances started on this node since it started.
+ * HumanEvaluationService is persistent and HumanEvaluationRoute starts it
+ * with the SSN as its correlation key, so a human evaluation the map does not
+ * know is looked up by that key in the CorrelationKeyInfo table instead.
+ *
+ * An instance that fails without completing, e.g. a non-persistent
+ * prequalification that throws, leaves its entry behind, so entries expire
+ * after homeloan.processIndex.ttlSeconds and the map holds no more than about
+ * homeloan.processIndex.maxEntries of them. A human evaluation whose entry
+ * has expired is still found by its correlation key.
+ */
+public class ProcessIndex {
+
+	private static final Logger LOG = Logger.getLogger(ProcessIndex.class);
+
+	public static final String HUMAN_EVALUATION_PROCESS = "HumanEvaluationService";
+
+	private static final List<Status> PENDING = Arrays.asList(
+			Status.Created, Status.Ready, Status.Reserved, Status.InProgress, Status.Suspended);
+
+	// bound to JNDI by the persistence unit, see persistence.xml
+	private static final String PROCESS_PERSISTENCE = "java:jboss/homeloan/jbpm";
+	private static final String BY_CORRELATION_KEY =
+			"select k.processInstanceId from CorrelationKeyInfo k where k.name = :name";
+
+	private static final int MAX_ENTRIES = Integer.getInteger("homeloan.processIndex.maxEntries", 100000);
+	private static final long TTL_MILLIS = Long.getLong("homeloan.processIndex.ttlSeconds", 86400) * 1000L;
+
+	/**
+	 * Where the index reads pending tasks from.
+	 */
+	public interface Tasks {
+
+		List<TaskSummary> pending(long processInstanceId);
+	}
+
+	/**
+	 * Where the index looks up the persistent process instances it has no
+	 * entry for.
+	 */
+	public interface Instances {
+
+		/**
+		 * @return the id of the active process instance with the correlation
+		 *         key, null if there is none
+		 */
+		Long find(String correlationKey);
+	}
+
+	private static final ProcessIndex instance = new ProcessIndex(new Tasks() {
+		public List<TaskSummary> pending(long processInstanceId) {
+			return BPMTaskServiceRegistry.getTaskService(null, TaskInbox.HUMAN_EVALUATION)
+					.getTasksByStatusByProcessInstanceId(processInstanceId, PENDING, Inbox.LANGUAGE);
+		}
+	}, new Instances() {
+		public Long find(String correlationKey) {
+			EntityManager entityManager = entityManagerFactory().createEntityManager();
+			try {
+				List<?> ids = entityManager.createQuery(BY_CORRELATION_KEY)
+						.setParameter("name", correlationKey).getResultList();
+				return ids.isEmpty() ? null : ((Number)ids.get(0)).longValue();
+			} finally {
+				entityManager.close();
+			}
+		}
+	});
+
+	private static volatile EntityManagerFactory entityManagerFactory;
+
+	private final Tasks tasks;
+	private final Instances instances;
+	private final BoundedCache<String, Entry> entries;
+
+	public ProcessIndex(Tasks tasks, Instances instances) {
+		this(tasks, instances, MAX_ENTRIES, TTL_MILLIS);
+	}
+
+	ProcessIndex(Tasks tasks, Instances instances, int maxEntries, long ttlMillis) {
+		this.tasks = tasks;
+		this.instances = instances;
+		this.entries = new BoundedCache<String, Entry>("ProcessIndex", maxEntries, ttlMillis, false);
+	}
+
+	public static ProcessIndex getInstance() {
+		return instance;
+	}
+
+	public void started(String ssn, String processId, long processInstanceId) {
+		entries.put(normalize(ssn), new Entry(processId, processInstanceId, Clock.get().currentTimeMillis()));
+	}
+
+	public void entered(String ssn, String processId, long processInstanceId, String node) {
+		Entry entry = entries.get(normalize(ssn));
+		// the node events of an instance the SSN has moved on from are ignored
+		if (entry != null && entry.is(processId, processInstanceId)) {
+			entry.enter(node, Clock.get().currentTimeMillis());
+		}
+	}
+
+	public void completed(String ssn, String processId, long processInstanceId) {
+		String key = normalize(ssn);
+		Entry entry = entries.get(key);
+		if (entry != null && entry.is(processId, processInstanceId)) {
+			entries.remove(key, entry);
+		}
+	}
+
+	/**
+	 * @return where the application of the SSN is, null if no process
+	 *         instance is working on it
+	 */
+	public ProcessLocation locate(String ssn) {
+		String key = normalize(ssn);
+		if (key == null) {
+			return null;
+		}
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			return locatePersistent(ssn, key);
+		}
+		Entry.Node node = entry.node;
+		TaskSummary task = null;
+		if (HUMAN_EVALUATION_PROCESS.equals(entry.processId)) {
+			task = pendingTask(entry.processInstanceId);
+		}
+		return new ProcessLocation(ssn, entry.processId, entry.processInstanceId, entry.started,
+				node != null ? node.name : null, node != null ? node.entered : 0,
+				task != null ? task.getId() : null,
+				task != null && task.getStatus() != null ? task.getStatus().name() : null,
+				task != null && task.getActualOwner() != null ? task.getActualOwner().getId() : null);
+	}
+
+	/**
+	 * @return the correlation key to start the human evaluation of the SSN
+	 *         with, null if the SSN has no digits or a human evaluation is
+	 *         already waiting for it, as keys must be unique
+	 */
+	public String humanEvaluationKey(String ssn) {
+		String key = normalize(ssn);
+		if (key == null) {
+			return null;
+		}
+		Entry entry = entries.get(key);
+		// the entry is usually the prequalification handing the SSN over, which says nothing of older evaluations
+		if (entry != null && HUMAN_EVALUATION_PROCESS.equals(entry.processId) || find(key) != null) {
+			LOG.debugf("A human evaluation is already waiting for %s, starting another without correlation key", ssn);
+			return null;
+		}
+		return key;
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return the digits of the SSN, null if it has none
+	 */
+	static String normalize(String ssn) {
+		if (ssn == null) {
+			return null;
+		}
+		StringBuilder digits = new StringBuilder(ssn.length());
+		for (int i = 0; i < ssn.length(); i++) {
+			char c = ssn.charAt(i);
+			if (c >= '0' && c <= '9') {
+				digits.append(c);
+			}
+		}
+		return digits.length() > 0 ? digits.toString() : null;
+	}
+
+	/**
+	 * A human evaluation started before this node did, or on another node;
+	 * when it started and which node it entered last are not known, the node
+	 * is that of its pending task.
+	 */
+	private ProcessLocation locatePersistent(String ssn, String key) {
+		Long processInstanceId = find(key);
+		if (processInstanceId == null) {
+			return null;
+		}
+		TaskSummary task = pendingTask(processInstanceId);
+		return new ProcessLocation(ssn, HUMAN_EVALUATION_PROCESS, processInstanceId, 0,
+				task != null ? task.getName() : null, 0,
+				task != null ? task.getId() : null,
+				task != null && task.getStatus() != null ? task.getStatus().name() : null,
+				task != null && task.getActualOwner() != null ? task.getActualOwner().getId() : null);
+	}
+
+	private Long find(String key) {
+		try {
+			return instances.find(key);
+		} catch (RuntimeException e) {
+			LOG.warn("Unable to look up the process instance with correlation key " + key, e);
+			return null;
+		}
+	}
+
+	private static EntityManagerFactory entityManagerFactory() {
+		if (entityManagerFactory == null) {
+			try {
+				entityManagerFactory = (EntityManagerFactory)new InitialContext().lookup(PROCESS_PERSISTENCE);
+			} catch (NamingException e) {
+				throw new IllegalStateException("No process persistence unit at " + PROCESS_PERSISTENCE, e);
+			}
+		}
+		return entityManagerFactory;
+	}
+
+	private TaskSummary pendingTask(long processInstanceId) {
+		try {
+			List<TaskSummary> pending = tasks.pending(processInstanceId);
+			return pending != null && !pending.isEmpty() ? pending.get(0) : null;
+		} catch (RuntimeException e) {
+			LOG.warn("Unable to look up the pending task of process instance " + processInstanceId, e);
+			return null;
+		}
+	}
+
+	private static final class Entry {
+
+		final String processId;
+		final long processInstanceId;
+		final long started;
+		volatile Node node;
+
+		Entry(String processId, long processInstanceId, long started) {
+			this.processId = processId;
+			this.processInstanceId = processInstanceId;
+			this.started = started;
+		}
+
+		boolean is(String processId, long processInstanceId) {
+			return this.processInstanceId == processInstanceId && this.processId.equals(processId);
+		}
+
+		void enter(String name, long entered) {
+			node = new Node(name, entered);
+		}
+
+		/**
+		 * The node name and time, replaced together so a lookup never pairs
+		 * the name of one node with the time of another.
+		 */
+		static final class Node {
+
+			final String name;
+			final long entered;
+
+			Node(String name, long entered) {
+				this.name = name;
+				this.entered = entered;
+			}
+		}
+	}
+}
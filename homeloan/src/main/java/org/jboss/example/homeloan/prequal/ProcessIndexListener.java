@@ -0,0 +1,56 @@
+package org.jboss.example.homeloan.prequal;
+
+import org.jboss.example.homeloan.data.Applicant;
+import org.kie.api.event.process.DefaultProcessEventListener;
+import org.kie.api.event.process.ProcessCompletedEvent;
+import org.kie.api.event.process.ProcessNodeTriggeredEvent;
+import org.kie.api.event.process.ProcessStartedEvent;
+import org.kie.api.runtime.process.ProcessInstance;
+import org.kie.api.runtime.process.WorkflowProcessInstance;
+
+/**
+ * Keeps the ProcessIndex up to date with the process instances of the
+ * session it listens to, by the SSN of their Applicant variable.
+ */
+public class ProcessIndexListener extends DefaultProcessEventListener {
+
+	private static final String APPLICANT = "Applicant";
+
+	@Override
+	public void beforeProcessStarted(ProcessStartedEvent event) {
+		ProcessInstance process = event.getProcessInstance();
+		String ssn = ssn(process);
+		if (ssn != null) {
+			ProcessIndex.getInstance().started(ssn, process.getProcessId(), process.getId());
+		}
+	}
+
+	@Override
+	public void beforeNodeTriggered(ProcessNodeTriggeredEvent event) {
+		ProcessInstance process = event.getProcessInstance();
+		String ssn = ssn(process);
+		if (ssn != null) {
+			ProcessIndex.getInstance().entered(ssn, process.getProcessId(), process.getId(),
+					event.getNodeInstance().getNodeName());
+		}
+	}
+
+	@Override
+	public void afterProcessCompleted(ProcessCompletedEvent event) {
+		ProcessInstance process = event.getProcessInstance();
+		String ssn = ssn(process);
+		if (ssn != null) {
+			ProcessIndex.getInstance().completed(ssn, process.getProcessId(), process.getId());
+		}
+	}
+
+	private static String ssn(ProcessInstance process) {
+		if (process instanceof WorkflowProcessInstance) {
+			Object applicant = ((WorkflowProcessInstance)process).getVariable(APPLICANT);
+			if (applicant instanceof Applicant) {
+				return ((Applicant)applicant).getSsn();
+			}
+		}
+		return null;
+	}
+}
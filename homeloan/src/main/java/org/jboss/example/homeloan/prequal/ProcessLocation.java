@@ -0,0 +1,88 @@
+package org.jboss.example.homeloan.prequal;
+
+import java.io.Serializable;
+
+/**
+ * Where the application of an SSN is in the prequalification processes: the
+ * process instance working on it, the node it is at and, while it waits for
+ * a human evaluation, the pending task.
+ */
+public final class ProcessLocation implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String ssn;
+	private final String processId;
+	private final long processInstanceId;
+	private final long startedMillis;
+	private final String node;
+	private final long nodeEnteredMillis;
+	private final Long taskId;
+	private final String taskStatus;
+	private final String taskOwner;
+
+	public ProcessLocation(String ssn, String processId, long processInstanceId, long startedMillis, String node,
+			long nodeEnteredMillis, Long taskId, String taskStatus, String taskOwner) {
+		this.ssn = ssn;
+		this.processId = processId;
+		this.processInstanceId = processInstanceId;
+		this.startedMillis = startedMillis;
+		this.node = node;
+		this.nodeEnteredMillis = nodeEnteredMillis;
+		this.taskId = taskId;
+		this.taskStatus = taskStatus;
+		this.taskOwner = taskOwner;
+	}
+
+	public String getSsn() {
+		return ssn;
+	}
+
+	public String getProcessId() {
+		return processId;
+	}
+
+	public long getProcessInstanceId() {
+		return processInstanceId;
+	}
+
+	public long getStartedMillis() {
+		return startedMillis;
+	}
+
+	/**
+	 * @return the name of the node the process instance is at, null before it
+	 *         entered one
+	 */
+	public String getNode() {
+		return node;
+	}
+
+	public long getNodeEnteredMillis() {
+		return nodeEnteredMillis;
+	}
+
+	/**
+	 * @return the id of the pending "Human Eval" task, null if there is none
+	 */
+	public Long getTaskId() {
+		return taskId;
+	}
+
+	public String getTaskStatus() {
+		return taskStatus;
+	}
+
+	/**
+	 * @return the user who claimed the pending task, null if unclaimed
+	 */
+	public String getTaskOwner() {
+		return taskOwner;
+	}
+
+	@Override
+	public String toString() {
+		return "ProcessLocation[ssn=" + ssn + ", process=" + processId + "#" + processInstanceId + ", node=" + node
+				+ (taskId != null ? ", task=" + taskId + " " + taskStatus : "") + "]";
+	}
+}
@@ -0,0 +1,13 @@
+package org.jboss.example.homeloan.prequal;
+
+import org.jboss.example.homeloan.data.Qualification;
+
+/**
+ * Told about every status update for the SSNs it was added for, see
+ * LoanStatus.addListener. Called on the thread that updates the status, so
+ * implementations must not block.
+ */
+public interface StatusListener {
+
+	void statusUpdated(String ssn, Qualification qualification);
+}
@@ -0,0 +1,30 @@
+package org.jboss.example.homeloan.prequal;
+
+import java.util.Collection;
+
+import org.jboss.example.homeloan.cache.CacheStats;
+import org.jboss.example.homeloan.data.Qualification;
+
+public interface StatusStore {
+
+	void put(String ssn, Qualification qualification);
+
+	/**
+	 * @return the latest qualification for the SSN, or null if none is known
+	 */
+	Qualification get(String ssn);
+
+	/**
+	 * Drops the status of the SSN, e.g. once it has been handed over to the
+	 * node that owns it now.
+	 */
+	void remove(String ssn);
+
+	/**
+	 * @return the SSNs of all statuses held, also those a persistent store no
+	 *         longer has in memory
+	 */
+	Collection<String> ssns();
+
+	CacheStats getStats();
+}
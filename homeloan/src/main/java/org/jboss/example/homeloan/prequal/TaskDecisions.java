@@ -0,0 +1,210 @@
+package org.jboss.example.homeloan.prequal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.transaction.Status;
+import javax.transaction.SystemException;
+import javax.transaction.UserTransaction;
+
+import org.jboss.example.homeloan.data.Qualification;
+import org.jboss.logging.Logger;
+import org.switchyard.component.bpm.runtime.BPMTaskService;
+import org.switchyard.component.bpm.runtime.BPMTaskServiceRegistry;
+
+/**
+ * Completes "Human Eval" tasks with the underwriter's decision: claim, start
+ * and complete of all the tasks of one call run in a single transaction.
+ *
+ * A task that fails does not fail the others. A failed transition marks the
+ * transaction rollback-only, so the pass stops at the first task that fails
+ * or leaves the transaction marked, rolls back and starts over without that
+ * task, until a transaction commits. Each task is reported as COMPLETED,
+ * FAILED (its own transition failed) or ROLLED_BACK (the transaction could
+ * not be committed). The status updates and audit records of the completed
+ * tasks are only made once the transaction commits (see AfterCommit).
+ */
+public class TaskDecisions {
+
+	private static final Logger LOG = Logger.getLogger(TaskDecisions.class);
+
+	public enum Outcome {
+		COMPLETED, FAILED, ROLLED_BACK
+	}
+
+	private final BPMTaskService taskService;
+	private final UserTransaction transaction;
+	private final String userId;
+
+	public TaskDecisions(BPMTaskService taskService, UserTransaction transaction, String userId) {
+		this.taskService = taskService;
+		this.transaction = transaction;
+		this.userId = userId;
+	}
+
+	public static TaskDecisions forUser(String userId) {
+		try {
+			UserTransaction transaction = (UserTransaction)new InitialContext().lookup("java:comp/UserTransaction");
+			return new TaskDecisions(
+					BPMTaskServiceRegistry.getTaskService(null, TaskInbox.HUMAN_EVALUATION), transaction, userId);
+		} catch (NamingException e) {
+			throw new IllegalStateException("No UserTransaction", e);
+		}
+	}
+
+	/**
+	 * Completes the tasks with the given qualifications.
+	 */
+	public List<Result> complete(final Map<Long, Qualification> qualifications) {
+		return run(qualifications.keySet(), new Decision() {
+			public Qualification decide(long taskId) {
+				return qualifications.get(taskId);
+			}
+		});
+	}
+
+	/**
+	 * Completes the tasks with their qualification set to the status, and to
+	 * the rate and explanation unless those are null or empty.
+	 */
+	public List<Result> decide(Collection<Long> taskIds, final String status, final String rate,
+			final String explanation) {
+		return run(taskIds, new Decision() {
+			public Qualification decide(long taskId) {
+				Qualification qualification = (Qualification)taskService.getTaskContent(taskId).get("qualification");
+				if (qualification == null) {
+					qualification = new Qualification();
+				}
+				qualification.setStatus(status);
+				if (rate != null && rate.length() > 0) {
+					qualification.setRate(rate);
+				}
+				if (explanation != null && explanation.length() > 0) {
+					qualification.setExplanation(explanation);
+				}
+				return qualification;
+			}
+		});
+	}
+
+	private List<Result> run(Collection<Long> taskIds, Decision decision) {
+		Map<Long, Result> results = new HashMap<Long, Result>();
+		List<Long> pending = new ArrayList<Long>(taskIds);
+		while (!pending.isEmpty()) {
+			try {
+				transaction.begin();
+			} catch (Exception e) {
+				rolledBack(results, pending, e.getMessage());
+				break;
+			}
+			Long failed = null;
+			for (Long taskId : pending) {
+				try {
+					Map<String, Object> output = new HashMap<String, Object>();
+					output.put("qualification", decision.decide(taskId));
+					taskService.claim(taskId, userId);
+					taskService.start(taskId, userId);
+					taskService.complete(taskId, userId, output);
+				} catch (RuntimeException e) {
+					LOG.debugf(e, "Task %d failed", taskId);
+					results.put(taskId, new Result(taskId, Outcome.FAILED, e.getMessage()));
+					failed = taskId;
+					break;
+				}
+				if (rollbackOnly()) {
+					results.put(taskId, new Result(taskId, Outcome.FAILED, "Transaction marked for rollback"));
+					failed = taskId;
+					break;
+				}
+			}
+			if (failed == null) {
+				try {
+					transaction.commit();
+					for (Long taskId : pending) {
+						results.put(taskId, new Result(taskId, Outcome.COMPLETED, null));
+					}
+				} catch (Exception e) {
+					rolledBack(results, pending, e.getMessage());
+				}
+				break;
+			}
+			rollback();
+			// again without the task that failed; the transaction is doomed
+			// once a task fails, so the tasks after it were not tried yet
+			pending.remove(failed);
+		}
+		List<Result> ordered = new ArrayList<Result>(results.size());
+		for (Long taskId : taskIds) {
+			ordered.add(results.get(taskId));
+		}
+		return ordered;
+	}
+
+	private boolean rollbackOnly() {
+		try {
+			return transaction.getStatus() == Status.STATUS_MARKED_ROLLBACK;
+		} catch (SystemException e) {
+			return true;
+		}
+	}
+
+	private void rollback() {
+		try {
+			transaction.rollback();
+		} catch (Exception e) {
+			LOG.warn("Rollback failed", e);
+		}
+	}
+
+	private static void rolledBack(Map<Long, Result> results, List<Long> pending, String message) {
+		for (Long taskId : pending) {
+			results.put(taskId, new Result(taskId, Outcome.ROLLED_BACK, message));
+		}
+	}
+
+	private interface Decision {
+
+		Qualification decide(long taskId);
+	}
+
+	/**
+	 * What became of one task.
+	 */
+	public static final class Result {
+
+		private final long taskId;
+		private final Outcome outcome;
+		private final String message;
+
+		Result(long taskId, Outcome outcome, String message) {
+			this.taskId = taskId;
+			this.outcome = outcome;
+			this.message = message;
+		}
+
+		public long getTaskId() {
+			return taskId;
+		}
+
+		public Outcome getOutcome() {
+			return outcome;
+		}
+
+		/**
+		 * @return why the task was not completed, null if it was
+		 */
+		public String getMessage() {
+			return message;
+		}
+
+		@Override
+		public String toString() {
+			return "Task " + taskId + ": " + outcome + (message != null ? " (" + message + ")" : "");
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package org.jboss.example.homeloan.prequal;
+
+import java.io.Serializable;
+
+/**
+ * Inbox filter on the applicant's age and credit score and the loan amount.
+ * Bounds of 0 (or less) do not filter.
+ */
+public class TaskFilter implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private int minAge;
+	private int maxAge;
+	private int minCreditScore;
+	private int maxCreditScore;
+	private int minAmount;
+	private int maxAmount;
+
+	public boolean isEmpty() {
+		return minAge <= 0 && maxAge <= 0 && minCreditScore <= 0 && maxCreditScore <= 0
+				&& minAmount <= 0 && maxAmount <= 0;
+	}
+
+	public boolean matches(TaskView task) {
+		return within(task.getAge(), minAge, maxAge)
+				&& within(task.getCreditScore(), minCreditScore, maxCreditScore)
+				&& within(task.getAmount(), minAmount, maxAmount);
+	}
+
+	private static boolean within(int value, int min, int max) {
+		return (min <= 0 || value >= min) && (max <= 0 || value <= max);
+	}
+
+	public int getMinAge() {
+		return minAge;
+	}
+
+	public void setMinAge(int minAge) {
+		this.minAge = minAge;
+	}
+
+	public int getMaxAge() {
+		return maxAge;
+	}
+
+	public void setMaxAge(int maxAge) {
+		this.maxAge = maxAge;
+	}
+
+	public int getMinCreditScore() {
+		return minCreditScore;
+	}
+
+	public void setMinCreditScore(int minCreditScore) {
+		this.minCreditScore = minCreditScore;
+	}
+
+	public int getMaxCreditScore() {
+		return maxCreditScore;
+	}
+
+	public void setMaxCreditScore(int maxCreditScore) {
+		this.maxCreditScore = maxCreditScore;
+	}
+
+	public int getMinAmount() {
+		return minAmount;
+	}
+
+	public void setMinAmount(int minAmount) {
+		this.minAmount = minAmount;
+	}
+
+	public int getMaxAmount() {
+		return maxAmount;
+	}
+
+	public void setMaxAmount(int maxAmount) {
+		this.maxAmount = maxAmount;
+	}
+}
@@ -0,0 +1,263 @@
+package org.jboss.example.homeloan.prequal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.xml.namespace.QName;
+
+import org.jboss.example.homeloan.data.Applicant;
+import org.jboss.example.homeloan.data.LoanApplication;
+import org.jboss.logging.Logger;
+import org.kie.api.task.model.TaskSummary;
+import org.switchyard.component.bpm.runtime.BPMTaskService;
+import org.switchyard.component.bpm.runtime.BPMTaskServiceRegistry;
+
+/**
+ * The "Human Eval" tasks of a user, oldest first, for paging and filtering.
+ *
+ * The projection of each task's content (TaskView) is cached for as long as
+ * the task is in the inbox, so the task content is read from the task service
+ * once per task rather than on every page load. The task list itself is
+ * reloaded when tasks are created or completed (see TaskInboxListener) and at
+ * least every homeloan.inbox.refreshSeconds, for tasks created elsewhere. While
+ * a reload is running other requests are served the previous list.
+ */
+public class TaskInbox {
+
+	private static final Logger LOG = Logger.getLogger(TaskInbox.class);
+
+	public static final QName HUMAN_EVALUATION = new QName("urn:homeloan:1.0", "HumanEvaluationService");
+
+	private static final long REFRESH_MILLIS = Long.getLong("homeloan.inbox.refreshSeconds", 5) * 1000L;
+
+	private static final ConcurrentMap<String, TaskInbox> inboxes = new ConcurrentHashMap<String, TaskInbox>();
+
+	private static final Comparator<TaskView> OLDEST_FIRST = new Comparator<TaskView>() {
+		public int compare(TaskView a, TaskView b) {
+			if (a.createdOnMillis() != b.createdOnMillis()) {
+				return a.createdOnMillis() < b.createdOnMillis() ? -1 : 1;
+			}
+			return a.getTaskId() < b.getTaskId() ? -1 : (a.getTaskId() == b.getTaskId() ? 0 : 1);
+		}
+	};
+
+	/**
+	 * Where the inbox reads tasks from.
+	 */
+	public interface Source {
+
+		List<TaskSummary> tasks();
+
+		Map<String, Object> content(long taskId);
+	}
+
+	private final Source source;
+	private final ConcurrentMap<Long, TaskView> views = new ConcurrentHashMap<Long, TaskView>();
+	private final ReentrantLock loading = new ReentrantLock();
+	private volatile List<TaskView> tasks;
+	private volatile long loadedAt;
+	private volatile boolean stale = true;
+
+	public TaskInbox(Source source) {
+		this.source = source;
+	}
+
+	/**
+	 * @return the inbox of the tasks the user is a potential owner of
+	 */
+	public static TaskInbox forUser(final String userId, final String language) {
+		TaskInbox inbox = inboxes.get(userId);
+		if (inbox == null) {
+			final BPMTaskService taskService = BPMTaskServiceRegistry.getTaskService(null, HUMAN_EVALUATION);
+			inbox = new TaskInbox(new Source() {
+				public List<TaskSummary> tasks() {
+					return taskService.getTasksAssignedAsPotentialOwner(userId, language);
+				}
+
+				public Map<String, Object> content(long taskId) {
+					return taskService.getTaskContent(taskId);
+				}
+			});
+			TaskInbox existing = inboxes.putIfAbsent(userId, inbox);
+			if (existing != null) {
+				inbox = existing;
+			}
+		}
+		return inbox;
+	}
+
+	/**
+	 * Marks every inbox for reloading, as tasks were created or completed.
+	 */
+	public static void tasksChanged() {
+		for (TaskInbox inbox : inboxes.values()) {
+			inbox.invalidate();
+		}
+	}
+
+	public void invalidate() {
+		stale = true;
+	}
+
+	/**
+	 * Drops a task that was completed through this inbox.
+	 */
+	public void remove(long taskId) {
+		views.remove(taskId);
+		stale = true;
+	}
+
+	/**
+	 * @param first
+	 *            index of the first matching task to return
+	 * @param size
+	 *            maximum number of tasks to return
+	 */
+	public Page page(TaskFilter filter, int first, int size) {
+		List<TaskView> all = tasks();
+		List<TaskView> matching = all;
+		if (filter != null && !filter.isEmpty()) {
+			matching = new ArrayList<TaskView>();
+			for (TaskView task : all) {
+				if (filter.matches(task)) {
+					matching.add(task);
+				}
+			}
+		}
+		int total = matching.size();
+		size = Math.max(1, size);
+		// past the end is the last page
+		int last = total == 0 ? 0 : (total - 1) / size * size;
+		first = Math.max(0, Math.min(first, last));
+		List<TaskView> page = new ArrayList<TaskView>(matching.subList(first, Math.min(total, first + size)));
+		return new Page(page, first, total);
+	}
+
+	public TaskView get(long taskId) {
+		return views.get(taskId);
+	}
+
+	public Map<String, Object> content(long taskId) {
+		return source.content(taskId);
+	}
+
+	private List<TaskView> tasks() {
+		List<TaskView> current = tasks;
+		if (current != null && !stale && System.currentTimeMillis() - loadedAt < REFRESH_MILLIS) {
+			return current;
+		}
+		if (current != null) {
+			if (!loading.tryLock()) {
+				// another request is reloading
+				return current;
+			}
+		} else {
+			loading.lock();
+		}
+		try {
+			if (tasks != current) {
+				return tasks;
+			}
+			return load();
+		} finally {
+			loading.unlock();
+		}
+	}
+
+	private List<TaskView> load() {
+		// changes from here on trigger another reload
+		stale = false;
+		long started = System.currentTimeMillis();
+		long start = System.nanoTime();
+		List<TaskSummary> summaries;
+		try {
+			summaries = source.tasks();
+		} catch (RuntimeException e) {
+			// the next request tries again rather than the previous list
+			// being served until the refresh period is over
+			stale = true;
+			throw e;
+		}
+		List<TaskView> loaded = new ArrayList<TaskView>(summaries.size());
+		Set<Long> ids = new HashSet<Long>();
+		int projected = 0;
+		for (TaskSummary summary : summaries) {
+			if (!ids.add(summary.getId())) {
+				continue;
+			}
+			TaskView view = views.get(summary.getId());
+			if (view == null) {
+				view = project(summary);
+				if (view == null) {
+					continue;
+				}
+				views.put(summary.getId(), view);
+				projected++;
+			}
+			loaded.add(view);
+		}
+		views.keySet().retainAll(ids);
+		Collections.sort(loaded, OLDEST_FIRST);
+		tasks = Collections.unmodifiableList(loaded);
+		loadedAt = started;
+		if (LOG.isDebugEnabled()) {
+			LOG.debugf("Loaded %d tasks (%d new) in %d ms", loaded.size(), projected, (System.nanoTime() - start) / 1000000);
+		}
+		return tasks;
+	}
+
+	private TaskView project(TaskSummary summary) {
+		try {
+			Map<String, Object> content = source.content(summary.getId());
+			return new TaskView(summary.getId(), summary.getCreatedOn(),
+					(Applicant)content.get("applicant"), (LoanApplication)content.get("application"));
+		} catch (RuntimeException e) {
+			// e.g. completed since it was listed
+			LOG.debugf(e, "Skipping task %d", summary.getId());
+			return null;
+		}
+	}
+
+	/**
+	 * A page of the matching tasks.
+	 */
+	public static final class Page {
+
+		private final List<TaskView> tasks;
+		private final int first;
+		private final int total;
+
+		Page(List<TaskView> tasks, int first, int total) {
+			this.tasks = tasks;
+			this.first = first;
+			this.total = total;
+		}
+
+		public List<TaskView> getTasks() {
+			return tasks;
+		}
+
+		/**
+		 * @return the index of the first task of the page among the matching
+		 *         tasks
+		 */
+		public int getFirst() {
+			return first;
+		}
+
+		/**
+		 * @return the number of matching tasks
+		 */
+		public int getTotal() {
+			return total;
+		}
+	}
+}
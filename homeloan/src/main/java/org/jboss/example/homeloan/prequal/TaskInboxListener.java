@@ -0,0 +1,31 @@
+package org.jboss.example.homeloan.prequal;
+
+import org.kie.api.event.process.DefaultProcessEventListener;
+import org.kie.api.event.process.ProcessNodeLeftEvent;
+import org.kie.api.event.process.ProcessNodeTriggeredEvent;
+import org.kie.api.runtime.process.NodeInstance;
+
+/**
+ * Reloads the task inboxes when a "Human Eval" task is created or completed,
+ * i.e. when the process enters or leaves the user task node.
+ */
+public class TaskInboxListener extends DefaultProcessEventListener {
+
+	private static final String HUMAN_EVAL = "Human Eval";
+
+	@Override
+	public void afterNodeTriggered(ProcessNodeTriggeredEvent event) {
+		tasksChanged(event.getNodeInstance());
+	}
+
+	@Override
+	public void afterNodeLeft(ProcessNodeLeftEvent event) {
+		tasksChanged(event.getNodeInstance());
+	}
+
+	private static void tasksChanged(NodeInstance node) {
+		if (HUMAN_EVAL.equals(node.getNodeName())) {
+			TaskInbox.tasksChanged();
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package org.jboss.example.homeloan.prequal;
+
+import java.io.Serializable;
+import java.util.Date;
+
+import org.jboss.example.homeloan.data.Applicant;
+import org.jboss.example.homeloan.data.LoanApplication;
+
+/**
+ * What the task inbox shows of a "Human Eval" task, projected from its
+ * content once and cached by TaskInbox.
+ */
+public final class TaskView implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final long taskId;
+	private final long createdOn;
+	private final String ssn;
+	private final String name;
+	private final int creditScore;
+	private final int age;
+	private final int amount;
+
+	public TaskView(long taskId, Date createdOn, Applicant applicant, LoanApplication application) {
+		this.taskId = taskId;
+		this.createdOn = createdOn != null ? createdOn.getTime() : 0;
+		if (applicant == null && application != null) {
+			applicant = application.getApplicant();
+		}
+		this.ssn = applicant != null ? applicant.getSsn() : "";
+		this.name = applicant != null ? applicant.getFirstName() + " " + applicant.getLastName() : "";
+		this.creditScore = applicant != null ? applicant.getCreditScore() : 0;
+		this.age = applicant != null ? applicant.getAge() : 0;
+		// tasks created before the application was part of the task content
+		this.amount = application != null ? application.getAmount() : 0;
+	}
+
+	public long getTaskId() {
+		return taskId;
+	}
+
+	public Date getCreatedOn() {
+		return new Date(createdOn);
+	}
+
+	public String getSsn() {
+		return ssn;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getCreditScore() {
+		return creditScore;
+	}
+
+	public int getAge() {
+		return age;
+	}
+
+	public int getAmount() {
+		return amount;
+	}
+
+	long createdOnMillis() {
+		return createdOn;
+	}
+}
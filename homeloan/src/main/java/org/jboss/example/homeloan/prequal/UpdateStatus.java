@@ -1,5 +1,6 @@
 package org.jboss.example.homeloan.prequal;
 
+import org.jboss.example.homeloan.audit.AuditLog;
 import org.jboss.example.homeloan.data.LoanApplication;
 import org.jboss.example.homeloan.data.Qualification;
 import org.kie.api.runtime.process.WorkItem;
@@ -11,23 +12,17 @@ public class UpdateStatus implements WorkItemHandler {
 	@Override
 	public void executeWorkItem(WorkItem workItem, WorkItemManager manager) {
 		
-		// Update loan status
-		LoanApplication application = (LoanApplication)workItem.getParameter("application");
-		Qualification qualification = (Qualification)workItem.getParameter("qualification");
-		LoanStatus.updateStatus(application.getApplicant().getSsn(), qualification);
-		
-		// Print summary
-		System.out.println(
-				  "\n===== Prequalification Summary ======="
-				+ "\nSSN            : " + application.getApplicant().getSsn()
-				+ "\nName           : " + application.getApplicant().getFirstName() + " " + application.getApplicant().getLastName()
-				+ "\nLoan Amount    : " + application.getAmount()
-				+ "\nLoan Length    : " + application.getLengthYears()
-				+ "\nStatus         : " + qualification.getStatus()
-				+ "\nExplanation    : " + qualification.getExplanation()
-				+ "\nInsurance Cost : " + qualification.getCost()
-				+ "\nRate           : " + qualification.getRate()
-				+ "\n======================================\n");
+		final LoanApplication application = (LoanApplication)workItem.getParameter("application");
+		final Qualification qualification = (Qualification)workItem.getParameter("qualification");
+		// the status, its events and the audit summary only once the decision is committed
+		AfterCommit.run(new Runnable() {
+			public void run() {
+				LoanStatus.updateStatus(application.getApplicant().getSsn(), qualification);
+				AuditLog.getInstance().prequalification(application, qualification);
+			}
+		});
+
+		manager.completeWorkItem(workItem.getId(), null);
 	}
 
 	@Override
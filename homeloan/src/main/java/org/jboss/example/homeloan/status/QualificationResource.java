@@ -1,8 +1,12 @@
 package org.jboss.example.homeloan.status;
 
+import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
+import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.jboss.example.homeloan.data.Qualification;
 
@@ -14,4 +18,22 @@ public interface QualificationResource {
 	@Path("{ssn}")
 	public Qualification status(@PathParam("ssn") String ssn);
 	
+	/**
+	 * Statuses of the POSTed SSNs (a JSON array, or separated by commas or
+	 * white space) as a JSON object keyed by SSN.
+	 */
+	@POST
+	@Consumes({"application/json", "text/plain"})
+	@Produces("application/json")
+	public StreamingOutput statuses(String ssns);
+
+	/**
+	 * Where the application of the SSN is in the prequalification processes,
+	 * as a JSON object, or null if no process instance is working on it.
+	 */
+	@GET
+	@Path("{ssn}/process")
+	@Produces("application/json")
+	public String process(@PathParam("ssn") String ssn);
+	
 }
@@ -0,0 +1,131 @@
+package org.jboss.example.homeloan.status;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.jboss.logging.Logger;
+
+/**
+ * Pushes status updates as Server-Sent Events, so that clients need not poll
+ * /loanstatus: GET /loans/statusevents?ssn=740123456&ssn=800559876 (or
+ * ssn=740123456,800559876). See StatusSubscription for the events sent.
+ *
+ * Requests are handled asynchronously, so an open subscription holds no
+ * request thread. Events are written by a small pool of writer threads; as
+ * Servlet 3.0 writes block, a subscription whose client has not taken a write
+ * within homeloan.status.eventWriteDeadlineSeconds is closed, so that clients
+ * that stopped reading do not keep the writer threads from the others.
+ */
+@WebServlet(urlPatterns = "/statusevents", asyncSupported = true)
+public class StatusEventServlet extends HttpServlet {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final Logger LOG = Logger.getLogger(StatusEventServlet.class);
+
+	private static final long TIMEOUT_MILLIS = Long.getLong("homeloan.status.eventTimeoutSeconds", 300) * 1000L;
+	private static final int MAX_SSNS = Integer.getInteger("homeloan.status.maxBatch", 10000);
+	private static final int WRITERS = Integer.getInteger("homeloan.status.eventWriters", 4);
+	private static final long WRITE_DEADLINE_MILLIS = Long.getLong("homeloan.status.eventWriteDeadlineSeconds", 10)
+			* 1000L;
+
+	private final Set<StatusSubscription> subscriptions = Collections
+			.newSetFromMap(new ConcurrentHashMap<StatusSubscription, Boolean>());
+	private ExecutorService writer;
+	private ScheduledExecutorService deadlines;
+
+	@Override
+	public void init() {
+		writer = Executors.newFixedThreadPool(WRITERS, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "homeloan-status-events-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		deadlines = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "homeloan-status-events-deadline");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		long period = Math.max(WRITE_DEADLINE_MILLIS / 2, 100L);
+		deadlines.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				closeOverdue();
+			}
+		}, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public void destroy() {
+		deadlines.shutdownNow();
+		writer.shutdownNow();
+	}
+
+	private void closeOverdue() {
+		long now = System.currentTimeMillis();
+		for (Iterator<StatusSubscription> i = subscriptions.iterator(); i.hasNext();) {
+			StatusSubscription subscription = i.next();
+			if (subscription.isOverdue(now, WRITE_DEADLINE_MILLIS)) {
+				LOG.debugf("Status event client did not read for %d ms, closing its subscription",
+						WRITE_DEADLINE_MILLIS);
+				subscription.close();
+			}
+			if (subscription.isClosed()) {
+				i.remove();
+			}
+		}
+	}
+
+	@Override
+	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		Set<String> ssns = new LinkedHashSet<String>();
+		String[] values = request.getParameterValues("ssn");
+		try {
+			if (values != null) {
+				for (String value : values) {
+					ssns.addAll(StatusStream.parse(value, MAX_SSNS));
+				}
+			}
+			if (ssns.size() > MAX_SSNS) {
+				throw new IllegalArgumentException("More than " + MAX_SSNS + " SSNs requested");
+			}
+		} catch (IllegalArgumentException e) {
+			response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+			return;
+		}
+		if (ssns.isEmpty()) {
+			response.sendError(HttpServletResponse.SC_BAD_REQUEST, "No ssn parameter");
+			return;
+		}
+
+		response.setContentType("text/event-stream");
+		response.setCharacterEncoding("UTF-8");
+		response.setHeader("Cache-Control", "no-cache");
+		AsyncContext async = request.startAsync();
+		async.setTimeout(TIMEOUT_MILLIS);
+		StatusSubscription subscription = new StatusSubscription(async, writer, ssns);
+		subscriptions.add(subscription);
+		subscription.start();
+	}
+}
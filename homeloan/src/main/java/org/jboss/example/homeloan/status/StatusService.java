@@ -5,4 +5,8 @@ import org.jboss.example.homeloan.data.Qualification;
 public interface StatusService {
 
 	Qualification status(String ssn);
+
+	StatusStream statuses(String ssns);
+
+	String process(String ssn);
 }
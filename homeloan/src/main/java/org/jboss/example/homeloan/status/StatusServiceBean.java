@@ -1,15 +1,62 @@
 package org.jboss.example.homeloan.status;
 
+import java.io.IOException;
+import java.io.StringWriter;
+
 import org.jboss.example.homeloan.data.Qualification;
 import org.jboss.example.homeloan.prequal.LoanStatus;
+import org.jboss.example.homeloan.prequal.ProcessIndex;
+import org.jboss.example.homeloan.prequal.ProcessLocation;
 import org.switchyard.component.bean.Service;
 
+/**
+ * Answers status lookups from LoanStatus. With the statuses sharded across
+ * nodes (see ShardedStatusStore) a lookup is routed straight to the nodes
+ * that own the SSN, whichever node the request landed on.
+ */
 @Service(StatusService.class)
 public class StatusServiceBean implements StatusService {
 
+	private static final int MAX_BATCH = Integer.getInteger("homeloan.status.maxBatch", 10000);
+
 	@Override
 	public Qualification status(String ssn) {
 		return LoanStatus.getStatus(ssn);
 	}
 
+	@Override
+	public StatusStream statuses(String ssns) {
+		return new StatusStream(StatusStream.parse(ssns, MAX_BATCH));
+	}
+
+	@Override
+	public String process(String ssn) {
+		ProcessLocation location = ProcessIndex.getInstance().locate(ssn);
+		if (location == null) {
+			return "null";
+		}
+		StringWriter json = new StringWriter();
+		try {
+			json.write("{\"ssn\":");
+			StatusStream.string(json, location.getSsn());
+			json.write(",\"process\":");
+			StatusStream.string(json, location.getProcessId());
+			json.write(",\"processInstanceId\":" + location.getProcessInstanceId());
+			json.write(",\"startedMillis\":" + location.getStartedMillis());
+			json.write(",\"node\":");
+			StatusStream.string(json, location.getNode());
+			json.write(",\"nodeEnteredMillis\":" + location.getNodeEnteredMillis());
+			json.write(",\"taskId\":" + location.getTaskId());
+			json.write(",\"taskStatus\":");
+			StatusStream.string(json, location.getTaskStatus());
+			json.write(",\"taskOwner\":");
+			StatusStream.string(json, location.getTaskOwner());
+			json.write('}');
+		} catch (IOException e) {
+			// not thrown by a StringWriter
+			throw new IllegalStateException(e);
+		}
+		return json.toString();
+	}
+
 }
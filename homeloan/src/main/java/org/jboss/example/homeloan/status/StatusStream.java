@@ -0,0 +1,144 @@
+package org.jboss.example.homeloan.status;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import org.jboss.example.homeloan.data.Qualification;
+import org.jboss.example.homeloan.prequal.LoanStatus;
+
+/**
+ * The statuses of a list of SSNs as a JSON object keyed by SSN, with null for
+ * an SSN without a status. Statuses are looked up as the response is written,
+ * a chunk of SSNs at a time, so the response is never held in memory as a
+ * whole.
+ */
+public class StatusStream implements StreamingOutput {
+
+	// SSNs looked up at once, in one request per node if the statuses are sharded
+	private static final int CHUNK = 256;
+
+	private final Collection<String> ssns;
+
+	public StatusStream(Collection<String> ssns) {
+		this.ssns = ssns;
+	}
+
+	/**
+	 * Parses a JSON array of SSNs, or SSNs separated by commas or white space.
+	 * Duplicates are dropped.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if there are more than maxSsns SSNs
+	 */
+	public static Set<String> parse(String ssns, int maxSsns) {
+		Set<String> parsed = new LinkedHashSet<String>();
+		if (ssns == null) {
+			return parsed;
+		}
+		int start = -1;
+		for (int i = 0; i <= ssns.length(); i++) {
+			boolean separator = i == ssns.length() || isSeparator(ssns.charAt(i));
+			if (!separator && start < 0) {
+				start = i;
+			} else if (separator && start >= 0) {
+				parsed.add(ssns.substring(start, i));
+				start = -1;
+				if (parsed.size() > maxSsns) {
+					throw new IllegalArgumentException("More than " + maxSsns + " SSNs requested");
+				}
+			}
+		}
+		return parsed;
+	}
+
+	private static boolean isSeparator(char c) {
+		return c == ',' || c == '"' || c == '[' || c == ']' || Character.isWhitespace(c);
+	}
+
+	@Override
+	public void write(OutputStream output) throws IOException {
+		Writer out = new BufferedWriter(new OutputStreamWriter(output, "UTF-8"));
+		out.write('{');
+		List<String> chunk = new ArrayList<String>(Math.min(CHUNK, ssns.size()));
+		boolean first = true;
+		for (String ssn : ssns) {
+			chunk.add(ssn);
+			if (chunk.size() == CHUNK) {
+				write(out, chunk, first);
+				chunk.clear();
+				first = false;
+			}
+		}
+		if (!chunk.isEmpty()) {
+			write(out, chunk, first);
+		}
+		out.write('}');
+		out.flush();
+	}
+
+	private static void write(Writer out, List<String> ssns, boolean first) throws IOException {
+		Qualification[] qualifications = LoanStatus.getStatuses(ssns);
+		for (int i = 0; i < qualifications.length; i++) {
+			if (!first || i > 0) {
+				out.write(',');
+			}
+			string(out, ssns.get(i));
+			out.write(':');
+			write(out, qualifications[i]);
+		}
+	}
+
+	/**
+	 * Writes a qualification as a JSON object, or null.
+	 */
+	static void write(Writer out, Qualification qualification) throws IOException {
+		if (qualification == null) {
+			out.write("null");
+			return;
+		}
+		out.write("{\"status\":");
+		string(out, qualification.getStatus());
+		out.write(",\"rate\":");
+		string(out, qualification.getRate());
+		out.write(",\"explanation\":");
+		string(out, qualification.getExplanation());
+		out.write(",\"cost\":");
+		out.write(Integer.toString(qualification.getCost()));
+		out.write('}');
+	}
+
+	/**
+	 * Writes a value as a JSON string, escaped, or null.
+	 */
+	public static void string(Writer out, String value) throws IOException {
+		if (value == null) {
+			out.write("null");
+			return;
+		}
+		out.write('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				out.write('\\');
+				out.write(c);
+			} else if (c < 0x20) {
+				out.write("\\u00");
+				out.write(Character.forDigit(c >> 4, 16));
+				out.write(Character.forDigit(c & 0xf, 16));
+			} else {
+				out.write(c);
+			}
+		}
+		out.write('"');
+	}
+}
@@ -0,0 +1,234 @@
+package org.jboss.example.homeloan.status;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+
+import org.jboss.example.homeloan.data.Qualification;
+import org.jboss.example.homeloan.prequal.LoanStatus;
+import org.jboss.example.homeloan.prequal.StatusListener;
+import org.jboss.logging.Logger;
+
+/**
+ * An open Server-Sent Events response. It is sent a "status" event whenever
+ * the status of one of its SSNs is updated, starting with the current status.
+ * The event data is a JSON object with the SSN as its only key, in the same
+ * form as the bulk status query. The response is completed once every SSN has
+ * a status other than Pending, or when the async request times out.
+ *
+ * Events are queued per subscription, and at most one writer thread at a time
+ * writes a subscription's queue, so its events stay in order and a client
+ * that reads slowly holds up one writer thread at most. A subscription whose
+ * queue grows beyond homeloan.status.eventQueueSize events is closed; the
+ * client reconnects and starts again from the current statuses.
+ */
+class StatusSubscription implements StatusListener, AsyncListener {
+
+	private static final Logger LOG = Logger.getLogger(StatusSubscription.class);
+
+	private static final String PENDING = "Pending";
+	private static final int MAX_QUEUED = Integer.getInteger("homeloan.status.eventQueueSize", 1000);
+
+	private final AsyncContext async;
+	private final Executor writer;
+	private final Collection<String> ssns;
+	private final Set<String> undecided = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private final AtomicBoolean closed = new AtomicBoolean();
+	private final Queue<Event> events = new ConcurrentLinkedQueue<Event>();
+	private final AtomicInteger queued = new AtomicInteger();
+	// set while a task to write the queue is submitted or running
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+	private final Runnable drain = new Runnable() {
+		public void run() {
+			try {
+				send();
+			} finally {
+				scheduled.set(false);
+			}
+			// queued after the last poll, but before scheduled was cleared
+			if (!events.isEmpty()) {
+				schedule();
+			}
+		}
+	};
+	// when the current write started, 0 while not writing
+	private volatile long writingSince;
+
+	/**
+	 * @param writer
+	 *            writes the events, so that a slow client holds up neither the
+	 *            thread updating the status nor the request thread
+	 */
+	StatusSubscription(AsyncContext async, Executor writer, Collection<String> ssns) {
+		this.async = async;
+		this.writer = writer;
+		this.ssns = ssns;
+		undecided.addAll(ssns);
+	}
+
+	void start() {
+		async.addListener(this);
+		for (String ssn : ssns) {
+			LoanStatus.addListener(ssn, this);
+		}
+		// the status may have been decided before the listener was added
+		for (String ssn : ssns) {
+			Qualification qualification = LoanStatus.getStatus(ssn);
+			if (qualification != null) {
+				statusUpdated(ssn, qualification);
+			}
+		}
+		write(": subscribed to " + ssns.size() + " SSN(s)\n\n", null);
+	}
+
+	@Override
+	public void statusUpdated(String ssn, Qualification qualification) {
+		// format now, the process may still change the qualification
+		StringWriter event = new StringWriter();
+		try {
+			event.write("event: status\ndata: {");
+			StatusStream.string(event, ssn);
+			event.write(':');
+			StatusStream.write(event, qualification);
+			event.write("}\n\n");
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		write(event.toString(), PENDING.equals(qualification.getStatus()) ? null : ssn);
+	}
+
+	private void write(String event, String decided) {
+		if (closed.get()) {
+			return;
+		}
+		if (queued.incrementAndGet() > MAX_QUEUED) {
+			LOG.debugf("Status subscription is more than %d events behind, closing it", MAX_QUEUED);
+			close();
+			return;
+		}
+		events.add(new Event(event, decided));
+		schedule();
+	}
+
+	private void schedule() {
+		if (!closed.get() && scheduled.compareAndSet(false, true)) {
+			try {
+				writer.execute(drain);
+			} catch (RejectedExecutionException e) {
+				// shutting down
+				scheduled.set(false);
+				close();
+			}
+		}
+	}
+
+	/**
+	 * Writes the events queued so far and flushes them once.
+	 */
+	private void send() {
+		List<String> decided = new ArrayList<String>();
+		writingSince = System.currentTimeMillis();
+		try {
+			PrintWriter out = async.getResponse().getWriter();
+			for (Event event = events.poll(); event != null && !closed.get(); event = events.poll()) {
+				queued.decrementAndGet();
+				out.write(event.text);
+				if (event.decided != null) {
+					decided.add(event.decided);
+				}
+			}
+			if (closed.get()) {
+				return;
+			}
+			out.flush();
+			if (out.checkError()) {
+				close();
+				return;
+			}
+		} catch (Exception e) {
+			close();
+			return;
+		} finally {
+			writingSince = 0;
+		}
+		for (String ssn : decided) {
+			if (undecided.remove(ssn) && undecided.isEmpty()) {
+				close();
+			}
+		}
+	}
+
+	/**
+	 * @return true if a write to the client has been blocked for longer than
+	 *         deadlineMillis
+	 */
+	boolean isOverdue(long now, long deadlineMillis) {
+		long since = writingSince;
+		return since != 0 && now - since > deadlineMillis;
+	}
+
+	boolean isClosed() {
+		return closed.get();
+	}
+
+	void close() {
+		if (closed.compareAndSet(false, true)) {
+			for (String ssn : ssns) {
+				LoanStatus.removeListener(ssn, this);
+			}
+			try {
+				async.complete();
+			} catch (IllegalStateException e) {
+				// the container completed it already, e.g. on a timeout
+				LOG.debug("Status subscription already completed", e);
+			}
+		}
+	}
+
+	@Override
+	public void onComplete(AsyncEvent event) {
+		close();
+	}
+
+	@Override
+	public void onTimeout(AsyncEvent event) {
+		close();
+	}
+
+	@Override
+	public void onError(AsyncEvent event) {
+		close();
+	}
+
+	@Override
+	public void onStartAsync(AsyncEvent event) {
+	}
+
+	private static final class Event {
+
+		final String text;
+		// the SSN decided by this event, if any
+		final String decided;
+
+		Event(String text, String decided) {
+			this.text = text;
+			this.decided = decided;
+		}
+	}
+}
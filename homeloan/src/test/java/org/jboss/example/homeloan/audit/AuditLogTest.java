@@ -0,0 +1,98 @@
+package org.jboss.example.homeloan.audit;
+
+import java.io.ByteArrayOutputStream;
+
+import org.jboss.example.homeloan.data.Applicant;
+import org.jboss.example.homeloan.data.IncomeSource;
+import org.jboss.example.homeloan.data.LoanApplication;
+import org.jboss.example.homeloan.data.Qualification;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AuditLogTest {
+
+	@Test
+	public void writesJsonLines() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		AuditLog log = new AuditLog(AuditLog.Level.ALL, AuditLog.Format.JSON, out, 4, false);
+		LoanApplication application = application();
+		Qualification qualification = new Qualification();
+		qualification.setStatus("Approved");
+		qualification.setExplanation("Says \"yes\"");
+		qualification.setRate("4.5");
+
+		log.intake(application);
+		log.prequalification(application, qualification);
+		awaitWritten(log, 2);
+
+		String[] lines = out.toString("UTF-8").split("\n");
+		Assert.assertEquals(2, lines.length);
+		Assert.assertTrue(lines[0], lines[0].startsWith("{\"event\":\"intake\""));
+		Assert.assertTrue(lines[0], lines[0].contains("\"ssn\":\"123456789\""));
+		Assert.assertTrue(lines[0], lines[0].contains("\"streetAddress\":null"));
+		Assert.assertTrue(lines[1], lines[1].contains("\"explanation\":\"Says \\\"yes\\\"\""));
+	}
+
+	@Test
+	public void levelFiltersRecords() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		AuditLog log = new AuditLog(AuditLog.Level.DECISIONS, AuditLog.Format.TEXT, out, 4, false);
+		log.intake(application());
+		log.prequalification(application(), new Qualification());
+		awaitWritten(log, 1);
+		Assert.assertTrue(out.toString("UTF-8").contains("Prequalification Summary"));
+		Assert.assertFalse(out.toString("UTF-8").contains("Loan Intake Summary"));
+
+		log.setLevel("OFF");
+		log.prequalification(application(), new Qualification());
+		Assert.assertEquals(0, log.getPending());
+	}
+
+	@Test
+	public void fullRingBlocksUntilWritten() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		AuditLog log = new AuditLog(AuditLog.Level.ALL, AuditLog.Format.BINARY, out, 4, false);
+		for (int i = 0; i < 1000; i++) {
+			log.intake(application());
+		}
+		awaitWritten(log, 1000);
+		Assert.assertEquals(0, log.getDropped());
+	}
+
+	@Test
+	public void closeWritesWhatIsLeftAndStopsTheWriter() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		AuditLog log = new AuditLog(AuditLog.Level.ALL, AuditLog.Format.TEXT, out, 64, false);
+		for (int i = 0; i < 50; i++) {
+			log.intake(application());
+		}
+		log.close();
+		Assert.assertFalse(log.isRunning());
+		Assert.assertEquals(50, log.getWritten());
+		Assert.assertEquals(50, out.toString("UTF-8").split("Loan Intake Summary", -1).length - 1);
+
+		log.intake(application());
+		Assert.assertEquals(1, log.getDropped());
+		Assert.assertEquals(0, log.getPending());
+	}
+
+	private static LoanApplication application() {
+		Applicant applicant = new Applicant();
+		applicant.setSsn("123456789");
+		applicant.setFirstName("Bob");
+		LoanApplication application = new LoanApplication();
+		application.setApplicant(applicant);
+		application.setIncome(new IncomeSource());
+		application.setAmount(200000);
+		return application;
+	}
+
+	private static void awaitWritten(AuditLog log, long count) throws InterruptedException {
+		for (int i = 0; i < 500 && log.getWritten() < count; i++) {
+			Thread.sleep(10);
+		}
+		Assert.assertEquals(count, log.getWritten());
+		// the writer flushes right after catching up
+		Thread.sleep(20);
+	}
+}
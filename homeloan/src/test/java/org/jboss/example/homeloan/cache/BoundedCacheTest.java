@@ -0,0 +1,66 @@
+package org.jboss.example.homeloan.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BoundedCacheTest {
+
+	@Test
+	public void sizeStaysBounded() {
+		BoundedCache<Integer, String> cache = new BoundedCache<Integer, String>("test", 100, 0, false);
+		for (int i = 0; i < 10000; i++) {
+			cache.put(i, "value" + i);
+		}
+		Assert.assertTrue(cache.size() <= 100);
+		Assert.assertEquals(9900, cache.getStats().getEvictions());
+		Assert.assertEquals("value9999", cache.get(9999));
+	}
+
+	@Test
+	public void recentlyReadEntriesSurvive() {
+		BoundedCache<Integer, String> cache = new BoundedCache<Integer, String>("test", 3, 0, false);
+		cache.put(1, "one");
+		cache.put(2, "two");
+		cache.put(3, "three");
+		cache.get(1);
+		cache.put(4, "four");
+		Assert.assertEquals("one", cache.get(1));
+		Assert.assertNull(cache.get(2));
+	}
+
+	@Test
+	public void updatesDoNotGrowTheCache() {
+		BoundedCache<String, String> cache = new BoundedCache<String, String>("test", 10, 0, false);
+		for (int i = 0; i < 1000; i++) {
+			cache.put("ssn", "status" + i);
+		}
+		Assert.assertEquals(1, cache.size());
+		Assert.assertEquals("status999", cache.get("ssn"));
+		Assert.assertEquals(0, cache.getStats().getEvictions());
+	}
+
+	@Test
+	public void expiredEntriesAreMisses() throws Exception {
+		BoundedCache<String, String> cache = new BoundedCache<String, String>("test", 10, 1, false);
+		cache.put("ssn", "Pending");
+		Thread.sleep(5);
+		Assert.assertNull(cache.get("ssn"));
+		Assert.assertEquals(0, cache.size());
+		Assert.assertEquals(1, cache.getStats().getExpirations());
+		Assert.assertEquals(1, cache.getStats().getMisses());
+	}
+
+	@Test
+	public void putIfAbsentKeepsALiveValueAndReplacesAnExpiredOne() throws Exception {
+		BoundedCache<String, String> cache = new BoundedCache<String, String>("test", 10, 20, false);
+		Assert.assertNull(cache.putIfAbsent("ssn", "Pending"));
+		Assert.assertEquals("Pending", cache.putIfAbsent("ssn", "Approved"));
+		Assert.assertFalse(cache.replace("ssn", "Approved", "Denied"));
+		Assert.assertTrue(cache.replace("ssn", "Pending", "Approved"));
+		Assert.assertEquals("Approved", cache.get("ssn"));
+		Thread.sleep(30);
+		Assert.assertNull(cache.putIfAbsent("ssn", "Denied"));
+		Assert.assertEquals("Denied", cache.get("ssn"));
+		Assert.assertEquals(1, cache.size());
+	}
+}
@@ -0,0 +1,136 @@
+package org.jboss.example.homeloan.clients;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Draws applications from the XML fixtures on the test classpath, each with
+ * an SSN of its own so that its status can be told apart at /loanstatus.
+ *
+ * The mix is a comma separated list of fixture names, optionally weighted,
+ * e.g. "Tina:4,Joe,Bob". A generated SSN keeps the first three digits of the
+ * fixture's SSN, which the credit check derives the credit score from, so each
+ * fixture still gets the outcome it stands for. The last six digits count up
+ * from a random offset so that consecutive runs against the same server do
+ * not pick up each other's statuses.
+ */
+final class ApplicationMix {
+
+	static final String DEFAULT_MIX = "Bob,Tina,Sally,Frank,Victor,Barbara,Sam,Joe";
+
+	private static final String SSN_START = "<app:SSN>";
+	private static final String SSN_END = "</app:SSN>";
+	private static final int SSN_PREFIX = 3;
+	private static final long SSN_RANGE = 1000000L;
+
+	private static final String SOAP_START = "<soapenv:Envelope"
+			+ " xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\"><soapenv:Body>";
+	private static final String SOAP_END = "</soapenv:Body></soapenv:Envelope>";
+
+	private final List<Template> templates = new ArrayList<Template>();
+	private final AtomicLong nextSsn = new AtomicLong(new Random().nextInt((int)(SSN_RANGE / 2)));
+
+	/**
+	 * @param mix
+	 *            the fixtures to draw from
+	 * @param soap
+	 *            whether to wrap the applications in a SOAP envelope
+	 */
+	ApplicationMix(String mix, boolean soap) throws Exception {
+		for (String entry : mix.split(",")) {
+			entry = entry.trim();
+			if (entry.length() == 0) {
+				continue;
+			}
+			int weight = 1;
+			int colon = entry.indexOf(':');
+			if (colon > 0) {
+				weight = Integer.parseInt(entry.substring(colon + 1).trim());
+				entry = entry.substring(0, colon).trim();
+			}
+			Template template = new Template(entry, read(entry + ".xml"), soap);
+			for (int i = 0; i < weight; i++) {
+				templates.add(template);
+			}
+		}
+		if (templates.isEmpty()) {
+			throw new IllegalArgumentException("No fixtures in mix: " + mix);
+		}
+	}
+
+	Submission next(Random random) {
+		Template template = templates.get(random.nextInt(templates.size()));
+		String serial = String.valueOf(SSN_RANGE + nextSsn.getAndIncrement() % SSN_RANGE);
+		String ssn = template.ssnPrefix + serial.substring(1);
+		return new Submission(template.fixture, ssn, template.prefix + ssn + template.suffix);
+	}
+
+	private static String read(String resource) throws Exception {
+		InputStream in = ApplicationMix.class.getClassLoader().getResourceAsStream(resource);
+		if (in == null) {
+			throw new IllegalArgumentException(resource + " not found on the classpath");
+		}
+		try {
+			Reader reader = new InputStreamReader(in, "UTF-8");
+			StringBuilder text = new StringBuilder();
+			char[] buffer = new char[4096];
+			for (int n; (n = reader.read(buffer)) > 0;) {
+				text.append(buffer, 0, n);
+			}
+			return text.toString();
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * A fixture split around the content of its SSN element.
+	 */
+	private static final class Template {
+
+		final String fixture;
+		final String prefix;
+		final String suffix;
+		final String ssnPrefix;
+
+		Template(String fixture, String xml, boolean soap) {
+			if (soap) {
+				if (xml.startsWith("<?xml")) {
+					xml = xml.substring(xml.indexOf("?>") + 2).trim();
+				}
+				xml = SOAP_START + xml + SOAP_END;
+			}
+			int start = xml.indexOf(SSN_START);
+			int end = xml.indexOf(SSN_END, start);
+			if (start < 0 || end < 0) {
+				throw new IllegalArgumentException(fixture + " has no " + SSN_START + " element");
+			}
+			this.fixture = fixture;
+			this.prefix = xml.substring(0, start + SSN_START.length());
+			this.suffix = xml.substring(end);
+			String ssn = xml.substring(start + SSN_START.length(), end).trim();
+			if (ssn.length() < SSN_PREFIX) {
+				throw new IllegalArgumentException(fixture + " has no SSN to derive the credit score from");
+			}
+			this.ssnPrefix = ssn.substring(0, SSN_PREFIX);
+		}
+	}
+
+	static final class Submission {
+
+		final String fixture;
+		final String ssn;
+		final String payload;
+
+		Submission(String fixture, String ssn, String payload) {
+			this.fixture = fixture;
+			this.ssn = ssn;
+			this.payload = payload;
+		}
+	}
+}
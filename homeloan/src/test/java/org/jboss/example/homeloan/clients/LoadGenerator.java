@@ -0,0 +1,325 @@
+package org.jboss.example.homeloan.clients;
+
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+import org.jboss.example.homeloan.clients.ApplicationMix.Submission;
+
+/**
+ * Load generator for the IntakeJMS and IntakeSOAP endpoints.
+ *
+ * Applications are drawn from the XML fixtures, each with an SSN of its own,
+ * and followed at /loanstatus/{ssn} until a status first appears and until it
+ * is decided (anything other than Pending). Latencies are recorded in
+ * HdrHistograms, in microseconds, and printed in milliseconds.
+ *
+ * With a rate set the load is open-loop: applications are due at fixed
+ * intervals whatever the server does, and latency is measured from when an
+ * application was due rather than from when a sender got round to it, so that
+ * a stalled server is not hidden by senders that stalled with it. Without a
+ * rate the load is closed-loop: each sender waits for the decision on its
+ * application before it sends the next one.
+ *
+ * Configured through system properties:
+ * <ul>
+ * <li>load.transport - jms, binary (BytesMessages to LoanIntakeBinary) or soap, or pass it as the only argument (default jms)</li>
+ * <li>load.rate - applications per second across all senders, 0 for closed-loop (default 0)</li>
+ * <li>load.concurrency - sender threads (default 8)</li>
+ * <li>load.mix - weighted fixtures, e.g. Tina:4,Joe (default all eight)</li>
+ * <li>load.warmupSeconds / load.durationSeconds - unrecorded warm-up, then recorded run (defaults 10 / 60)</li>
+ * <li>load.timeoutSeconds - give up on an application that has no decision after this long (default 30)</li>
+ * <li>load.pollMillis / load.pollers - status poll interval and open-loop poller threads (defaults 100 / 4)</li>
+ * <li>load.statusUrl - status resource, the SSN is appended (default http://localhost:8080/loanstatus/)</li>
+ * <li>load.histogramLog - also write the per-second decision histograms to this HdrHistogram log</li>
+ * </ul>
+ */
+public class LoadGenerator {
+
+	private static final String PENDING = "Pending";
+	private static final long REPORT_MILLIS = 1000;
+
+	private final LoadTransport transport;
+	private final ApplicationMix mix;
+	private final String statusUrl = System.getProperty("load.statusUrl", "http://localhost:8080/loanstatus/");
+	private final double rate = Double.parseDouble(System.getProperty("load.rate", "0"));
+	private final int concurrency = Integer.getInteger("load.concurrency", 8);
+	private final long warmupNanos = TimeUnit.SECONDS.toNanos(Integer.getInteger("load.warmupSeconds", 10));
+	private final long durationNanos = TimeUnit.SECONDS.toNanos(Integer.getInteger("load.durationSeconds", 60));
+	private final long timeoutNanos = TimeUnit.SECONDS.toNanos(Integer.getInteger("load.timeoutSeconds", 30));
+	private final long pollMillis = Long.getLong("load.pollMillis", 100);
+	private final int pollers = Integer.getInteger("load.pollers", 4);
+	private final String histogramLog = System.getProperty("load.histogramLog");
+
+	private final Recorder sendLatency = new Recorder(3);
+	private final Recorder statusLatency = new Recorder(3);
+	private final Recorder decisionLatency = new Recorder(3);
+	private final Histogram sendTotal = new Histogram(3);
+	private final Histogram statusTotal = new Histogram(3);
+	private final Histogram decisionTotal = new Histogram(3);
+
+	// counts of the applications sent after the warm-up
+	private final AtomicLong sent = new AtomicLong();
+	private final AtomicLong statuses = new AtomicLong();
+	private final AtomicLong decisions = new AtomicLong();
+	private final AtomicLong timeouts = new AtomicLong();
+	private final AtomicLong pendingTimeouts = new AtomicLong();
+	private final AtomicLong sendErrors = new AtomicLong();
+	private final AtomicLong pollErrors = new AtomicLong();
+	// all applications still being followed, warm-up included
+	private final AtomicLong outstanding = new AtomicLong();
+	private final AtomicLong sequence = new AtomicLong();
+
+	private long start;
+	private long measureStart;
+	private long end;
+
+	LoadGenerator(LoadTransport transport, ApplicationMix mix) {
+		this.transport = transport;
+		this.mix = mix;
+	}
+
+	public static void main(final String[] args) throws Exception {
+		String transportName = System.getProperty("load.transport", "jms");
+		if (args.length == 1) {
+			transportName = args[0];
+		}
+		ApplicationMix mix = new ApplicationMix(
+				System.getProperty("load.mix", ApplicationMix.DEFAULT_MIX), "soap".equalsIgnoreCase(transportName));
+
+		LoadTransport transport = LoadTransport.create(transportName);
+		try {
+			new LoadGenerator(transport, mix).run();
+		} finally {
+			transport.close();
+		}
+	}
+
+	void run() throws Exception {
+		System.out.println("Sending " + (rate > 0 ? rate + " applications/s (open-loop)" : "closed-loop")
+				+ " from " + concurrency + " senders for " + TimeUnit.NANOSECONDS.toSeconds(durationNanos)
+				+ "s after a " + TimeUnit.NANOSECONDS.toSeconds(warmupNanos) + "s warm-up");
+
+		PrintStream logFile = null;
+		HistogramLogWriter log = null;
+		if (histogramLog != null) {
+			logFile = new PrintStream(new FileOutputStream(histogramLog), false, "UTF-8");
+			log = new HistogramLogWriter(logFile);
+			log.setBaseTime(System.currentTimeMillis());
+			log.outputStartTime(log.getBaseTime());
+			log.outputLegend();
+		}
+
+		start = System.nanoTime();
+		measureStart = start + warmupNanos;
+		end = measureStart + durationNanos;
+		final ScheduledExecutorService pollerPool = rate > 0 ? Executors.newScheduledThreadPool(pollers) : null;
+		final CountDownLatch senders = new CountDownLatch(concurrency);
+		for (int i = 0; i < concurrency; i++) {
+			Thread sender = new Thread("load-sender-" + i) {
+				public void run() {
+					try {
+						if (pollerPool != null) {
+							openLoop(pollerPool);
+						} else {
+							closedLoop();
+						}
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					} finally {
+						senders.countDown();
+					}
+				}
+			};
+			sender.setDaemon(true);
+			sender.start();
+		}
+
+		long drainDeadline = end + timeoutNanos + TimeUnit.SECONDS.toNanos(10);
+		try {
+			do {
+				Thread.sleep(REPORT_MILLIS);
+				report(log);
+			} while (senders.getCount() > 0 || (outstanding.get() > 0 && System.nanoTime() < drainDeadline));
+		} finally {
+			if (pollerPool != null) {
+				pollerPool.shutdownNow();
+			}
+			if (logFile != null) {
+				logFile.close();
+			}
+		}
+		summary(System.out);
+	}
+
+	private void openLoop(final ScheduledExecutorService pollerPool) throws InterruptedException {
+		Random random = new Random();
+		double intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+		for (;;) {
+			long due = start + (long)(sequence.getAndIncrement() * intervalNanos);
+			if (due >= end) {
+				return;
+			}
+			TimeUnit.NANOSECONDS.sleep(due - System.nanoTime());
+			final Tracker tracker = submit(mix.next(random), due);
+			if (tracker != null) {
+				pollerPool.schedule(new Runnable() {
+					public void run() {
+						if (!tracker.poll()) {
+							pollerPool.schedule(this, pollMillis, TimeUnit.MILLISECONDS);
+						}
+					}
+				}, pollMillis, TimeUnit.MILLISECONDS);
+			}
+		}
+	}
+
+	private void closedLoop() throws InterruptedException {
+		Random random = new Random();
+		while (System.nanoTime() < end) {
+			Tracker tracker = submit(mix.next(random), System.nanoTime());
+			if (tracker == null) {
+				// don't spin on a transport that is down
+				Thread.sleep(pollMillis);
+				continue;
+			}
+			do {
+				Thread.sleep(pollMillis);
+			} while (!tracker.poll());
+		}
+	}
+
+	private Tracker submit(Submission submission, long due) {
+		boolean measured = due >= measureStart;
+		try {
+			transport.send(submission.payload);
+		} catch (Exception e) {
+			if (sendErrors.getAndIncrement() == 0) {
+				System.err.println("Unable to send " + submission.fixture + ": " + e);
+			}
+			return null;
+		}
+		if (measured) {
+			sent.incrementAndGet();
+			sendLatency.recordValue(micros(System.nanoTime() - due));
+		}
+		outstanding.incrementAndGet();
+		return new Tracker(submission.ssn, due, measured);
+	}
+
+	private void report(HistogramLogWriter log) {
+		Histogram send = sendLatency.getIntervalHistogram();
+		Histogram status = statusLatency.getIntervalHistogram();
+		Histogram decision = decisionLatency.getIntervalHistogram();
+		sendTotal.add(send);
+		statusTotal.add(status);
+		decisionTotal.add(decision);
+		if (log != null && decision.getTotalCount() > 0) {
+			log.outputIntervalHistogram(decision);
+		}
+
+		long now = System.nanoTime();
+		System.out.println(String.format(
+				"%6.1fs %-7s sent=%d decided=%d timeouts=%d errors=%d outstanding=%d"
+						+ " | decision p50=%.1f p99=%.1f max=%.1f ms",
+				(now - start) / 1e9, now < measureStart ? "warm-up" : now < end ? "run" : "drain",
+				sent.get(), decisions.get(), timeouts.get(), sendErrors.get() + pollErrors.get(), outstanding.get(),
+				millis(decision.getValueAtPercentile(50)), millis(decision.getValueAtPercentile(99)),
+				millis(decision.getMaxValue())));
+	}
+
+	private void summary(PrintStream out) {
+		double seconds = durationNanos / 1e9;
+		out.println();
+		out.println("Applications sent:      " + sent.get() + String.format(" (%.1f/s)", sent.get() / seconds));
+		out.println("With a status:          " + statuses.get());
+		out.println("Decided:                " + decisions.get() + String.format(" (%.1f/s)", decisions.get() / seconds));
+		out.println("Timed out:              " + timeouts.get() + " (" + pendingTimeouts.get() + " still Pending)");
+		out.println("Send / status errors:   " + sendErrors.get() + " / " + pollErrors.get());
+		out.println();
+		out.println("Send latency (ms):");
+		sendTotal.outputPercentileDistribution(out, 1000.0);
+		out.println();
+		out.println("Latency to first status (ms):");
+		statusTotal.outputPercentileDistribution(out, 1000.0);
+		out.println();
+		out.println("Latency to decision (ms):");
+		decisionTotal.outputPercentileDistribution(out, 1000.0);
+	}
+
+	private static long micros(long nanos) {
+		return TimeUnit.NANOSECONDS.toMicros(Math.max(0, nanos));
+	}
+
+	private static double millis(long micros) {
+		return micros / 1000.0;
+	}
+
+	/**
+	 * Follows the status of one application.
+	 */
+	private final class Tracker {
+
+		private final String ssn;
+		private final long due;
+		private final boolean measured;
+		private boolean seen;
+
+		Tracker(String ssn, long due, boolean measured) {
+			this.ssn = ssn;
+			this.due = due;
+			this.measured = measured;
+		}
+
+		/**
+		 * @return whether the application is done with, decided or timed out
+		 */
+		boolean poll() {
+			String status = null;
+			try {
+				status = LoadTransport.http(statusUrl + ssn, "GET", null);
+			} catch (Exception e) {
+				if (pollErrors.getAndIncrement() == 0) {
+					System.err.println("Unable to get the status of " + ssn + ": " + e);
+				}
+			}
+			long elapsed = System.nanoTime() - due;
+			if (status != null) {
+				if (!seen) {
+					seen = true;
+					if (measured) {
+						statuses.incrementAndGet();
+						statusLatency.recordValue(micros(elapsed));
+					}
+				}
+				if (status.indexOf(PENDING) < 0) {
+					if (measured) {
+						decisions.incrementAndGet();
+						decisionLatency.recordValue(micros(elapsed));
+					}
+					outstanding.decrementAndGet();
+					return true;
+				}
+			}
+			if (elapsed > timeoutNanos) {
+				if (measured) {
+					timeouts.incrementAndGet();
+					if (seen) {
+						pendingTimeouts.incrementAndGet();
+					}
+				}
+				outstanding.decrementAndGet();
+				return true;
+			}
+			return false;
+		}
+	}
+}
@@ -0,0 +1,167 @@
+package org.jboss.example.homeloan.clients;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.jms.BytesMessage;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+
+import org.jboss.example.homeloan.data.LoanApplicationCodec;
+import org.jboss.example.homeloan.data.StreamingLoanAppTransformer;
+import org.switchyard.component.test.mixins.hornetq.HornetQMixIn;
+
+/**
+ * Sends application documents to one of the intake endpoints. Implementations
+ * are called from many sender threads at once.
+ */
+abstract class LoadTransport {
+
+	abstract void send(String payload) throws Exception;
+
+	abstract void close() throws Exception;
+
+	static LoadTransport create(String name) throws Exception {
+		if ("jms".equalsIgnoreCase(name)) {
+			return new Jms(false);
+		}
+		if ("binary".equalsIgnoreCase(name)) {
+			return new Jms(true);
+		}
+		if ("soap".equalsIgnoreCase(name)) {
+			return new Soap(System.getProperty("load.soapUrl", "http://localhost:8080/homeloan/IntakeService"));
+		}
+		throw new IllegalArgumentException("Unknown transport " + name + ", expected jms, binary or soap");
+	}
+
+	/**
+	 * Sends a request and returns the response body, or null if there is
+	 * none (e.g. a 204 for an SSN that has no status yet).
+	 */
+	static String http(String url, String method, String body) throws Exception {
+		HttpURLConnection connection = (HttpURLConnection)new URL(url).openConnection();
+		connection.setRequestMethod(method);
+		if (body != null) {
+			connection.setDoOutput(true);
+			connection.setRequestProperty("Content-Type", "text/xml; charset=UTF-8");
+			connection.setRequestProperty("SOAPAction", "\"\"");
+			OutputStream out = connection.getOutputStream();
+			try {
+				out.write(body.getBytes("UTF-8"));
+			} finally {
+				out.close();
+			}
+		}
+		int code = connection.getResponseCode();
+		InputStream in = code < 400 ? connection.getInputStream() : connection.getErrorStream();
+		String response = null;
+		if (in != null) {
+			// read to the end so that the connection can be kept alive
+			try {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				byte[] buffer = new byte[4096];
+				for (int n; (n = in.read(buffer)) > 0;) {
+					bytes.write(buffer, 0, n);
+				}
+				response = bytes.toString("UTF-8");
+			} finally {
+				in.close();
+			}
+		}
+		if (code == HttpURLConnection.HTTP_NOT_FOUND || code == HttpURLConnection.HTTP_NO_CONTENT) {
+			return null;
+		}
+		if (code >= 300) {
+			throw new IllegalStateException(method + " " + url + " returned " + code + ": " + response);
+		}
+		return response == null || response.trim().length() == 0 ? null : response;
+	}
+
+	/**
+	 * Sends ObjectMessages to the LoanIntake queue, like PreQualJMSClient, or
+	 * binary applications in BytesMessages to the LoanIntakeBinary queue, with
+	 * a session per sender thread.
+	 */
+	private static final class Jms extends LoadTransport {
+
+		private static final String REQUEST_QUEUE = "LoanIntake";
+		private static final String BINARY_REQUEST_QUEUE = "LoanIntakeBinary";
+		private static final String USER = "guest";
+		private static final String PASSWD = "guestp.1";
+
+		private final HornetQMixIn hqMixIn;
+		private final boolean binary;
+		private final StreamingLoanAppTransformer transformer = new StreamingLoanAppTransformer();
+		private final List<Session> sessions = new CopyOnWriteArrayList<Session>();
+		private final ThreadLocal<Session> threadSessions = new ThreadLocal<Session>();
+		private final ThreadLocal<MessageProducer> producers = new ThreadLocal<MessageProducer>();
+
+		Jms(boolean binary) {
+			this.binary = binary;
+			hqMixIn = new HornetQMixIn(false)
+					.setUser(System.getProperty("load.user", USER))
+					.setPassword(System.getProperty("load.password", PASSWD));
+			hqMixIn.initialize();
+		}
+
+		@Override
+		void send(String payload) throws Exception {
+			Session session = threadSessions.get();
+			MessageProducer producer = producers.get();
+			if (session == null) {
+				session = hqMixIn.createJMSSession();
+				sessions.add(session);
+				producer = session.createProducer(
+						HornetQMixIn.getJMSQueue(binary ? BINARY_REQUEST_QUEUE : REQUEST_QUEUE));
+				threadSessions.set(session);
+				producers.set(producer);
+			}
+			if (binary) {
+				// the fixtures are XML, so they are transformed before they are encoded
+				BytesMessage message = session.createBytesMessage();
+				message.writeBytes(LoanApplicationCodec.encode(
+						transformer.transformApplicationToLoanApplication(payload)));
+				producer.send(message);
+			} else {
+				producer.send(session.createObjectMessage(payload));
+			}
+		}
+
+		@Override
+		void close() throws Exception {
+			try {
+				for (Session session : sessions) {
+					session.close();
+				}
+			} finally {
+				hqMixIn.uninitialize();
+			}
+		}
+	}
+
+	/**
+	 * Posts SOAP requests to IntakeService, like PreQualSOAPClient.
+	 */
+	private static final class Soap extends LoadTransport {
+
+		private final String url;
+
+		Soap(String url) {
+			this.url = url;
+		}
+
+		@Override
+		void send(String payload) throws Exception {
+			http(url, "POST", payload);
+		}
+
+		@Override
+		void close() {
+		}
+	}
+}
@@ -0,0 +1,327 @@
+package org.jboss.example.homeloan.cluster;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.example.homeloan.cache.BoundedCache;
+import org.jboss.example.homeloan.data.Qualification;
+import org.jboss.example.homeloan.prequal.MemoryStatusStore;
+import org.jboss.example.homeloan.prequal.StatusListener;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Several nodes in one JVM, each reaching the others' shards directly.
+ */
+public class ShardedStatusStoreTest {
+
+	private static final int STATUSES = 4000;
+
+	private final List<Node> nodes = new ArrayList<Node>();
+
+	@After
+	public void close() {
+		for (Node node : nodes) {
+			node.store.close();
+		}
+	}
+
+	@Test
+	public void ringSpreadsKeysEvenlyAndMovesFewOnJoin() {
+		HashRing three = new HashRing(Arrays.asList("a", "b", "c"), 128);
+		HashRing four = new HashRing(Arrays.asList("a", "b", "c", "d"), 128);
+		int[] owned = new int[4];
+		int moved = 0;
+		for (int i = 0; i < STATUSES; i++) {
+			String ssn = ssn(i);
+			String before = three.owners(ssn, 1).get(0);
+			String after = four.owners(ssn, 1).get(0);
+			owned[after.charAt(0) - 'a']++;
+			if (!before.equals(after)) {
+				Assert.assertEquals("d", after);
+				moved++;
+			}
+		}
+		for (int count : owned) {
+			Assert.assertTrue(Arrays.toString(owned), Math.abs(count - STATUSES / 4) < STATUSES / 10);
+		}
+		Assert.assertEquals(owned[3], moved);
+		// no more owners than nodes
+		Assert.assertEquals(2, new HashRing(Arrays.asList("a", "b"), 128).owners("x", 5).size());
+	}
+
+	@Test
+	public void storesEachStatusOnItsReplicas() throws InterruptedException {
+		cluster(2, "a", "b", "c", "d");
+		for (int i = 0; i < STATUSES; i++) {
+			nodes.get(i % 4).store.put(ssn(i), qualification(i));
+		}
+		replicated();
+		int held = 0;
+		for (Node node : nodes) {
+			held += node.memory.ssns().size();
+			// a quarter of two copies each, give or take
+			Assert.assertTrue(node.memory.ssns().size() < STATUSES * 2 / 4 * 1.25);
+		}
+		Assert.assertEquals(STATUSES * 2, held);
+		assertAllReadableFromEveryNode();
+	}
+
+	@Test
+	public void notifiesTheOwnersOfReplicatedStatuses() throws InterruptedException {
+		cluster(2, "a", "b", "c");
+		for (int i = 0; i < STATUSES; i++) {
+			nodes.get(0).store.put(ssn(i), qualification(i));
+		}
+		replicated();
+		// the node running the update notifies its own listeners, through LoanStatus.updateStatus
+		Assert.assertTrue(nodes.get(0).notified.isEmpty());
+		for (Node node : nodes.subList(1, 3)) {
+			Assert.assertEquals(new HashSet<String>(node.memory.ssns()), node.notified.keySet());
+			for (String ssn : node.notified.keySet()) {
+				Assert.assertSame(node.memory.get(ssn), node.notified.get(ssn));
+			}
+		}
+	}
+
+	@Test
+	public void rebalancesWhenANodeJoins() throws InterruptedException {
+		cluster(2, "a", "b", "c");
+		for (int i = 0; i < STATUSES; i++) {
+			nodes.get(i % 3).store.put(ssn(i), qualification(i));
+		}
+		replicated();
+		Node d = node("d", 2);
+		members();
+		int held = 0;
+		for (Node node : nodes) {
+			held += node.memory.ssns().size();
+		}
+		// handed over, and dropped by the nodes that no longer own them
+		Assert.assertEquals(STATUSES * 2, held);
+		Assert.assertTrue(d.memory.ssns().size() > STATUSES * 2 / 4 * 0.75);
+		assertAllReadableFromEveryNode();
+	}
+
+	@Test
+	public void keepsStatusesWhenANodeLeaves() throws InterruptedException {
+		cluster(2, "a", "b", "c", "d");
+		for (int i = 0; i < STATUSES; i++) {
+			nodes.get(i % 4).store.put(ssn(i), qualification(i));
+		}
+		replicated();
+		nodes.remove(3).store.close();
+		members();
+		int held = 0;
+		for (Node node : nodes) {
+			held += node.memory.ssns().size();
+		}
+		Assert.assertEquals(STATUSES * 2, held);
+		assertAllReadableFromEveryNode();
+	}
+
+	@Test
+	public void readsFromAnotherReplicaWhenAnOwnerFails() throws InterruptedException {
+		cluster(2, "a", "b", "c");
+		for (int i = 0; i < STATUSES; i++) {
+			nodes.get(0).store.put(ssn(i), qualification(i));
+		}
+		replicated();
+		final Node failing = nodes.get(1);
+		StatusNode down = new StatusNode() {
+			public String getName() {
+				return failing.local.getName();
+			}
+
+			public void put(Map<String, Qualification> statuses, boolean overwrite) {
+				throw new IllegalStateException("down");
+			}
+
+			public Qualification[] get(List<String> ssns) {
+				throw new IllegalStateException("down");
+			}
+		};
+		Node reader = nodes.get(2);
+		reader.store.setNodes(Arrays.asList(nodes.get(0).local, down, reader.local));
+		List<String> ssns = new ArrayList<String>();
+		for (int i = 0; i < STATUSES; i++) {
+			Assert.assertEquals("Approved " + i, reader.store.get(ssn(i)).getStatus());
+			ssns.add(ssn(i));
+		}
+		Qualification[] batch = reader.store.get(ssns);
+		for (int i = 0; i < STATUSES; i++) {
+			Assert.assertEquals("Approved " + i, batch[i].getStatus());
+		}
+		Assert.assertTrue(reader.store.getNodeErrors() > 0);
+	}
+
+	@Test
+	public void doesNotWaitForASlowReplica() throws InterruptedException {
+		final CountDownLatch release = new CountDownLatch(1);
+		final Map<String, Qualification> received = new ConcurrentHashMap<String, Qualification>();
+		StatusNode slow = new StatusNode() {
+			public String getName() {
+				return "slow";
+			}
+
+			public void put(Map<String, Qualification> statuses, boolean overwrite) {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new IllegalStateException(e);
+				}
+				received.putAll(statuses);
+			}
+
+			public Qualification[] get(List<String> ssns) {
+				throw new UnsupportedOperationException();
+			}
+		};
+		Node a = node("a", 2);
+		a.store.setNodes(Arrays.asList(a.local, slow));
+		// the first batch holds up the sender, not the caller
+		for (int i = 0; i < 100; i++) {
+			a.store.put(ssn(i), qualification(i));
+		}
+		a.store.put(ssn(0), qualification(100));
+		Assert.assertEquals("Approved 100", a.store.get(ssn(0)).getStatus());
+		Assert.assertTrue(a.store.getReplicationBacklog() > 0);
+		Assert.assertTrue(received.isEmpty());
+
+		release.countDown();
+		Assert.assertTrue(a.store.awaitReplication(5000));
+		Assert.assertEquals(100, received.size());
+		Assert.assertEquals("Approved 1", received.get(ssn(1)).getStatus());
+		Assert.assertEquals(0, a.store.getReplicationsDropped());
+	}
+
+	@Test
+	public void retriesAReplicaThatFailed() throws InterruptedException {
+		final AtomicInteger failures = new AtomicInteger(2);
+		final Map<String, Qualification> received = new ConcurrentHashMap<String, Qualification>();
+		StatusNode flaky = new StatusNode() {
+			public String getName() {
+				return "flaky";
+			}
+
+			public void put(Map<String, Qualification> statuses, boolean overwrite) {
+				if (failures.getAndDecrement() > 0) {
+					throw new IllegalStateException("unreachable");
+				}
+				received.putAll(statuses);
+			}
+
+			public Qualification[] get(List<String> ssns) {
+				throw new UnsupportedOperationException();
+			}
+		};
+		MemoryStatusStore memory = new MemoryStatusStore(new BoundedCache<String, Qualification>("status-a", 10, 0, false));
+		ShardedStatusStore store = new ShardedStatusStore(new LocalStatusNode("a", memory), 2, 10, "s3cret", 10);
+		try {
+			store.setNodes(Arrays.asList(store.getLocal(), flaky));
+			for (int i = 0; i < 10; i++) {
+				store.put(ssn(i), qualification(i));
+			}
+			Assert.assertTrue(store.awaitReplication(5000));
+			Assert.assertEquals(10, received.size());
+			Assert.assertEquals(2, store.getNodeErrors());
+		} finally {
+			store.close();
+		}
+	}
+
+	@Test
+	public void acceptsOnlyTheClusterSecret() {
+		LocalStatusNode local = new LocalStatusNode("a", new MemoryStatusStore(
+				new BoundedCache<String, Qualification>("status-a", 10, 0, false)));
+		ShardedStatusStore store = new ShardedStatusStore(local, 2, 1000, "s3cret", 10);
+		Assert.assertTrue(store.isClusterSecret("s3cret"));
+		Assert.assertFalse(store.isClusterSecret("s3cre"));
+		Assert.assertFalse(store.isClusterSecret(null));
+		// without a secret no node is trusted
+		Assert.assertFalse(new ShardedStatusStore(local, 2, 1000).isClusterSecret(null));
+	}
+
+	private void replicated() throws InterruptedException {
+		for (Node node : nodes) {
+			Assert.assertTrue(node.store.awaitReplication(5000));
+		}
+	}
+
+	private void assertAllReadableFromEveryNode() {
+		List<String> ssns = new ArrayList<String>();
+		for (int i = 0; i < STATUSES; i++) {
+			ssns.add(ssn(i));
+		}
+		for (Node node : nodes) {
+			for (int i = 0; i < STATUSES; i += 7) {
+				Assert.assertEquals("Approved " + i, node.store.get(ssn(i)).getStatus());
+			}
+			Qualification[] batch = node.store.get(ssns);
+			for (int i = 0; i < STATUSES; i++) {
+				Assert.assertEquals("Approved " + i, batch[i].getStatus());
+			}
+		}
+	}
+
+	private void cluster(int replicas, String... names) {
+		for (String name : names) {
+			node(name, replicas);
+		}
+		members();
+	}
+
+	private Node node(String name, int replicas) {
+		Node node = new Node(name, replicas);
+		nodes.add(node);
+		return node;
+	}
+
+	/**
+	 * Sets the current nodes as the members on every node.
+	 */
+	private void members() {
+		List<StatusNode> members = new ArrayList<StatusNode>();
+		for (Node node : nodes) {
+			members.add(node.local);
+		}
+		for (Node node : nodes) {
+			node.store.setNodes(members);
+		}
+	}
+
+	private static String ssn(int i) {
+		return String.format("%03d-%02d-%04d", 100 + i % 900, i % 100, i);
+	}
+
+	private static Qualification qualification(int i) {
+		Qualification qualification = new Qualification();
+		qualification.setStatus("Approved " + i);
+		return qualification;
+	}
+
+	private static final class Node {
+
+		final MemoryStatusStore memory;
+		final LocalStatusNode local;
+		final ShardedStatusStore store;
+		final Map<String, Qualification> notified = new ConcurrentHashMap<String, Qualification>();
+
+		Node(String name, int replicas) {
+			memory = new MemoryStatusStore(new BoundedCache<String, Qualification>("status-" + name, STATUSES * 2, 0, false));
+			local = new LocalStatusNode(name, memory, new StatusListener() {
+				public void statusUpdated(String ssn, Qualification qualification) {
+					notified.put(ssn, qualification);
+				}
+			});
+			store = new ShardedStatusStore(local, replicas, 1000);
+		}
+	}
+}
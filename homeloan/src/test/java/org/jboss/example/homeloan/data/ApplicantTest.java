@@ -0,0 +1,75 @@
+package org.jboss.example.homeloan.data;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ApplicantTest {
+
+	private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+	@After
+	public void resetClock() {
+		Clock.set(null);
+	}
+
+	@Test
+	public void ageChangesOnTheBirthday() throws Exception {
+		Applicant applicant = new Applicant();
+		applicant.setDob(date("1981-02-01"));
+
+		Clock.set(fixedClock("2002-01-31"));
+		Assert.assertEquals(20, applicant.getAge());
+		Clock.set(fixedClock("2002-02-01"));
+		Assert.assertEquals(21, applicant.getAge());
+	}
+
+	@Test
+	public void settingTheDobRecomputesTheAge() throws Exception {
+		Clock.set(fixedClock("2014-06-15"));
+		Applicant applicant = new Applicant();
+		Assert.assertEquals(0, applicant.getAge());
+		applicant.setDob(date("1990-06-16"));
+		Assert.assertEquals(23, applicant.getAge());
+		applicant.setDob(date("1990-06-15"));
+		Assert.assertEquals(24, applicant.getAge());
+	}
+
+	@Test
+	public void creditBands() {
+		Applicant applicant = new Applicant();
+		applicant.setCreditScore(559);
+		Assert.assertNull(applicant.getCreditBand());
+		applicant.setCreditScore(560);
+		Assert.assertEquals("F", applicant.getCreditBand());
+		applicant.setCreditScore(699);
+		Assert.assertEquals("C", applicant.getCreditBand());
+		applicant.setCreditScore(720);
+		Assert.assertEquals("A", applicant.getCreditBand());
+	}
+
+	private static Date date(String date) throws Exception {
+		SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+		format.setTimeZone(UTC);
+		return format.parse(date);
+	}
+
+	private static Clock fixedClock(final String date) throws Exception {
+		final long millis = date(date).getTime() + 12 * 60 * 60 * 1000L;
+		return new Clock() {
+			@Override
+			public long currentTimeMillis() {
+				return millis;
+			}
+
+			@Override
+			public TimeZone getTimeZone() {
+				return UTC;
+			}
+		};
+	}
+}
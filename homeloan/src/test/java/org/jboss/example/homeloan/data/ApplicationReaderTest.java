@@ -0,0 +1,93 @@
+package org.jboss.example.homeloan.data;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.Scanner;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLStreamException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+
+public class ApplicationReaderTest {
+
+	private static final String[] FIXTURES = {"Barbara", "Bob", "Frank", "Joe", "Sally", "Sam", "Tina", "Victor"};
+
+	private final StreamingLoanAppTransformer streaming = new StreamingLoanAppTransformer();
+	private final LoanAppTransformer dom = new LoanAppTransformer();
+
+	@Test
+	public void readsTheFixturesAsLoanAppTransformerDoes() throws Exception {
+		for (String fixture : FIXTURES) {
+			String xml = read(fixture + ".xml");
+			LoanApplication expected = dom.transformApplicationToLoanApplication(parse(xml));
+			assertSame(fixture, expected, streaming.transformApplicationToLoanApplication(xml));
+			assertSame(fixture, expected, streaming.transformApplicationToLoanApplication(new StringReader(xml)));
+			assertSame(fixture, expected, streaming.transformApplicationToLoanApplication(parse(xml)));
+		}
+	}
+
+	@Test
+	public void doesNotResolveExternalEntities() throws Exception {
+		File secret = File.createTempFile("secret", ".txt");
+		try {
+			FileWriter writer = new FileWriter(secret);
+			try {
+				writer.write("999999999");
+			} finally {
+				writer.close();
+			}
+			String xml = read("Tina.xml");
+			xml = xml.substring(xml.indexOf("<app:Application"));
+			xml = "<!DOCTYPE app:Application [<!ENTITY ssn SYSTEM \"" + secret.toURI() + "\">]>"
+					+ xml.replace(">740123456<", ">&ssn;<");
+			try {
+				LoanApplication application = streaming.transformApplicationToLoanApplication(xml);
+				Assert.assertFalse("999999999".equals(application.getApplicant().getSsn()));
+			} catch (XMLStreamException e) {
+				// rejected, as it should be
+			}
+		} finally {
+			secret.delete();
+		}
+	}
+
+	private static void assertSame(String fixture, LoanApplication expected, LoanApplication actual) {
+		Assert.assertEquals(fixture, expected.getAmount(), actual.getAmount());
+		Assert.assertEquals(fixture, expected.getLengthYears(), actual.getLengthYears());
+		Assert.assertEquals(fixture, expected.getDeposit(), actual.getDeposit());
+		Assert.assertEquals(fixture, expected.getApprovedRate(), actual.getApprovedRate());
+		Assert.assertEquals(fixture, expected.getIncome().getMonthlyAmount(), actual.getIncome().getMonthlyAmount());
+		Assert.assertEquals(fixture, expected.getIncome().isSelfEmployed(), actual.getIncome().isSelfEmployed());
+		Applicant applicant = expected.getApplicant();
+		Assert.assertEquals(fixture, applicant.getSsn(), actual.getApplicant().getSsn());
+		Assert.assertEquals(fixture, applicant.getDob(), actual.getApplicant().getDob());
+		Assert.assertEquals(fixture, applicant.getFirstName(), actual.getApplicant().getFirstName());
+		Assert.assertEquals(fixture, applicant.getLastName(), actual.getApplicant().getLastName());
+		Assert.assertEquals(fixture, applicant.getStreetAddress(), actual.getApplicant().getStreetAddress());
+		Assert.assertEquals(fixture, applicant.getPostalCode(), actual.getApplicant().getPostalCode());
+		Assert.assertEquals(fixture, applicant.getCity(), actual.getApplicant().getCity());
+		Assert.assertEquals(fixture, applicant.getState(), actual.getApplicant().getState());
+	}
+
+	private static Element parse(String xml) throws Exception {
+		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		factory.setNamespaceAware(true);
+		return factory.newDocumentBuilder().parse(new InputSource(new StringReader(xml))).getDocumentElement();
+	}
+
+	private static String read(String resource) {
+		InputStream in = ApplicationReaderTest.class.getClassLoader().getResourceAsStream(resource);
+		Scanner scanner = new Scanner(in, "UTF-8");
+		try {
+			return scanner.useDelimiter("\\A").next();
+		} finally {
+			scanner.close();
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package org.jboss.example.homeloan.data;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.transform.dom.DOMSource;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+public class ApplicationSchemaTest {
+
+	private final StreamingLoanAppTransformer transformer = new StreamingLoanAppTransformer();
+
+	@Test
+	public void validatesWhileReading() throws Exception {
+		LoanApplication application = transformer.transformApplicationToLoanApplication(tina());
+		Assert.assertEquals("740123456", application.getApplicant().getSsn());
+		Assert.assertEquals(75000, application.getAmount());
+	}
+
+	@Test(expected = XMLStreamException.class)
+	public void rejectsInvalidValuesWhileReading() throws Exception {
+		transformer.transformApplicationToLoanApplication(tina().replace("<app:Amount>75000<", "<app:Amount>lots<"));
+	}
+
+	@Test(expected = XMLStreamException.class)
+	public void rejectsUnknownElementsWhileReading() throws Exception {
+		// after the fields ApplicationReader reads, so only validation can fail it
+		transformer.transformApplicationToLoanApplication(tina().replace("</app:Application>",
+				"<app:Unknown/></app:Application>"));
+	}
+
+	@Test
+	public void validatesDocuments() throws Exception {
+		ApplicationSchema.validate(new DOMSource(parse(tina())));
+		// the pooled validator is reusable after a failure
+		try {
+			ApplicationSchema.validate(new DOMSource(parse(tina().replace(">Conventional<", ">Balloon<"))));
+			Assert.fail("Application of type Balloon validated");
+		} catch (SAXException e) {
+			// expected
+		}
+		ApplicationSchema.validate(new DOMSource(parse(tina())));
+	}
+
+	@Test
+	public void validatesReadersAndStreamsAndLeavesThemToTheTransformer() throws Exception {
+		ApplicationValidator validator = new ApplicationValidator();
+		Reader reader = new StringReader(tina());
+		Assert.assertTrue(validator.validate(reader, ApplicationSchema.Mode.SCHEMA).isValid());
+		Assert.assertEquals(75000, transformer.transformApplicationToLoanApplication(reader).getAmount());
+
+		InputStream in = new BufferedInputStream(new ByteArrayInputStream(tina().getBytes("UTF-8")));
+		Assert.assertTrue(validator.validate(in, ApplicationSchema.Mode.SCHEMA).isValid());
+		Assert.assertEquals(75000, transformer.transformApplicationToLoanApplication(in).getAmount());
+
+		String balloon = tina().replace(">Conventional<", ">Balloon<");
+		Assert.assertFalse(validator.validate(new StringReader(balloon), ApplicationSchema.Mode.SCHEMA).isValid());
+		Assert.assertFalse(validator.validate(new ByteArrayInputStream(balloon.getBytes("UTF-8")),
+				ApplicationSchema.Mode.SCHEMA).isValid());
+		// left unchecked rather than consumed, the transformer validates it
+		Assert.assertTrue(validator.validate(new StringReader(balloon), ApplicationSchema.Mode.STREAMING).isValid());
+		// cannot be rewound after validation
+		Assert.assertFalse(validator.validate(new InputStreamReader(new ByteArrayInputStream(tina().getBytes("UTF-8")),
+				"UTF-8"), ApplicationSchema.Mode.SCHEMA).isValid());
+	}
+
+	@Test
+	public void rejectsDocumentTypeDeclarations() throws Exception {
+		ApplicationValidator validator = new ApplicationValidator();
+		String tina = tina();
+		String declared = "<!DOCTYPE app:Application [<!ENTITY amount \"75000\">]>"
+				+ tina.substring(tina.indexOf("<app:Application")).replace(">75000<", ">&amount;<");
+		Assert.assertFalse(validator.validate(declared, ApplicationSchema.Mode.SCHEMA).isValid());
+		Assert.assertTrue(validator.validate(tina, ApplicationSchema.Mode.SCHEMA).isValid());
+	}
+
+	private static String tina() throws Exception {
+		InputStream in = ApplicationSchemaTest.class.getClassLoader().getResourceAsStream("Tina.xml");
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+				bytes.write(buffer, 0, read);
+			}
+			return bytes.toString("UTF-8");
+		} finally {
+			in.close();
+		}
+	}
+
+	private static Document parse(String xml) throws Exception {
+		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		factory.setNamespaceAware(true);
+		return factory.newDocumentBuilder().parse(new InputSource(new StringReader(xml)));
+	}
+}
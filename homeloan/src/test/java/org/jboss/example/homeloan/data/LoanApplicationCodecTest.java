@@ -0,0 +1,70 @@
+package org.jboss.example.homeloan.data;
+
+import java.nio.ByteBuffer;
+import java.util.Date;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LoanApplicationCodecTest {
+
+	@Test
+	public void roundTrips() {
+		LoanApplication application = new LoanApplication();
+		application.setAmount(75000);
+		application.setDeposit(1500);
+		application.setLengthYears(20);
+		application.setExplanation("Caf\u00e9 owner");
+		Applicant applicant = new Applicant();
+		applicant.setSsn("740123456");
+		applicant.setFirstName("Tina");
+		applicant.setLastName("Thrift-new");
+		applicant.setDob(new Date(136857600000L));
+		applicant.setCreditScore(735);
+		applicant.setCheckingBalance(5000.5);
+		application.setApplicant(applicant);
+		IncomeSource income = new IncomeSource();
+		income.setMonthlyAmount(6250);
+		income.setSelfEmployed(true);
+		application.setIncome(income);
+
+		LoanApplication decoded = LoanApplicationCodec.decode(LoanApplicationCodec.encode(application));
+		Assert.assertEquals(75000, decoded.getAmount());
+		Assert.assertEquals(1500, decoded.getDeposit());
+		Assert.assertEquals(20, decoded.getLengthYears());
+		Assert.assertFalse(decoded.isApproved());
+		Assert.assertNull(decoded.getApprovedRate());
+		Assert.assertEquals("Caf\u00e9 owner", decoded.getExplanation());
+		Assert.assertEquals("740123456", decoded.getApplicant().getSsn());
+		Assert.assertEquals("Thrift-new", decoded.getApplicant().getLastName());
+		Assert.assertNull(decoded.getApplicant().getCity());
+		Assert.assertEquals(applicant.getDob(), decoded.getApplicant().getDob());
+		Assert.assertEquals(735, decoded.getApplicant().getCreditScore());
+		Assert.assertEquals(5000.5, decoded.getApplicant().getCheckingBalance(), 0);
+		Assert.assertEquals(6250, decoded.getIncome().getMonthlyAmount());
+		Assert.assertTrue(decoded.getIncome().isSelfEmployed());
+		Assert.assertNull(decoded.getBankruptcy());
+	}
+
+	@Test
+	public void decodesFromTheBufferPosition() {
+		LoanApplication application = new LoanApplication();
+		application.setAmount(1);
+		byte[] encoded = LoanApplicationCodec.encode(application);
+		ByteBuffer buffer = ByteBuffer.allocate(encoded.length + 8);
+		buffer.position(4);
+		buffer.put(encoded);
+		buffer.position(4);
+		LoanApplication decoded = LoanApplicationCodec.decode(buffer);
+		Assert.assertEquals(1, decoded.getAmount());
+		Assert.assertNull(decoded.getApplicant());
+		Assert.assertEquals(4 + encoded.length, buffer.position());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsNewerVersions() {
+		byte[] encoded = LoanApplicationCodec.encode(new LoanApplication());
+		encoded[2] = LoanApplicationCodec.VERSION + 1;
+		LoanApplicationCodec.decode(encoded);
+	}
+}
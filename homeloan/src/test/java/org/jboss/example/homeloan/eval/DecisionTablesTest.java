@@ -0,0 +1,118 @@
+package org.jboss.example.homeloan.eval;
+
+import java.io.InputStream;
+import java.util.Scanner;
+
+import org.jboss.example.homeloan.data.Applicant;
+import org.jboss.example.homeloan.data.IncomeSource;
+import org.jboss.example.homeloan.data.LoanApplication;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DecisionTablesTest {
+
+	private static final String DRL = read("mortgages.drl");
+
+	private final DecisionTables tables = DecisionTables.compile(DRL);
+
+	@Test
+	public void creditBandsMatchTheApplicantsBand() {
+		Applicant applicant = new Applicant();
+		for (int score = 0; score <= 900; score++) {
+			applicant.setCreditScore(score);
+			CreditRating rating = tables.getCreditBands().rating(score);
+			Assert.assertEquals("score " + score, applicant.getCreditBand(), rating != null ? rating.getValue() : null);
+		}
+		Assert.assertEquals("A", tables.getCreditBands().band(850));
+		Assert.assertNull(tables.getCreditBands().band(851));
+	}
+
+	@Test
+	public void givesEachLookupItsOwnRating() {
+		CreditRating rating = tables.getCreditBands().rating(720);
+		rating.setValue("F");
+		Assert.assertNotSame(rating, tables.getCreditBands().rating(720));
+		Assert.assertEquals("A", tables.getCreditBands().rating(720).getValue());
+		Assert.assertEquals("A", DecisionTables.mortgages().getCreditBands().band(720));
+	}
+
+	@Test
+	public void pricesByLengthAmountAndDeposit() {
+		assertPriced(application(100000, 20, 1999, false), 0, "3.95");
+		assertPriced(application(100001, 20, 2999, false), 10, "4.125");
+		assertPriced(application(200000, 20, 0, false), 5, "2.83");
+		assertPriced(application(130001, 30, 19999, false), 0, "3.25");
+	}
+
+	@Test
+	public void leavesUnmatchedApplicationsAlone() {
+		// amount, length, deposit, self employed and no income each out of the table
+		for (LoanApplication application : new LoanApplication[] {
+				application(10000, 20, 0, false), application(100000, 30, 0, false),
+				application(100000, 20, 2000, false), application(100000, 20, 0, true),
+				application(200001, 20, 0, false)}) {
+			Assert.assertFalse(tables.getPricing().price(application));
+			Assert.assertFalse(application.isApproved());
+			Assert.assertNull(application.getApprovedRate());
+		}
+		LoanApplication noIncome = application(50000, 20, 0, false);
+		noIncome.setIncome(null);
+		Assert.assertFalse(tables.getPricing().price(noIncome));
+	}
+
+	@Test
+	public void leavesTheOtherRulesInTheDrl() {
+		Assert.assertEquals(9, tables.getRuleNames().size());
+		String residual = tables.getResidualDrl();
+		Assert.assertFalse(residual.contains("Row "));
+		Assert.assertFalse(residual.contains("from row number"));
+		Assert.assertTrue(residual.contains("import org.jboss.example.homeloan.data.*;"));
+		Assert.assertTrue(residual.contains("rule \"Underage\""));
+		Assert.assertTrue(residual.contains("rule \"Bankruptcy history\""));
+		Assert.assertTrue(residual.contains("rule \"No bad credit checks\""));
+		Assert.assertTrue(residual.trim().endsWith("end"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsOverlappingRows() {
+		DecisionTables.compile(DRL.replace("amount > 100000 , amount <= 130000", "amount > 90000 , amount <= 130000"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsPricingThatFiresBeforeTheOtherRules() {
+		DecisionTables.compile(DRL.replace("rule \"Row 3 Pricing loans\" \n", "rule \"Row 3 Pricing loans\" \n    salience 15\n"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsRowsItCannotIndex() {
+		DecisionTables.compile(DRL.replace("lengthYears == 30", "lengthYears >= 30"));
+	}
+
+	private void assertPriced(LoanApplication application, int insuranceCost, String rate) {
+		Assert.assertTrue(tables.getPricing().price(application));
+		Assert.assertTrue(application.isApproved());
+		Assert.assertEquals(insuranceCost, application.getInsuranceCost());
+		Assert.assertEquals(rate, application.getApprovedRate());
+	}
+
+	private static LoanApplication application(int amount, int lengthYears, int deposit, boolean selfEmployed) {
+		IncomeSource income = new IncomeSource();
+		income.setSelfEmployed(selfEmployed);
+		LoanApplication application = new LoanApplication();
+		application.setAmount(amount);
+		application.setLengthYears(lengthYears);
+		application.setDeposit(deposit);
+		application.setIncome(income);
+		return application;
+	}
+
+	private static String read(String resource) {
+		InputStream in = DecisionTablesTest.class.getClassLoader().getResourceAsStream(resource);
+		Scanner scanner = new Scanner(in, "UTF-8");
+		try {
+			return scanner.useDelimiter("\\A").next();
+		} finally {
+			scanner.close();
+		}
+	}
+}
@@ -0,0 +1,215 @@
+package org.jboss.example.homeloan.eval;
+
+import java.io.InputStream;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Scanner;
+
+import org.jboss.example.homeloan.data.Applicant;
+import org.jboss.example.homeloan.data.Bankruptcy;
+import org.jboss.example.homeloan.data.IncomeSource;
+import org.jboss.example.homeloan.data.LoanApplication;
+import org.jboss.example.homeloan.data.StreamingLoanAppTransformer;
+import org.junit.Assert;
+import org.junit.Test;
+import org.kie.api.runtime.KieSession;
+
+/**
+ * Evaluating the decision tables outside of Drools must not change any
+ * outcome, so every application here is evaluated with the tables on and off,
+ * pooled and stateless, and the results compared with all of mortgages.drl
+ * fired by Drools.
+ */
+public class MortgageRulesTest {
+
+	private static final String[] FIXTURES = {"Barbara", "Bob", "Frank", "Joe", "Sally", "Sam", "Tina", "Victor"};
+
+	// the edges of every credit band, and just outside the outermost ones
+	private static final int[] CREDIT_SCORES = {0, 559, 560, 619, 620, 674, 675, 699, 700, 719, 720, 850, 851};
+
+	private static final MortgageRules DROOLS = MortgageRules.create(false, null, MortgageRules.Mode.POOLED, 1);
+	// the tables pooled and stateless, and Drools stateless
+	private static final MortgageRules[] VARIANTS = {
+			MortgageRules.create(true, null, MortgageRules.Mode.POOLED, 1),
+			MortgageRules.create(true, null, MortgageRules.Mode.STATELESS, 1),
+			MortgageRules.create(false, null, MortgageRules.Mode.STATELESS, 1)};
+
+	private final StreamingLoanAppTransformer transformer = new StreamingLoanAppTransformer();
+
+	@Test
+	public void evaluatesTheTablesOutsideOfDroolsOnlyWhenOn() {
+		Assert.assertNotNull(VARIANTS[0].getDecisionTables());
+		Assert.assertNotNull(VARIANTS[1].getDecisionTables());
+		Assert.assertNull(VARIANTS[2].getDecisionTables());
+		Assert.assertNull(DROOLS.getDecisionTables());
+	}
+
+	@Test
+	public void fixturesHaveTheSameOutcome() throws Exception {
+		for (String fixture : FIXTURES) {
+			String xml = read(fixture + ".xml");
+			LoanApplication expected = fixture(xml);
+			DROOLS.evaluate(expected);
+			for (MortgageRules rules : VARIANTS) {
+				assertSameOutcome(fixture, expected, rules.evaluate(fixture(xml)));
+			}
+		}
+	}
+
+	@Test
+	public void pooledSessionKeepsNothingBetweenApplications() throws Exception {
+		for (boolean tables : new boolean[] {true, false}) {
+			MortgageRules pooled = MortgageRules.create(tables, null, MortgageRules.Mode.POOLED, 1);
+			// a session of its own per evaluation
+			MortgageRules stateless = MortgageRules.create(tables, null, MortgageRules.Mode.STATELESS, 1);
+			KieSession session = null;
+			// forwards and then backwards, so that each fixture follows two others
+			for (int i = 0; i < FIXTURES.length * 2; i++) {
+				String fixture = FIXTURES[i < FIXTURES.length ? i : FIXTURES.length * 2 - 1 - i];
+				String name = fixture + (tables ? " with tables" : " in Drools");
+				String xml = read(fixture + ".xml");
+				LoanApplication expected = stateless.evaluate(fixture(xml));
+				assertSameOutcome(name, expected, pooled.evaluate(fixture(xml)));
+
+				Collection<KieSession> idle = pooled.getIdleSessions();
+				Assert.assertEquals(name, 1, idle.size());
+				KieSession next = idle.iterator().next();
+				Assert.assertEquals(name, 0, next.getFactCount());
+				if (session != null) {
+					Assert.assertSame(name, session, next);
+				}
+				session = next;
+			}
+			Assert.assertTrue(stateless.getIdleSessions().isEmpty());
+		}
+	}
+
+	@Test
+	public void creditBandEdgesHaveTheSameOutcome() {
+		int approved = 0;
+		for (int score : CREDIT_SCORES) {
+			// priced by row 1 unless the credit rating rejects it
+			LoanApplication expected = DROOLS.evaluate(application(score, 50000, 20, 0, false));
+			if (expected.isApproved()) {
+				approved++;
+			}
+			for (MortgageRules rules : VARIANTS) {
+				assertSameOutcome("score " + score, expected, rules.evaluate(application(score, 50000, 20, 0, false)));
+			}
+		}
+		// 0, 559, 700, 719, 720, 850 and 851; F, D and C are rejected
+		Assert.assertEquals(7, approved);
+	}
+
+	@Test
+	public void pricingRowEdgesHaveTheSameOutcome() {
+		int[][] rows = {
+				// amount, length, deposit
+				{10000, 20, 0}, {10001, 20, 0}, {100000, 20, 1999}, {100000, 20, 2000},
+				{100000, 19, 0}, {100000, 21, 0},
+				{100001, 20, 2999}, {100001, 20, 3000}, {130000, 20, 2999}, {130000, 20, 3000},
+				{130001, 30, 19999}, {130001, 30, 20000}, {200000, 30, 19999}, {200001, 30, 0},
+				{130001, 20, 19999}, {130001, 20, 20000}, {200000, 20, 19999}, {200001, 20, 0},
+				{150000, 25, 0}, {150000, 29, 0}, {150000, 31, 0}};
+		int approved = 0;
+		for (int[] row : rows) {
+			for (boolean selfEmployed : new boolean[] {false, true}) {
+				String name = row[0] + "/" + row[1] + "/" + row[2] + (selfEmployed ? " self employed" : "");
+				LoanApplication expected = DROOLS.evaluate(application(720, row[0], row[1], row[2], selfEmployed));
+				if (expected.isApproved()) {
+					approved++;
+				}
+				for (MortgageRules rules : VARIANTS) {
+					assertSameOutcome(name, expected, rules.evaluate(application(720, row[0], row[1], row[2], selfEmployed)));
+				}
+			}
+		}
+		// two per row, at its lowest and highest amount or deposit
+		Assert.assertEquals(8, approved);
+	}
+
+	@Test
+	public void rejectionsHaveTheSameOutcome() {
+		LoanApplication underage = application(720, 50000, 20, 0, false);
+		underage.getApplicant().setDob(dob(Calendar.getInstance().get(Calendar.YEAR) - 18));
+		LoanApplication expected = DROOLS.evaluate(underage);
+		Assert.assertEquals("Applicant is underage", expected.getExplanation());
+		for (MortgageRules rules : VARIANTS) {
+			LoanApplication application = application(720, 50000, 20, 0, false);
+			application.getApplicant().setDob(underage.getApplicant().getDob());
+			assertSameOutcome("underage", expected, rules.evaluate(application));
+		}
+
+		expected = DROOLS.evaluate(bankrupt(application(720, 50000, 20, 0, false)));
+		Assert.assertEquals("has been bankrupt", expected.getExplanation());
+		for (MortgageRules rules : VARIANTS) {
+			assertSameOutcome("bankrupt", expected, rules.evaluate(bankrupt(application(720, 50000, 20, 0, false))));
+		}
+
+		LoanApplication noIncome = application(720, 50000, 20, 0, false);
+		noIncome.setIncome(null);
+		expected = DROOLS.evaluate(noIncome);
+		for (MortgageRules rules : VARIANTS) {
+			LoanApplication application = application(720, 50000, 20, 0, false);
+			application.setIncome(null);
+			assertSameOutcome("no income", expected, rules.evaluate(application));
+		}
+	}
+
+	private static void assertSameOutcome(String name, LoanApplication expected, LoanApplication actual) {
+		Assert.assertEquals(name, expected.isApproved(), actual.isApproved());
+		Assert.assertEquals(name, expected.getInsuranceCost(), actual.getInsuranceCost());
+		Assert.assertEquals(name, expected.getApprovedRate(), actual.getApprovedRate());
+		Assert.assertEquals(name, expected.getExplanation(), actual.getExplanation());
+	}
+
+	private LoanApplication fixture(String xml) throws Exception {
+		LoanApplication application = transformer.transformApplicationToLoanApplication(xml);
+		// as the credit check scores it
+		Applicant applicant = application.getApplicant();
+		applicant.setCreditScore(Integer.parseInt(applicant.getSsn().substring(0, 3)));
+		return application;
+	}
+
+	private static LoanApplication application(int creditScore, int amount, int lengthYears, int deposit,
+			boolean selfEmployed) {
+		Applicant applicant = new Applicant();
+		applicant.setSsn("711555555");
+		applicant.setDob(dob(1981));
+		applicant.setCreditScore(creditScore);
+		IncomeSource income = new IncomeSource();
+		income.setSelfEmployed(selfEmployed);
+		LoanApplication application = new LoanApplication();
+		application.setApplicant(applicant);
+		application.setAmount(amount);
+		application.setLengthYears(lengthYears);
+		application.setDeposit(deposit);
+		application.setIncome(income);
+		return application;
+	}
+
+	private static LoanApplication bankrupt(LoanApplication application) {
+		Bankruptcy bankruptcy = new Bankruptcy();
+		bankruptcy.setYearOfOccurrence(2010);
+		application.setBankruptcy(bankruptcy);
+		return application;
+	}
+
+	private static Date dob(int year) {
+		Calendar calendar = Calendar.getInstance();
+		calendar.clear();
+		calendar.set(year, Calendar.FEBRUARY, 1);
+		return calendar.getTime();
+	}
+
+	private static String read(String resource) {
+		InputStream in = MortgageRulesTest.class.getClassLoader().getResourceAsStream(resource);
+		Scanner scanner = new Scanner(in, "UTF-8");
+		try {
+			return scanner.useDelimiter("\\A").next();
+		} finally {
+			scanner.close();
+		}
+	}
+}
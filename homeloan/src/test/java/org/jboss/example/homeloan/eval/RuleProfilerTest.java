@@ -0,0 +1,104 @@
+package org.jboss.example.homeloan.eval;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.kie.api.definition.rule.Rule;
+import org.kie.api.event.rule.AfterMatchFiredEvent;
+import org.kie.api.event.rule.BeforeMatchFiredEvent;
+import org.kie.api.event.rule.MatchCancelledEvent;
+import org.kie.api.event.rule.MatchCreatedEvent;
+import org.kie.api.event.rule.ObjectDeletedEvent;
+import org.kie.api.event.rule.ObjectInsertedEvent;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.rule.FactHandle;
+import org.kie.api.runtime.rule.Match;
+
+public class RuleProfilerTest {
+
+	private final KieSession session = proxy(KieSession.class, null);
+
+	@Test
+	public void samplesEveryNthEvaluation() {
+		RuleProfiling profiling = new RuleProfiling(0);
+		Assert.assertNull(profiling.sample());
+
+		profiling.setSampleEvery(3);
+		int sampled = 0;
+		for (int i = 0; i < 9; i++) {
+			if (profiling.sample() != null) {
+				sampled++;
+			}
+		}
+		Assert.assertEquals(3, sampled);
+	}
+
+	@Test
+	public void recordsMatchesFiringsAndFacts() {
+		RuleProfiling profiling = new RuleProfiling(1);
+		Match rating = match("Profiled rating");
+		Match rejection = match("Profiled rejection");
+		FactHandle credit = proxy(FactHandle.class, null);
+		FactHandle application = proxy(FactHandle.class, null);
+
+		RuleProfiler profiler = profiling.sample();
+		profiler.attach(session);
+		profiler.matchCreated(proxy(MatchCreatedEvent.class, rating));
+		profiler.beforeMatchFired(proxy(BeforeMatchFiredEvent.class, rating));
+		profiler.objectInserted(proxy(ObjectInsertedEvent.class, credit));
+		profiler.afterMatchFired(proxy(AfterMatchFiredEvent.class, rating));
+		profiler.matchCreated(proxy(MatchCreatedEvent.class, rejection));
+		profiler.matchCreated(proxy(MatchCreatedEvent.class, rejection));
+		profiler.beforeMatchFired(proxy(BeforeMatchFiredEvent.class, rejection));
+		profiler.objectDeleted(proxy(ObjectDeletedEvent.class, application));
+		profiler.afterMatchFired(proxy(AfterMatchFiredEvent.class, rejection));
+		profiler.matchCancelled(proxy(MatchCancelledEvent.class, rejection));
+		// the facts are deleted after firing, taking the logical insert with them
+		profiler.objectDeleted(proxy(ObjectDeletedEvent.class, application));
+		profiler.objectDeleted(proxy(ObjectDeletedEvent.class, credit));
+		profiler.detach(session);
+
+		RuleProfile ratingProfile = RuleProfile.forRule("Profiled rating");
+		Assert.assertEquals(1, ratingProfile.getMatches());
+		Assert.assertEquals(1, ratingProfile.getFirings());
+		Assert.assertEquals(1, ratingProfile.getInserts());
+		Assert.assertEquals(0, ratingProfile.getRetracts());
+		Assert.assertEquals(1, ratingProfile.getTruthMaintenanceRetracts());
+
+		RuleProfile rejectionProfile = RuleProfile.forRule("Profiled rejection");
+		Assert.assertEquals(2, rejectionProfile.getMatches());
+		Assert.assertEquals(1, rejectionProfile.getCancellations());
+		Assert.assertEquals(1, rejectionProfile.getFirings());
+		Assert.assertEquals(1, rejectionProfile.getRetracts());
+		Assert.assertEquals(0, rejectionProfile.getTruthMaintenanceRetracts());
+
+		Assert.assertEquals(1, profiling.getSampledEvaluations());
+		Assert.assertTrue(profiling.getMeanEvaluationMicros() >= profiling.getMeanConsequenceMicros());
+	}
+
+	private static Match match(final String rule) {
+		return proxy(Match.class, proxy(Rule.class, rule));
+	}
+
+	/**
+	 * @return an implementation of the interface whose getters all return the
+	 *         value
+	 */
+	private static <T> T proxy(Class<T> type, final Object value) {
+		return type.cast(Proxy.newProxyInstance(RuleProfilerTest.class.getClassLoader(), new Class<?>[] {type},
+				new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						if (method.getName().equals("hashCode")) {
+							return System.identityHashCode(proxy);
+						}
+						if (method.getName().equals("equals")) {
+							return proxy == args[0];
+						}
+						return method.getName().startsWith("get") ? value : null;
+					}
+				}));
+	}
+}
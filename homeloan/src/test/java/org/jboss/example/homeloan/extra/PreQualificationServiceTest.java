@@ -3,6 +3,7 @@ package org.jboss.example.homeloan.extra;
 import java.util.Calendar;
 
 import org.jboss.example.homeloan.data.Applicant;
+import org.jboss.example.homeloan.data.CreditInfo;
 import org.jboss.example.homeloan.data.IncomeSource;
 import org.jboss.example.homeloan.data.LoanApplication;
 import org.jboss.example.homeloan.data.Qualification;
@@ -32,7 +33,25 @@ public class PreQualificationServiceTest {
 
 	@Test
 	public void testPrequalify() throws Exception {
+		Qualification result = service.operation("qualify")
+				.sendInOut(loan()).getContent(Qualification.class);
 		
+		// validate the results
+		Assert.assertEquals("Approved", result.getStatus());
+	}
+
+	@Test
+	public void testSkipsTheCreditCheckDoneByIntake() throws Exception {
+		// the credit service would score 711, which is approved
+		CreditInfo credit = new CreditInfo();
+		credit.setScore(600);
+		Qualification result = service.operation("qualify").property("creditinfo", credit)
+				.sendInOut(loan()).getContent(Qualification.class);
+
+		Assert.assertFalse("Approved".equals(result.getStatus()));
+	}
+
+	private static LoanApplication loan() {
 		LoanApplication loan = new LoanApplication();
 		Applicant applicant = new Applicant();
 		applicant.setSsn("711-555-5555");
@@ -46,11 +65,7 @@ public class PreQualificationServiceTest {
 		loan.setLengthYears(20);
 		loan.setDeposit(1500);
 		loan.setIncome(income);
-		Qualification result = service.operation("qualify")
-				.sendInOut(loan).getContent(Qualification.class);
-		
-		// validate the results
-		Assert.assertEquals("Approved", result.getStatus());
+		return loan;
 	}
 
 
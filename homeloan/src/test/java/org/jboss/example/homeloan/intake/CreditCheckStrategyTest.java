@@ -0,0 +1,76 @@
+package org.jboss.example.homeloan.intake;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.jboss.example.homeloan.data.CreditInfo;
+import org.jboss.example.homeloan.data.Customer;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CreditCheckStrategyTest {
+
+	private final DefaultCamelContext context = new DefaultCamelContext();
+	private final CreditCheckStrategy strategy = new CreditCheckStrategy();
+	private final Customer customer = new Customer().setSsn("740123456");
+	private final CreditInfo credit = new CreditInfo();
+
+	@Test
+	public void keepsTheCustomerAndTheCreditInfoInEitherOrder() {
+		Exchange result = strategy.aggregate(strategy.aggregate(null, customer(customer)), credit(credit, null));
+		Assert.assertSame(customer, result.getIn().getBody());
+		Assert.assertSame(credit, result.getProperty("CreditInfo"));
+		Assert.assertNull(result.getException());
+
+		result = strategy.aggregate(strategy.aggregate(null, credit(credit, null)), customer(customer));
+		Assert.assertSame(customer, result.getIn().getBody());
+		Assert.assertSame(credit, result.getProperty("CreditInfo"));
+		Assert.assertNull(result.getException());
+	}
+
+	@Test
+	public void leavesAFailedCreditCheckToTheProcess() {
+		Exception failure = new IllegalStateException("credit service unavailable");
+		Exchange result = strategy.aggregate(strategy.aggregate(null, customer(customer)), credit(null, failure));
+		Assert.assertSame(customer, result.getIn().getBody());
+		Assert.assertNull(result.getProperty("CreditInfo"));
+		Assert.assertNull(result.getException());
+
+		// seeding the result with the failed reply does not fail it either
+		result = strategy.aggregate(strategy.aggregate(null, credit(null, failure)), customer(null));
+		Assert.assertNull(result.getIn().getBody());
+		Assert.assertNull(result.getProperty("CreditInfo"));
+		Assert.assertNull(result.getException());
+	}
+
+	@Test
+	public void failsWithTheCustomerLookup() {
+		Exception failure = new IllegalStateException("customer database unavailable");
+		Exchange lookup = customer(null);
+		lookup.setException(failure);
+		Exchange result = strategy.aggregate(strategy.aggregate(null, credit(credit, null)), lookup);
+		Assert.assertSame(failure, result.getException());
+	}
+
+	private Exchange customer(Customer body) {
+		Exchange reply = reply(CreditCheckStrategy.CUSTOMER_LOOKUP);
+		reply.getOut().setBody(body);
+		return reply;
+	}
+
+	private Exchange credit(CreditInfo body, Exception failure) {
+		Exchange reply = reply(CreditCheckStrategy.CREDIT_CHECK);
+		if (failure != null) {
+			reply.setException(failure);
+		} else {
+			reply.getOut().setBody(body);
+		}
+		return reply;
+	}
+
+	private Exchange reply(int branch) {
+		Exchange reply = new DefaultExchange(context);
+		reply.setProperty(Exchange.MULTICAST_INDEX, branch);
+		return reply;
+	}
+}
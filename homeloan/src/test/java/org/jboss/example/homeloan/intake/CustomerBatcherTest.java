@@ -0,0 +1,189 @@
+package org.jboss.example.homeloan.intake;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.example.homeloan.data.Applicant;
+import org.jboss.example.homeloan.data.Customer;
+import org.jboss.example.homeloan.data.LoanApplication;
+import org.jboss.example.homeloan.lookup.CustomerBatchService;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CustomerBatcherTest {
+
+	// the SSNs of every lookup, in order
+	private final List<List<String>> lookups = Collections.synchronizedList(new ArrayList<List<String>>());
+	private final CountDownLatch firstLookup = new CountDownLatch(1);
+	private volatile boolean holdFirstLookup;
+	private volatile boolean fail;
+
+	private final CustomerBatchService lookup = new CustomerBatchService() {
+		@Override
+		public Map<String, Customer> lookupAll(List<String> ssns) {
+			lookups.add(new ArrayList<String>(ssns));
+			if (holdFirstLookup && lookups.size() == 1) {
+				await(firstLookup);
+			}
+			if (fail) {
+				throw new IllegalStateException("customer database unavailable");
+			}
+			Map<String, Customer> customers = new HashMap<String, Customer>();
+			for (String ssn : ssns) {
+				if (ssn.startsWith("800")) {
+					customers.put(ssn, new Customer().setSsn(ssn));
+				}
+			}
+			return customers;
+		}
+	};
+
+	@Test
+	public void looksALoneApplicationUpOnceTheWindowHasPassed() throws Exception {
+		CustomerBatcher batcher = new CustomerBatcher(10, 50, lookup);
+		long start = System.currentTimeMillis();
+		Assert.assertEquals("800559876", batcher.customerFor(application("800559876")).getSsn());
+		Assert.assertTrue(System.currentTimeMillis() - start >= 50);
+		Assert.assertNull(batcher.customerFor(application("715555555")));
+		Assert.assertEquals(2, lookups.size());
+	}
+
+	@Test
+	public void looksUpTheApplicationsThatArriveWithinTheWindowTogether() throws Exception {
+		CustomerBatcher batcher = new CustomerBatcher(10, 500, lookup);
+		List<Submitter> submitters = new ArrayList<Submitter>();
+		for (int i = 0; i < 4; i++) {
+			submitters.add(submit(batcher, "80000000" + i));
+		}
+		for (Submitter submitter : submitters) {
+			submitter.join();
+			Assert.assertNull(submitter.failure);
+			Assert.assertEquals(submitter.ssn, submitter.customer.getSsn());
+		}
+		Assert.assertEquals(1, lookups.size());
+		Assert.assertEquals(4, lookups.get(0).size());
+	}
+
+	@Test
+	public void startsAFullBatchWithoutWaitingForTheWindow() throws Exception {
+		CustomerBatcher batcher = new CustomerBatcher(3, 60000, lookup);
+		List<Submitter> submitters = new ArrayList<Submitter>();
+		for (int i = 0; i < 3; i++) {
+			submitters.add(submit(batcher, "80000000" + i));
+		}
+		for (Submitter submitter : submitters) {
+			submitter.join(5000);
+			Assert.assertEquals(submitter.ssn, submitter.customer.getSsn());
+		}
+		Assert.assertEquals(1, lookups.size());
+		Assert.assertEquals(0, batcher.waiting());
+	}
+
+	@Test
+	public void startsTheNextBatchWhileALookupRuns() throws Exception {
+		holdFirstLookup = true;
+		CustomerBatcher batcher = new CustomerBatcher(2, 60000, lookup);
+		Submitter first = submit(batcher, "800000000");
+		Submitter second = submit(batcher, "800000001");
+		waitFor(1);
+		Submitter third = submit(batcher, "800000002");
+		Submitter fourth = submit(batcher, "800000003");
+		third.join(5000);
+		fourth.join(5000);
+		Assert.assertEquals("800000002", third.customer.getSsn());
+		Assert.assertEquals(2, lookups.get(1).size());
+		Assert.assertTrue(first.isAlive());
+		firstLookup.countDown();
+		first.join();
+		second.join();
+		Assert.assertEquals("800000000", first.customer.getSsn());
+		Assert.assertEquals("800000001", second.customer.getSsn());
+	}
+
+	@Test
+	public void failsEveryApplicationOfAFailedLookup() throws Exception {
+		fail = true;
+		CustomerBatcher batcher = new CustomerBatcher(3, 60000, lookup);
+		Submitter first = submit(batcher, "800000000");
+		Submitter second = submit(batcher, "800000001");
+		waitUntil(batcher, 2);
+		Submitter third = submit(batcher, "800000002");
+		for (Submitter submitter : new Submitter[] {first, second, third}) {
+			submitter.join();
+			Assert.assertTrue(submitter.failure instanceof IllegalStateException);
+		}
+		// and the next batch is looked up again
+		fail = false;
+		batcher = new CustomerBatcher(1, 60000, lookup);
+		Assert.assertEquals("800000003", batcher.customerFor(application("800000003")).getSsn());
+	}
+
+	private Submitter submit(CustomerBatcher batcher, String ssn) {
+		Submitter submitter = new Submitter(batcher, ssn);
+		submitter.start();
+		return submitter;
+	}
+
+	private void waitFor(int lookupCount) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (lookups.size() < lookupCount) {
+			Assert.assertTrue(System.currentTimeMillis() < deadline);
+			Thread.sleep(5);
+		}
+	}
+
+	private static void waitUntil(CustomerBatcher batcher, int waiting) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (batcher.waiting() < waiting) {
+			Assert.assertTrue(System.currentTimeMillis() < deadline);
+			Thread.sleep(5);
+		}
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static LoanApplication application(String ssn) {
+		Applicant applicant = new Applicant();
+		applicant.setSsn(ssn);
+		LoanApplication application = new LoanApplication();
+		application.setApplicant(applicant);
+		return application;
+	}
+
+	private static final class Submitter extends Thread {
+
+		private static final AtomicInteger COUNT = new AtomicInteger();
+
+		final CustomerBatcher batcher;
+		final String ssn;
+		volatile Customer customer;
+		volatile Exception failure;
+
+		Submitter(CustomerBatcher batcher, String ssn) {
+			super("CustomerBatcherTest-" + COUNT.incrementAndGet());
+			this.batcher = batcher;
+			this.ssn = ssn;
+		}
+
+		@Override
+		public void run() {
+			try {
+				customer = batcher.customerFor(application(ssn));
+			} catch (Exception e) {
+				failure = e;
+			}
+		}
+	}
+}
@@ -0,0 +1,180 @@
+package org.jboss.example.homeloan.intake;
+
+import java.util.TimeZone;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Predicate;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.apache.camel.spi.Synchronization;
+import org.jboss.example.homeloan.data.Applicant;
+import org.jboss.example.homeloan.data.Clock;
+import org.jboss.example.homeloan.data.IncomeSource;
+import org.jboss.example.homeloan.data.LoanApplication;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DuplicateFilterTest {
+
+	private static final long WINDOW = 60000;
+
+	private long now = 1000000;
+	private DuplicateFilter filter;
+
+	@Before
+	public void setClock() {
+		Clock.set(new Clock() {
+			@Override
+			public long currentTimeMillis() {
+				return now;
+			}
+
+			@Override
+			public TimeZone getTimeZone() {
+				return TimeZone.getTimeZone("UTC");
+			}
+		});
+		filter = new DuplicateFilter(WINDOW, 1000);
+	}
+
+	@After
+	public void resetClock() {
+		Clock.set(null);
+	}
+
+	@Test
+	public void dropsCopiesWithinTheWindow() {
+		Assert.assertTrue(filter.isFirstSubmission(application("715-55-5555", 15000)));
+		now += WINDOW - 1;
+		// the same content, formatted differently and from another channel
+		LoanApplication copy = application("715555555", 15000);
+		copy.getApplicant().setFirstName("Joseph");
+		Assert.assertFalse(filter.isFirstSubmission(copy));
+		Assert.assertEquals(1, filter.getDuplicates());
+	}
+
+	@Test
+	public void letsDifferentApplicationsThrough() {
+		Assert.assertTrue(filter.isFirstSubmission(application("715-55-5555", 15000)));
+		Assert.assertTrue(filter.isFirstSubmission(application("715-55-5555", 16000)));
+		Assert.assertTrue(filter.isFirstSubmission(application("715-55-5556", 15000)));
+		LoanApplication selfEmployed = application("715-55-5555", 15000);
+		selfEmployed.getIncome().setSelfEmployed(true);
+		Assert.assertTrue(filter.isFirstSubmission(selfEmployed));
+		Assert.assertEquals(0, filter.getDuplicates());
+		Assert.assertEquals(4, filter.getTrackedSubmissions());
+	}
+
+	@Test
+	public void letsCopiesThroughOnceTheWindowHasPassed() {
+		Assert.assertTrue(filter.isFirstSubmission(application("715-55-5555", 15000)));
+		now += WINDOW;
+		Assert.assertTrue(filter.isFirstSubmission(application("715-55-5555", 15000)));
+		now += WINDOW / 2;
+		Assert.assertFalse(filter.isFirstSubmission(application("715-55-5555", 15000)));
+		now += 3 * WINDOW;
+		Assert.assertTrue(filter.isFirstSubmission(application("715-55-5555", 15000)));
+	}
+
+	@Test
+	public void neverDropsADifferentApplicationWhenFull() {
+		DuplicateFilter small = new DuplicateFilter(WINDOW, 10);
+		int passed = 0;
+		for (int i = 0; i < 2000; i++) {
+			if (small.isFirstSubmission(application("715-55-5555", 10000 + i))) {
+				passed++;
+			}
+		}
+		Assert.assertEquals(2000, passed);
+		Assert.assertEquals(0, small.getDuplicates());
+	}
+
+	@Test
+	public void letsTheRedeliveryOfAFailedSubmissionThrough() throws Exception {
+		Predicate firstSubmission = filter.firstSubmission();
+		Exchange failed = exchange(application("715-55-5555", 15000));
+		Assert.assertTrue(firstSubmission.matches(failed));
+		// a copy is dropped while the submission is processed
+		Assert.assertFalse(firstSubmission.matches(exchange(application("715555555", 15000))));
+		failed.setException(new IllegalStateException("customer database unavailable"));
+		for (Synchronization synchronization : failed.handoverCompletions()) {
+			synchronization.onFailure(failed);
+		}
+		Assert.assertEquals(1, filter.getReleasedSubmissions());
+
+		// the redelivery is processed, and completes
+		now += 1000;
+		Exchange redelivered = exchange(application("715-55-5555", 15000));
+		Assert.assertTrue(firstSubmission.matches(redelivered));
+		for (Synchronization synchronization : redelivered.handoverCompletions()) {
+			synchronization.onComplete(redelivered);
+		}
+		Assert.assertFalse(firstSubmission.matches(exchange(application("715-55-5555", 15000))));
+		Assert.assertEquals(1, filter.getReleasedSubmissions());
+	}
+
+	@Test
+	public void letsOneOfConcurrentCopiesThrough() throws Exception {
+		final int threads = 8;
+		final int applications = 500;
+		final CyclicBarrier barrier = new CyclicBarrier(threads);
+		final AtomicInteger passed = new AtomicInteger();
+		final AtomicInteger failed = new AtomicInteger();
+		Thread[] submitters = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			submitters[t] = new Thread(new Runnable() {
+				public void run() {
+					try {
+						for (int i = 0; i < applications; i++) {
+							// every thread sends the same application at the same time
+							barrier.await();
+							if (filter.isFirstSubmission(application("715-55-5555", 10000 + i))) {
+								passed.incrementAndGet();
+							}
+						}
+					} catch (Exception e) {
+						failed.incrementAndGet();
+					}
+				}
+			});
+			submitters[t].start();
+		}
+		for (Thread submitter : submitters) {
+			submitter.join();
+		}
+		Assert.assertEquals(0, failed.get());
+		Assert.assertEquals(applications, passed.get());
+		Assert.assertEquals(applications * (threads - 1), filter.getDuplicates());
+	}
+
+	@Test
+	public void ignoresApplicationsWithoutAnSsn() {
+		Assert.assertTrue(filter.isFirstSubmission(application(null, 15000)));
+		Assert.assertTrue(filter.isFirstSubmission(application(null, 15000)));
+		Assert.assertEquals(0, filter.getCheckedSubmissions());
+	}
+
+	private static Exchange exchange(LoanApplication application) {
+		Exchange exchange = new DefaultExchange(new DefaultCamelContext());
+		exchange.getIn().setBody(application);
+		return exchange;
+	}
+
+	private static LoanApplication application(String ssn, int amount) {
+		Applicant applicant = new Applicant();
+		applicant.setSsn(ssn);
+		IncomeSource income = new IncomeSource();
+		income.setMonthlyAmount(4000);
+		LoanApplication application = new LoanApplication();
+		application.setApplicant(applicant);
+		application.setAmount(amount);
+		application.setLengthYears(20);
+		application.setDeposit(1500);
+		application.setIncome(income);
+		return application;
+	}
+}
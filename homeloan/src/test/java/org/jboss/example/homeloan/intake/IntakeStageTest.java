@@ -0,0 +1,59 @@
+package org.jboss.example.homeloan.intake;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.component.seda.SedaComponent;
+import org.apache.camel.component.seda.SedaEndpoint;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IntakeStageTest {
+
+	private final DefaultCamelContext context = new DefaultCamelContext();
+	private final BlockingQueue<Exchange> queue = new ArrayBlockingQueue<Exchange>(10);
+	private final IntakeStage stage = new IntakeStage("IntakeStageTest", 10, 2)
+			.register(new SedaEndpoint("seda:IntakeStageTest", new SedaComponent(), queue));
+
+	@Test
+	public void keepsThePeakDepthSampledOnEitherSideOfTheQueue() throws Exception {
+		// queued while the workers are busy, sampled by the producer
+		for (int i = 0; i < 7; i++) {
+			queue.put(new DefaultExchange(context));
+			stage.sampler().process(null);
+		}
+		Assert.assertEquals(7, stage.getQueueDepth());
+		Assert.assertEquals(3, stage.getRemainingCapacity());
+		Assert.assertEquals(7, stage.getPeakQueueDepth());
+
+		// drained by the workers, each sampling what is left
+		while (queue.poll() != null) {
+			stage.sampler().process(null);
+		}
+		Assert.assertEquals(0, stage.getQueueDepth());
+		Assert.assertEquals(7, stage.getPeakQueueDepth());
+
+		queue.put(new DefaultExchange(context));
+		stage.sampler().process(null);
+		Assert.assertEquals(7, stage.getPeakQueueDepth());
+	}
+
+	@Test
+	public void rejectsAStageWithoutCapacityOrWorkers() {
+		try {
+			new IntakeStage("empty", 0, 1);
+			Assert.fail("Stage without capacity created");
+		} catch (IllegalArgumentException e) {
+			Assert.assertTrue(e.getMessage().contains("empty"));
+		}
+		try {
+			new IntakeStage("idle", 1, 0);
+			Assert.fail("Stage without workers created");
+		} catch (IllegalArgumentException e) {
+			Assert.assertTrue(e.getMessage().contains("idle"));
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package org.jboss.example.homeloan.lookup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.example.homeloan.cache.BoundedCache.Eviction;
+import org.jboss.example.homeloan.data.Customer;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CustomerCacheTest {
+
+	private static final String SSN = "740123456";
+
+	private final AtomicInteger queries = new AtomicInteger();
+	private final CountDownLatch release = new CountDownLatch(1);
+	private volatile List<Map<String, Object>> rows = Collections.singletonList(row(SSN));
+	private volatile RuntimeException failure;
+
+	private final CustomerDatabase database = new CustomerDatabase() {
+		public List<Map<String, Object>> lookup(String ssn) {
+			queries.incrementAndGet();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+			if (failure != null) {
+				throw failure;
+			}
+			return rows;
+		}
+	};
+
+	@Test
+	public void concurrentMissesShareOneQuery() throws Exception {
+		final CustomerCache cache = new CustomerCache(100, 60000, 60000, Eviction.LRU);
+		ExecutorService threads = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Customer>> lookups = new ArrayList<Future<Customer>>();
+			for (int i = 0; i < 8; i++) {
+				lookups.add(threads.submit(new Callable<Customer>() {
+					public Customer call() {
+						return cache.lookup(SSN, database);
+					}
+				}));
+			}
+			// let the other lookups find the first one's query in flight
+			Thread.sleep(100);
+			release.countDown();
+			Customer first = lookups.get(0).get();
+			Assert.assertEquals(SSN, first.getSsn());
+			for (Future<Customer> lookup : lookups) {
+				Assert.assertSame(first, lookup.get());
+			}
+		} finally {
+			threads.shutdownNow();
+		}
+		Assert.assertEquals(1, queries.get());
+		Assert.assertEquals(1, cache.getStats().getLoads());
+		Assert.assertSame(cache.get(SSN), cache.lookup(SSN, database));
+		Assert.assertEquals(1, queries.get());
+	}
+
+	@Test
+	public void remembersNonCustomersUntilTheirEntryExpires() throws Exception {
+		CustomerCache cache = new CustomerCache(100, 60000, 50, Eviction.LRU);
+		release.countDown();
+		rows = Collections.emptyList();
+		Assert.assertNull(cache.lookup(SSN, database));
+		Assert.assertTrue(cache.isKnownNonCustomer(SSN));
+		Assert.assertNull(cache.lookup(SSN, database));
+		Assert.assertEquals(1, queries.get());
+
+		Thread.sleep(100);
+		Assert.assertFalse(cache.isKnownNonCustomer(SSN));
+		// has become a customer meanwhile
+		rows = Collections.singletonList(row(SSN));
+		Assert.assertEquals(SSN, cache.lookup(SSN, database).getSsn());
+		Assert.assertEquals(2, queries.get());
+		Assert.assertFalse(cache.isKnownNonCustomer(SSN));
+	}
+
+	@Test
+	public void doesNotCacheAFailedQuery() {
+		CustomerCache cache = new CustomerCache(100, 60000, 60000, Eviction.LRU);
+		release.countDown();
+		failure = new IllegalStateException("database unavailable");
+		try {
+			cache.lookup(SSN, database);
+			Assert.fail("Failed query returned");
+		} catch (IllegalStateException e) {
+			Assert.assertSame(failure, e);
+		}
+		failure = null;
+		Assert.assertEquals(SSN, cache.lookup(SSN, database).getSsn());
+		Assert.assertEquals(2, queries.get());
+	}
+
+	private static Map<String, Object> row(String ssn) {
+		Map<String, Object> row = new HashMap<String, Object>();
+		row.put("firstName", "Tina");
+		row.put("lastName", "Smith");
+		row.put("ssn", ssn);
+		row.put("dob", "1970-01-01");
+		row.put("streetaddress", "1 Main St");
+		row.put("city", "Boston");
+		row.put("state", "MA");
+		row.put("postalcode", "02110");
+		row.put("checkingbalance", "1000");
+		row.put("savingsBalance", "5000");
+		return row;
+	}
+}
@@ -0,0 +1,45 @@
+package org.jboss.example.homeloan.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void bucketsCoverEveryValue() {
+		for (long value = 0; value < 100000; value++) {
+			int index = LatencyHistogram.index(value);
+			Assert.assertTrue(value <= LatencyHistogram.upperBound(index));
+			Assert.assertTrue(index == 0 || value > LatencyHistogram.upperBound(index - 1));
+		}
+		int last = LatencyHistogram.index(Long.MAX_VALUE);
+		Assert.assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBound(last));
+	}
+
+	@Test
+	public void percentilesAreWithinABucket() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long micros = 1; micros <= 1000; micros++) {
+			histogram.record(micros);
+		}
+		Assert.assertEquals(1000, histogram.getCount());
+		Assert.assertEquals(1000, histogram.getMax());
+		Assert.assertEquals(500.5, histogram.getMean(), 0.001);
+		long median = histogram.getPercentile(50);
+		Assert.assertTrue(median >= 500 && median <= 500 * 1.125);
+		long p99 = histogram.getPercentile(99);
+		Assert.assertTrue(p99 >= 990 && p99 <= 1000);
+		Assert.assertEquals(1000, histogram.getPercentile(100));
+	}
+
+	@Test
+	public void resetStartsOver() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(42);
+		histogram.reset();
+		Assert.assertEquals(0, histogram.getCount());
+		Assert.assertEquals(0, histogram.getPercentile(99));
+		histogram.record(7);
+		Assert.assertEquals(7, histogram.getPercentile(50));
+	}
+}
@@ -0,0 +1,15 @@
+package org.jboss.example.homeloan.metrics;
+
+import org.jboss.example.homeloan.eval.RuleProfile;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MetricsServiceBeanTest {
+
+	@Test
+	public void escapesRuleNames() {
+		RuleProfile.forRule("Rule \"quoted\"\\");
+		String json = new MetricsServiceBean().rules();
+		Assert.assertTrue(json, json.contains("\"Rule \\\"quoted\\\"\\\\\":{\"matches\":0,"));
+	}
+}
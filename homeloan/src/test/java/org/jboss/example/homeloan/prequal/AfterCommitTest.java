@@ -0,0 +1,83 @@
+package org.jboss.example.homeloan.prequal;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AfterCommitTest {
+
+	private final List<Synchronization> synchronizations = new ArrayList<Synchronization>();
+	private int status = Status.STATUS_ACTIVE;
+	private int runs;
+
+	private final Runnable work = new Runnable() {
+		public void run() {
+			runs++;
+		}
+	};
+
+	@After
+	public void resetRegistry() {
+		AfterCommit.setRegistry(null);
+	}
+
+	@Test
+	public void runsOnCommit() {
+		AfterCommit.setRegistry(registry());
+		AfterCommit.run(work);
+		Assert.assertEquals(0, runs);
+		complete(Status.STATUS_COMMITTED);
+		Assert.assertEquals(1, runs);
+	}
+
+	@Test
+	public void dropsTheWorkOnRollback() {
+		AfterCommit.setRegistry(registry());
+		AfterCommit.run(work);
+		complete(Status.STATUS_ROLLEDBACK);
+		status = Status.STATUS_MARKED_ROLLBACK;
+		AfterCommit.run(work);
+		Assert.assertEquals(1, synchronizations.size());
+		Assert.assertEquals(0, runs);
+	}
+
+	@Test
+	public void runsStraightAwayWithoutATransaction() {
+		status = Status.STATUS_NO_TRANSACTION;
+		AfterCommit.setRegistry(registry());
+		AfterCommit.run(work);
+		Assert.assertEquals(1, runs);
+		Assert.assertTrue(synchronizations.isEmpty());
+	}
+
+	private void complete(int outcome) {
+		for (Synchronization synchronization : synchronizations) {
+			synchronization.afterCompletion(outcome);
+		}
+	}
+
+	private TransactionSynchronizationRegistry registry() {
+		return (TransactionSynchronizationRegistry)Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] {TransactionSynchronizationRegistry.class}, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						if (method.getName().equals("getTransactionStatus")) {
+							return status;
+						}
+						if (method.getName().equals("registerInterposedSynchronization")) {
+							synchronizations.add((Synchronization)args[0]);
+						}
+						return null;
+					}
+				});
+	}
+}
@@ -0,0 +1,66 @@
+package org.jboss.example.homeloan.prequal;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.drools.core.impl.EnvironmentFactory;
+import org.jboss.example.homeloan.data.Applicant;
+import org.jboss.example.homeloan.data.LoanApplication;
+import org.jboss.example.homeloan.data.Qualification;
+import org.jbpm.services.task.utils.ContentMarshallerHelper;
+import org.junit.Assert;
+import org.junit.Test;
+import org.kie.api.marshalling.ObjectMarshallingStrategy;
+import org.kie.api.runtime.Environment;
+import org.kie.api.runtime.EnvironmentName;
+import org.kie.internal.task.api.model.ContentData;
+
+/**
+ * Task content goes through jBPM's ContentMarshallerHelper with the
+ * environment the task service was built on, both when the human task
+ * handler writes a task's input and when TaskInbox and TaskDecisions read it
+ * back.
+ */
+public class DataMarshallingListenerTest {
+
+	@Test
+	public void installsTheStrategyOnceInFrontOfTheDefault() {
+		Environment env = EnvironmentFactory.newEnvironment();
+		DataMarshallingListener.install(env);
+		DataMarshallingListener.install(env);
+		ObjectMarshallingStrategy[] strategies =
+				(ObjectMarshallingStrategy[])env.get(EnvironmentName.OBJECT_MARSHALLING_STRATEGIES);
+		Assert.assertEquals(2, strategies.length);
+		Assert.assertTrue(strategies[0] instanceof DataMarshallingStrategy);
+	}
+
+	@Test
+	public void roundTripsTaskContentThroughTheTaskMarshaller() {
+		Environment env = EnvironmentFactory.newEnvironment();
+		DataMarshallingListener.install(env);
+
+		Applicant applicant = new Applicant();
+		applicant.setSsn("800559876");
+		applicant.setFirstName("Sally");
+		LoanApplication application = new LoanApplication();
+		application.setApplicant(applicant);
+		application.setAmount(150000);
+		Qualification qualification = new Qualification();
+		qualification.setStatus("Pending");
+		qualification.setExplanation("Existing customer");
+		Map<String, Object> content = new HashMap<String, Object>();
+		content.put("LoanApplication", application);
+		content.put("qualification", qualification);
+		content.put("TaskName", "Human Eval");
+
+		ContentData data = ContentMarshallerHelper.marshal(content, env);
+		@SuppressWarnings("unchecked")
+		Map<String, Object> read = (Map<String, Object>)ContentMarshallerHelper.unmarshall(data.getContent(), env);
+
+		LoanApplication readApplication = (LoanApplication)read.get("LoanApplication");
+		Assert.assertEquals(150000, readApplication.getAmount());
+		Assert.assertEquals("800559876", readApplication.getApplicant().getSsn());
+		Assert.assertEquals("Existing customer", ((Qualification)read.get("qualification")).getExplanation());
+		Assert.assertEquals("Human Eval", read.get("TaskName"));
+	}
+}
@@ -0,0 +1,111 @@
+package org.jboss.example.homeloan.prequal;
+
+import java.util.Date;
+
+import org.jboss.example.homeloan.data.Applicant;
+import org.jboss.example.homeloan.data.Bankruptcy;
+import org.jboss.example.homeloan.data.CreditInfo;
+import org.jboss.example.homeloan.data.IncomeSource;
+import org.jboss.example.homeloan.data.LoanApplication;
+import org.jboss.example.homeloan.data.Qualification;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DataMarshallingStrategyTest {
+
+	private final DataMarshallingStrategy strategy = new DataMarshallingStrategy();
+
+	@Test
+	public void acceptsTheDataClassesOnly() {
+		Assert.assertTrue(strategy.accept(new LoanApplication()));
+		Assert.assertTrue(strategy.accept(new Qualification()));
+		Assert.assertTrue(strategy.accept(new CreditInfo()));
+		Assert.assertFalse(strategy.accept("740123456"));
+		Assert.assertFalse(strategy.accept(null));
+		Assert.assertFalse(strategy.accept(new Applicant() {
+			private static final long serialVersionUID = 1L;
+		}));
+	}
+
+	@Test
+	public void roundTripsApplicants() throws Exception {
+		Applicant applicant = applicant();
+		Applicant read = (Applicant)roundTrip(applicant);
+		Assert.assertEquals("Tina", read.getFirstName());
+		Assert.assertEquals("740123456", read.getSsn());
+		Assert.assertNull(read.getCity());
+		Assert.assertEquals(applicant.getDob(), read.getDob());
+		Assert.assertEquals(735, read.getCreditScore());
+		Assert.assertEquals(5000.5, read.getCheckingBalance(), 0);
+
+		applicant.setDob(null);
+		Assert.assertNull(((Applicant)roundTrip(applicant)).getDob());
+	}
+
+	@Test
+	public void roundTripsQualifications() throws Exception {
+		Qualification qualification = new Qualification();
+		qualification.setStatus("Approved");
+		qualification.setRate("4.75");
+		qualification.setCost(1200);
+		Qualification read = (Qualification)roundTrip(qualification);
+		Assert.assertEquals("Approved", read.getStatus());
+		Assert.assertEquals("4.75", read.getRate());
+		Assert.assertNull(read.getExplanation());
+		Assert.assertEquals(1200, read.getCost());
+	}
+
+	@Test
+	public void roundTripsApplications() throws Exception {
+		LoanApplication application = new LoanApplication();
+		application.setAmount(75000);
+		application.setApplicant(applicant());
+		Bankruptcy bankruptcy = new Bankruptcy();
+		bankruptcy.setYearOfOccurrence(2005);
+		application.setBankruptcy(bankruptcy);
+		LoanApplication read = (LoanApplication)roundTrip(application);
+		Assert.assertEquals(75000, read.getAmount());
+		Assert.assertEquals("740123456", read.getApplicant().getSsn());
+		Assert.assertEquals(2005, read.getBankruptcy().getYearOfOccurrence());
+		Assert.assertNull(read.getIncome());
+	}
+
+	@Test
+	public void roundTripsTheRest() throws Exception {
+		IncomeSource income = new IncomeSource();
+		income.setMonthlyAmount(6250);
+		income.setSelfEmployed(true);
+		IncomeSource readIncome = (IncomeSource)roundTrip(income);
+		Assert.assertEquals(6250, readIncome.getMonthlyAmount());
+		Assert.assertTrue(readIncome.isSelfEmployed());
+
+		CreditInfo credit = new CreditInfo();
+		credit.setScore(735);
+		Assert.assertNull(((CreditInfo)roundTrip(credit)).getApplicant());
+		credit.setApplicant(applicant());
+		Assert.assertEquals("Thrift-new", ((CreditInfo)roundTrip(credit)).getApplicant().getLastName());
+	}
+
+	@Test(expected = java.io.StreamCorruptedException.class)
+	public void rejectsNewerVersions() throws Exception {
+		byte[] bytes = DataMarshallingStrategy.toBytes(new Qualification());
+		bytes[0] = DataMarshallingStrategy.VERSION + 1;
+		DataMarshallingStrategy.fromBytes(bytes);
+	}
+
+	private Object roundTrip(Object object) throws Exception {
+		Assert.assertTrue(strategy.accept(object));
+		return strategy.unmarshal(null, null, strategy.marshal(null, null, object), getClass().getClassLoader());
+	}
+
+	private static Applicant applicant() {
+		Applicant applicant = new Applicant();
+		applicant.setSsn("740123456");
+		applicant.setFirstName("Tina");
+		applicant.setLastName("Thrift-new");
+		applicant.setDob(new Date(136857600000L));
+		applicant.setCreditScore(735);
+		applicant.setCheckingBalance(5000.5);
+		return applicant;
+	}
+}
@@ -0,0 +1,167 @@
+package org.jboss.example.homeloan.prequal;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.jboss.example.homeloan.cache.BoundedCache;
+import org.jboss.example.homeloan.data.Qualification;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JdbcStatusStoreTest {
+
+	private static final AtomicInteger DATABASES = new AtomicInteger();
+
+	private final Database database = new Database();
+	private final BoundedCache<String, Qualification> cache = new BoundedCache<String, Qualification>("JdbcStatusStoreTest",
+			1000, 60000L, false);
+	private JdbcStatusStore store;
+
+	@Before
+	public void open() {
+		database.setURL("jdbc:h2:mem:status" + DATABASES.incrementAndGet() + ";DB_CLOSE_DELAY=-1");
+		store = new JdbcStatusStore(new MemoryStatusStore(cache), database, "test", 10, 5, 50L);
+	}
+
+	@After
+	public void close() {
+		store.close();
+	}
+
+	@Test
+	public void writesBehindAndAnswersEvictedStatusesFromTheTable() throws Exception {
+		for (int i = 0; i < 20; i++) {
+			store.put("ssn" + i, qualification("Approved", i));
+		}
+		store.remove("ssn0");
+		awaitWritten();
+		Assert.assertEquals(19, rows());
+
+		cache.clear();
+		Assert.assertEquals(7, store.get("ssn7").getCost());
+		Assert.assertEquals("Approved", store.get("ssn7").getStatus());
+		Assert.assertNull(store.get("ssn0"));
+		Assert.assertEquals(1, store.getStats().getLoads());
+		Assert.assertEquals(19, store.ssns().size());
+	}
+
+	@Test
+	public void writesTheLatestUpdateOfEachSsnLast() throws Exception {
+		// far more updates than the queue holds, so callers flush alongside the writer
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < 4; t++) {
+			final String ssn = "ssn" + t;
+			threads.add(new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i <= 500; i++) {
+						if (i % 100 == 50) {
+							store.remove(ssn);
+						} else {
+							store.put(ssn, qualification("Pending", i));
+						}
+					}
+				}
+			});
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		awaitWritten();
+		cache.clear();
+		for (int t = 0; t < 4; t++) {
+			Assert.assertEquals(500, store.get("ssn" + t).getCost());
+		}
+		Assert.assertEquals(4, rows());
+	}
+
+	@Test
+	public void keepsTheWritesWhileTheDatabaseIsUnavailable() throws Exception {
+		database.down = true;
+		store.put("ssn1", qualification("Approved", 1));
+		store.put("ssn2", qualification("Declined", 2));
+		Thread.sleep(100);
+		Assert.assertEquals(2, store.getPendingWrites());
+		cache.clear();
+		// answered by the pending write while the table cannot be read
+		Assert.assertEquals("Declined", store.get("ssn2").getStatus());
+		Assert.assertNull(store.get("ssn3"));
+
+		database.down = false;
+		awaitWritten();
+		Assert.assertEquals(2, rows());
+		Assert.assertEquals("Approved", store.get("ssn1").getStatus());
+	}
+
+	@Test
+	public void writesWhatIsQueuedOnClose() throws Exception {
+		for (int i = 0; i < 10; i++) {
+			store.put("ssn" + i, qualification("Approved", i));
+		}
+		store.close();
+		Assert.assertFalse(store.isWriterRunning());
+		Assert.assertEquals(0, store.getPendingWrites());
+		Assert.assertEquals(10, rows());
+
+		// memory only from now on
+		store.put("ssn10", qualification("Approved", 10));
+		Assert.assertEquals(0, store.getPendingWrites());
+		Assert.assertEquals(10, store.get("ssn10").getCost());
+		Assert.assertEquals(10, rows());
+	}
+
+	private void awaitWritten() throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (store.getPendingWrites() > 0) {
+			Assert.assertTrue("Writes still pending", System.currentTimeMillis() < deadline);
+			Thread.sleep(10);
+		}
+	}
+
+	private int rows() throws SQLException {
+		Connection connection = database.getConnection();
+		try {
+			Statement statement = connection.createStatement();
+			ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM LOAN_STATUS");
+			result.next();
+			return result.getInt(1);
+		} finally {
+			connection.close();
+		}
+	}
+
+	private static Qualification qualification(String status, int cost) {
+		Qualification qualification = new Qualification();
+		qualification.setStatus(status);
+		qualification.setRate("5.0");
+		qualification.setExplanation("test");
+		qualification.setCost(cost);
+		return qualification;
+	}
+
+	private static class Database extends JdbcDataSource {
+
+		private static final long serialVersionUID = 1L;
+
+		volatile boolean down;
+
+		@Override
+		public Connection getConnection() throws SQLException {
+			if (down) {
+				throw new SQLException("Database is down");
+			}
+			return super.getConnection();
+		}
+	}
+}
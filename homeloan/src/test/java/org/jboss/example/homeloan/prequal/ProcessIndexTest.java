@@ -0,0 +1,181 @@
+package org.jboss.example.homeloan.prequal;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.kie.api.task.model.Status;
+import org.kie.api.task.model.TaskSummary;
+import org.kie.api.task.model.User;
+
+public class ProcessIndexTest {
+
+	private static final String PREQUAL = "PreQualificationService";
+	private static final String HUMAN_EVAL = ProcessIndex.HUMAN_EVALUATION_PROCESS;
+
+	private final List<Long> taskQueries = new ArrayList<Long>();
+	private List<TaskSummary> pending = Collections.emptyList();
+	// the CorrelationKeyInfo table
+	private final Map<String, Long> persistent = new HashMap<String, Long>();
+
+	private final ProcessIndex.Tasks tasks = new ProcessIndex.Tasks() {
+		public List<TaskSummary> pending(long processInstanceId) {
+			taskQueries.add(processInstanceId);
+			return pending;
+		}
+	};
+	private final ProcessIndex.Instances instances = new ProcessIndex.Instances() {
+		public Long find(String correlationKey) {
+			return persistent.get(correlationKey);
+		}
+	};
+	private final ProcessIndex index = new ProcessIndex(tasks, instances);
+
+	@Test
+	public void locatesTheNodeOfARunningInstance() {
+		index.started("715-55-5555", PREQUAL, 7);
+		ProcessLocation location = index.locate("715-55-5555");
+		Assert.assertEquals(PREQUAL, location.getProcessId());
+		Assert.assertEquals(7, location.getProcessInstanceId());
+		Assert.assertNull(location.getNode());
+
+		index.entered("715-55-5555", PREQUAL, 7, "Credit");
+		Assert.assertEquals("Credit", index.locate("715-55-5555").getNode());
+		Assert.assertNull(index.locate("715-55-5555").getTaskId());
+		// no task service round trip outside the human evaluation
+		Assert.assertTrue(taskQueries.isEmpty());
+		Assert.assertNull(index.locate("715-55-5556"));
+	}
+
+	@Test
+	public void comparesSsnsByTheirDigits() {
+		index.started("715-55-5555", PREQUAL, 7);
+		index.entered("715555555", PREQUAL, 7, "Credit");
+		Assert.assertEquals("Credit", index.locate("715 55 5555").getNode());
+		Assert.assertEquals("715 55 5555", index.locate("715 55 5555").getSsn());
+		index.completed("715555555", PREQUAL, 7);
+		Assert.assertEquals(0, index.size());
+		Assert.assertNull(index.locate("---"));
+	}
+
+	@Test
+	public void findsAPersistentHumanEvaluationItDidNotSeeStart() {
+		persistent.put("715555555", 3L);
+		pending = Collections.singletonList(task(42, Status.Ready, null));
+		ProcessLocation location = index.locate("715-55-5555");
+		Assert.assertEquals(HUMAN_EVAL, location.getProcessId());
+		Assert.assertEquals(3, location.getProcessInstanceId());
+		Assert.assertEquals("Human Eval", location.getNode());
+		Assert.assertEquals(Long.valueOf(42), location.getTaskId());
+		Assert.assertNull(location.getTaskOwner());
+		Assert.assertNull(index.locate("715-55-5556"));
+	}
+
+	@Test
+	public void startsOneHumanEvaluationPerSsnWithACorrelationKey() {
+		index.started("715-55-5555", PREQUAL, 7);
+		Assert.assertEquals("715555555", index.humanEvaluationKey("715-55-5555"));
+		index.started("715-55-5555", HUMAN_EVAL, 3);
+		Assert.assertNull(index.humanEvaluationKey("715555555"));
+
+		// waiting from before a restart
+		persistent.put("800559876", 4L);
+		Assert.assertNull(index.humanEvaluationKey("800-55-9876"));
+		Assert.assertNull(index.humanEvaluationKey("n/a"));
+	}
+
+	@Test
+	public void followsTheApplicationIntoTheHumanEvaluation() {
+		index.started("715-55-5555", PREQUAL, 7);
+		index.entered("715-55-5555", PREQUAL, 7, "Human Eval");
+		index.started("715-55-5555", HUMAN_EVAL, 3);
+		index.entered("715-55-5555", HUMAN_EVAL, 3, "Human Eval");
+		// the prequalification instance finishes once it has handed the application over
+		index.entered("715-55-5555", PREQUAL, 7, "End");
+		index.completed("715-55-5555", PREQUAL, 7);
+
+		pending = Collections.singletonList(task(42, Status.Reserved, "eval"));
+		ProcessLocation location = index.locate("715-55-5555");
+		Assert.assertEquals(HUMAN_EVAL, location.getProcessId());
+		Assert.assertEquals(3, location.getProcessInstanceId());
+		Assert.assertEquals("Human Eval", location.getNode());
+		Assert.assertEquals(Long.valueOf(42), location.getTaskId());
+		Assert.assertEquals("Reserved", location.getTaskStatus());
+		Assert.assertEquals("eval", location.getTaskOwner());
+		Assert.assertEquals(Collections.singletonList(3L), taskQueries);
+
+		index.completed("715-55-5555", HUMAN_EVAL, 3);
+		Assert.assertNull(index.locate("715-55-5555"));
+		Assert.assertEquals(0, index.size());
+	}
+
+	@Test
+	public void forgetsInstancesThatNeverComplete() throws InterruptedException {
+		ProcessIndex expiring = new ProcessIndex(tasks, instances, 10, 50);
+		// e.g. a prequalification that threw
+		expiring.started("715-55-5555", PREQUAL, 7);
+		expiring.started("715-55-5556", HUMAN_EVAL, 8);
+		persistent.put("715555556", 8L);
+		Thread.sleep(100);
+		Assert.assertNull(expiring.locate("715-55-5555"));
+		// still found by its correlation key
+		Assert.assertEquals(8, expiring.locate("715-55-5556").getProcessInstanceId());
+		Assert.assertEquals(0, expiring.locate("715-55-5556").getStartedMillis());
+
+		for (int i = 0; i < 100; i++) {
+			expiring.started("800-00-" + (1000 + i), PREQUAL, i);
+		}
+		Assert.assertTrue(expiring.size() <= 10);
+		Assert.assertEquals(99, expiring.locate("800-00-1099").getProcessInstanceId());
+	}
+
+	@Test
+	public void locatesWithoutTheTaskWhenTheTaskServiceFails() {
+		ProcessIndex failing = new ProcessIndex(new ProcessIndex.Tasks() {
+			public List<TaskSummary> pending(long processInstanceId) {
+				throw new IllegalStateException("task service unavailable");
+			}
+		}, new ProcessIndex.Instances() {
+			public Long find(String correlationKey) {
+				throw new IllegalStateException("database unavailable");
+			}
+		});
+		failing.started("715-55-5555", HUMAN_EVAL, 3);
+		failing.entered("715-55-5555", HUMAN_EVAL, 3, "Human Eval");
+		ProcessLocation location = failing.locate("715-55-5555");
+		Assert.assertEquals("Human Eval", location.getNode());
+		Assert.assertNull(location.getTaskId());
+		Assert.assertNull(failing.locate("715-55-5556"));
+	}
+
+	private static TaskSummary task(final long id, final Status status, final String owner) {
+		final User user = (User)Proxy.newProxyInstance(ProcessIndexTest.class.getClassLoader(),
+				new Class<?>[] {User.class}, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						return method.getName().equals("getId") ? owner : null;
+					}
+				});
+		return (TaskSummary)Proxy.newProxyInstance(ProcessIndexTest.class.getClassLoader(),
+				new Class<?>[] {TaskSummary.class}, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						if (method.getName().equals("getId")) {
+							return id;
+						}
+						if (method.getName().equals("getStatus")) {
+							return status;
+						}
+						if (method.getName().equals("getName")) {
+							return "Human Eval";
+						}
+						return method.getName().equals("getActualOwner") ? user : null;
+					}
+				});
+	}
+}
@@ -0,0 +1,184 @@
+package org.jboss.example.homeloan.prequal;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.transaction.RollbackException;
+import javax.transaction.Status;
+import javax.transaction.UserTransaction;
+
+import org.jboss.example.homeloan.data.Qualification;
+import org.junit.Assert;
+import org.junit.Test;
+import org.switchyard.component.bpm.runtime.BPMTaskService;
+
+public class TaskDecisionsTest {
+
+	private final Transaction transaction = new Transaction();
+	private final Tasks tasks = new Tasks();
+	private final TaskDecisions decisions = new TaskDecisions(tasks.service(), transaction.proxy(), "mrbill");
+
+	@Test
+	public void completesAllTasksInOneTransaction() {
+		List<TaskDecisions.Result> results = decisions.decide(Arrays.asList(1L, 2L, 3L), "Approved", "4.75", null);
+		Assert.assertEquals(3, results.size());
+		for (TaskDecisions.Result result : results) {
+			Assert.assertEquals(TaskDecisions.Outcome.COMPLETED, result.getOutcome());
+		}
+		Assert.assertEquals(1, transaction.begun);
+		Assert.assertEquals(1, transaction.committed);
+		Assert.assertEquals(0, transaction.rolledBack);
+
+		Qualification qualification = tasks.completed.get(2L);
+		Assert.assertEquals("Approved", qualification.getStatus());
+		Assert.assertEquals("4.75", qualification.getRate());
+		// kept from the task content
+		Assert.assertEquals("Existing customer", qualification.getExplanation());
+	}
+
+	@Test
+	public void completesTheOthersWhenATaskFails() {
+		tasks.failing.add(2L);
+		List<TaskDecisions.Result> results = decisions.decide(Arrays.asList(1L, 2L, 3L), "Rejected", null, null);
+		Assert.assertEquals(TaskDecisions.Outcome.COMPLETED, results.get(0).getOutcome());
+		Assert.assertEquals(2, results.get(1).getTaskId());
+		Assert.assertEquals(TaskDecisions.Outcome.FAILED, results.get(1).getOutcome());
+		Assert.assertEquals("Task 2 is not Ready", results.get(1).getMessage());
+		Assert.assertEquals(TaskDecisions.Outcome.COMPLETED, results.get(2).getOutcome());
+		Assert.assertEquals(2, transaction.begun);
+		Assert.assertEquals(1, transaction.rolledBack);
+		Assert.assertEquals(1, transaction.committed);
+		Assert.assertEquals(new HashSet<Long>(Arrays.asList(1L, 3L)), tasks.completed.keySet());
+	}
+
+	@Test
+	public void retriesTheTasksAfterOneThatMarksTheTransactionRollbackOnly() {
+		// as jBPM does when a task command fails
+		tasks.failing.add(2L);
+		tasks.markRollbackOnly = true;
+		List<TaskDecisions.Result> results = decisions.decide(Arrays.asList(1L, 2L, 3L, 4L), "Approved", null, null);
+		Assert.assertEquals(TaskDecisions.Outcome.COMPLETED, results.get(0).getOutcome());
+		Assert.assertEquals(TaskDecisions.Outcome.FAILED, results.get(1).getOutcome());
+		Assert.assertEquals(TaskDecisions.Outcome.COMPLETED, results.get(2).getOutcome());
+		Assert.assertEquals(TaskDecisions.Outcome.COMPLETED, results.get(3).getOutcome());
+		// the pass stopped at task 2, tasks 3 and 4 were only tried in the second one
+		Assert.assertEquals(Arrays.asList(1L, 2L, 1L, 3L, 4L), tasks.tried);
+		Assert.assertEquals(2, transaction.begun);
+		Assert.assertEquals(1, transaction.rolledBack);
+		Assert.assertEquals(1, transaction.committed);
+		Assert.assertEquals(new HashSet<Long>(Arrays.asList(1L, 3L, 4L)), tasks.completed.keySet());
+	}
+
+	@Test
+	public void failsOnlyTheTaskThatLeftTheTransactionRollbackOnly() {
+		tasks.markingOnly.add(1L);
+		List<TaskDecisions.Result> results = decisions.decide(Arrays.asList(1L, 2L), "Approved", null, null);
+		Assert.assertEquals(TaskDecisions.Outcome.FAILED, results.get(0).getOutcome());
+		Assert.assertEquals("Transaction marked for rollback", results.get(0).getMessage());
+		Assert.assertEquals(TaskDecisions.Outcome.COMPLETED, results.get(1).getOutcome());
+		Assert.assertEquals(Collections.singleton(2L), tasks.completed.keySet());
+	}
+
+	@Test
+	public void reportsTasksRolledBackOnCommit() {
+		transaction.failCommit = true;
+		List<TaskDecisions.Result> results = decisions.complete(Collections.singletonMap(1L, new Qualification()));
+		Assert.assertEquals(TaskDecisions.Outcome.ROLLED_BACK, results.get(0).getOutcome());
+		Assert.assertTrue(tasks.completed.isEmpty());
+	}
+
+	/**
+	 * A task service whose completions only count once committed.
+	 */
+	private final class Tasks {
+
+		final Set<Long> failing = new HashSet<Long>();
+		// tasks whose completion marks the transaction rollback-only without failing
+		final Set<Long> markingOnly = new HashSet<Long>();
+		final Map<Long, Qualification> completed = new HashMap<Long, Qualification>();
+		final List<Long> tried = new ArrayList<Long>();
+		boolean markRollbackOnly;
+
+		BPMTaskService service() {
+			return (BPMTaskService)Proxy.newProxyInstance(getClass().getClassLoader(),
+					new Class<?>[] {BPMTaskService.class}, new InvocationHandler() {
+						public Object invoke(Object proxy, Method method, Object[] args) {
+							long taskId = (Long)args[0];
+							if (method.getName().equals("getTaskContent")) {
+								Qualification qualification = new Qualification();
+								qualification.setStatus("Pending");
+								qualification.setExplanation("Existing customer");
+								Map<String, Object> content = new HashMap<String, Object>();
+								content.put("qualification", qualification);
+								return content;
+							}
+							if (method.getName().equals("claim")) {
+								tried.add(taskId);
+							}
+							if (failing.contains(taskId)) {
+								if (markRollbackOnly) {
+									transaction.status = Status.STATUS_MARKED_ROLLBACK;
+								}
+								throw new IllegalStateException("Task " + taskId + " is not Ready");
+							}
+							if (markingOnly.contains(taskId) && method.getName().equals("complete")) {
+								transaction.status = Status.STATUS_MARKED_ROLLBACK;
+							}
+							if (method.getName().equals("complete")) {
+								transaction.completing.put(taskId, (Qualification)((Map<?, ?>)args[2]).get("qualification"));
+							}
+							return null;
+						}
+					});
+		}
+	}
+
+	private final class Transaction {
+
+		final Map<Long, Qualification> completing = new HashMap<Long, Qualification>();
+		int begun;
+		int committed;
+		int rolledBack;
+		boolean failCommit;
+		int status = Status.STATUS_NO_TRANSACTION;
+
+		UserTransaction proxy() {
+			return (UserTransaction)Proxy.newProxyInstance(getClass().getClassLoader(),
+					new Class<?>[] {UserTransaction.class}, new InvocationHandler() {
+						public Object invoke(Object proxy, Method method, Object[] args) throws Exception {
+							String name = method.getName();
+							if (name.equals("begin")) {
+								begun++;
+								status = Status.STATUS_ACTIVE;
+								completing.clear();
+							} else if (name.equals("commit")) {
+								if (failCommit || status == Status.STATUS_MARKED_ROLLBACK) {
+									status = Status.STATUS_NO_TRANSACTION;
+									completing.clear();
+									throw new RollbackException("Commit failed");
+								}
+								status = Status.STATUS_NO_TRANSACTION;
+								committed++;
+								tasks.completed.putAll(completing);
+							} else if (name.equals("rollback")) {
+								status = Status.STATUS_NO_TRANSACTION;
+								rolledBack++;
+								completing.clear();
+							} else if (name.equals("getStatus")) {
+								return status;
+							}
+							return null;
+						}
+					});
+		}
+	}
+}
@@ -0,0 +1,169 @@
+package org.jboss.example.homeloan.prequal;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.example.homeloan.data.Applicant;
+import org.jboss.example.homeloan.data.LoanApplication;
+import org.junit.Assert;
+import org.junit.Test;
+import org.kie.api.task.model.TaskSummary;
+
+public class TaskInboxTest {
+
+	private final Tasks tasks = new Tasks();
+	private final TaskInbox inbox = new TaskInbox(tasks);
+
+	@Test
+	public void pagesOldestFirst() {
+		for (int i = 0; i < 5; i++) {
+			tasks.add(10 - i, 700 + i, 100000 * (i + 1));
+		}
+		TaskInbox.Page page = inbox.page(null, 0, 2);
+		Assert.assertEquals(5, page.getTotal());
+		Assert.assertEquals(2, page.getTasks().size());
+		Assert.assertEquals(10, page.getTasks().get(0).getTaskId());
+		Assert.assertEquals(9, page.getTasks().get(1).getTaskId());
+
+		page = inbox.page(null, 4, 2);
+		Assert.assertEquals(4, page.getFirst());
+		Assert.assertEquals(6, page.getTasks().get(0).getTaskId());
+		// past the end is the last page
+		Assert.assertEquals(4, inbox.page(null, 12, 2).getFirst());
+	}
+
+	@Test
+	public void filters() {
+		tasks.add(1, 650, 100000);
+		tasks.add(2, 720, 250000);
+		tasks.add(3, 780, 400000);
+		TaskFilter filter = new TaskFilter();
+		filter.setMinCreditScore(700);
+		filter.setMaxAmount(300000);
+		TaskInbox.Page page = inbox.page(filter, 0, 10);
+		Assert.assertEquals(1, page.getTotal());
+		Assert.assertEquals(2, page.getTasks().get(0).getTaskId());
+		Assert.assertEquals(720, page.getTasks().get(0).getCreditScore());
+		Assert.assertEquals(250000, page.getTasks().get(0).getAmount());
+	}
+
+	@Test
+	public void readsContentOncePerTask() {
+		tasks.add(1, 650, 100000);
+		tasks.add(2, 720, 250000);
+		inbox.page(null, 0, 10);
+		Assert.assertEquals(2, tasks.contentReads);
+		Assert.assertEquals(1, tasks.listReads);
+
+		// cached until tasks change
+		inbox.page(null, 0, 10);
+		Assert.assertEquals(1, tasks.listReads);
+
+		tasks.add(3, 780, 400000);
+		tasks.remove(1);
+		inbox.invalidate();
+		TaskInbox.Page page = inbox.page(null, 0, 10);
+		Assert.assertEquals(2, tasks.listReads);
+		Assert.assertEquals(3, tasks.contentReads);
+		Assert.assertEquals(2, page.getTotal());
+		Assert.assertNull(inbox.get(1));
+		Assert.assertNotNull(inbox.get(3));
+	}
+
+	@Test
+	public void skipsTasksCompletedWhileListing() {
+		tasks.add(1, 650, 100000);
+		tasks.add(2, 720, 250000);
+		tasks.failContent = 1;
+		TaskInbox.Page page = inbox.page(null, 0, 10);
+		Assert.assertEquals(1, page.getTotal());
+		Assert.assertEquals(2, page.getTasks().get(0).getTaskId());
+	}
+
+	@Test
+	public void retriesAFailedReloadOnTheNextRequest() {
+		tasks.add(1, 650, 100000);
+		inbox.page(null, 0, 10);
+		tasks.add(2, 720, 250000);
+		inbox.invalidate();
+		tasks.failList = new IllegalStateException("task service unavailable");
+		try {
+			inbox.page(null, 0, 10);
+			Assert.fail("Failed reload returned");
+		} catch (IllegalStateException e) {
+			Assert.assertSame(tasks.failList, e);
+		}
+		Assert.assertEquals(2, tasks.listReads);
+
+		tasks.failList = null;
+		Assert.assertEquals(2, inbox.page(null, 0, 10).getTotal());
+		Assert.assertEquals(3, tasks.listReads);
+	}
+
+	private static final class Tasks implements TaskInbox.Source {
+
+		final Map<Long, Map<String, Object>> contents = new HashMap<Long, Map<String, Object>>();
+		final List<TaskSummary> summaries = new ArrayList<TaskSummary>();
+		int listReads;
+		int contentReads;
+		long failContent = -1;
+		RuntimeException failList;
+
+		void add(final long id, int creditScore, int amount) {
+			Applicant applicant = new Applicant();
+			applicant.setSsn("9000000" + id);
+			applicant.setCreditScore(creditScore);
+			LoanApplication application = new LoanApplication();
+			application.setAmount(amount);
+			application.setApplicant(applicant);
+			Map<String, Object> content = new HashMap<String, Object>();
+			content.put("applicant", applicant);
+			content.put("application", application);
+			contents.put(id, content);
+			summaries.add((TaskSummary)Proxy.newProxyInstance(getClass().getClassLoader(),
+					new Class<?>[] {TaskSummary.class}, new InvocationHandler() {
+						public Object invoke(Object proxy, Method method, Object[] args) {
+							if (method.getName().equals("getId")) {
+								return id;
+							}
+							if (method.getName().equals("getCreatedOn")) {
+								// lower ids are younger
+								return new Date(1000000000000L - id * 60000);
+							}
+							return null;
+						}
+					}));
+		}
+
+		void remove(long id) {
+			contents.remove(id);
+			for (int i = 0; i < summaries.size(); i++) {
+				if (summaries.get(i).getId() == id) {
+					summaries.remove(i);
+				}
+			}
+		}
+
+		public List<TaskSummary> tasks() {
+			listReads++;
+			if (failList != null) {
+				throw failList;
+			}
+			return new ArrayList<TaskSummary>(summaries);
+		}
+
+		public Map<String, Object> content(long taskId) {
+			contentReads++;
+			if (taskId == failContent) {
+				throw new IllegalStateException("Task " + taskId + " is completed");
+			}
+			return contents.get(taskId);
+		}
+	}
+}
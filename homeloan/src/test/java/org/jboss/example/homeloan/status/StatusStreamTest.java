@@ -0,0 +1,39 @@
+package org.jboss.example.homeloan.status;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Set;
+
+import org.jboss.example.homeloan.data.Qualification;
+import org.jboss.example.homeloan.prequal.LoanStatus;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StatusStreamTest {
+
+	@Test
+	public void parsesArraysAndLists() {
+		Set<String> ssns = StatusStream.parse("[\"740123456\", \"800559876\",\"740123456\"]", 10);
+		Assert.assertEquals(Arrays.asList("740123456", "800559876"), Arrays.asList(ssns.toArray()));
+		Assert.assertEquals(3, StatusStream.parse("740123456,800559876\n610761010", 10).size());
+		Assert.assertTrue(StatusStream.parse(" [ ] ", 10).isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsTooManySsns() {
+		StatusStream.parse("1 2 3", 2);
+	}
+
+	@Test
+	public void writesStatusesKeyedBySsn() throws Exception {
+		Qualification qualification = new Qualification();
+		qualification.setStatus("Rejected");
+		qualification.setExplanation("Said \"no\"");
+		LoanStatus.updateStatus("111223333", qualification);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new StatusStream(StatusStream.parse("111223333,999887777", 10)).write(out);
+		Assert.assertEquals("{\"111223333\":{\"status\":\"Rejected\",\"rate\":null,"
+				+ "\"explanation\":\"Said \\\"no\\\"\",\"cost\":0},\"999887777\":null}", out.toString("UTF-8"));
+	}
+}
@@ -0,0 +1,142 @@
+package org.jboss.example.homeloan.status;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletResponse;
+
+import org.jboss.example.homeloan.data.Qualification;
+import org.jboss.example.homeloan.prequal.LoanStatus;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StatusSubscriptionTest {
+
+	private static final Executor DIRECT = new Executor() {
+		public void execute(Runnable command) {
+			command.run();
+		}
+	};
+
+	private final StringWriter events = new StringWriter();
+	private volatile boolean completed;
+
+	@Test
+	public void pushesUpdatesUntilDecided() {
+		LoanStatus.updateStatus("222334444", qualification("Pending"));
+		new StatusSubscription(async(), DIRECT, Arrays.asList("222334444", "333445555")).start();
+		Assert.assertTrue(events.toString().contains("data: {\"222334444\":{\"status\":\"Pending\""));
+
+		LoanStatus.updateStatus("222334444", qualification("Approved"));
+		Assert.assertTrue(events.toString().contains("data: {\"222334444\":{\"status\":\"Approved\""));
+		Assert.assertFalse(completed);
+
+		LoanStatus.updateStatus("333445555", qualification("Rejected"));
+		Assert.assertTrue(completed);
+
+		// no longer listening
+		int length = events.toString().length();
+		LoanStatus.updateStatus("333445555", qualification("Approved"));
+		Assert.assertEquals(length, events.toString().length());
+	}
+
+	@Test
+	public void slowClientHoldsUpOnlyItsOwnSubscription() throws Exception {
+		final CountDownLatch reading = new CountDownLatch(1);
+		final StringWriter slowEvents = new StringWriter();
+		Writer slow = new FilterWriter(slowEvents) {
+			@Override
+			public void flush() throws IOException {
+				try {
+					reading.await();
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+				super.flush();
+			}
+		};
+		ExecutorService writer = Executors.newFixedThreadPool(2);
+		try {
+			StatusSubscription stalled = new StatusSubscription(async(slow), writer, Collections.singletonList("444556666"));
+			stalled.start();
+			new StatusSubscription(async(events), writer, Collections.singletonList("555667777")).start();
+			for (int i = 0; i < 10; i++) {
+				LoanStatus.updateStatus("444556666", qualification("Pending"));
+				LoanStatus.updateStatus("555667777", qualification("Pending"));
+			}
+			LoanStatus.updateStatus("555667777", qualification("Approved"));
+			awaitCompleted();
+			Assert.assertTrue(events.toString().contains("data: {\"555667777\":{\"status\":\"Approved\""));
+			Assert.assertTrue(stalled.isOverdue(System.currentTimeMillis() + 1000, 500));
+			Assert.assertFalse(stalled.isClosed());
+
+			reading.countDown();
+			LoanStatus.updateStatus("444556666", qualification("Approved"));
+			long deadline = System.currentTimeMillis() + 5000;
+			while (!stalled.isClosed()) {
+				Assert.assertTrue("Stalled subscription not completed", System.currentTimeMillis() < deadline);
+				Thread.sleep(10);
+			}
+			Assert.assertFalse(stalled.isOverdue(System.currentTimeMillis() + 1000, 500));
+			Assert.assertTrue(slowEvents.toString().contains("data: {\"444556666\":{\"status\":\"Approved\""));
+		} finally {
+			reading.countDown();
+			writer.shutdownNow();
+		}
+	}
+
+	private void awaitCompleted() throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!completed) {
+			Assert.assertTrue("Subscription not completed", System.currentTimeMillis() < deadline);
+			Thread.sleep(10);
+		}
+	}
+
+	private static Qualification qualification(String status) {
+		Qualification qualification = new Qualification();
+		qualification.setStatus(status);
+		return qualification;
+	}
+
+	private AsyncContext async() {
+		return async(events);
+	}
+
+	private AsyncContext async(Writer out) {
+		final PrintWriter writer = new PrintWriter(out);
+		final ServletResponse response = proxy(ServletResponse.class, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				return "getWriter".equals(method.getName()) ? writer : null;
+			}
+		});
+		return proxy(AsyncContext.class, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if ("getResponse".equals(method.getName())) {
+					return response;
+				}
+				if ("complete".equals(method.getName())) {
+					completed = true;
+				}
+				return null;
+			}
+		});
+	}
+
+	private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, handler));
+	}
+}